@@ -18,16 +18,20 @@
  */
 package org.jasig.ssp.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 import org.hibernate.Criteria;
+import org.hibernate.MappingException;
 import org.hibernate.Session;
 import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.transform.AliasToBeanResultTransformer;
 import org.jasig.mygps.business.EarlyAlertManager;
+import org.jasig.ssp.dao.reference.ReferenceCacheVersionDao;
 import org.jasig.ssp.model.Auditable;
 import org.jasig.ssp.model.reference.Challenge;
 import org.jasig.ssp.service.ObjectNotFoundException;
@@ -37,6 +41,7 @@ import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * Basic CRUD (create, read, update, delete) methods for {@link Auditable}
@@ -56,6 +61,11 @@ public abstract class AbstractAuditableCrudDao<T extends Auditable>
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(AbstractAuditableCrudDao.class);
 
+	@Autowired
+	private transient ReferenceCacheVersionDao referenceCacheVersionDao;
+
+	private transient volatile Boolean secondLevelCached;
+
 	@Override
 	@SuppressWarnings(UNCHECKED)
 	public T get(final UUID id) throws ObjectNotFoundException {
@@ -97,6 +107,7 @@ public abstract class AbstractAuditableCrudDao<T extends Auditable>
 	@Override
 	public T save(final T obj) {
 		final Session session = sessionFactory.getCurrentSession();
+		markChangedIfSecondLevelCached();
 		if (obj.getId() == null) {
 			session.saveOrUpdate(obj);
 			session.flush(); // make sure constraint violations are checked now
@@ -106,9 +117,42 @@ public abstract class AbstractAuditableCrudDao<T extends Auditable>
 		return (T) session.merge(obj);
 	}
 
+	/**
+	 * Saves new instances with a single flush at the end, rather than flushing
+	 * after every instance as {@link #save(Auditable)} does.
+	 */
+	public void saveAll(final Collection<T> objs) {
+		final Session session = sessionFactory.getCurrentSession();
+		markChangedIfSecondLevelCached();
+		for (final T obj : objs) {
+			session.saveOrUpdate(obj);
+		}
+		session.flush(); // make sure constraint violations are checked now
+	}
+
 	@Override
 	public void delete(final T obj) {
 		LOGGER.error("A hard delete of type "+obj.getClass()+" with the id of "+obj.getId()+" is being executed!");
 		sessionFactory.getCurrentSession().delete(obj);
+		markChangedIfSecondLevelCached();
+	}
+
+	/**
+	 * Lets other nodes know to drop their second-level cache if this DAO's
+	 * entity lives in it.
+	 */
+	protected void markChangedIfSecondLevelCached() {
+		if ( secondLevelCached == null ) {
+			try {
+				secondLevelCached = ((SessionFactoryImplementor) sessionFactory)
+						.getEntityPersister(persistentClass.getName()).hasCache();
+			} catch ( MappingException e ) {
+				// not mapped under its own class name, so can't have been marked cacheable either
+				secondLevelCached = false;
+			}
+		}
+		if ( secondLevelCached ) {
+			referenceCacheVersionDao.markChanged();
+		}
 	}
 }
\ No newline at end of file
@@ -21,6 +21,8 @@ package org.jasig.ssp.dao;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.jasig.ssp.model.CaseloadBulkAddReassignment;
 import org.springframework.stereotype.Repository;
 
@@ -46,6 +48,45 @@ public class CaseloadBulkAddReassignmentDao
 		return obj;
 	}
 
+	/**
+	 * Stages a batch of rows, flushing once for the whole batch rather than
+	 * once per row. Rows are evicted after the flush so large uploads don't
+	 * accumulate in the session.
+	 */
+	public void createAll(final List<CaseloadBulkAddReassignment> objs) {
+		final Session session = sessionFactory.getCurrentSession();
+		for (final CaseloadBulkAddReassignment obj : objs) {
+			session.saveOrUpdate(obj);
+		}
+		session.flush(); // make sure constraint violations are checked now
+		for (final CaseloadBulkAddReassignment obj : objs) {
+			session.evict(obj);
+		}
+	}
+
+	public long count() {
+		final Number count = (Number) createCriteria()
+				.setProjection(Projections.rowCount()).uniqueResult();
+		return count == null ? 0L : count.longValue();
+	}
+
+	/**
+	 * Reads the next {@code maxResults} staged rows in a stable order so that
+	 * processing can work through the table chunk by chunk.
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public List<CaseloadBulkAddReassignment> getFirst(final int maxResults) {
+		return createCriteria()
+				.addOrder(Order.asc("schoolId"))
+				.addOrder(Order.asc("coachSchoolId"))
+				.setMaxResults(maxResults)
+				.list();
+	}
+
+	public void delete(final CaseloadBulkAddReassignment obj) {
+		sessionFactory.getCurrentSession().delete(obj);
+	}
+
 	public void truncate() {
 		final Session session = sessionFactory.getCurrentSession();
 		Query query = session.createQuery("DELETE FROM CaseloadBulkAddReassignment");
@@ -26,6 +26,7 @@ import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
 import org.hibernate.internal.SessionFactoryImpl;
 import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.Person;
@@ -42,17 +43,26 @@ import org.jasig.ssp.service.SecurityService;
 import org.jasig.ssp.service.external.TermService;
 import org.jasig.ssp.service.impl.ScheduledTaskWrapperServiceImpl;
 import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.transferobject.ImmutablePersonIdentifiersTO;
 import org.jasig.ssp.util.collections.Pair;
+import org.jasig.ssp.util.csvwriter.AbstractCsvWriterHelper;
 import org.jasig.ssp.util.csvwriter.CaseloadCsvWriterHelper;
+import org.jasig.ssp.util.csvwriter.CustomizableCaseloadCsvWriterHelper;
 import org.jasig.ssp.util.hibernate.NamespacedAliasToBeanResultTransformer;
+import org.jasig.ssp.util.hibernate.WindowCountResultTransformer;
+import org.jasig.ssp.util.sort.PagedQueryCountMode;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +80,23 @@ public class DirectoryPersonSearchDao  {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryPersonSearchDao.class);
 
+	private static final String MAIN_DIRECTORY_PERSON_ENTITY = "MaterializedDirectoryPerson";
+
+	private static final String BLUE_DIRECTORY_PERSON_ENTITY = "MaterializedDirectoryPersonBlue";
+
+	private static final String CHANGED_SCHOOL_IDS_SQL =
+			"select p.school_id from person p where p.modified_date >= :since " +
+			"union select p.school_id from person p join person c on c.id = p.coach_id " +
+			"where c.modified_date >= :since " +
+			"union select p.school_id from person p join person_program_status pps on pps.person_id = p.id " +
+			"where pps.modified_date >= :since " +
+			"union select p.school_id from person p join early_alert ea on ea.person_id = p.id " +
+			"where ea.modified_date >= :since " +
+			"union select p.school_id from person p join early_alert ea on ea.person_id = p.id " +
+			"join early_alert_response ear on ear.early_alert_id = ea.id where ear.modified_date >= :since " +
+			"union select p.school_id from person p join map_plan mp on mp.person_id = p.id " +
+			"where mp.modified_date >= :since";
+
 
     @Autowired
     protected transient SessionFactory sessionFactory;
@@ -87,13 +114,25 @@ public class DirectoryPersonSearchDao  {
 	@Autowired
 	private transient ScheduledApplicationTaskStatusService scheduledApplicationTaskService;
 
+	@Value("#{configProperties.directory_person_table_revalidation_millis}")
+	private long activeTableRevalidationMillis = 5000;
+
+	@Value("#{configProperties.directory_person_search_window_count}")
+	private boolean windowCountEnabled = true;
+
+	private volatile String activeDirectoryPersonEntity;
+
+	private volatile long activeDirectoryPersonEntityCheckedAt;
+
     public DirectoryPersonSearchDao() {
         super();
     }
 
 
 	public void refreshDirectoryPerson(){
-		
+		// the refresh task is already marked running, so this flips searches over to the blue table
+		setActiveDirectoryPersonEntity(lookupActiveDirectoryPersonEntity());
+
 		if (isPostgresSession()) {
 			try {
 				LOGGER.info("REFRESH_MV_DIRECTORY_PERSON started");
@@ -112,6 +151,7 @@ public class DirectoryPersonSearchDao  {
 			query.list();
 			LOGGER.info("REFRESH_MV_DIRECTORY_PERSON ended successfully");
 		}
+		activateDirectoryPersonEntityAfterCommit(MAIN_DIRECTORY_PERSON_ENTITY);
 	}
 	
 	public void refreshDirectoryPersonBlue() {
@@ -134,11 +174,62 @@ public class DirectoryPersonSearchDao  {
 			query.list();
 			LOGGER.info("REFRESH_MV_DIRECTORY_PERSON_BLUE ended successfully");
 		}
+		if ( activeDirectoryPersonEntity == null ) {
+			// e.g. on first startup, where blue is populated before main
+			activateDirectoryPersonEntityAfterCommit(BLUE_DIRECTORY_PERSON_ENTITY);
+		}
+	}
+
+	/**
+	 * School ids of every directory person whose SSP-side source data was modified at or after {@code since}. Only
+	 * covers sources which carry a modified date, i.e. person (including the person's coach), program status,
+	 * early alerts and responses, and plans. Changes to external data are only picked up by a full refresh.
+	 */
+	public List<String> getSchoolIdsChangedSince(Date since) {
+		final Query query = sessionFactory.getCurrentSession().createSQLQuery(CHANGED_SCHOOL_IDS_SQL);
+		query.setTimestamp("since", since);
+		return (List<String>) query.list();
+	}
+
+	/**
+	 * Re-derive the {@code mv_directory_person} and {@code mv_directory_person_blue} rows for the given school ids
+	 * from {@code v_directory_person}, the same way the full refresh does, but for just those ids. Rows still
+	 * keyed by a person's previous school id are replaced too. Keep the id list under database bind parameter
+	 * limits; every id is bound twice.
+	 *
+	 * @return number of {@code mv_directory_person} rows written
+	 */
+	public int refreshDirectoryPersonRows(List<String> schoolIds) {
+		if ( schoolIds == null || schoolIds.isEmpty() ) {
+			return 0;
+		}
+		// blue serves searches while the next full refresh rebuilds the main table, so keep it current as well
+		refreshDirectoryPersonRows("mv_directory_person_blue", schoolIds);
+		return refreshDirectoryPersonRows("mv_directory_person", schoolIds);
+	}
+
+	private int refreshDirectoryPersonRows(String table, List<String> schoolIds) {
+		// without a query space Hibernate assumes native updates may touch anything and empties every
+		// second-level cache region, reference data and people included
+		sessionFactory.getCurrentSession()
+				.createSQLQuery("delete from " + table + " where id in (:schoolIds)"
+						+ " or person_id in (select p.id from person p where p.school_id in (:schoolIds))")
+				.addSynchronizedQuerySpace(table)
+				.setParameterList("schoolIds", schoolIds)
+				.executeUpdate();
+		// select * like the full refresh procedures, so the view and table columns only have to line up there
+		return sessionFactory.getCurrentSession()
+				.createSQLQuery("insert into " + table + " select * from v_directory_person"
+						+ " where id in (:schoolIds)")
+				.addSynchronizedQuerySpace(table)
+				.setParameterList("schoolIds", schoolIds)
+				.executeUpdate();
 	}
 
     public Long getCaseloadCountFor(PersonSearchRequest personSearchRequest, SortingAndPaging buildSortAndPage) {
 
-        final Pair<Long, Query> querySet = prepSearchQuery(sessionFactory.getCurrentSession(), personSearchRequest, false);
+        final Pair<Long, Query> querySet = prepSearchQuery(sessionFactory.getCurrentSession(), personSearchRequest,
+                false, PagedQueryCountMode.SEPARATE_QUERY);
 
         return querySet.getFirst();
     }
@@ -164,16 +255,9 @@ public class DirectoryPersonSearchDao  {
 	 *
 	 * @return List of people that match the specified filters
 	 */
-	@SuppressWarnings("unchecked")
 	public PagingWrapper<PersonSearchResult2> search(PersonSearchRequest personSearchRequest) {
-
-        final Pair<Long, Query> querySet = prepSearchQuery(
-				sessionFactory.getCurrentSession(), personSearchRequest,false);
-
-        querySet.getSecond().setResultTransformer(
-				new NamespacedAliasToBeanResultTransformer(PersonSearchResult2.class, "person_"));
-
-		return new PagingWrapper<>(querySet.getFirst(), querySet.getSecond().list());
+		return pagedSearch(personSearchRequest, false, PersonSearchResult2.class,
+				countModeFor(personSearchRequest));
 	}
 
     /**
@@ -181,17 +265,115 @@ public class DirectoryPersonSearchDao  {
      *
      * @return List of people that match the specified filters
      */
-    @SuppressWarnings("unchecked")
     public PagingWrapper<PersonSearchResultFull> searchFull(PersonSearchRequest personSearchRequest) {
+        return pagedSearch(personSearchRequest, true, PersonSearchResultFull.class,
+                countModeFor(personSearchRequest));
+    }
 
-        final Pair<Long, Query> querySet = prepSearchQuery(
-                sessionFactory.getCurrentSession(), personSearchRequest, true);
+	/**
+	 * Runs the page query, finding the total as {@code countMode} says. A {@link PagedQueryCountMode#WINDOW_FUNCTION}
+	 * page past the last row carries no total, so that one case falls back to a separate count query.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> PagingWrapper<T> pagedSearch(PersonSearchRequest personSearchRequest, boolean fullResultSearch,
+			Class<T> resultClass, PagedQueryCountMode countMode) {
+
+		final Pair<Long, Query> querySet = prepSearchQuery(
+				sessionFactory.getCurrentSession(), personSearchRequest, fullResultSearch, countMode);
+		final NamespacedAliasToBeanResultTransformer beanTransformer =
+				new NamespacedAliasToBeanResultTransformer(resultClass, "person_");
+
+		if ( countMode == PagedQueryCountMode.WINDOW_FUNCTION ) {
+			final WindowCountResultTransformer windowTransformer = new WindowCountResultTransformer(beanTransformer);
+			final List<T> rows = querySet.getSecond().setResultTransformer(windowTransformer).list();
+			if ( !(rows.isEmpty()) ) {
+				return new PagingWrapper<>(windowTransformer.getTotalRows(), rows);
+			}
+			if ( isFirstPage(personSearchRequest) ) {
+				return new PagingWrapper<>(0L, rows);
+			}
+			return pagedSearch(personSearchRequest, fullResultSearch, resultClass, PagedQueryCountMode.SEPARATE_QUERY);
+		}
 
-        querySet.getSecond().setResultTransformer(
-                new NamespacedAliasToBeanResultTransformer(PersonSearchResultFull.class, "person_"));
+		final List<T> rows = querySet.getSecond().setResultTransformer(beanTransformer).list();
+		if ( countMode == PagedQueryCountMode.ESTIMATE ) {
+			final SortingAndPaging sortAndPage = personSearchRequest.getSortAndPage();
+			if ( !(sortAndPage.isPaged()) ) {
+				return new PagingWrapper<>(rows);
+			}
+			// the query fetched one extra row, which only tells us there is at least one more page
+			final long total = sortAndPage.getFirstResult() + rows.size();
+			return new PagingWrapper<>(total,
+					rows.size() > sortAndPage.getMaxResults() ? rows.subList(0, sortAndPage.getMaxResults()) : rows);
+		}
+		return new PagingWrapper<>(querySet.getFirst(), rows);
+	}
 
-        return new PagingWrapper<>(querySet.getFirst(), querySet.getSecond().list());
-    }
+	private boolean isFirstPage(PersonSearchRequest personSearchRequest) {
+		final Integer firstResult = personSearchRequest.getSortAndPage().getFirstResult();
+		return firstResult == null || firstResult <= 0;
+	}
+
+	private PagedQueryCountMode countModeFor(PersonSearchRequest personSearchRequest) {
+		if ( Boolean.TRUE.equals(personSearchRequest.getEstimateTotal()) ) {
+			return PagedQueryCountMode.ESTIMATE;
+		}
+		// collection joins duplicate rows which only the select distinct removes, after the window count ran
+		if ( windowCountEnabled && !(hasCollectionJoins(personSearchRequest)) ) {
+			return PagedQueryCountMode.WINDOW_FUNCTION;
+		}
+		return PagedQueryCountMode.SEPARATE_QUERY;
+	}
+
+	private boolean hasCollectionJoins(PersonSearchRequest personSearchRequest) {
+		final StringBuilder joins = new StringBuilder();
+		buildJoins(personSearchRequest, joins);
+		return joins.length() > 0;
+	}
+
+	/**
+	 * Identifiers of persons matching the given search, ordered by school ID, one keyset page at a time. Ignores
+	 * any paging and sorting on the request and skips the count query, so a caller can snapshot the complete result
+	 * set without ever holding all of it.
+	 *
+	 * @param afterSchoolId only persons with a higher school ID are returned. Null for the first page.
+	 * @return identifiers of matching persons. {@code id} is null for persons only known externally.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ImmutablePersonIdentifiersTO> searchIdentifiers(PersonSearchRequest personSearchRequest,
+			String afterSchoolId, int maxResults) {
+
+		final StringBuilder hqlWithoutSelect = new StringBuilder();
+		buildFrom(personSearchRequest, hqlWithoutSelect);
+		buildJoins(personSearchRequest, hqlWithoutSelect);
+		final FilterTracker filterTracker = new FilterTracker();
+		buildWhere(personSearchRequest, filterTracker, hqlWithoutSelect);
+		if ( afterSchoolId != null ) {
+			appendAndOrWhere(hqlWithoutSelect, filterTracker);
+			hqlWithoutSelect.append(" dp.schoolId > :afterSchoolId ");
+		}
+
+		final Map<String, Object> params = getBindParams(personSearchRequest);
+		final Query query = sessionFactory.getCurrentSession().createQuery(
+				"select distinct dp.schoolId, dp.personId " + hqlWithoutSelect + " order by dp.schoolId")
+				.setProperties(params);
+		// same SSP-2981 workaround as SortingAndPaging: setProperties() skips nulls
+		for ( Map.Entry<String, Object> param : params.entrySet() ) {
+			if ( param.getValue() == null ) {
+				query.setParameter(param.getKey(), null);
+			}
+		}
+		if ( afterSchoolId != null ) {
+			query.setString("afterSchoolId", afterSchoolId);
+		}
+
+		final List<Object[]> rows = query.setReadOnly(true).setMaxResults(maxResults).list();
+		final List<ImmutablePersonIdentifiersTO> identifiers = Lists.newArrayListWithCapacity(rows.size());
+		for ( Object[] row : rows ) {
+			identifiers.add(new ImmutablePersonIdentifiersTO((UUID) row[1], (String) row[0]));
+		}
+		return identifiers;
+	}
 
     public void exportableSearch(CaseloadCsvWriterHelper csvWriterHelper, PersonSearchRequest personSearchRequest)
             throws IOException {
@@ -200,7 +382,8 @@ public class DirectoryPersonSearchDao  {
 
         try {
             openStatelessSession = sessionFactory.openStatelessSession();
-            final Pair<Long, Query> querySet = prepSearchQuery(openStatelessSession, personSearchRequest, false);
+            final Pair<Long, Query> querySet = prepSearchQuery(openStatelessSession, personSearchRequest, false,
+                    PagedQueryCountMode.SEPARATE_QUERY);
 
             querySet.getSecond().setResultTransformer(new NamespacedAliasToBeanResultTransformer(
                     PersonSearchResult2.class, "person_"));
@@ -223,23 +406,43 @@ public class DirectoryPersonSearchDao  {
         }
     }
 
-    public List<PersonSearchResultFull> exportableCustomizableSearch(PersonSearchRequest personSearchRequest)
-            throws IOException {
+    /**
+     * Streams the full search results to {@code csvWriterHelper} {@code chunkSize} rows at a time, handing each chunk
+     * to {@code chunkPreparer} before it is written. Reads happen in a read-only transaction on a dedicated stateless
+     * session so drivers which only honor the fetch size inside a transaction (e.g. Postgres) actually stream
+     * rather than buffer the whole result set.
+     */
+    public void exportableCustomizableSearch(CustomizableCaseloadCsvWriterHelper csvWriterHelper,
+            PersonSearchRequest personSearchRequest, int chunkSize,
+            AbstractCsvWriterHelper.ChunkPreparer<PersonSearchResultFull> chunkPreparer) throws IOException {
 
         StatelessSession openStatelessSession = null;
+        Transaction transaction = null;
 
         try {
             openStatelessSession = sessionFactory.openStatelessSession();
-            final Pair<Long, Query> querySet = prepSearchQuery(openStatelessSession, personSearchRequest, true);
+            transaction = openStatelessSession.beginTransaction();
+            final Pair<Long, Query> querySet = prepSearchQuery(openStatelessSession, personSearchRequest, true,
+                    PagedQueryCountMode.SEPARATE_QUERY);
 
             querySet.getSecond().setResultTransformer(new NamespacedAliasToBeanResultTransformer(
                     PersonSearchResultFull.class, "person_"));
 
-            final Query query = querySet.getSecond().setFetchSize(10).setReadOnly(true);
+            final Query query = querySet.getSecond().setFetchSize(chunkSize).setReadOnly(true);
+
+            final ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
 
-            return query.list();
+            csvWriterHelper.write(results, chunkSize, chunkPreparer, -1L);
 
         } finally {
+            if ( transaction != null ) {
+                try {
+                    // nothing was written, so there is nothing to commit
+                    transaction.rollback();
+                } catch (Exception e) {
+                    LOGGER.info("Failed to end read-only transaction, Customizable Exporter", e);
+                }
+            }
             if ( openStatelessSession != null ) {
                 try {
                     openStatelessSession.close();
@@ -264,10 +467,11 @@ public class DirectoryPersonSearchDao  {
 		}
 	}
 
-	private Pair<Long, Query> prepSearchQuery(Object session, PersonSearchRequest personSearchRequest, boolean fullResultSearch) {
+	private Pair<Long, Query> prepSearchQuery(Object session, PersonSearchRequest personSearchRequest,
+			boolean fullResultSearch, PagedQueryCountMode countMode) {
 
 		final FilterTracker filterTracker = new FilterTracker();
-		final String hqlSelect;
+		String hqlSelect;
 		final StringBuilder hqlWithoutSelect = new StringBuilder();
         Map<String,Object> params = null;
 
@@ -287,6 +491,11 @@ public class DirectoryPersonSearchDao  {
 		} else {
 			hqlSelect = buildSelect().toString();
 		}
+		if ( countMode == PagedQueryCountMode.WINDOW_FUNCTION ) {
+			// only chosen when nothing can duplicate rows, and SQL Server rewrites distinct to a group by the window
+			// count column can't be part of
+			hqlSelect = hqlSelect.replaceFirst("select distinct ", "select ");
+		}
 
 		buildFrom(personSearchRequest,hqlWithoutSelect);
 
@@ -298,7 +507,7 @@ public class DirectoryPersonSearchDao  {
 
 		Pair<Long,Query> querySet =  personSearchRequest.getSortAndPage()
 				.applySortingAndPagingToPagedQuery(
-						session, "dp.schoolId", hqlSelect, hqlWithoutSelect, false, null, false, params);
+						session, "dp.schoolId", hqlSelect, hqlWithoutSelect, false, null, false, params, countMode);
 
 		querySet.getSecond().setResultTransformer(new NamespacedAliasToBeanResultTransformer(
 				PersonSearchResult2.class, "person_"));
@@ -1212,19 +1421,60 @@ public class DirectoryPersonSearchDao  {
 	}
 	
 	private Boolean buildFrom(PersonSearchRequest personSearchRequest, StringBuilder stringBuilder) {
+		final String activeEntity = getActiveDirectoryPersonEntity();
+		if ( activeEntity == null ) {
+			return false;
+		}
+		stringBuilder.append(" from ").append(activeEntity).append(" dp ");
+		return true;
+	}
+
+	/**
+	 * @return name of the entity mapped to whichever directory person table searches should currently read from,
+	 *         or null if neither has been populated. Served from memory, re-checked against the refresh task
+	 *         statuses at most every {@code directory_person_table_revalidation_millis} so flips made by refreshes
+	 *         on other nodes are picked up. Refreshes on this node flip it immediately.
+	 */
+	private String getActiveDirectoryPersonEntity() {
+		if ( System.currentTimeMillis() - activeDirectoryPersonEntityCheckedAt >= activeTableRevalidationMillis ) {
+			setActiveDirectoryPersonEntity(lookupActiveDirectoryPersonEntity());
+		}
+		return activeDirectoryPersonEntity;
+	}
+
+	private String lookupActiveDirectoryPersonEntity() {
 		ScheduledApplicationTaskStatus status = scheduledApplicationTaskService.getByName(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_TASK_NAME);
 		ScheduledApplicationTaskStatus status_blue = scheduledApplicationTaskService.getByName(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_BLUE_TASK_NAME);
 		
 		if (status != null && status.getStatus() != null && status.getStatus().equals(ScheduledTaskStatus.COMPLETED)) {
-			stringBuilder.append(" from MaterializedDirectoryPerson dp ");
+			return MAIN_DIRECTORY_PERSON_ENTITY;
 		} else if (status_blue != null && status_blue.getStatus() != null && status_blue.getStatus().equals(
 		                                                                                ScheduledTaskStatus.COMPLETED)){
-			stringBuilder.append(" from MaterializedDirectoryPersonBlue dp ");
-		} else {
-            return false;
-        }
+			return BLUE_DIRECTORY_PERSON_ENTITY;
+		}
+		return null;
+	}
 
-		return true;
+	private void setActiveDirectoryPersonEntity(String entity) {
+		activeDirectoryPersonEntity = entity;
+		activeDirectoryPersonEntityCheckedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Switch this node's searches to {@code entity} once the current transaction commits, or right away if there
+	 * isn't one.
+	 */
+	private void activateDirectoryPersonEntityAfterCommit(final String entity) {
+		if ( !(TransactionSynchronizationManager.isSynchronizationActive()) ) {
+			setActiveDirectoryPersonEntity(entity);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				setActiveDirectoryPersonEntity(entity);
+			}
+		});
 	}
 
 	private boolean hasMyWatchList(PersonSearchRequest personSearchRequest) {
@@ -39,6 +39,8 @@ import org.jasig.ssp.model.Person;
 import org.jasig.ssp.model.external.Term;
 import org.jasig.ssp.model.reference.Campus;
 import org.jasig.ssp.service.external.TermService;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueRecipientTO;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueTO;
 import org.jasig.ssp.transferobject.form.EarlyAlertSearchForm;
 import org.jasig.ssp.transferobject.reports.EarlyAlertCourseCountsTO;
 import org.jasig.ssp.transferobject.reports.EarlyAlertReasonCountsTO;
@@ -62,8 +64,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 
@@ -796,14 +800,6 @@ public class EarlyAlertDao extends
         return reasonCounts;
     }
 
-	public List<EarlyAlert> getResponseDueEarlyAlerts(Date lastResponseDate) {
-		String sql = "select distinct ea " + responseQuery();
-		final Query query = createHqlQuery(sql);
-		query.setParameter("lastResponseDate", lastResponseDate);
-		query.setParameter("objectStatus", ObjectStatus.ACTIVE);
-		return (List<EarlyAlert>) query.list();
-	}
-
 	public Map<UUID, Number> getResponsesDueCountEarlyAlerts(
 			@NotNull final Collection<UUID> personIds, Date lastResponseDate) {
 
@@ -829,8 +825,76 @@ public class EarlyAlertDao extends
 		return responsesDuePerPerson;
 	}
 
+	/**
+	 * Who might need reminding about each early alert awaiting a response,
+	 * without loading the alerts themselves.
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public List<EarlyAlertResponseDueRecipientTO> getResponseDueEarlyAlertRecipients(Date lastResponseDate) {
+		String sql = "select ea.id as earlyAlertId, coach.id as coachId, campus.id as campusId, "
+				+ "campus.earlyAlertCoordinatorId as earlyAlertCoordinatorId "
+				+ "from EarlyAlert as ea join ea.person as student left join student.coach as coach "
+				+ "left join ea.campus as campus where " + responseDueRestriction();
+		final Query query = createHqlQuery(sql);
+		query.setParameter("lastResponseDate", lastResponseDate);
+		query.setParameter("objectStatus", ObjectStatus.ACTIVE);
+		query.setResultTransformer(new AliasToBeanResultTransformer(EarlyAlertResponseDueRecipientTO.class));
+		return (List<EarlyAlertResponseDueRecipientTO>) query.list();
+	}
+
+	/**
+	 * Ids of the early alerts awaiting a response, keyed by the id of each
+	 * person watching the alert's student.
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public Map<UUID, Set<UUID>> getResponseDueEarlyAlertIdsByWatcher(Date lastResponseDate) {
+		String sql = "select ws.person.id, ea.id from EarlyAlert as ea, WatchStudent as ws "
+				+ "where ws.student.id = ea.person.id and " + responseDueRestriction();
+		final Query query = createHqlQuery(sql);
+		query.setParameter("lastResponseDate", lastResponseDate);
+		query.setParameter("objectStatus", ObjectStatus.ACTIVE);
+
+		final Map<UUID, Set<UUID>> earlyAlertIdsByWatcher = new HashMap<UUID, Set<UUID>>();
+		for (final Object[] result : (List<Object[]>) query.list()) {
+			Set<UUID> earlyAlertIds = earlyAlertIdsByWatcher.get(result[0]);
+			if (earlyAlertIds == null) {
+				earlyAlertIds = new HashSet<UUID>();
+				earlyAlertIdsByWatcher.put((UUID) result[0], earlyAlertIds);
+			}
+			earlyAlertIds.add((UUID) result[1]);
+		}
+		return earlyAlertIdsByWatcher;
+	}
+
+	/**
+	 * Just the fields shown in a response reminder digest for the given early
+	 * alerts, read in batches.
+	 */
+	public List<EarlyAlertResponseDueTO> getResponseDueEarlyAlertDigestLines(
+			@NotNull final Collection<UUID> earlyAlertIds) {
+		BatchProcessor<UUID, EarlyAlertResponseDueTO> processor = new BatchProcessor<UUID, EarlyAlertResponseDueTO>(
+				earlyAlertIds);
+		String sql = "select ea.id as id, ea.createdDate as createdDate, ea.lastResponseDate as lastResponseDate, "
+				+ "ea.courseTitle as courseTitle, ea.courseTermCode as courseTermCode, "
+				+ "student.id as studentId, student.firstName as studentFirstName, student.lastName as studentLastName, "
+				+ "creator.id as creatorId, creator.firstName as creatorFirstName, creator.lastName as creatorLastName "
+				+ "from EarlyAlert as ea join ea.person as student left join ea.createdBy as creator "
+				+ "where ea.id in :earlyAlertIds";
+		do {
+			final Query query = createHqlQuery(sql);
+			query.setResultTransformer(new AliasToBeanResultTransformer(EarlyAlertResponseDueTO.class));
+			processor.process(query, "earlyAlertIds");
+		} while (processor.moreToProcess());
+
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
+
 	private String responseQuery() {
-		return "from EarlyAlert as ea where ((ea.closedDate is null and ea.objectStatus = :objectStatus "
+		return "from EarlyAlert as ea where " + responseDueRestriction();
+	}
+
+	private String responseDueRestriction() {
+		return "((ea.closedDate is null and ea.objectStatus = :objectStatus "
 				+ "and ea.lastResponseDate is null and ea.createdDate < :lastResponseDate) or "
 				+ "(ea.closedDate is null and ea.objectStatus = :objectStatus and ea.lastResponseDate < :lastResponseDate)) ";
 		/*
@@ -19,8 +19,12 @@
 package org.jasig.ssp.dao;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+
+import org.hibernate.Criteria;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
@@ -29,11 +33,13 @@ import org.jasig.ssp.model.MapStatusReportCourseDetails;
 import org.jasig.ssp.model.MapStatusReportOverrideDetails;
 import org.jasig.ssp.model.MapStatusReportSubstitutionDetails;
 import org.jasig.ssp.model.MapStatusReportTermDetails;
+import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.Person;
 import org.jasig.ssp.model.external.PlanStatus;
 import org.jasig.ssp.transferobject.reports.MapStatusReportOwnerAndCoachInfo;
 import org.jasig.ssp.transferobject.reports.MapStatusReportPerson;
 import org.jasig.ssp.transferobject.reports.MapStatusReportSummaryDetail;
+import org.jasig.ssp.util.hibernate.BatchProcessor;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -66,6 +72,43 @@ public class MapStatusReportDao  extends AbstractPersonAssocAuditableCrudDao<Map
 
 	} 
 
+	/**
+	 * Hard deletes reports, and their details, for plans that are no longer
+	 * active or whose student is no longer active, i.e. plans the
+	 * calculation no longer visits.
+	 *
+	 * @return the number of reports deleted
+	 */
+	public int deleteReportsForInactivePlans() {
+		final String activePlanIds = "(select plan.id from Plan plan join plan.person person"
+				+ " where plan.objectStatus = :objectStatus and person.objectStatus = :objectStatus)";
+		final String staleReportIds = "(select msr.id from MapStatusReport msr where msr.plan.id not in "
+				+ activePlanIds + ")";
+		final String[] detailEntities = { "MapStatusReportSubstitutionDetails", "MapStatusReportCourseDetails",
+				"MapStatusReportTermDetails", "MapStatusReportOverrideDetails" };
+		for ( String detailEntity : detailEntities ) {
+			createHqlQuery("delete " + detailEntity + " d where d.report.id in " + staleReportIds)
+					.setInteger("objectStatus", ObjectStatus.ACTIVE.ordinal()).executeUpdate();
+		}
+		return createHqlQuery("delete MapStatusReport msr where msr.plan.id not in " + activePlanIds)
+				.setInteger("objectStatus", ObjectStatus.ACTIVE.ordinal()).executeUpdate();
+	}
+
+	/**
+	 * Input fingerprints of existing reports, keyed by plan id. Reports
+	 * calculated without a fingerprint are left out.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<UUID, String> getInputFingerprintsByPlanId() {
+		final List<Object[]> rows = createHqlQuery("select msr.plan.id, msr.inputFingerprint from MapStatusReport msr"
+				+ " where msr.inputFingerprint is not null").list();
+		final Map<UUID, String> fingerprints = new HashMap<UUID, String>();
+		for ( Object[] row : rows ) {
+			fingerprints.put((UUID) row[0], (String) row[1]);
+		}
+		return fingerprints;
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<MapStatusReportSummaryDetail> getSummaryDetails() {
 		String detailsQuery = " select new org.jasig.ssp.transferobject.reports.MapStatusReportSummaryDetail(msr.planStatus,count(*)) from MapStatusReport msr group by msr.planStatus order by count(*) desc";
@@ -146,4 +189,16 @@ public class MapStatusReportDao  extends AbstractPersonAssocAuditableCrudDao<Map
 		List<MapStatusReportPerson> result  = query.setEntity("watcher", watcher).setString("planStatus", PlanStatus.OFF.name()).list();
 		return result;
 	}
+
+	/**
+	 * Every status report for any of the given people, in no particular order.
+	 */
+	public List<MapStatusReport> getAllForPersonIds(List<UUID> personIds) {
+		final BatchProcessor<UUID, MapStatusReport> processor = new BatchProcessor<UUID, MapStatusReport>(personIds);
+		do {
+			final Criteria criteria = createCriteria();
+			processor.process(criteria, "person.id");
+		} while ( processor.moreToProcess() );
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
 }
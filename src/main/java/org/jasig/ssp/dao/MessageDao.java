@@ -19,11 +19,19 @@
 package org.jasig.ssp.dao;
 
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 import org.hibernate.Criteria;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.jasig.ssp.model.Message;
+import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.util.hibernate.BatchProcessor;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortDirection;
 import org.jasig.ssp.util.sort.SortingAndPaging;
@@ -98,6 +106,79 @@ public class MessageDao extends AbstractAuditableCrudDao<Message> implements Aud
         return processCriteriaWithStatusSortingAndPaging(criteria, sAndP);
 	}
 
+	/**
+	 * Keyset-paged variant of {@link #queued(SortingAndPaging)}. Returns
+	 * active, unsent, not-yet-failed messages ordered by
+	 * {@code (createdDate, id)} which sort strictly after the given cursor.
+	 * Unlike offset paging, the cost of each page does not grow as the
+	 * caller walks further into the queue, and rows sent (or failed) by a
+	 * previous page cannot shift the next page's window.
+	 *
+	 * @param afterCreatedDate
+	 *            createdDate of the last message in the previous page, or null
+	 *            to start at the head of the queue
+	 * @param afterId
+	 *            id of the last message in the previous page; ignored if
+	 *            <code>afterCreatedDate</code> is null
+	 * @param batchSize
+	 *            maximum number of messages to return
+	 * @return up to <code>batchSize</code> queued messages after the cursor
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public List<Message> queuedAfter(Date afterCreatedDate, UUID afterId,
+			int batchSize) {
+		int retryConfig = configService.getByNameExceptionOrDefaultAsInt("mail_delivery_retry_limit");
+
+		final Criteria criteria = this.createCriteria();
+		criteria.add(Restrictions.isNull("sentDate"));
+		criteria.add(Restrictions.or(Restrictions.isNull("retryCount"), Restrictions.lt("retryCount", retryConfig)));
+		criteria.add(Restrictions.eq("objectStatus", ObjectStatus.ACTIVE));
+		if ( afterCreatedDate != null ) {
+			criteria.add(Restrictions.or(
+					Restrictions.gt("createdDate", afterCreatedDate),
+					Restrictions.and(
+							Restrictions.eq("createdDate", afterCreatedDate),
+							Restrictions.gt("id", afterId))));
+		}
+		criteria.addOrder(Order.asc("createdDate"));
+		criteria.addOrder(Order.asc("id"));
+		criteria.setMaxResults(batchSize);
+		return criteria.list();
+	}
+
+	/**
+	 * Marks the given messages sent with one bulk update per id batch rather
+	 * than one dirty-checked update per message. Instances already in the
+	 * session aren't updated, see {@link #flushAndEvict(Collection)}.
+	 *
+	 * @return number of messages updated
+	 */
+	public int markSent(final Collection<UUID> ids, final Date sentDate) {
+		if ( ids == null || ids.isEmpty() ) {
+			return 0;
+		}
+		final BatchProcessor<UUID, Object> update = new BatchProcessor<UUID, Object>(ids);
+		do {
+			final Query query = createHqlQuery("update Message set sentDate = :sentDate where id in (:ids)")
+					.setTimestamp("sentDate", sentDate);
+			update.updateProcess(query, "ids");
+		} while ( update.moreToProcess() );
+		return update.getCount().intValue();
+	}
+
+	/**
+	 * Writes out pending changes to the given messages and detaches them, so
+	 * later reads in the same session see bulk updates such as
+	 * {@link #markSent(Collection, Date)}.
+	 */
+	public void flushAndEvict(final Collection<Message> messages) {
+		final Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		for ( final Message message : messages ) {
+			session.evict(message);
+		}
+	}
+
 	public int archiveAndPruneMessages(Integer messageAgeInDays) {
 		final Calendar date = Calendar.getInstance();
 		date.add(Calendar.DAY_OF_MONTH, messageAgeInDays * -1);
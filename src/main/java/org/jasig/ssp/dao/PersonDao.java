@@ -110,6 +110,72 @@ public class PersonDao extends AbstractAuditableCrudDao<Person> implements Audit
 		return new PagingWrapper<Person>(totalRows, criteria.list());
 	}
 
+	/**
+	 * Usernames splitting the active population into roughly equal,
+	 * contiguous ranges when ordered by username. Partition <code>i</code>
+	 * covers usernames after boundary <code>i - 1</code> (or from the start)
+	 * up to and including boundary <code>i</code> (or to the end for the last
+	 * partition). Fewer boundaries come back when there are fewer people than
+	 * partitions.
+	 *
+	 * @param partitions
+	 *            desired number of partitions
+	 * @return the <code>partitions - 1</code> inclusive upper bounds, in order
+	 */
+	public List<String> getActiveUsernamePartitionBoundaries(final int partitions) {
+		final Long total = (Long) createCriteria()
+				.add(Restrictions.eq("objectStatus", ObjectStatus.ACTIVE))
+				.setProjection(Projections.rowCount()).uniqueResult();
+		final List<String> boundaries = new ArrayList<String>();
+		if ( total == null || partitions < 2 ) {
+			return boundaries;
+		}
+		for ( int i = 1; i < partitions; i++ ) {
+			final long position = (total * i / partitions) - 1;
+			if ( position < 0 || position > Integer.MAX_VALUE ) {
+				continue;
+			}
+			final String boundary = (String) createCriteria()
+					.add(Restrictions.eq("objectStatus", ObjectStatus.ACTIVE))
+					.setProjection(Projections.property("username"))
+					.addOrder(Order.asc("username"))
+					.setFirstResult((int) position).setMaxResults(1)
+					.uniqueResult();
+			if ( boundary != null && !(boundaries.contains(boundary)) ) {
+				boundaries.add(boundary);
+			}
+		}
+		return boundaries;
+	}
+
+	/**
+	 * Keyset-paged read of active people ordered by username. Unlike offset
+	 * paging this stays cheap deep into the list and isn't thrown off by rows
+	 * inserted or deleted between pages.
+	 *
+	 * @param afterUsername
+	 *            exclusive lower bound, null to start from the beginning
+	 * @param throughUsername
+	 *            inclusive upper bound, null for no upper bound
+	 * @param maxResults
+	 *            page size
+	 * @return the next page of active people, in username order
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public List<Person> getActiveByUsernameRange(final String afterUsername,
+			final String throughUsername, final int maxResults) {
+		final Criteria criteria = createCriteria()
+				.add(Restrictions.eq("objectStatus", ObjectStatus.ACTIVE));
+		if ( afterUsername != null ) {
+			criteria.add(Restrictions.gt("username", afterUsername));
+		}
+		if ( throughUsername != null ) {
+			criteria.add(Restrictions.le("username", throughUsername));
+		}
+		return criteria.addOrder(Order.asc("username"))
+				.setMaxResults(maxResults).list();
+	}
+
 	public Person fromUsername(@NotNull final String username) {
 		if (!StringUtils.isNotBlank(username)) {
 			throw new IllegalArgumentException("username can not be empty.");
@@ -188,6 +254,91 @@ public class PersonDao extends AbstractAuditableCrudDao<Person> implements Audit
 		return person;
 	}
 	
+	/**
+	 * Retrieves every Person whose school_id is in the given collection, in
+	 * batches. School ids with no Person are skipped.
+	 *
+	 * @param schoolIds
+	 *            school identifiers to look up
+	 * @return the matching Person instances, in no particular order
+	 */
+	public List<Person> getBySchoolIds(@NotNull final Collection<String> schoolIds) {
+		final BatchProcessor<String, Person> processor = new BatchProcessor<String, Person>(schoolIds);
+		do {
+			processor.process(createCriteria(), "schoolId");
+		} while (processor.moreToProcess());
+
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
+
+	/**
+	 * Bulk counterpart of {@link #fromUsername(String)}. Usernames are
+	 * normalized the same way, so callers should match results back on
+	 * lower-cased usernames.
+	 *
+	 * @param usernames usernames to look up
+	 * @return persons for those of the given usernames that exist, in no
+	 *         particular order
+	 */
+	public List<Person> getByUsernames(@NotNull final Collection<String> usernames) {
+		if ( usernames == null || usernames.isEmpty() ) {
+			return new ArrayList<Person>();
+		}
+
+		final Dialect dialect = ((SessionFactoryImplementor) sessionFactory).getDialect();
+		final Collection<String> normalizedUsernames;
+
+		//See fromUsername() for why sqlserver usernames are left alone
+		if ( dialect instanceof SQLServerDialect ) {
+			normalizedUsernames = usernames;
+		} else {
+			normalizedUsernames = new ArrayList<String>(usernames.size());
+			for ( String username : usernames ) {
+				normalizedUsernames.add(StringUtils.lowerCase(username));
+			}
+		}
+
+		final BatchProcessor<String, Person> processor = new BatchProcessor<String, Person>(normalizedUsernames);
+		do {
+			processor.process(createCriteria(), "username");
+		} while (processor.moreToProcess());
+
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
+
+	/**
+	 * Keyset-paged read of persons in username order. Unlike offset paging
+	 * this costs the same wherever the page starts, and doesn't skip or
+	 * repeat anyone when persons are added or removed between pages.
+	 *
+	 * @param afterUsername
+	 *            only persons with greater usernames are returned; null to
+	 *            start at the beginning
+	 * @param throughUsername
+	 *            only persons with this or lesser usernames are returned;
+	 *            null for no upper bound
+	 * @param sAndP
+	 *            status filter and page size. Any first result and sort
+	 *            fields are ignored.
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public List<Person> getAfterUsername(final String afterUsername, final String throughUsername,
+			@NotNull final SortingAndPaging sAndP) {
+		final Criteria query = createCriteria();
+		sAndP.addStatusFilterToCriteria(query);
+		if ( afterUsername != null ) {
+			query.add(Restrictions.gt("username", afterUsername));
+		}
+		if ( throughUsername != null ) {
+			query.add(Restrictions.le("username", throughUsername));
+		}
+		if ( sAndP.isPaged() ) {
+			query.setMaxResults(sAndP.getMaxResults());
+		}
+		query.addOrder(Order.asc("username"));
+		return query.list();
+	}
+
 	public Person getByUsername(final String username) throws ObjectNotFoundException {
 
 		if (!StringUtils.isNotBlank(username)) {
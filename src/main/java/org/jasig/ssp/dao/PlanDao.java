@@ -363,6 +363,45 @@ public class PlanDao extends AbstractPlanDao<Plan> implements AuditableCrudDao<P
 		return result;
 	}
 
+	/**
+	 * A revision marker for every plan {@link #getAllActivePlanIds()} returns,
+	 * keyed by plan id. Built from plan, plan course and elective course
+	 * modification dates and counts, so it changes whenever any of them is
+	 * edited, added or removed.
+	 */
+	public Map<UUID, String> getActivePlanRevisions() {
+		final Map<UUID, String> revisions = new HashMap<UUID, String>();
+		for ( Object[] row : planChildRevisions("planCourses") ) {
+			revisions.put((UUID) row[0], new StringBuilder()
+					.append(millisOrNull(row[1])).append('|')
+					.append(millisOrNull(row[2])).append('|')
+					.append(millisOrNull(row[3])).append('|')
+					.append(row[4]).toString());
+		}
+		for ( Object[] row : planChildRevisions("planElectiveCourses") ) {
+			final String revision = revisions.get((UUID) row[0]);
+			revisions.put((UUID) row[0], new StringBuilder()
+					.append(revision).append('|')
+					.append(millisOrNull(row[2])).append('|')
+					.append(millisOrNull(row[3])).append('|')
+					.append(row[4]).toString());
+		}
+		return revisions;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Object[]> planChildRevisions(String childCollection) {
+		String revisionQuery = "select plan.id, plan.modifiedDate, max(child.modifiedDate), max(child.createdDate), count(child.id) "
+							 + "from org.jasig.ssp.model.Plan plan join plan.person person left join plan." + childCollection + " child "
+							 + "where plan.objectStatus = :objectStatus and person.objectStatus = :objectStatus "
+							 + "group by plan.id, plan.modifiedDate";
+		return createHqlQuery(revisionQuery).setInteger("objectStatus", ObjectStatus.ACTIVE.ordinal()).list();
+	}
+
+	private String millisOrNull(Object date) {
+		return date == null ? "null" : String.valueOf(((Date) date).getTime());
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<MapPlanStatusReportCourse> getAllPlanCoursesForStatusReport(
 			UUID planId) {
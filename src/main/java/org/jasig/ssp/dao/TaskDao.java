@@ -19,12 +19,18 @@
 package org.jasig.ssp.dao;
 
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import org.apache.commons.lang.time.DateUtils;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.jasig.ssp.model.AuditPerson;
@@ -42,6 +48,8 @@ import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.collect.Maps;
+
 /**
  * Task DAO
  */
@@ -111,6 +119,48 @@ public class TaskDao
 		return criteria.list();
 	}
 
+	/**
+	 * Keyset read of the tasks which need reminders sent and are due exactly
+	 * one of the given numbers of days from today, so only tasks with a
+	 * reminder due today are loaded.
+	 *
+	 * @param daysBefore
+	 *            configured reminder offsets, in days before the due date
+	 * @param afterId
+	 *            id of the last task in the previous page, or null to start
+	 *            at the beginning
+	 * @param maxResults
+	 * @return up to <code>maxResults</code> tasks in ascending id order
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public List<Task> getNextWhichNeedRemindersSent(final Collection<Integer> daysBefore,
+			final UUID afterId, final int maxResults) {
+
+		final Criteria criteria = createCriteria();
+		criteria.add(Restrictions.eq("objectStatus", ObjectStatus.ACTIVE));
+		criteria.add(Restrictions.isNull("completedDate"));
+		criteria.add(Restrictions.isNull("reminderSentDate"));
+		criteria.add(Restrictions.isNotNull("dueDate"));
+		criteria.add(Restrictions.gt("dueDate", DateTimeUtils.midnight()));
+
+		final Date today = DateUtils.truncate(new Date(), Calendar.DATE);
+		final Disjunction dueOnReminderDay = Restrictions.disjunction();
+		for ( Integer days : daysBefore ) {
+			final Date dueDate = DateUtils.addDays(today, days);
+			dueOnReminderDay.add(Restrictions.and(
+					Restrictions.ge("dueDate", dueDate),
+					Restrictions.lt("dueDate", DateUtils.addDays(dueDate, 1))));
+		}
+		criteria.add(dueOnReminderDay);
+
+		if ( afterId != null ) {
+			criteria.add(Restrictions.gt("id", afterId));
+		}
+		criteria.addOrder(Order.asc("id"));
+		criteria.setMaxResults(maxResults);
+		return criteria.list();
+	}
+
 	@SuppressWarnings(UNCHECKED)
 	public List<Task> getAllForPersonIdAndChallengeReferralId(
 			final UUID personId, final boolean complete,
@@ -281,4 +331,37 @@ public class TaskDao
 
 		return new Pair<Long,Long>(openCnt, closedCnt);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Bulk form of {@link #getOpenVsClosedTaskCountsForPerson(Person)}. People
+	 * without any active tasks are absent from the result.
+	 */
+	public Map<UUID,Pair<Long,Long>> getOpenVsClosedTaskCountsForPeople(List<UUID> personIds) {
+		final Map<UUID,Pair<Long,Long>> counts = Maps.newHashMap();
+		if ( personIds == null || personIds.isEmpty() ) {
+			return counts;
+		}
+		for ( Object[] row : countTasksByPerson(personIds, true) ) {
+			counts.put((UUID) row[0], new Pair<Long,Long>((Long) row[1], 0L));
+		}
+		for ( Object[] row : countTasksByPerson(personIds, false) ) {
+			final Pair<Long,Long> existing = counts.get((UUID) row[0]);
+			counts.put((UUID) row[0], new Pair<Long,Long>(existing == null ? 0L : existing.getFirst(), (Long) row[1]));
+		}
+		return counts;
+	}
+
+	private List<Object[]> countTasksByPerson(List<UUID> personIds, boolean open) {
+		final BatchProcessor<UUID, Object[]> processor = new BatchProcessor<UUID, Object[]>(personIds);
+		do {
+			final Criteria criteria = createCriteria()
+					.add(open ? Restrictions.isNull("completedDate") : Restrictions.isNotNull("completedDate"))
+					.add(Restrictions.eq("objectStatus", ObjectStatus.ACTIVE))
+					.setProjection(Projections.projectionList()
+							.add(Projections.groupProperty("person.id"))
+							.add(Projections.rowCount()));
+			processor.process(criteria, "person.id");
+		} while ( processor.moreToProcess() );
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
+}
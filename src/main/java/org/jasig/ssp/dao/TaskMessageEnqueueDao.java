@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -72,6 +73,21 @@ public class TaskMessageEnqueueDao extends AbstractAuditableCrudDao<TaskMessageE
 	}
 
 
+	/**
+	 * Reminders already enqueued for any of the given tasks, read in batches.
+	 */
+	public List<TaskMessageEnqueue> getEnqueuedForTasks(Collection<UUID> taskIds) {
+		BatchProcessor<UUID, TaskMessageEnqueue> processor =  new BatchProcessor<UUID, TaskMessageEnqueue>(taskIds);
+
+		do{
+			final Criteria criteria = createCriteria();
+			criteria.add(Restrictions.isNotNull("messageEnqueueDate"));
+			processor.process(criteria, "task.id");
+		}while(processor.moreToProcess());
+
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
+
 	public TaskMessageEnqueue get(UUID id) throws ObjectNotFoundException {
 		final Criteria criteria = createCriteria();
 		criteria.add(Restrictions.eq("id", id));
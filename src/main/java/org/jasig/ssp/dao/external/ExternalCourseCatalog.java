@@ -0,0 +1,170 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.dao.external;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.jasig.ssp.model.external.ExternalCourse;
+import org.jasig.ssp.transferobject.external.SearchExternalCourseTO;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+
+/**
+ * Immutable, fully indexed snapshot of the external course catalog used to
+ * answer MAP course searches without touching the database.
+ *
+ * <p>
+ * Instances are built once by {@link ExternalCourseDao} and then only read,
+ * so they can be shared freely between request threads. Refreshing the
+ * catalog means building a new instance and swapping it in, never editing
+ * this one.
+ */
+final class ExternalCourseCatalog {
+
+	private final long builtAt;
+
+	/** Every course, in <code>formattedCourse</code> order */
+	private final ImmutableList<ExternalCourse> courses;
+
+	private final ImmutableListMultimap<String, ExternalCourse> coursesBySubject;
+
+	private final ImmutableListMultimap<String, ExternalCourse> coursesByNumber;
+
+	/** Course codes keyed by program code */
+	private final ImmutableSetMultimap<String, String> courseCodesByProgram;
+
+	/** Course codes keyed by tag code, active tags only */
+	private final ImmutableSetMultimap<String, String> courseCodesByTag;
+
+	/** Course codes keyed by the term codes they are offered in */
+	private final ImmutableSetMultimap<String, String> courseCodesByTerm;
+
+	/**
+	 * @param courses
+	 *            all courses, already ordered by <code>formattedCourse</code>.
+	 *            Their <code>pivotedTags</code> are filled in from
+	 *            <code>tagsByCourse</code>.
+	 * @param tagsByCourse
+	 *            active tag codes keyed by course code
+	 * @param programsByCourse
+	 *            program codes keyed by course code
+	 * @param termsByCourse
+	 *            term codes keyed by course code
+	 */
+	ExternalCourseCatalog(final List<ExternalCourse> courses,
+			final ImmutableListMultimap<String, String> tagsByCourse,
+			final ImmutableSetMultimap<String, String> programsByCourse,
+			final ImmutableSetMultimap<String, String> termsByCourse) {
+		this.builtAt = System.currentTimeMillis();
+		final ImmutableListMultimap.Builder<String, ExternalCourse> bySubject = ImmutableListMultimap
+				.builder();
+		final ImmutableListMultimap.Builder<String, ExternalCourse> byNumber = ImmutableListMultimap
+				.builder();
+		for ( final ExternalCourse course : courses ) {
+			course.setPivotedTags(StringUtils.join(
+					tagsByCourse.get(course.getCode()), ","));
+			if ( course.getSubjectAbbreviation() != null ) {
+				bySubject.put(course.getSubjectAbbreviation(), course);
+			}
+			if ( course.getNumber() != null ) {
+				byNumber.put(course.getNumber(), course);
+			}
+		}
+		this.courses = ImmutableList.copyOf(courses);
+		this.coursesBySubject = bySubject.build();
+		this.coursesByNumber = byNumber.build();
+		this.courseCodesByTag = invert(tagsByCourse);
+		this.courseCodesByProgram = invert(programsByCourse);
+		this.courseCodesByTerm = invert(termsByCourse);
+	}
+
+	private static ImmutableSetMultimap<String, String> invert(
+			final Multimap<String, String> byCourse) {
+		final ImmutableSetMultimap.Builder<String, String> inverted = ImmutableSetMultimap
+				.builder();
+		for ( final Map.Entry<String, String> entry : byCourse.entries() ) {
+			inverted.put(entry.getValue(), entry.getKey());
+		}
+		return inverted.build();
+	}
+
+	long getBuiltAt() {
+		return builtAt;
+	}
+
+	List<ExternalCourse> getCourses() {
+		return courses;
+	}
+
+	/**
+	 * Courses matching every criterion set on the form. Criteria compare
+	 * exactly, the same way the equivalent SQL equality checks did.
+	 *
+	 * @param form
+	 *            search criteria; empty criteria are ignored
+	 * @return matching courses in <code>formattedCourse</code> order, reversed
+	 *         when filtering by term as the old term query did
+	 */
+	List<ExternalCourse> search(final SearchExternalCourseTO form) {
+		if ( form.isUnbounded() ) {
+			return courses;
+		}
+
+		// Start from the narrowest list index available, then check the rest
+		// against the code sets
+		final List<ExternalCourse> candidates;
+		if ( !(StringUtils.isEmpty(form.getSubjectAbbreviation())) ) {
+			candidates = coursesBySubject.get(form.getSubjectAbbreviation());
+		} else if ( !(StringUtils.isEmpty(form.getCourseNumber())) ) {
+			candidates = coursesByNumber.get(form.getCourseNumber());
+		} else {
+			candidates = courses;
+		}
+
+		final List<ExternalCourse> result = Lists.newArrayList();
+		for ( final ExternalCourse course : candidates ) {
+			if ( matches(course, form) ) {
+				result.add(course);
+			}
+		}
+		return StringUtils.isEmpty(form.getTermCode()) ? result : Lists
+				.reverse(result);
+	}
+
+	private boolean matches(final ExternalCourse course,
+			final SearchExternalCourseTO form) {
+		final String code = course.getCode();
+		return (StringUtils.isEmpty(form.getSubjectAbbreviation()) || form
+				.getSubjectAbbreviation().equals(course.getSubjectAbbreviation()))
+				&& (StringUtils.isEmpty(form.getCourseNumber()) || form
+						.getCourseNumber().equals(course.getNumber()))
+				&& (StringUtils.isEmpty(form.getProgramCode()) || courseCodesByProgram
+						.containsEntry(form.getProgramCode(), code))
+				&& (StringUtils.isEmpty(form.getTag()) || courseCodesByTag
+						.containsEntry(form.getTag(), code))
+				&& (StringUtils.isEmpty(form.getTermCode()) || courseCodesByTerm
+						.containsEntry(form.getTermCode(), code));
+	}
+}
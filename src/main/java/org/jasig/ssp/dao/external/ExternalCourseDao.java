@@ -18,13 +18,11 @@
  */
 package org.jasig.ssp.dao.external;
 
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.List;
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang.NotImplementedException;
-import org.apache.commons.lang.StringUtils;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
 import org.hibernate.Session;
@@ -40,6 +38,9 @@ import org.springframework.orm.hibernate4.SessionHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSetMultimap;
+
 /**
  * Data access class for the External Person entity
  */
@@ -50,9 +51,17 @@ public class ExternalCourseDao extends AbstractExternalReferenceDataDao<External
 		super(ExternalCourse.class);
 	}
 
-	private static List<ExternalCourse> courseCache = new Vector<ExternalCourse>();
-	
-	private static Calendar lastCacheFlush = new GregorianCalendar();
+	/**
+	 * Current catalog snapshot. Replaced wholesale on refresh so readers
+	 * always see either the old or the new catalog, never a partial one.
+	 */
+	private final AtomicReference<ExternalCourseCatalog> catalog = new AtomicReference<ExternalCourseCatalog>();
+
+	/**
+	 * Set while one thread rebuilds an expired catalog so the others keep
+	 * serving the previous snapshot instead of piling onto the database.
+	 */
+	private final AtomicBoolean catalogRefreshing = new AtomicBoolean(false);
 
 	@SuppressWarnings("unchecked")
 	public List<ExternalCourse> getAll() {
@@ -96,170 +105,76 @@ public class ExternalCourseDao extends AbstractExternalReferenceDataDao<External
 	}
 
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Search the in-memory course catalog. Never queries the database unless
+	 * the catalog has expired (or was never loaded), in which case a single
+	 * caller rebuilds it while everyone else keeps using the old one.
+	 */
 	public List<ExternalCourse> search(SearchExternalCourseTO form) {
-		//Performance kludge, we are going to cache the unbounded search result
-			if(form.isUnbounded())
-			{
-				if(ExternalCourseDao.courseCache.isEmpty() || isCacheExpired())
-				{
-					flushAndLoadCache();
-				}
-				return ExternalCourseDao.courseCache;
-			}
-		//End kludge
-		
-		Query hqlQuery = createHqlQuery(buildCourseSearchQuery(form));
-		
-		buildCourseSearchParamList(form, hqlQuery);	
-		
-		List<ExternalCourse> result = hqlQuery
-		.list();
-		for (ExternalCourse externalCourse : result) {
-			List<String> tags = getTagsForCourse(externalCourse.getCode());
-			StringBuilder tagBuilder = new StringBuilder();
-			for (String tagg : tags) {
-				tagBuilder.append(tagg+",");
-			}
-			if(tagBuilder.length() > 0)
-			{
-				tagBuilder.deleteCharAt(tagBuilder.lastIndexOf(","));
+		return currentCatalog().search(form);
+	}
+
+	private ExternalCourseCatalog currentCatalog() {
+		final ExternalCourseCatalog current = catalog.get();
+		if ( current == null ) {
+			return loadCatalog();
+		}
+		if ( isCacheExpired(current)
+				&& catalogRefreshing.compareAndSet(false, true) ) {
+			try {
+				return loadCatalog();
+			} finally {
+				catalogRefreshing.set(false);
 			}
-			externalCourse.setPivotedTags(tagBuilder.toString());
 		}
-		return result;
+		return current;
 	}
 
-	private boolean isCacheExpired() {
-		return ((Calendar.getInstance().getTimeInMillis()-lastCacheFlush.getTimeInMillis())>getCacheLifeSpanInMillis());
+	private boolean isCacheExpired(ExternalCourseCatalog current) {
+		return (System.currentTimeMillis() - current.getBuiltAt()) > getCacheLifeSpanInMillis();
 	}
 
 	public void flushAndLoadCache() {
-		ExternalCourseDao.courseCache.clear();
-		List<ExternalCourse> all = getAll();
-		for (ExternalCourse externalCourse : all) {
-			List<String> tags = getTagsForCourse(externalCourse.getCode());
-			StringBuilder tagBuilder = new StringBuilder();
-			for (String tagg : tags) {
-				tagBuilder.append(tagg+",");
-			}
-			if(tagBuilder.length() > 0)
-			{
-				tagBuilder.deleteCharAt(tagBuilder.lastIndexOf(","));
-			}			externalCourse.setPivotedTags(tagBuilder.toString());
-		}
-		ExternalCourseDao.courseCache.addAll(all);
-		lastCacheFlush = Calendar.getInstance();
+		loadCatalog();
 	}
 
+	private ExternalCourseCatalog loadCatalog() {
+		final ExternalCourseCatalog loaded = new ExternalCourseCatalog(getAll(),
+				getActiveTagsByCourse(), getProgramsByCourse(), getTermsByCourse());
+		catalog.set(loaded);
+		return loaded;
+	}
 
-	private void buildCourseSearchParamList(SearchExternalCourseTO form, Query hqlQuery) {
-		
-		if(!StringUtils.isEmpty(form.getSubjectAbbreviation()))
-		{
-			hqlQuery.setString("subjectAbbreviation", form.getSubjectAbbreviation());
-		}
-		
-		if(!StringUtils.isEmpty(form.getCourseNumber()))
-		{
-			hqlQuery.setString("number", form.getCourseNumber());
-		}
-		if(!StringUtils.isEmpty(form.getProgramCode()))
-		{
-			hqlQuery.setString("programCode", form.getProgramCode());
-		}
-		if(!StringUtils.isEmpty(form.getProgramCode()))
-		{
-			hqlQuery.setString("programCode", form.getProgramCode());
-		}
-		if(!StringUtils.isEmpty(form.getTermCode()))
-		{
-			hqlQuery.setString("termCode", form.getTermCode());
-		}
-		if(!StringUtils.isEmpty(form.getTag()))
-		{
-			hqlQuery.setInteger("objectStatus", ObjectStatus.ACTIVE.ordinal());
-			hqlQuery.setString("tag", form.getTag());
+	@SuppressWarnings("unchecked")
+	private ImmutableListMultimap<String, String> getActiveTagsByCourse() {
+		final List<Object[]> rows = createHqlQuery(
+				"select ect.courseCode, ect.tag from ExternalCourseTag ect, Tag tag "
+						+ "where ect.tag = tag.code and tag.objectStatus = :objectStatus")
+				.setInteger("objectStatus", ObjectStatus.ACTIVE.ordinal())
+				.list();
+		final ImmutableListMultimap.Builder<String, String> tags = ImmutableListMultimap.builder();
+		for (Object[] row : rows) {
+			tags.put((String) row[0], (String) row[1]);
 		}
+		return tags.build();
 	}
 
+	private ImmutableSetMultimap<String, String> getProgramsByCourse() {
+		return getCodesByCourse("select ecp.courseCode, ecp.programCode from ExternalCourseProgram ecp");
+	}
 
-	private String buildCourseSearchQuery(SearchExternalCourseTO form) {
-		boolean firstWhereCondition = true;
-		StringBuilder query = new StringBuilder();
-		query.append(" select distinct ec from ExternalCourse ec ");
-		
-		if(!StringUtils.isEmpty(form.getSubjectAbbreviation()))
-		{			
-			query.append("where ec.subjectAbbreviation = :subjectAbbreviation ");
-			firstWhereCondition = false;
-		}
-		
-		if(!StringUtils.isEmpty(form.getCourseNumber()))
-		{
-			if(!firstWhereCondition)
-			{
-				query.append(" and ");
-			}
-			else
-			{
-				query.append(" where ");
-			}			
-			query.append("where ec.number = :courseNumber ");
-			firstWhereCondition = false;
-		}
-		
-		if(!StringUtils.isEmpty(form.getProgramCode()))
-		{
-			query.append(" ,ExternalCourseProgram ecp ");
-		}
-		if(!StringUtils.isEmpty(form.getTag()))
-		{
-			query.append(" ,ExternalCourseTag ectg ");
-			query.append(" ,Tag tag ");
-		}
-		if(!StringUtils.isEmpty(form.getTermCode()))
-		{
-			query.append(" ,ExternalCourseTerm ectr ");
-		}
-		if(!StringUtils.isEmpty(form.getProgramCode()))
-		{
-			query.append(" where ");
-			query.append(" ec.code = ecp.courseCode ");
-			query.append(" and ecp.programCode = :programCode  ");
-			firstWhereCondition = false;
-		}	
-		if(!StringUtils.isEmpty(form.getTag()))
-		{
-			if(!firstWhereCondition)
-			{
-				query.append(" and ");
-			}
-			else
-			{
-				query.append(" where ");
-			}
-			query.append(" ec.code = ectg.courseCode ");
-			query.append(" and ectg.tag = :tag ");
-			query.append(" and tag.code = :tag ");
-			query.append(" and tag.objectStatus = :objectStatus ");
-			firstWhereCondition = false;
-		}	
-		if(!StringUtils.isEmpty(form.getTermCode()))
-		{
-			if(!firstWhereCondition)
-			{
-				query.append(" and ");
-			}
-			else
-			{
-				query.append(" where ");
-			}			
-			query.append(" ec.code = ectr.courseCode ");
-			query.append(" and ectr.termCode = :termCode  ");
-			query.append(" order by ec.formattedCourse desc ");
+	private ImmutableSetMultimap<String, String> getTermsByCourse() {
+		return getCodesByCourse("select ectr.courseCode, ectr.termCode from ExternalCourseTerm ectr");
+	}
+
+	@SuppressWarnings("unchecked")
+	private ImmutableSetMultimap<String, String> getCodesByCourse(String hql) {
+		final List<Object[]> rows = createHqlQuery(hql).list();
+		final ImmutableSetMultimap.Builder<String, String> codes = ImmutableSetMultimap.builder();
+		for (Object[] row : rows) {
+			codes.put((String) row[0], (String) row[1]);
 		}
-		return query.toString();
+		return codes.build();
 	}
 
 	@Override
@@ -268,7 +183,6 @@ public class ExternalCourseDao extends AbstractExternalReferenceDataDao<External
         	Session session = sessionFactory.openSession();
             TransactionSynchronizationManager.bindResource(sessionFactory, new SessionHolder(session));
     		flushAndLoadCache();
-    		lastCacheFlush = Calendar.getInstance();            
         } finally {
             SessionHolder sessionHolder =
                     (SessionHolder) TransactionSynchronizationManager.unbindResource(sessionFactory);
@@ -18,9 +18,12 @@
  */
 package org.jasig.ssp.dao.external;
 
+import java.util.List;
+
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Restrictions;
 import org.jasig.ssp.model.external.ExternalPersonPlanStatus;
+import org.jasig.ssp.util.hibernate.BatchProcessor;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -37,4 +40,14 @@ public class ExternalPersonPlanStatusDao extends
 		criteria.add(Restrictions.eq("schoolId", schoolId));
 		return (ExternalPersonPlanStatus) criteria.uniqueResult();
 	}
+
+	public List<ExternalPersonPlanStatus> getBySchoolIds(List<String> schoolIds){
+		final BatchProcessor<String, ExternalPersonPlanStatus> processor =
+				new BatchProcessor<String, ExternalPersonPlanStatus>(schoolIds);
+		do {
+			final Criteria criteria = createCriteria();
+			processor.process(criteria, "schoolId");
+		} while ( processor.moreToProcess() );
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
 }
@@ -61,6 +61,20 @@ public class ExternalStudentTranscriptCourseDao extends AbstractExternalDataDao<
 		return (List<ExternalStudentTranscriptCourse>)criteria.list();
 	}
 
+	public List<ExternalStudentTranscriptCourse> getTranscriptsBySchoolIdsAndTermCode(List<String> schoolIds,
+			String termCode){
+		if ( CollectionUtils.isEmpty(schoolIds) ) {
+			return Lists.newArrayList();
+		}
+		final BatchProcessor<String, ExternalStudentTranscriptCourse> processor = new BatchProcessor<>(schoolIds);
+		do {
+			final Criteria criteria = createCriteria();
+			criteria.add(Restrictions.eq("termCode", termCode));
+			processor.process(criteria, "schoolId");
+		} while ( processor.moreToProcess() );
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
+
     /**
      * Returns SSG Course Report TOs by specified criteria.
      *  SchoolIds *must* be populated! The rest can be empty/null.
@@ -18,11 +18,15 @@
  */
 package org.jasig.ssp.dao.external;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Restrictions;
 import org.jasig.ssp.model.Person;
 import org.jasig.ssp.model.external.RegistrationStatusByTerm;
 import org.jasig.ssp.model.external.Term;
+import org.jasig.ssp.util.hibernate.BatchProcessor;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.springframework.stereotype.Repository;
@@ -52,6 +56,26 @@ public class RegistrationStatusByTermDao extends
 		return (RegistrationStatusByTerm) query.uniqueResult();
 	}
 	
+	/**
+	 * Bulk form of {@link #getForTerm(String, String)}: every record with at
+	 * least one registered course for any of the given students and terms.
+	 */
+	public List<RegistrationStatusByTerm> getForTerms(final List<String> schoolIds,
+			final List<String> termCodes) {
+		if ( schoolIds == null || schoolIds.isEmpty() || termCodes == null || termCodes.isEmpty() ) {
+			return new ArrayList<RegistrationStatusByTerm>();
+		}
+		final BatchProcessor<String, RegistrationStatusByTerm> processor =
+				new BatchProcessor<String, RegistrationStatusByTerm>(schoolIds);
+		do {
+			final Criteria query = createCriteria();
+			query.add(Restrictions.in("termCode", termCodes));
+			query.add(Restrictions.gt("registeredCourseCount", 0));
+			processor.process(query, "schoolId");
+		} while ( processor.moreToProcess() );
+		return processor.getUnsortedUnpagedResultsAsList();
+	}
+
 	public PagingWrapper<RegistrationStatusByTerm> getAllForTerm(
 			final Term term, final SortingAndPaging sAndP) {
 		final Criteria query = createCriteria();
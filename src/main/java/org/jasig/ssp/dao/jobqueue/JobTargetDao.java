@@ -0,0 +1,109 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.dao.jobqueue;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.hibernate.Session;
+import org.jasig.ssp.dao.AbstractDao;
+import org.jasig.ssp.model.ObjectStatus;
+import org.jasig.ssp.model.jobqueue.JobTarget;
+import org.jasig.ssp.transferobject.ImmutablePersonIdentifiersTO;
+import org.jasig.ssp.util.sort.PagingWrapper;
+import org.jasig.ssp.util.sort.SortingAndPaging;
+import org.springframework.stereotype.Repository;
+
+import com.google.common.collect.Lists;
+
+/**
+ * DAO for the {@link JobTarget} model
+ */
+@Repository
+public class JobTargetDao extends AbstractDao<JobTarget> {
+
+	public JobTargetDao() {
+		super(JobTarget.class);
+	}
+
+	@Override
+	public PagingWrapper<JobTarget> getAll(final ObjectStatus status) {
+		// Targets are only ever read one job at a time, a page at a time.
+		throw new UnsupportedOperationException("Not implemented.");
+	}
+
+	@Override
+	public PagingWrapper<JobTarget> getAll(final SortingAndPaging sAndP) {
+		throw new UnsupportedOperationException("Not implemented.");
+	}
+
+	/**
+	 * Write the given targets for the given job, numbered in list order starting right after
+	 * {@code afterSequenceNumber}. Flushes and evicts as it goes so very large snapshots don't accumulate in the
+	 * session.
+	 *
+	 * @return sequence number of the last target written, {@code afterSequenceNumber} if there were none
+	 */
+	public int saveAll(UUID jobId, int afterSequenceNumber, List<ImmutablePersonIdentifiersTO> targets) {
+		final Session session = sessionFactory.getCurrentSession();
+		final List<JobTarget> pendingFlush = Lists.newArrayListWithCapacity(getBatchsize());
+		int sequenceNumber = afterSequenceNumber;
+		for ( ImmutablePersonIdentifiersTO target : targets ) {
+			final JobTarget jobTarget = new JobTarget(jobId, ++sequenceNumber, target.getId(), target.getSchoolId());
+			session.save(jobTarget);
+			pendingFlush.add(jobTarget);
+			if ( pendingFlush.size() >= getBatchsize() ) {
+				flushAndEvict(session, pendingFlush);
+			}
+		}
+		flushAndEvict(session, pendingFlush);
+		return sequenceNumber;
+	}
+
+	/**
+	 * Keyset read of the given job's targets.
+	 *
+	 * @param afterSequenceNumber only targets numbered strictly higher than this are returned
+	 * @param maxResults
+	 * @return targets in ascending {@code sequenceNumber} order
+	 */
+	@SuppressWarnings(UNCHECKED)
+	public List<JobTarget> getNextTargets(UUID jobId, int afterSequenceNumber, int maxResults) {
+		return createHqlQuery("from JobTarget where jobId = :jobId and sequenceNumber > :afterSequenceNumber" +
+					" order by sequenceNumber")
+				.setParameter("jobId", jobId)
+				.setInteger("afterSequenceNumber", afterSequenceNumber)
+				.setMaxResults(maxResults)
+				.list();
+	}
+
+	public int deleteForJob(UUID jobId) {
+		return createHqlQuery("delete from JobTarget where jobId = :jobId")
+				.setParameter("jobId", jobId)
+				.executeUpdate();
+	}
+
+	private void flushAndEvict(Session session, List<JobTarget> pendingFlush) {
+		session.flush();
+		for ( JobTarget jobTarget : pendingFlush ) {
+			session.evict(jobTarget);
+		}
+		pendingFlush.clear();
+	}
+}
@@ -18,10 +18,14 @@
  */
 package org.jasig.ssp.dao.reference;
 
+import java.util.Date;
+
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.jasig.ssp.dao.AbstractAuditableCrudDao;
 import org.jasig.ssp.model.Auditable;
+import org.jasig.ssp.util.collections.Pair;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.springframework.stereotype.Repository;
@@ -51,14 +55,45 @@ public abstract class AbstractReferenceAuditableCrudDao<T extends Auditable>
 
 	@Override
 	public PagingWrapper<T> getAll(final SortingAndPaging sAndP) {
-		return processCriteriaWithStatusSortingAndPaging(createCriteria(),
-				sAndP);
+		return processCriteriaWithStatusSortingAndPaging(
+				createCriteria().setCacheable(true), sAndP);
 	}
 
 	@SuppressWarnings("unchecked")
 	public T getByName(final String name) {
-		final Criteria query = createCriteria();
+		final Criteria query = createCriteria().setCacheable(true);
 		query.add(Restrictions.eq("name", name));
 		return (T) query.uniqueResult();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Cheap stand-in for a table version: the most recent modification date
+	 * and the total row count. Any update through the application bumps the
+	 * former and any insert or hard delete changes the latter.
+	 *
+	 * @return most recent <code>modifiedDate</code> (may be null) and row count
+	 */
+	public Pair<Date, Long> getVersion() {
+		return getVersion(persistentClass);
+	}
+
+	/**
+	 * Same as {@link #getVersion()} for another auditable table, e.g. one whose
+	 * rows are embedded in this type's transfer objects.
+	 *
+	 * @param entityClass
+	 *            mapped class of the other table
+	 * @return most recent <code>modifiedDate</code> (may be null) and row count
+	 */
+	public Pair<Date, Long> getVersion(
+			final Class<? extends Auditable> entityClass) {
+		final Object[] row = (Object[]) sessionFactory.getCurrentSession()
+				.createCriteria(entityClass)
+				.setProjection(Projections.projectionList()
+						.add(Projections.max("modifiedDate"))
+						.add(Projections.rowCount()))
+				.uniqueResult();
+		return new Pair<Date, Long>((Date) row[0],
+				row[1] == null ? 0L : ((Number) row[1]).longValue());
+	}
+}
@@ -60,9 +60,8 @@ public class ConfigDao extends AbstractReferenceAuditableCrudDao<Config>
 
 	@Override
 	public Config getByName(final String name) {
-		// TODO: (performance) Perfect example of data that should be cached
 		final Criteria query = createCriteria();
 		query.add(Restrictions.eq("name", name));
 		return (Config) query.uniqueResult();
 	}
-}
\ No newline at end of file
+}
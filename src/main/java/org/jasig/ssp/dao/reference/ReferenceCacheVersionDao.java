@@ -0,0 +1,102 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.dao.reference;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Single, shared counter bumped whenever reference data changes, so every
+ * node can tell when to drop its second-level cache. See
+ * {@link org.jasig.ssp.service.reference.ReferenceCacheService}.
+ */
+@Repository
+public class ReferenceCacheVersionDao {
+
+	@Autowired
+	protected transient SessionFactory sessionFactory;
+
+	public long getVersion() {
+		return ((Number) sessionFactory.getCurrentSession()
+				.createSQLQuery("select version from reference_cache_version where id = 1")
+				.uniqueResult()).longValue();
+	}
+
+	/**
+	 * Bump the version once for the current transaction, just before it
+	 * commits, however many cached entities it saves or deletes. Concurrent
+	 * writers therefore only contend for the version row while committing,
+	 * and a rolled back transaction doesn't bump it at all. Once the
+	 * transaction commits, also drops this node's cached reference
+	 * collections and queries, which Hibernate doesn't reliably keep current
+	 * itself, e.g. the inverse side of a relationship only changed from the
+	 * other end. Outside a transaction the version is bumped immediately.
+	 */
+	public void markChanged() {
+		if ( !(TransactionSynchronizationManager.isSynchronizationActive()) ) {
+			bumpVersion();
+			evictDerivedRegions();
+			return;
+		}
+		for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() ) {
+			if ( synchronization instanceof VersionBump && ((VersionBump) synchronization).getDao() == this ) {
+				return;
+			}
+		}
+		TransactionSynchronizationManager.registerSynchronization(new VersionBump());
+	}
+
+	private void bumpVersion() {
+		// the query space keeps Hibernate from treating this as a write to every table and emptying every
+		// second-level cache region along with it
+		sessionFactory.getCurrentSession()
+				.createSQLQuery("update reference_cache_version set version = version + 1 where id = 1")
+				.addSynchronizedQuerySpace("reference_cache_version")
+				.executeUpdate();
+	}
+
+	private void evictDerivedRegions() {
+		sessionFactory.getCache().evictCollectionRegions();
+		sessionFactory.getCache().evictQueryRegions();
+	}
+
+	/**
+	 * Registered at most once per transaction by {@link #markChanged()}.
+	 */
+	private class VersionBump extends TransactionSynchronizationAdapter {
+
+		ReferenceCacheVersionDao getDao() {
+			return ReferenceCacheVersionDao.this;
+		}
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			bumpVersion();
+		}
+
+		@Override
+		public void afterCommit() {
+			evictDerivedRegions();
+		}
+	}
+}
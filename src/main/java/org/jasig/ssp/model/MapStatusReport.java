@@ -91,6 +91,14 @@ public class MapStatusReport extends AbstractAuditable implements PersonAssocAud
 	
 	@Column
 	private int planRatioDemerits;
+
+	/**
+	 * Digest of everything the calculation read to produce this report, so
+	 * the nightly calculation can tell whether it would come out the same.
+	 */
+	@Column(length = 64)
+	@Size(max = 64)
+	private String inputFingerprint;
 	
 
 
@@ -194,6 +202,14 @@ public class MapStatusReport extends AbstractAuditable implements PersonAssocAud
 		this.planRatioDemerits = planRatioDemerits;
 	}
 
+	public String getInputFingerprint() {
+		return inputFingerprint;
+	}
+
+	public void setInputFingerprint(String inputFingerprint) {
+		this.inputFingerprint = inputFingerprint;
+	}
+
     public List<MapStatusReportOverrideDetails> getOverrideDetails () {
         return overrideDetails;
     }
@@ -444,6 +444,16 @@ public class Person extends AbstractAuditable implements Auditable { // NOPMD
 	@Nullable
 	private String f1Status;
 
+	/**
+	 * Digest of the external data last synced into this person, so the
+	 * external person sync can skip people whose external data hasn't
+	 * changed. Null if never synced.
+	 */
+	@Column(length = 64)
+	@Size(max = 64)
+	@Nullable
+	private String externalSyncFingerprint;
+
 	/**
 	 * Set when last someone completed the student intake tool for this person.
 	 */
@@ -1408,6 +1418,14 @@ public class Person extends AbstractAuditable implements Auditable { // NOPMD
 		this.f1Status = f1Status;
 	}
 
+	public String getExternalSyncFingerprint() {
+		return externalSyncFingerprint;
+	}
+
+	public void setExternalSyncFingerprint(String externalSyncFingerprint) {
+		this.externalSyncFingerprint = externalSyncFingerprint;
+	}
+
 	public Set<PersonCompletedItem> getCompletedItems() {
 		return completedItems;
 	}
@@ -147,6 +147,8 @@ public class PersonSearchRequest {
 
 	private List<TransferGoal> transferGoals;
 
+	private Boolean estimateTotal;
+
 	public PersonSearchRequest() {
 		super();
 	}
@@ -642,4 +644,16 @@ public class PersonSearchRequest {
 	public void setTransferGoals(List<TransferGoal> transferGoals) {
 		this.transferGoals = transferGoals;
 	}
+
+	/**
+	 * @return true if the caller doesn't need an exact total and the search should skip counting. The total
+	 *         is then only good for telling whether there is another page.
+	 */
+	public Boolean getEstimateTotal() {
+		return estimateTotal;
+	}
+
+	public void setEstimateTotal(Boolean estimateTotal) {
+		this.estimateTotal = estimateTotal;
+	}
 }
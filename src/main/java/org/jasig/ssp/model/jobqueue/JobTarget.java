@@ -0,0 +1,149 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.model.jobqueue;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Type;
+import org.hibernate.annotations.TypeDef;
+import org.jasig.ssp.util.uuid.UUIDCustomType;
+
+/**
+ * One person targeted by a person search-based {@link Job}. The search is run once when the job starts and its
+ * results are written here in order so later batches can walk a stable snapshot by {@code sequenceNumber} instead of
+ * re-running the search with ever-growing offsets.
+ */
+@Entity
+@Immutable
+@Table(name = "job_target")
+@IdClass(value=JobTarget.JobTargetPrimaryKey.class)
+@TypeDef(name = "uuid-custom", typeClass = UUIDCustomType.class)
+public class JobTarget {
+
+	@Id
+	@Column(name = "job_id", nullable = false)
+	@Type(type = "uuid-custom")
+	@NotNull
+	private UUID jobId;
+
+	@Id
+	@Column(name = "sequence_number", nullable = false)
+	@NotNull
+	private Integer sequenceNumber;
+
+	@Column(name = "person_id", nullable = true)
+	@Type(type = "uuid-custom")
+	private UUID personId;
+
+	@Column(name = "school_id", nullable = true, length = 50)
+	@Size(max = 50)
+	private String schoolId;
+
+	public JobTarget() {}
+
+	public JobTarget(UUID jobId, Integer sequenceNumber, UUID personId, String schoolId) {
+		this.jobId = jobId;
+		this.sequenceNumber = sequenceNumber;
+		this.personId = personId;
+		this.schoolId = schoolId;
+	}
+
+	public UUID getJobId() {
+		return jobId;
+	}
+
+	public void setJobId(final UUID jobId) {
+		this.jobId = jobId;
+	}
+
+	public Integer getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	public void setSequenceNumber(final Integer sequenceNumber) {
+		this.sequenceNumber = sequenceNumber;
+	}
+
+	public UUID getPersonId() {
+		return personId;
+	}
+
+	public void setPersonId(final UUID personId) {
+		this.personId = personId;
+	}
+
+	public String getSchoolId() {
+		return schoolId;
+	}
+
+	public void setSchoolId(final String schoolId) {
+		this.schoolId = schoolId;
+	}
+
+	protected static class JobTargetPrimaryKey implements Serializable {
+		protected UUID jobId;
+		protected Integer sequenceNumber;
+
+		public JobTargetPrimaryKey() {}
+
+		public JobTargetPrimaryKey(final UUID jobId, final Integer sequenceNumber) {
+			this.jobId = jobId;
+			this.sequenceNumber = sequenceNumber;
+		}
+
+		public UUID getJobId() {
+			return jobId;
+		}
+
+		public Integer getSequenceNumber() {
+			return sequenceNumber;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof JobTargetPrimaryKey)) return false;
+
+			JobTargetPrimaryKey that = (JobTargetPrimaryKey) o;
+
+			if (jobId != null ? !jobId.equals(that.jobId) : that.jobId != null) return false;
+			if (sequenceNumber != null ? !sequenceNumber.equals(that.sequenceNumber) : that.sequenceNumber != null)
+				return false;
+
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = jobId != null ? jobId.hashCode() : 0;
+			result = 31 * result + (sequenceNumber != null ? sequenceNumber.hashCode() : 0);
+			return result;
+		}
+	}
+}
@@ -22,7 +22,9 @@ package org.jasig.ssp.service;
 import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.reference.SuccessIndicator;
 import org.jasig.ssp.transferobject.EvaluatedSuccessIndicatorTO;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -38,4 +40,16 @@ public interface EvaluatedSuccessIndicatorService {
      */
     List<EvaluatedSuccessIndicatorTO> getForPerson(UUID personId, ObjectStatus status,
                                      List<SuccessIndicator> indicators) throws ObjectNotFoundException;
+
+    /**
+     * Evaluates Success Indicators for many people at once, with the same results {@link #getForPerson} would give
+     * for each of them. Student data backing the metrics is loaded with one query per source for the whole group
+     * rather than once per person.
+     * @param personIds
+     * @param status
+     * @param indicators  if null all indicators will be evaluated for each person
+     * @return evaluations keyed by person id, in the order given. People that can't be found are absent.
+     */
+    Map<UUID, List<EvaluatedSuccessIndicatorTO>> getForPeople(Collection<UUID> personIds, ObjectStatus status,
+                                     List<SuccessIndicator> indicators);
 }
@@ -20,6 +20,7 @@ package org.jasig.ssp.service;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import org.jasig.ssp.model.MapStatusReport;
@@ -41,6 +42,25 @@ public interface MapStatusReportService extends PersonAssocAuditableService<MapS
 
 	void deleteAllOldReports();
 
+	/**
+	 * Hard deletes reports for plans that are no longer active.
+	 *
+	 * @return the number of reports deleted
+	 */
+	int deleteReportsForInactivePlans();
+
+	/**
+	 * Input fingerprints of existing reports, keyed by plan id.
+	 */
+	Map<UUID, String> getInputFingerprintsByPlanId();
+
+	/**
+	 * Saves a freshly calculated report in place of any existing reports for
+	 * the same student, so readers never see the student without one.
+	 */
+	MapStatusReport replaceReportsForStudent(MapStatusReport report)
+			throws ObjectNotFoundException, ValidationException;
+
 	MapStatusReport evaluatePlan(Set<String> gradesSet, 
 			Set<String> criteriaSet,
 			Term cutoffTerm,  
@@ -81,4 +101,6 @@ public interface MapStatusReportService extends PersonAssocAuditableService<MapS
 	List<MapStatusReportOwnerAndCoachInfo> getWatchersOffPlanStudent();
 
 	List<MapStatusReportPerson> getOffPlanPlansForWatcher(Person person);
+
+	List<MapStatusReport> getAllForPersonIds(List<UUID> personIds);
 }
@@ -18,13 +18,23 @@
  */
 package org.jasig.ssp.service;
 
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.external.PlanStatus;
 import org.jasig.ssp.transferobject.external.AbstractPlanStatusReportTO;
 import org.jasig.ssp.transferobject.external.MapStatusReportLiteTO;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 public interface MapStatusService {
 
     AbstractPlanStatusReportTO getByPersonId(UUID personId) throws ObjectNotFoundException;
 
+    /**
+     * Bulk lookup of the plan status {@link #getByPersonId(UUID)} would report for each of the given people,
+     * with one query for the whole group. People without a status are absent from the map.
+     */
+    Map<UUID, PlanStatus> getStatusesForPeople(Collection<Person> people);
+
 }
@@ -30,6 +30,7 @@ import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import java.io.UnsupportedEncodingException;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Message service
@@ -105,6 +106,21 @@ public interface MessageService {
 	 */
 	Message createMessageNoSave(String to, String cc, SubjectAndBody subjectAndBody) throws ObjectNotFoundException;
 
+	/**
+	 * Create a new {@link Message} entity addressed to the given Person but do not persist it. The recipient is
+	 * validated the same way as {@link #createMessage(Person, String, SubjectAndBody)}. Pair with
+	 * {@link #saveMessages(List)} to enqueue many messages with a single flush.
+	 *
+	 * @throws ValidationException if the recipient has no valid primary e-mail address
+	 */
+	Message createMessageNoSave(@NotNull Person to, String emailCC, @NotNull SubjectAndBody subjAndBody)
+			throws ObjectNotFoundException, ValidationException;
+
+	/**
+	 * Persist (enqueue) messages created by one of the {@code createMessageNoSave} methods with a single flush.
+	 */
+	void saveMessages(List<Message> messages) throws ValidationException;
+
 	/**
 	 * Send any queued messages. Should be set to run regularly via some kind of
 	 * scheduling system.
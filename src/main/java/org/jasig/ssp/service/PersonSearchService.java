@@ -25,6 +25,7 @@ import org.jasig.ssp.model.*;
 import org.jasig.ssp.model.reference.ProgramStatus;
 import org.jasig.ssp.transferobject.CaseloadReassignmentRequestTO;
 import org.jasig.ssp.transferobject.CoachPersonLiteTO;
+import org.jasig.ssp.transferobject.ImmutablePersonIdentifiersTO;
 import org.jasig.ssp.transferobject.reports.CaseLoadSearchTO;
 import org.jasig.ssp.util.csvwriter.CaseloadCsvWriterHelper;
 import org.jasig.ssp.util.sort.PagingWrapper;
@@ -82,9 +83,34 @@ public interface PersonSearchService {
 
     PagingWrapper<PersonSearchResultFull> searchPersonDirectoryFull(PersonSearchRequest form);
 
+	/**
+	 * Identifiers of persons matching the given search, ordered by school ID, one keyset page at a time. Paging and
+	 * sorting on the request are ignored. Intended for snapshotting the targets of bulk jobs.
+	 *
+	 * @param form
+	 * @param afterSchoolId only persons with a higher school ID are returned. Null for the first page.
+	 * @param maxResults
+	 * @return
+	 */
+	List<ImmutablePersonIdentifiersTO> searchPersonDirectoryIdentifiers(PersonSearchRequest form, String afterSchoolId,
+			int maxResults);
+
     void refreshDirectoryPerson();
 	
 	void refreshDirectoryPersonBlue();
+
+	/**
+	 * School ids of directory people whose SSP-side data changed at or after the given time. See
+	 * {@link #refreshDirectoryPerson(List)}.
+	 */
+	List<String> getDirectoryPersonSchoolIdsChangedSince(Date since);
+
+	/**
+	 * Re-derive just the given people's directory rows, rather than rebuilding the whole directory.
+	 *
+	 * @return number of rows written
+	 */
+	int refreshDirectoryPerson(List<String> schoolIds);
 	
 
 	/**
@@ -47,6 +47,37 @@ public interface PersonService extends AuditableCrudService<Person> {
 	@Override
 	PagingWrapper<Person> getAll(SortingAndPaging sAndP);
 
+	/**
+	 * Keyset-paged read of persons in username order. See
+	 * {@link org.jasig.ssp.dao.PersonDao#getAfterUsername(String, String, SortingAndPaging)}.
+	 *
+	 * @param afterUsername only persons with greater usernames; null to start at the beginning
+	 * @param throughUsername only persons with this or lesser usernames; null for no upper bound
+	 * @param sAndP status filter and page size
+	 */
+	List<Person> getAfterUsername(String afterUsername, String throughUsername, SortingAndPaging sAndP);
+
+	/**
+	 * Usernames splitting active people into roughly equal contiguous
+	 * username ranges, for jobs that process the population in parallel.
+	 *
+	 * @param partitions desired number of partitions
+	 * @return inclusive upper bounds of every partition but the last
+	 * @see #getActiveByUsernameRange(String, String, int)
+	 */
+	List<String> getActiveUsernamePartitionBoundaries(int partitions);
+
+	/**
+	 * Next page of active people in username order within the given range.
+	 *
+	 * @param afterUsername exclusive lower bound, null for none
+	 * @param throughUsername inclusive upper bound, null for none
+	 * @param maxResults page size
+	 * @return active people ordered by username
+	 */
+	List<Person> getActiveByUsernameRange(String afterUsername,
+			String throughUsername, int maxResults);
+
 	/**
 	 * Retrieves the specified Person by uuid.
 	 * 
@@ -155,6 +186,18 @@ public interface PersonService extends AuditableCrudService<Person> {
 	Person getInternalOrExternalPersonBySchoolId(final String studentId, final boolean commitPerson,
 												 final boolean isStudent) throws ObjectNotFoundException;
 
+    /**
+     * Bulk version of {@link #getInternalOrExternalPersonBySchoolId(String, boolean, boolean)}. Internal
+     * records are loaded in batches, then external records for the rest, instead of two lookups per id.
+     *
+     * @param schoolIds school identifiers of the People to retrieve
+     * @param commitPerson If true, saves any People created from external records in the database.
+     * @return People keyed by their school id. Ids with neither an internal nor an external record are
+     *    left out.
+     */
+	Map<String, Person> getInternalOrExternalPeopleBySchoolIds(final Collection<String> schoolIds,
+			final boolean commitPerson, final boolean isStudent);
+
     /**
      * Retrieves the specified Person by their User name (userName) and syncs from external for the most up to date
      *  record as possible.
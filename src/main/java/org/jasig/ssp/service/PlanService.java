@@ -30,6 +30,7 @@ import org.jasig.ssp.util.sort.SortingAndPaging;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -56,6 +57,12 @@ PlanOutputTO, MessageTemplatePlanPrintParams> {
 
 	List<MapStatusReportPerson> getAllActivePlanIds();
 
+	/**
+	 * Revision markers for all active plans, keyed by plan id. A plan's marker
+	 * changes whenever the plan or any of its courses is edited.
+	 */
+	Map<UUID, String> getActivePlanRevisions();
+
 	List<MapPlanStatusReportCourse> getAllPlanCoursesForStatusReport(UUID planId);
 
 	PlanElectiveCourse getPlanElectiveCourse(UUID id) throws ObjectNotFoundException;
@@ -18,12 +18,37 @@
  */
 package org.jasig.ssp.service;
 
+import java.util.Date;
+import java.util.List;
+
 import javax.validation.constraints.NotNull;
 
 import org.jasig.ssp.model.Auditable;
+import org.jasig.ssp.util.collections.Pair;
 
 public interface ReferenceService<T extends Auditable>
 		extends AuditableCrudService<T> {
 
 	public T getByName(@NotNull final String name);
+
+	/**
+	 * Version token for the whole reference table: the most recent
+	 * modification date and the row count. Cheap enough to compute per request
+	 * so callers can tell whether previously served data is still current.
+	 *
+	 * @return most recent <code>modifiedDate</code> (may be null) and row count
+	 */
+	public Pair<Date, Long> getVersion();
+
+	/**
+	 * {@link #getVersion()} followed by the same token for each of the other
+	 * tables whose rows end up in this type's transfer objects, all read in
+	 * one transaction.
+	 *
+	 * @param embeddedClasses
+	 *            mapped classes of the other tables
+	 * @return this table's version, then one per embedded class in order
+	 */
+	public List<Pair<Date, Long>> getVersions(
+			List<Class<? extends Auditable>> embeddedClasses);
 }
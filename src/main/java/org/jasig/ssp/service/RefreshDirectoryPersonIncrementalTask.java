@@ -0,0 +1,33 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service;
+
+/**
+ * Keeps the directory person table current between full refreshes by re-deriving only the rows whose SSP-side
+ * source data changed since the last refresh.
+ */
+public interface RefreshDirectoryPersonIncrementalTask {
+
+	/**
+	 * @return false if too much has changed since the last refresh and a full refresh should be run instead,
+	 *         otherwise true, including when there was nothing to do
+	 */
+	boolean refreshChangedRows();
+
+}
@@ -81,6 +81,14 @@ public interface ScheduledTaskWrapperService {
     @Async
 	public void refreshDirectoryPersonBlue();
 
+    /**
+     * Re-derives just the mv_directory_person rows whose SSP-side data changed since
+     *  the last refresh. Falls back to the full blue/main refresh if too much changed.
+     *  Disabled by default, but can be scheduled in config.
+     */
+    @Async
+	public void refreshDirectoryPersonIncremental();
+
     /**
      * Calculates the MAP status calculation task which calculates active student's active
      *  plans against the trasncript and other data and marks them On or Off plan.
@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,4 +31,14 @@ public interface TaskMessageEnqueueService extends
 	List<TaskMessageEnqueue> getAllFromIds(List<UUID> ids);
 	
 	List<TaskMessageEnqueue> getAllForTask(Task task);
+
+	/**
+	 * Reminders already enqueued for any of the given tasks.
+	 */
+	List<TaskMessageEnqueue> getEnqueuedForTasks(Collection<UUID> taskIds);
+
+	/**
+	 * Saves all the given new instances with a single flush.
+	 */
+	void saveAll(List<TaskMessageEnqueue> objs);
 }
@@ -271,6 +271,12 @@ public interface TaskService
 			Date createDateTo, List<UUID> studentTypeIds);
 
 	Pair<Long, Long> getOpenVsClosedTaskCountsForPerson(Person person);
+
+	/**
+	 * Bulk form of {@link #getOpenVsClosedTaskCountsForPerson(Person)}. People without
+	 * any active tasks are absent from the returned map.
+	 */
+	Map<UUID, Pair<Long, Long>> getOpenVsClosedTaskCountsForPeople(List<UUID> personIds);
 	
 	PagingWrapper<EntityStudentCountByCoachTO> getStudentTaskCountForCoaches(EntityCountByCoachSearchForm form);
 	
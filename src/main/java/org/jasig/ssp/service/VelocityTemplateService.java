@@ -19,29 +19,49 @@
 package org.jasig.ssp.service;
 
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.Context;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
  * Exposes the velocity template engine to the application.
  * <p>
- * Caches Templates by the templateId.
+ * Caches parsed Templates by the templateId, which changes whenever the
+ * template text does, so a cached Template is never stale. The least recently
+ * used Templates are dropped once {@link #MAX_CACHED_TEMPLATES} are cached.
  */
 @Service
 public class VelocityTemplateService {
 
+	private static final int MAX_CACHED_TEMPLATES = 256;
+
 	@Autowired
 	private transient VelocityEngine velocityEngine;
 
+	private final Map<String, Template> templates = Collections.synchronizedMap(
+			new LinkedHashMap<String, Template>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(final Map.Entry<String, Template> eldest) {
+					return size() > MAX_CACHED_TEMPLATES;
+				}
+			});
+
 	/**
 	 * 
 	 * @param templateText
@@ -64,15 +84,46 @@ public class VelocityTemplateService {
 			final Map<String, Object> parameters)
 			throws ResourceNotFoundException, ParseErrorException,
 			MethodInvocationException {
+		return generateContent(getTemplate(templateId, templateText), null,
+				parameters);
+	}
 
-		// fill the velocity context with the parameters
-		final VelocityContext context = new VelocityContext();
-		for (final Map.Entry<String, Object> entry : parameters.entrySet()) {
-			context.put(entry.getKey(), entry.getValue());
-		}
+	/**
+	 * Build a context holding values shared by many renders, to be passed to
+	 * {@link #generateContent(Template, Context, Map)}. Treat it as read-only
+	 * once built.
+	 * 
+	 * @param sharedParameters
+	 *            - variables every render should see
+	 * @return context
+	 */
+	public Context createSharedContext(
+			final Map<String, Object> sharedParameters) {
+		return new VelocityContext(new HashMap<String, Object>(
+				sharedParameters));
+	}
+
+	/**
+	 * 
+	 * @param template
+	 *            - A template from {@link #getTemplate(String, String)}
+	 * @param sharedContext
+	 *            - Variables from {@link #createSharedContext(Map)}, or null.
+	 *            Looked up only if not in parameters.
+	 * @param parameters
+	 *            - variables specific to this render
+	 * @return content
+	 * @throws MethodInvocationException
+	 *             MethodInvocationException
+	 */
+	public String generateContent(final Template template,
+			final Context sharedContext, final Map<String, Object> parameters)
+			throws MethodInvocationException {
 
-		// get the template
-		final Template template = getTemplate(templateId, templateText);
+		// fill the velocity context with the parameters, copied so #set in
+		// the template can't leak back into the caller's map
+		final VelocityContext context = new VelocityContext(
+				new HashMap<String, Object>(parameters), sharedContext);
 
 		// Process the template, and extract string
 		final StringWriter writer = new StringWriter();
@@ -82,21 +133,67 @@ public class VelocityTemplateService {
 	}
 
 	/**
-	 * Get the template from the Velocity Template Repository. If the Template
-	 * is not in the repository, then add it to the repository. Some processing
-	 * occurs on the template, so if we can reuse the id, we save ourselves the
-	 * additional processing, as well as remove a potential memory leak.
+	 * Drop every cached Template whose id starts with the given prefix, e.g.
+	 * all versions of a message template once it has been edited.
+	 *
+	 * @param templateIdPrefix
+	 *            - Prefix of the template ids to drop
 	 */
-	private Template getTemplate(final String templateId,
+	public void evictTemplates(final String templateIdPrefix) {
+		synchronized (templates) {
+			for (final Iterator<String> ids = templates.keySet().iterator(); ids.hasNext();) {
+				if (ids.next().startsWith(templateIdPrefix)) {
+					ids.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the parsed template from the cache, parsing and caching it if this
+	 * is the first time this templateId has been seen.
+	 * 
+	 * @param templateId
+	 *            - The id of the template (which must be updated every time the
+	 *            template changes)
+	 * @param templateText
+	 *            - The full text of the Template (from the database)
+	 * @return the parsed template, safe to merge from several threads at once
+	 * @throws ResourceNotFoundException
+	 *             If resource was not found
+	 * @throws ParseErrorException
+	 *             If there was a parsing error
+	 */
+	public Template getTemplate(final String templateId,
+			final String templateText) throws ResourceNotFoundException,
+			ParseErrorException {
+		final Template template = templates.get(templateId);
+		if (template != null) {
+			return template;
+		}
+		return parseTemplate(templateId, templateText);
+	}
+
+	/**
+	 * Velocity only parses templates through a resource loader, so the text
+	 * goes into the string repository just long enough to be parsed. Keeping
+	 * it there would leak every version of every template ever rendered.
+	 * Synchronized so concurrent parses can't remove each other's text.
+	 */
+	private synchronized Template parseTemplate(final String templateId,
 			final String templateText) {
-		Template template = null;
+		Template template = templates.get(templateId);
+		if (template != null) {
+			return template;
+		}
+		final StringResourceRepository repository = StringResourceLoader.getRepository();
+		repository.putStringResource(templateId, templateText);
 		try {
 			template = velocityEngine.getTemplate(templateId);
-		} catch (final ResourceNotFoundException e) {
-			StringResourceLoader.getRepository().putStringResource(templateId,
-					templateText);
-			template = velocityEngine.getTemplate(templateId);
+		} finally {
+			repository.removeStringResource(templateId);
 		}
+		templates.put(templateId, template);
 		return template;
 	}
 }
@@ -18,6 +18,8 @@
  */
 package org.jasig.ssp.service.external;
 
+import java.util.List;
+
 import org.jasig.ssp.model.external.ExternalPersonPlanStatus;
 import org.jasig.ssp.service.ObjectNotFoundException;
 
@@ -26,4 +28,6 @@ public interface ExternalPersonPlanStatusService extends
 		ExternalDataService<ExternalPersonPlanStatus> {
 
 	ExternalPersonPlanStatus getBySchoolId(String schoolId);
+
+	List<ExternalPersonPlanStatus> getBySchoolIds(List<String> schoolIds);
 }
@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.service.external;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.jasig.ssp.model.Person;
@@ -34,6 +35,20 @@ public interface ExternalPersonService extends
 	ExternalPerson getByUsername(String username)
 			throws ObjectNotFoundException;
 
+	/**
+	 * @param schoolIds school identifiers to look up
+	 * @return external records for those of the given school ids that have
+	 *         one, in no particular order
+	 */
+	List<ExternalPerson> getBySchoolIds(Collection<String> schoolIds);
+
+	/**
+	 * @param usernames usernames to look up
+	 * @return external records for those of the given usernames that have
+	 *         one, in no particular order
+	 */
+	List<ExternalPerson> getByUsernames(Collection<String> usernames);
+
 	void updatePersonFromExternalPerson(final Person person, final ExternalPerson externalPerson, final boolean commit,
 										final boolean isStudent);
 
@@ -0,0 +1,156 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.external;
+
+/**
+ * One batch of {@link ExternalPersonSyncTask}. Goes in with the username
+ * range to read and comes back with what became of the persons read.
+ * <p>
+ * The last username read is recorded as soon as the batch has read its
+ * persons, so a caller whose batch failed can still tell where it stopped.
+ */
+public class ExternalPersonSyncBatch {
+
+	private final String afterUsername;
+
+	private final String throughUsername;
+
+	private String lastUsername;
+
+	private long processed;
+
+	private long unchanged;
+
+	private long updated;
+
+	private long failed;
+
+	private long notFound;
+
+	/**
+	 * @param afterUsername
+	 *            read persons with greater usernames; null to start at the
+	 *            beginning
+	 * @param throughUsername
+	 *            read persons with this or lesser usernames; null for no
+	 *            upper bound
+	 */
+	public ExternalPersonSyncBatch(final String afterUsername, final String throughUsername) {
+		this.afterUsername = afterUsername;
+		this.throughUsername = throughUsername;
+	}
+
+	/**
+	 * Counts every person read by this batch as failed, e.g. after its
+	 * transaction rolled back.
+	 */
+	public void markFailed() {
+		unchanged = 0;
+		updated = 0;
+		notFound = 0;
+		failed = processed;
+	}
+
+	/**
+	 * Adds up the counts of a batch that continued this one.
+	 */
+	public void add(final ExternalPersonSyncBatch next) {
+		if ( next.getLastUsername() != null ) {
+			lastUsername = next.getLastUsername();
+		}
+		processed += next.getProcessed();
+		unchanged += next.getUnchanged();
+		updated += next.getUpdated();
+		failed += next.getFailed();
+		notFound += next.getNotFound();
+	}
+
+	public String getAfterUsername() {
+		return afterUsername;
+	}
+
+	public String getThroughUsername() {
+		return throughUsername;
+	}
+
+	/**
+	 * @return username of the last person read, or null if none was
+	 */
+	public String getLastUsername() {
+		return lastUsername;
+	}
+
+	public void setLastUsername(final String lastUsername) {
+		this.lastUsername = lastUsername;
+	}
+
+	/**
+	 * @return number of persons read
+	 */
+	public long getProcessed() {
+		return processed;
+	}
+
+	public void setProcessed(final long processed) {
+		this.processed = processed;
+	}
+
+	/**
+	 * @return persons skipped because their external data hadn't changed
+	 *         since they were last synced
+	 */
+	public long getUnchanged() {
+		return unchanged;
+	}
+
+	public void incrementUnchanged() {
+		unchanged++;
+	}
+
+	/**
+	 * @return persons updated from changed external data
+	 */
+	public long getUpdated() {
+		return updated;
+	}
+
+	public void incrementUpdated() {
+		updated++;
+	}
+
+	/**
+	 * @return persons that could not be synced
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return persons without an external record by either schoolId or
+	 *         username
+	 */
+	public long getNotFound() {
+		return notFound;
+	}
+
+	public void setNotFound(final long notFound) {
+		this.notFound = notFound;
+	}
+
+}
@@ -26,4 +26,6 @@ public interface ExternalStudentRiskIndicatorService extends ExternalDataService
 
     List<ExternalStudentRiskIndicator> getBySchoolId(String schoolId);
 
+    List<ExternalStudentRiskIndicator> getBySchoolIds(List<String> schoolIds);
+
 }
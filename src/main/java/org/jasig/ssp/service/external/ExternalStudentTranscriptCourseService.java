@@ -30,6 +30,8 @@ public interface ExternalStudentTranscriptCourseService extends
 
 	List<ExternalStudentTranscriptCourse> getTranscriptsBySchoolIdAndTermCode(String schoolId, String termCode);
 
+	List<ExternalStudentTranscriptCourse> getTranscriptsBySchoolIdsAndTermCode(List<String> schoolIds, String termCode);
+
     /**
      * Returns Special Service Student Course Report TOs based for passed schoolIds.
      *   It is batched.
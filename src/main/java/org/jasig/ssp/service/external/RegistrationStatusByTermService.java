@@ -19,6 +19,7 @@
 package org.jasig.ssp.service.external;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
@@ -80,5 +81,17 @@ public interface RegistrationStatusByTermService extends
 	List<RegistrationStatusByTerm> getCurrentAndFutureTerms(Person person)
 			throws ObjectNotFoundException;
 
+	/**
+	 * Bulk form of {@link #getCurrentAndFutureTerms(Person)}, keyed by school id.
+	 * Students without any matching registrations are absent from the map.
+	 * Each student's list is in the same term order as the single-student
+	 * lookup.
+	 *
+	 * @throws ObjectNotFoundException
+	 *             if current and future terms cannot be resolved.
+	 */
+	Map<String, List<RegistrationStatusByTerm>> getCurrentAndFutureTermsForSchoolIds(List<String> schoolIds)
+			throws ObjectNotFoundException;
+
 
 }
\ No newline at end of file
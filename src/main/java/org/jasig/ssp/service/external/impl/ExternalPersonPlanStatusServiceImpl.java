@@ -18,6 +18,8 @@
  */
 package org.jasig.ssp.service.external.impl;
 
+import java.util.List;
+
 import org.jasig.ssp.dao.external.ExternalPersonPlanStatusDao;
 import org.jasig.ssp.model.external.ExternalPersonPlanStatus;
 import org.jasig.ssp.service.ObjectNotFoundException;
@@ -47,4 +49,10 @@ public class ExternalPersonPlanStatusServiceImpl extends
 		return getDao().getBySchoolId(schoolId);
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public List<ExternalPersonPlanStatus> getBySchoolIds(List<String> schoolIds) {
+		return getDao().getBySchoolIds(schoolIds);
+	}
+
 }
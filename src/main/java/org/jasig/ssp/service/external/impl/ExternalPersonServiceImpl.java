@@ -40,6 +40,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 
@@ -94,6 +96,16 @@ public class ExternalPersonServiceImpl
 		return dao.getByUsername(username);
 	}
 
+	@Override
+	public List<ExternalPerson> getBySchoolIds(final Collection<String> schoolIds) {
+		return new ArrayList<ExternalPerson>(dao.getBySchoolIds(schoolIds, null).getRows());
+	}
+
+	@Override
+	public List<ExternalPerson> getByUsernames(final Collection<String> usernames) {
+		return new ArrayList<ExternalPerson>(dao.getByUsernames(usernames, null).getRows());
+	}
+
 	@Override
 	public void updatePersonFromExternalPerson(final Person person, final boolean isStudent) {
 		ExternalPerson externalPerson = null;
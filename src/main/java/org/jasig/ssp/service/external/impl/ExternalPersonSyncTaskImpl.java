@@ -18,20 +18,32 @@
  */
 package org.jasig.ssp.service.external.impl;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang.StringUtils;
 import org.hibernate.FlushMode;
 import org.hibernate.SessionFactory;
 import org.jasig.ssp.dao.DirectoryPersonSearchDao;
 import org.jasig.ssp.dao.external.ExternalPersonDao;
+import org.jasig.ssp.dao.external.ExternalStudentSpecialServiceGroupDao;
+import org.jasig.ssp.model.Auditable;
 import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.PersonDemographics;
+import org.jasig.ssp.model.PersonStaffDetails;
 import org.jasig.ssp.model.external.ExternalPerson;
+import org.jasig.ssp.model.external.ExternalStudentSpecialServiceGroup;
 import org.jasig.ssp.service.PersonService;
 import org.jasig.ssp.service.external.ExternalPersonService;
+import org.jasig.ssp.service.external.ExternalPersonSyncBatch;
 import org.jasig.ssp.service.external.ExternalPersonSyncTask;
 import org.jasig.ssp.service.external.ExternalStudentSpecialServiceGroupService;
 import org.jasig.ssp.service.reference.ConfigService;
 import org.jasig.ssp.util.CallableExecutor;
+import org.jasig.ssp.util.Fingerprints;
 import org.jasig.ssp.util.collections.Pair;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortDirection;
@@ -42,8 +54,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 
 @Service
@@ -52,14 +68,26 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(ExternalPersonSyncTaskImpl.class);
 
-	private static final Class<Pair<Long, Long>> BATCH_RETURN_TYPE =
-			(Class<Pair<Long, Long>>) new Pair<Long,Long>(null,null).getClass();
-
 	private static final String BATCH_SIZE_CONFIG_NAME = "task_external_person_sync_batch_size";
 	private static final int DEFAULT_BATCH_SIZE = 100;
 	private static final String MAX_BATCHES_PER_EXECUTION_CONFIG_NAME = "task_external_person_sync_max_batches_per_exec";
 	private static final int DEFAULT_MAX_BATCHES_PER_EXECUTION = -1; // unlimited
 
+	/**
+	 * Bump whenever {@link ExternalPersonService#updatePersonFromExternalPerson}
+	 * starts reading or writing data that {@link #externalSyncFingerprint}
+	 * doesn't cover, so every person gets synced again.
+	 */
+	private static final String FINGERPRINT_VERSION = "2";
+
+	/**
+	 * Config which changes what syncing the same external record does to a
+	 * person, so is part of the fingerprint.
+	 */
+	private static final String[] FINGERPRINT_CONFIG_NAMES = { "coachSetFromExternalData",
+			"coachUnsetFromExternalData", "studentTypeSetFromExternalData", "studentTypeUnsetFromExternalData",
+			"special_service_group_set_from_external_data", "special_service_group_unset_from_external_data" };
+
 
 	@Autowired
 	private ExternalPersonService externalPersonService;
@@ -76,6 +104,9 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
 	@Autowired
 	private transient ExternalPersonDao dao;
 
+	@Autowired
+	private transient ExternalStudentSpecialServiceGroupDao externalStudentSpecialServiceGroupDao;
+
 	@Autowired
     private transient DirectoryPersonSearchDao directoryPersonSearchDao;
 
@@ -85,12 +116,15 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
 	@Autowired
 	protected transient SessionFactory sessionFactory;
 
-	private transient long nextPersonIndex = 0;
+	/**
+	 * Username of the last person synced. Null to start at the beginning.
+	 */
+	private transient String lastSyncedUsername = null;
 
 	// intentionally not transactional... this is the main loop, each iteration
 	// of which should be its own transaction.
 	@Override
-	public void exec(CallableExecutor<Pair<Long,Long>> batchExec) {
+	public void exec(CallableExecutor<ExternalPersonSyncBatch> batchExec) {
 
 		if ( Thread.currentThread().isInterrupted() ) {
 			LOGGER.info("Abandoning external person sync because of thread interruption");
@@ -99,171 +133,195 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
  
 		LOGGER.info("BEGIN : External person sync.");
 
-		int recordsProcessed = 0;
+		// Sync everyone once per execution, starting where the last execution
+		// left off and wrapping around to the beginning if necessary
+		final String startUsername = lastSyncedUsername;
+		boolean wrapped = false;
+		final ExternalPersonSyncBatch totals = new ExternalPersonSyncBatch(startUsername, null);
 		int batch = 0;
-		Exception error = null;
 		int maxBatchesAllowed = DEFAULT_MAX_BATCHES_PER_EXECUTION;
 		while ( true ) {
 			// Check this config every time in case someone wants to abort a
 			// long-running execution.
 			maxBatchesAllowed = getMaxBatchesAllowed();
 			if ( maxBatchesAllowed == 0 ) {
-				LOGGER.info("Abandoning external person sync at position [{}]"
+				LOGGER.info("Abandoning external person sync after username [{}]"
 						+ " and batch [{}] because the  batch limit has been"
 						+ " set to zero. Records processed: [{}]",
-						new Object[] {nextPersonIndex, batch, recordsProcessed });
+						new Object[] {lastSyncedUsername, batch, totals.getProcessed() });
 				break;
 			}
 
-			error = null;
 			batch++;
  
 			// again, look up config every time to allow for relatively immediate
 			// control over runnaway executions
 			int batchSize = getBatchSize();
 			final SortingAndPaging sAndP = SortingAndPaging.createForSingleSortWithPaging(
-					ObjectStatus.ACTIVE,
-					new BigDecimal(nextPersonIndex).intValueExact(),  // API mismatch... see more comments below
-					batchSize,
-					"username",
-					SortDirection.ASC.toString(), null);
+					ObjectStatus.ACTIVE, 0, batchSize, "username", SortDirection.ASC.toString(), null);
+			final String throughUsername = wrapped ? startUsername : null;
 
-			Pair<Long,Long> processedOfTotal = null;
+			ExternalPersonSyncBatch result;
 			try {
-				if ( batchExec == null ) {
-					processedOfTotal = syncWithPersonInTransaction(sAndP);
-				} else {
-					processedOfTotal = batchExec.exec(new Callable<Pair<Long, Long>>() {
-						@Override
-						public Pair<Long, Long> call() throws Exception {
-							return syncWithPersonInTransaction(sAndP);
-						}
-					});
+				try {
+					result = execBatch(batchExec, new ExternalPersonSyncBatch(lastSyncedUsername, throughUsername),
+							sAndP);
+				} catch ( InterruptedException e ) {
+					throw e;
+				} catch ( Exception e ) {
+					// Most likely one bad record spoiled the batch's
+					// transaction, so find it and carry on with the rest
+					LOGGER.warn("External person sync batch [{}] after username [{}] failed. Retrying its"
+							+ " records one at a time.", new Object[] { batch, lastSyncedUsername, e });
+					result = retryBatchOneRecordAtATime(batchExec, lastSyncedUsername, throughUsername, sAndP);
 				}
 			} catch ( InterruptedException e ) {
 				Thread.currentThread().interrupt(); // reassert
-			} catch (final Exception e) {
-				error = e;
-			} finally {
-
-				if ( processedOfTotal == null ) {
-					if ( error != null ) {
-						LOGGER.error("Abandoning external person sync at"
-								+ " position [{}] and batch [{}] because of a"
-								+ " processing error. Will resume at that"
-								+ " position at the next execution.",
-								new Object[] {nextPersonIndex, batch - 1, error });
-						break;
-					}
-					if ( Thread.currentThread().isInterrupted() ) {
-						LOGGER.error("Abandoning external person sync at"
-								+ " position [{}] and batch [{}] because of an"
-								+ " InterruptionException. Will resume at that"
-								+ " position at the next execution.",
-								nextPersonIndex, batch - 1);
-						break;
-					}
-					// programmer error, no clue what to do so let the NPE's fly...
-				}
-
-				nextPersonIndex += processedOfTotal.getFirst();
-				recordsProcessed += processedOfTotal.getFirst();
+				LOGGER.error("Abandoning external person sync after"
+						+ " username [{}] and batch [{}] because of an"
+						+ " InterruptionException. Will resume there"
+						+ " at the next execution.",
+						lastSyncedUsername, batch - 1);
+				break;
+			} catch ( Exception e ) {
+				LOGGER.error("Abandoning external person sync after"
+						+ " username [{}] and batch [{}] because of a"
+						+ " processing error. Will resume there"
+						+ " at the next execution.",
+						new Object[] {lastSyncedUsername, batch - 1, e });
+				break;
+			}
 
-				LOGGER.info("Processed [{}] of [{}] candidate person records"
-						+ " as of batch [{}] of [{}]. Total records processed [{}].",
-						new Object[] {nextPersonIndex, processedOfTotal.getSecond(),
-								batch, maxBatchesAllowed, recordsProcessed });
+			totals.add(result);
+			if ( result.getLastUsername() != null ) {
+				lastSyncedUsername = result.getLastUsername();
+			}
 
-				if ( processedOfTotal.getFirst() == 0 ) {
-					// shouldn't happen but want to guard against endless loops
-					LOGGER.debug("Appear to be more records to process but"
-							+ " last batch processed zero records. Exiting"
-							+ " person sync task.");
-					nextPersonIndex = 0;
+			LOGGER.info("Processed [{}] person records through username [{}] as of batch [{}] of [{}]."
+					+ " Total records processed [{}].",
+					new Object[] {result.getProcessed(), lastSyncedUsername, batch, maxBatchesAllowed,
+							totals.getProcessed() });
+
+			if ( !(sAndP.isPaged()) || result.getProcessed() < sAndP.getMaxResults() ) {
+				if ( wrapped || startUsername == null ) {
+					LOGGER.debug("All candidate person records have been"
+							+ " processed in this execution. Will resume after"
+							+ " username [{}] on next execution.", startUsername);
+					lastSyncedUsername = startUsername;
 					break;
 				}
+				LOGGER.debug("Reached the end of the list of candidate"
+						+ " persons for sync. Starting over at the beginning"
+						+ " to get to those before username [{}].", startUsername);
+				wrapped = true;
+				lastSyncedUsername = null;
+			}
 
-				if ( maxBatchesAllowed > 0 && batch >= getMaxBatchesAllowed() ) {
-					LOGGER.debug("No more batches allowed for this execution."
-							+ " Exiting person sync task. Will resume at"
-							+ " index [{}] on next execution.", nextPersonIndex);
-					break;
-				}
+			if ( maxBatchesAllowed > 0 && batch >= getMaxBatchesAllowed() ) {
+				LOGGER.debug("No more batches allowed for this execution."
+						+ " Exiting person sync task. Will resume after"
+						+ " username [{}] on next execution.", lastSyncedUsername);
+				break;
+			}
+		}
 
-				if ( nextPersonIndex >= processedOfTotal.getSecond() ) {
-					nextPersonIndex = 0;
-					LOGGER.debug("Reached the end of the list of candidate"
-							+ " persons for sync. More batches are allowed, so"
-							+ " starting over at index 0.");
+		LOGGER.info("END : External person sync. Records processed [{}]: unchanged [{}], updated [{}],"
+				+ " failed [{}], not found in external data [{}].",
+				new Object[] { totals.getProcessed(), totals.getUnchanged(), totals.getUpdated(),
+						totals.getFailed(), totals.getNotFound() });
+	}
 
-					// no break!!
-				}
+	@Override
+	public Class<ExternalPersonSyncBatch> getBatchExecReturnType() {
+		return ExternalPersonSyncBatch.class;
+	}
 
-				if ( recordsProcessed >= processedOfTotal.getSecond() ) {
-					LOGGER.debug("More batches allowed, but all candidate" +
-							" person records have already been processed"
-							+ " in this execution. Will resume at index"
-							+ " [{}] on next execution.", nextPersonIndex);
-					break;
-				}
+	private ExternalPersonSyncBatch execBatch(final CallableExecutor<ExternalPersonSyncBatch> batchExec,
+			final ExternalPersonSyncBatch batch, final SortingAndPaging sAndP) throws Exception {
+		if ( batchExec == null ) {
+			return syncWithPersonInTransaction(batch, sAndP);
+		}
+		return batchExec.exec(new Callable<ExternalPersonSyncBatch>() {
+			@Override
+			public ExternalPersonSyncBatch call() throws Exception {
+				return syncWithPersonInTransaction(batch, sAndP);
+			}
+		});
+	}
 
-				// Mismatch between the PagedResponse and SortingAndPaging
-				// APIs mean we can't actually deal with total result sets
-				// larger than Integer.MAX_VALUE
-				if ( nextPersonIndex > Integer.MAX_VALUE ) {
-					LOGGER.warn("Cannot process more than {} total persons,"
-							+ " even across executions. Abandoning and"
-							+ " resetting sync task.",
-							Integer.MAX_VALUE);
-					nextPersonIndex = 0;
-					break;
+	/**
+	 * Syncs the records of a failed batch one per transaction, skipping those
+	 * that fail again. They keep their old fingerprint, so the next execution
+	 * tries them again. Gives up altogether if a record can't even be read.
+	 */
+	private ExternalPersonSyncBatch retryBatchOneRecordAtATime(
+			final CallableExecutor<ExternalPersonSyncBatch> batchExec, final String afterUsername,
+			final String throughUsername, final SortingAndPaging sAndP) throws Exception {
+		final ExternalPersonSyncBatch retried = new ExternalPersonSyncBatch(afterUsername, throughUsername);
+		final SortingAndPaging singleRecord = SortingAndPaging.createForSingleSortWithPaging(
+				ObjectStatus.ACTIVE, 0, 1, "username", SortDirection.ASC.toString(), null);
+		final long recordCnt = sAndP.isPaged() ? sAndP.getMaxResults() : Long.MAX_VALUE;
+		for ( long i = 0; i < recordCnt; i++ ) {
+			final ExternalPersonSyncBatch attempt = new ExternalPersonSyncBatch(
+					retried.getLastUsername() == null ? afterUsername : retried.getLastUsername(), throughUsername);
+			try {
+				execBatch(batchExec, attempt, singleRecord);
+			} catch ( InterruptedException e ) {
+				throw e;
+			} catch ( Exception e ) {
+				if ( attempt.getLastUsername() == null ) {
+					throw e;
 				}
-
+				LOGGER.error("External person sync failed for username [{}]. Skipping it until the next execution.",
+						attempt.getLastUsername(), e);
+				attempt.markFailed();
+			}
+			if ( attempt.getProcessed() == 0 ) {
+				break;
 			}
+			retried.add(attempt);
 		}
-
-		LOGGER.info("END : External person sync.");
-	}
-
-	@Override
-	public Class<Pair<Long, Long>> getBatchExecReturnType() {
-		return BATCH_RETURN_TYPE;
+		return retried;
 	}
 
-	protected Pair<Long, Long> syncWithPersonInTransaction(final SortingAndPaging sAndP) throws Exception {
-		return withTransaction.withNewTransaction(new Callable<Pair<Long, Long>>() {
+	protected ExternalPersonSyncBatch syncWithPersonInTransaction(final ExternalPersonSyncBatch batch,
+			final SortingAndPaging sAndP) throws Exception {
+		return withTransaction.withNewTransaction(new Callable<ExternalPersonSyncBatch>() {
 			@Override
-			public Pair<Long, Long> call() throws Exception {
-				return syncWithPerson(sAndP);
+			public ExternalPersonSyncBatch call() throws Exception {
+				return syncWithPerson(batch, sAndP);
 			}
 		});
 	}
 
-	protected Pair<Long,Long> syncWithPerson(final SortingAndPaging sAndP) throws InterruptedException {
+	protected ExternalPersonSyncBatch syncWithPerson(final ExternalPersonSyncBatch batch,
+			final SortingAndPaging sAndP) throws InterruptedException {
 
 		sessionFactory.getCurrentSession().setFlushMode(FlushMode.COMMIT);
 
 		// Use InterruptedExceptions instead of manipulating return value b/c
-		// the return value actually means "total number of possible processable"
-		// rows, so if it is returned gracefully, the caller will likely
-		// incorrectly update its internal state, as is the case with the
-		// scheduled job call site.
+		// a gracefully returned batch would be taken as processed, as is the
+		// case with the scheduled job call site.
 
 		if ( Thread.currentThread().isInterrupted() ) {
 			LOGGER.info("Abandoning external person sync because of thread interruption");
 			throw new InterruptedException();
 		}
 
-		LOGGER.info("External person sync Selecting [{}] records starting at [{}]",
-			sAndP.getMaxResults(), nextPersonIndex);
+		LOGGER.info("External person sync Selecting [{}] records after username [{}]",
+			sAndP.getMaxResults(), batch.getAfterUsername());
 
-		final PagingWrapper<Person> people = personService.getAll(sAndP);
+		final List<Person> people = personService.getAfterUsername(batch.getAfterUsername(),
+				batch.getThroughUsername(), sAndP);
 
-		if ( people.getRows().isEmpty() ) {
-			LOGGER.info("External person sync found 0 records starting at [{}]", nextPersonIndex);
-			return new Pair(0L, people.getResults());
+		if ( people.isEmpty() ) {
+			LOGGER.info("External person sync found 0 records after username [{}]", batch.getAfterUsername());
+			return batch;
 		}
 
+		batch.setLastUsername(people.get(people.size() - 1).getUsername());
+		batch.setProcessed(people.size());
+
 		if ( Thread.currentThread().isInterrupted() ) {
 			LOGGER.info("Abandoning external person sync because of thread interruption");
 			throw new InterruptedException();
@@ -271,13 +329,11 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
 
 		// allow access to people by schoolId
 		final Map<String, Person> peopleBySchoolId = Maps.newHashMap();
-		long peopleCnt = 0;
 		for (final Person person : people) {
 			peopleBySchoolId.put(person.getSchoolId().toLowerCase(), person);
-			peopleCnt++;
 		}
 
-		Set<String> internalPeopleSchoolIds = peopleBySchoolId.keySet();
+		final Set<String> internalPeopleSchoolIds = Sets.newHashSet(peopleBySchoolId.keySet());
 		if ( LOGGER.isDebugEnabled() ) {
 			LOGGER.debug(
 					"Candidate internal person schoolIds for sync with external persons {}",
@@ -289,6 +345,12 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
 			throw new InterruptedException();
 		}
 
+		// Pair each internal person with its external record, by schoolId
+		// where possible, otherwise by username. Those found by username may
+		// have a duplicate in the directory that needs purging before update.
+		final List<Pair<Person, ExternalPerson>> matches = Lists.newArrayList();
+		final Set<String> matchedByUsername = Sets.newHashSet();
+
 		// fetch external people by schoolId
 		final PagingWrapper<ExternalPerson> externalPeople =
 				dao.getBySchoolIds(internalPeopleSchoolIds,SortingAndPaging.createForSingleSortWithPaging(
@@ -297,32 +359,20 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
 						SortDirection.ASC.toString(), null));
 
 		for (final ExternalPerson externalPerson : externalPeople) {
-
-			if ( Thread.currentThread().isInterrupted() ) {
-				LOGGER.info("Abandoning external person sync because of thread interruption on person {}",
-                        externalPerson.getUsername());
-				throw new InterruptedException();
-			}
-
 			LOGGER.debug("Looking for internal person by external person schoolId {}", externalPerson.getSchoolId());
 
             // get the previously fetched person
-			final Person person = peopleBySchoolId.get(externalPerson.getSchoolId().toLowerCase());
-
-            // update person from external person
-			externalPersonService.updatePersonFromExternalPerson(person, externalPerson, true, true); //this might add a program status to a coach, but should be rare
-
-            // update person special service groups from external student special service groups
-            externalStudentSpecialServiceGroupService.updatePersonSSGsFromExternalPerson(person);
-
-            //remove from internal set (used below)
-            internalPeopleSchoolIds.remove(person.getSchoolId());
+			final String schoolIdKey = externalPerson.getSchoolId().toLowerCase();
+			final Person person = peopleBySchoolId.get(schoolIdKey);
+			if ( person != null && internalPeopleSchoolIds.remove(schoolIdKey) ) {
+				matches.add(new Pair<Person, ExternalPerson>(person, externalPerson));
+			}
 		}
 
 		//process people not found by school_id to hopefully find them by username
 		if (internalPeopleSchoolIds.size() > 0) {
-		    LOGGER.debug("There were " + (peopleBySchoolId.size() - externalPeople.getResults()) +
-                    " internal people not found in external records!");
+		    LOGGER.debug("There were " + internalPeopleSchoolIds.size() +
+                    " internal people not found in external records by schoolId!");
 
             final Map<String, Person> peopleByUsername = Maps.newHashMap();
             for (String schoolId : internalPeopleSchoolIds) {
@@ -336,27 +386,196 @@ public class ExternalPersonSyncTaskImpl implements ExternalPersonSyncTask {
                             SortDirection.ASC.toString(), null));
 
             for (final ExternalPerson externalPerson2 : externalPeopleByUsername) {
-                if ( Thread.currentThread().isInterrupted() ) {
-                    LOGGER.info("Abandoning external person sync because of thread interruption on person {}",
-                            externalPerson2.getUsername());
-                    throw new InterruptedException();
-                }
-
                 LOGGER.debug("Looking for internal person by external person username since not found by schoolId {}", externalPerson2.getUsername());
-                final Person person2 = peopleByUsername.get(externalPerson2.getUsername());
+                final Person person2 = peopleByUsername.remove(externalPerson2.getUsername());
 
                 if (person2 != null) {
-                    internalPeopleSchoolIds.remove(person2.getSchoolId());
-                    directoryPersonSearchDao.purgeDuplicateRecord(externalPerson2.getSchoolId(), externalPerson2.getUsername()); //duplicate found purge from mv directory person otherwise will block update
-                    externalPersonService.updatePersonFromExternalPerson(person2, externalPerson2, true, true); //this might add a program status to a coach, but should be rare
-                    externalStudentSpecialServiceGroupService.updatePersonSSGsFromExternalPerson(person2);
+                    internalPeopleSchoolIds.remove(person2.getSchoolId().toLowerCase());
+                    matches.add(new Pair<Person, ExternalPerson>(person2, externalPerson2));
+                    matchedByUsername.add(externalPerson2.getSchoolId());
                 }
             }
 
             LOGGER.trace("Couldn't find the following by schoolId or username in external person: {" + internalPeopleSchoolIds.toString() + "}");
         }
+		batch.setNotFound(internalPeopleSchoolIds.size());
+
+		// SSGs are synced along with the rest of the external record, so
+		// they're part of its fingerprint
+		final Multimap<String, String> ssgCodesBySchoolId = ArrayListMultimap.create();
+		if ( !(matches.isEmpty()) ) {
+			final List<String> externalSchoolIds = Lists.newArrayListWithCapacity(matches.size());
+			for ( Pair<Person, ExternalPerson> match : matches ) {
+				externalSchoolIds.add(match.getSecond().getSchoolId());
+			}
+			for ( ExternalStudentSpecialServiceGroup ssg :
+					externalStudentSpecialServiceGroupDao.getStudentSpecialServiceGroupsBySchoolIds(externalSchoolIds) ) {
+				ssgCodesBySchoolId.put(ssg.getSchoolId(), ssg.getCode());
+			}
+		}
+
+		final String syncConfig = externalSyncConfig();
+
+		for ( Pair<Person, ExternalPerson> match : matches ) {
+			final Person person = match.getFirst();
+			final ExternalPerson externalPerson = match.getSecond();
+
+			if ( Thread.currentThread().isInterrupted() ) {
+				LOGGER.info("Abandoning external person sync because of thread interruption on person {}",
+                        externalPerson.getUsername());
+				throw new InterruptedException();
+			}
+
+			final Collection<String> ssgCodes = ssgCodesBySchoolId.get(externalPerson.getSchoolId());
+			if ( externalSyncFingerprint(externalPerson, ssgCodes, syncConfig, person)
+					.equals(person.getExternalSyncFingerprint()) ) {
+				LOGGER.trace("External data unchanged for person {}", person.getSchoolId());
+				batch.incrementUnchanged();
+				continue;
+			}
+
+			if ( matchedByUsername.contains(externalPerson.getSchoolId()) ) {
+				directoryPersonSearchDao.purgeDuplicateRecord(externalPerson.getSchoolId(), externalPerson.getUsername()); //duplicate found purge from mv directory person otherwise will block update
+			}
+
+			// update person from external person
+			externalPersonService.updatePersonFromExternalPerson(person, externalPerson, true, true); //this might add a program status to a coach, but should be rare
+
+            // update person special service groups from external student special service groups
+            externalStudentSpecialServiceGroupService.updatePersonSSGsFromExternalPerson(person);
+
+			// Fingerprint the person as synced. Flushed on commit along with
+			// the rest of the update. Left off if the external record names a
+			// coach, student type or campus that doesn't exist (yet), so the
+			// person is synced again next time.
+			if ( hasUnresolvedReferences(person, externalPerson) ) {
+				LOGGER.debug("Not fingerprinting person {} because some of its external references could not"
+						+ " be resolved", person.getSchoolId());
+				person.setExternalSyncFingerprint(null);
+			} else {
+				person.setExternalSyncFingerprint(externalSyncFingerprint(externalPerson, ssgCodes, syncConfig,
+						person));
+			}
+
+			batch.incrementUpdated();
+		}
+
+		LOGGER.info("External person sync batch through username [{}]: unchanged [{}], updated [{}],"
+				+ " not found in external data [{}]",
+				new Object[] { batch.getLastUsername(), batch.getUnchanged(), batch.getUpdated(),
+						batch.getNotFound() });
+
+		return batch;
+	}
+
+	/**
+	 * Digest of everything in the external record and its SSGs that
+	 * {@link ExternalPersonService#updatePersonFromExternalPerson} and
+	 * {@link ExternalStudentSpecialServiceGroupService#updatePersonSSGsFromExternalPerson}
+	 * read, the config that decides what they do with it, and the person's
+	 * current values for the fields they write. So a person is synced again if
+	 * any of those changed, including local edits to synced fields.
+	 */
+	private String externalSyncFingerprint(final ExternalPerson externalPerson, final Collection<String> ssgCodes,
+			final String syncConfig, final Person person) {
+		final List<String> lines = Lists.newArrayList(FINGERPRINT_VERSION, syncConfig,
+				Fingerprints.fields(externalPerson.getSchoolId(), externalPerson.getUsername(),
+						externalPerson.getFirstName(), externalPerson.getMiddleName(), externalPerson.getLastName(),
+						externalPerson.getBirthDate() == null ? null : externalPerson.getBirthDate().getTime(),
+						externalPerson.getPrimaryEmailAddress(), externalPerson.getAddressLine1(),
+						externalPerson.getAddressLine2(), externalPerson.getCity(), externalPerson.getState(),
+						externalPerson.getZipCode(), externalPerson.getHomePhone(), externalPerson.getWorkPhone(),
+						externalPerson.getCellPhone(), externalPerson.getPhotoUrl(),
+						externalPerson.getActualStartTerm(), externalPerson.getActualStartYear(),
+						externalPerson.getNonLocalAddress(), externalPerson.getResidencyCounty(),
+						externalPerson.getF1Status(), externalPerson.getCoachSchoolId(),
+						externalPerson.getStudentType(), externalPerson.getCampusCode()),
+				Fingerprints.fields(externalPerson.getDepartmentName(), externalPerson.getOfficeHours(),
+						externalPerson.getOfficeLocation()),
+				Fingerprints.fields(externalPerson.getMaritalStatus(), externalPerson.getEthnicity(),
+						externalPerson.getRace(), externalPerson.getGender(), externalPerson.getIsLocal(),
+						plainBalance(externalPerson.getBalanceOwed())));
+		final List<String> sortedSsgCodes = Lists.newArrayList(ssgCodes);
+		Collections.sort(sortedSsgCodes);
+		lines.add(Fingerprints.fields(sortedSsgCodes.toArray()));
+
+		// References by id so nothing lazy gets loaded. Staff details and
+		// demographics are fetched with the person anyway. Local SSG edits
+		// aren't covered, that would take a query per person.
+		lines.add(Fingerprints.fields(person.getSchoolId(), person.getUsername(), person.getFirstName(),
+				person.getMiddleName(), person.getLastName(),
+				person.getBirthDate() == null ? null : person.getBirthDate().getTime(),
+				person.getPrimaryEmailAddress(), person.getAddressLine1(), person.getAddressLine2(),
+				person.getCity(), person.getState(), person.getZipCode(), person.getHomePhone(),
+				person.getWorkPhone(), person.getCellPhone(), person.getPhotoUrl(), person.getActualStartTerm(),
+				person.getActualStartYear(), person.getNonLocalAddress(), person.getResidencyCounty(),
+				person.getF1Status(), idOf(person.getCoach()), idOf(person.getStudentType()),
+				idOf(person.getHomeCampus())));
+		final PersonStaffDetails staffDetails = person.getStaffDetails();
+		lines.add(staffDetails == null ? Fingerprints.fields()
+				: Fingerprints.fields(staffDetails.getDepartmentName(), staffDetails.getOfficeHours(),
+						staffDetails.getOfficeLocation()));
+		final PersonDemographics demographics = person.getDemographics();
+		lines.add(demographics == null ? Fingerprints.fields()
+				: Fingerprints.fields(idOf(demographics.getMaritalStatus()), idOf(demographics.getEthnicity()),
+						idOf(demographics.getRace()), demographics.getGender(), demographics.getLocal(),
+						plainBalance(demographics.getBalanceOwed())));
+		return Fingerprints.of(lines);
+	}
+
+	private String externalSyncConfig() {
+		final Object[] values = new Object[FINGERPRINT_CONFIG_NAMES.length];
+		for ( int i = 0; i < FINGERPRINT_CONFIG_NAMES.length; i++ ) {
+			values[i] = configService.getByNameNullOrDefaultValue(FINGERPRINT_CONFIG_NAMES[i]);
+		}
+		return Fingerprints.fields(values);
+	}
+
+	/**
+	 * True if the external record names a coach, student type, campus or
+	 * demographic reference which the sync couldn't assign because no such
+	 * thing exists yet. The sync only logs those.
+	 */
+	private boolean hasUnresolvedReferences(final Person person, final ExternalPerson externalPerson) {
+		if ( StringUtils.isNotBlank(externalPerson.getCoachSchoolId())
+				&& !("false".equalsIgnoreCase(configService.getByNameNullOrDefaultValue("coachSetFromExternalData")))
+				&& (person.getCoach() == null
+						|| !(externalPerson.getCoachSchoolId().equals(person.getCoach().getSchoolId()))) ) {
+			return true;
+		}
+		if ( StringUtils.isNotBlank(externalPerson.getStudentType())
+				&& !("false".equalsIgnoreCase(configService.getByNameNullOrDefaultValue(
+						"studentTypeSetFromExternalData")))
+				&& (person.getStudentType() == null
+						|| !(externalPerson.getStudentType().equals(person.getStudentType().getCode()))) ) {
+			return true;
+		}
+		if ( StringUtils.isNotBlank(externalPerson.getCampusCode())
+				&& (person.getHomeCampus() == null
+						|| !(externalPerson.getCampusCode().equals(person.getHomeCampus().getCode()))) ) {
+			return true;
+		}
+		final PersonDemographics demographics = person.getDemographics();
+		if ( demographics == null ) {
+			return false;
+		}
+		return (StringUtils.isNotBlank(externalPerson.getMaritalStatus())
+						&& (demographics.getMaritalStatus() == null || !(externalPerson.getMaritalStatus()
+								.equalsIgnoreCase(demographics.getMaritalStatus().getName()))))
+				|| (StringUtils.isNotBlank(externalPerson.getEthnicity())
+						&& (demographics.getEthnicity() == null || !(externalPerson.getEthnicity()
+								.equalsIgnoreCase(demographics.getEthnicity().getName()))))
+				|| (StringUtils.isNotBlank(externalPerson.getRace())
+						&& (demographics.getRace() == null || !(externalPerson.getRace()
+								.equalsIgnoreCase(demographics.getRace().getCode()))));
+	}
+
+	private UUID idOf(final Auditable reference) {
+		return reference == null ? null : reference.getId();
+	}
 
-		return new Pair(peopleCnt, people.getResults());
+	private String plainBalance(final BigDecimal balance) {
+		return balance == null ? null : balance.stripTrailingZeros().toPlainString();
 	}
 
 	private int getMaxBatchesAllowed() {
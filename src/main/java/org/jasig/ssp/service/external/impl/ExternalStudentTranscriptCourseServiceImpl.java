@@ -52,6 +52,12 @@ public class ExternalStudentTranscriptCourseServiceImpl extends
 		return dao.getTranscriptsBySchoolIdAndTermCode(schoolId, termCode);
 	}
 
+	@Override
+	public List<ExternalStudentTranscriptCourse> getTranscriptsBySchoolIdsAndTermCode(final List<String> schoolIds,
+																						final String termCode) {
+		return dao.getTranscriptsBySchoolIdsAndTermCode(schoolIds, termCode);
+	}
+
     /**
      * Returns SSG Course Report TO's based on supplied schoolIds and possibly other criteria.
      *   It is batched, but does cross join with Directory Person for Faculty info.
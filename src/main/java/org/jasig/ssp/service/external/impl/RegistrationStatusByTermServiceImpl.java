@@ -20,6 +20,7 @@ package org.jasig.ssp.service.external.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
@@ -38,6 +39,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Maps;
+
 /**
  * RegistrationStatusByTerm service implementation
  * 
@@ -136,6 +139,38 @@ public class RegistrationStatusByTermServiceImpl extends
 		return registrationStatuses;
 	}
 
+	@Override
+	public Map<String, List<RegistrationStatusByTerm>> getCurrentAndFutureTermsForSchoolIds(
+			List<String> schoolIds) throws ObjectNotFoundException {
+		final List<Term> currentAndFutureTerms = termService.getCurrentAndFutureTerms();
+		final Map<String, Integer> termOrder = Maps.newHashMap();
+		for (Term term : currentAndFutureTerms) {
+			termOrder.put(term.getCode(), termOrder.size());
+		}
+		final List<RegistrationStatusByTerm> found =
+				dao.getForTerms(schoolIds, new ArrayList<String>(termOrder.keySet()));
+		final Map<String, RegistrationStatusByTerm[]> byTermSlot = Maps.newHashMap();
+		for (RegistrationStatusByTerm regStatus : found) {
+			RegistrationStatusByTerm[] slots = byTermSlot.get(regStatus.getSchoolId());
+			if ( slots == null ) {
+				slots = new RegistrationStatusByTerm[currentAndFutureTerms.size()];
+				byTermSlot.put(regStatus.getSchoolId(), slots);
+			}
+			slots[termOrder.get(regStatus.getTermCode())] = regStatus;
+		}
+		final Map<String, List<RegistrationStatusByTerm>> registrationStatuses = Maps.newHashMap();
+		for (Map.Entry<String, RegistrationStatusByTerm[]> entry : byTermSlot.entrySet()) {
+			final List<RegistrationStatusByTerm> ordered = new ArrayList<RegistrationStatusByTerm>();
+			for (RegistrationStatusByTerm regStatus : entry.getValue()) {
+				if ( regStatus != null ) {
+					ordered.add(regStatus);
+				}
+			}
+			registrationStatuses.put(entry.getKey(), ordered);
+		}
+		return registrationStatuses;
+	}
+
 	@Override
 	public PagingWrapper<RegistrationStatusByTerm> getAllForTerm(
 			@NotNull Term term, SortingAndPaging sAndP) {
@@ -45,7 +45,6 @@ import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.Person;
 import org.jasig.ssp.model.PersonProgramStatus;
 import org.jasig.ssp.model.SubjectAndBody;
-import org.jasig.ssp.model.WatchStudent;
 import org.jasig.ssp.model.reference.Campus;
 import org.jasig.ssp.model.reference.EarlyAlertReason;
 import org.jasig.ssp.model.reference.EarlyAlertSuggestion;
@@ -62,9 +61,12 @@ import org.jasig.ssp.service.SecurityService;
 import org.jasig.ssp.service.reference.ConfigService;
 import org.jasig.ssp.service.reference.EarlyAlertReasonService;
 import org.jasig.ssp.service.reference.EarlyAlertSuggestionService;
+import org.jasig.ssp.service.reference.MessageTemplateRenderSession;
 import org.jasig.ssp.service.reference.MessageTemplateService;
 import org.jasig.ssp.service.reference.ProgramStatusService;
 import org.jasig.ssp.service.reference.StudentTypeService;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueRecipientTO;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueTO;
 import org.jasig.ssp.transferobject.EarlyAlertSearchResultTO;
 import org.jasig.ssp.transferobject.EarlyAlertTO;
 import org.jasig.ssp.transferobject.PagedResponse;
@@ -557,6 +559,11 @@ public class EarlyAlertServiceImpl extends // NOPMD
 		return dao.getEarlyAlertCountSetForCriteria(searchForm);
 	}
 
+	/**
+	 * Sends each recipient a digest of the early alerts awaiting a response. Recipients are worked out from id
+	 * projections, and each digest only reads the fields it displays for that recipient's alerts, so no
+	 * EarlyAlert entities are loaded.
+	 */
 	@Override
 	public void sendAllEarlyAlertReminderNotifications() {
 		Date lastResponseDate = getMinimumResponseComplianceDate();
@@ -564,10 +571,9 @@ public class EarlyAlertServiceImpl extends // NOPMD
 		if (lastResponseDate == null) {
 			return;
 		}
-		List<EarlyAlert> eaOutOfCompliance = dao.getResponseDueEarlyAlerts(lastResponseDate);
 
-		Map<UUID, List<EarlyAlertMessageTemplateTO>> easByCoach = new HashMap<UUID, List<EarlyAlertMessageTemplateTO>>();
-		Map<UUID, Person> coaches = new HashMap<UUID, Person>();
+		final Map<UUID, Set<UUID>> easByCoach = new HashMap<UUID, Set<UUID>>();
+		final Map<UUID, Person> earlyAlertCoordinators = new HashMap<UUID, Person>();
 		final boolean includeCoachAsRecipient = this.earReminderRecipientConfig.includeCoachAsRecipient();
 		final boolean includeEarlyAlertCoordinatorAsRecipient = this.earReminderRecipientConfig
 				.includeEarlyAlertCoordinatorAsRecipient();
@@ -577,143 +583,146 @@ public class EarlyAlertServiceImpl extends // NOPMD
 		LOGGER.info("Config: includeEarlyAlertCoordinatorAsRecipient(): {}", includeEarlyAlertCoordinatorAsRecipient);
 		LOGGER.info("Config: includeEarlyAlertCoordinatorAsRecipientOnlyIfStudentHasNoCoach(): {}",
 				includeEarlyAlertCoordinatorAsRecipientOnlyIfStudentHasNoCoach);
-		for (EarlyAlert earlyAlert : eaOutOfCompliance) {
-			final Set<Person> recipients = new HashSet<Person>();
-			Person coach = earlyAlert.getPerson().getCoach();
+		for (EarlyAlertResponseDueRecipientTO earlyAlert : dao.getResponseDueEarlyAlertRecipients(lastResponseDate)) {
+			final Set<UUID> recipients = new HashSet<UUID>();
+			final UUID coachId = earlyAlert.getCoachId();
 			if (includeCoachAsRecipient) {
-				if (coach == null) {
+				if (coachId == null) {
 					LOGGER.warn(
 							"Early Alert with id: {} is associated with a person without a coach, so skipping email to coach.",
-							earlyAlert.getId());
+							earlyAlert.getEarlyAlertId());
 				} else {
-					recipients.add(coach);
+					recipients.add(coachId);
 				}
 			}
 			if (includeEarlyAlertCoordinatorAsRecipient
-					|| (coach == null && includeEarlyAlertCoordinatorAsRecipientOnlyIfStudentHasNoCoach)) {
-				final Campus campus = earlyAlert.getCampus();
-				if (campus == null) {
+					|| (coachId == null && includeEarlyAlertCoordinatorAsRecipientOnlyIfStudentHasNoCoach)) {
+				if (earlyAlert.getCampusId() == null) {
 					LOGGER.error("Early Alert with id: {} does not have valid a campus, so skipping email to EAC.",
-							earlyAlert.getId());
+							earlyAlert.getEarlyAlertId());
 				} else {
-					final UUID earlyAlertCoordinatorId = campus.getEarlyAlertCoordinatorId();
+					final UUID earlyAlertCoordinatorId = earlyAlert.getEarlyAlertCoordinatorId();
 					if (earlyAlertCoordinatorId == null) {
 						LOGGER.error(
 								"Early Alert with id: {} has campus with no early alert coordinator, so skipping email to EAC.",
-								earlyAlert.getId());
+								earlyAlert.getEarlyAlertId());
 					} else {
-						try {
-							final Person earlyAlertCoordinator = personService.get(earlyAlertCoordinatorId);
-							if (earlyAlertCoordinator == null) { // guard against change in behavior where
+						if (!(earlyAlertCoordinators.containsKey(earlyAlertCoordinatorId))) {
+							earlyAlertCoordinators.put(earlyAlertCoordinatorId,
+									getEarlyAlertCoordinator(earlyAlert.getEarlyAlertId(), earlyAlertCoordinatorId));
+						}
+						if (earlyAlertCoordinators.get(earlyAlertCoordinatorId) == null) { // guard against change in behavior where
 																	// ObjectNotFoundException is not thrown (which
 																	// we've seen)
-								LOGGER.error(
-										"Early Alert with id: {} has campus with an early alert coordinator with a bad ID ({}), so skipping email to EAC.",
-										earlyAlert.getId(), earlyAlertCoordinatorId);
-							} else {
-								recipients.add(earlyAlertCoordinator);
-							}
-						} catch (ObjectNotFoundException exp) {
 							LOGGER.error(
-									"Early Alert with id: {} has campus with an early alert coordinator with a bad ID ({}), so skipping email to coach because no coach can be resolved.",
-									new Object[] { earlyAlert.getId(), earlyAlertCoordinatorId, exp });
+									"Early Alert with id: {} has campus with an early alert coordinator with a bad ID ({}), so skipping email to EAC.",
+									earlyAlert.getEarlyAlertId(), earlyAlertCoordinatorId);
+						} else {
+							recipients.add(earlyAlertCoordinatorId);
 						}
 					}
 				}
 			}
-			LOGGER.debug("Early Alert: {}; Recipients: {}", earlyAlert.getId(), recipients);
-			if (recipients.isEmpty()) {
-				continue;
-			} else {
-				for (Person person : recipients) {
-					// We've definitely got a coach by this point
-					if (easByCoach.containsKey(person.getId())) {
-						final List<EarlyAlertMessageTemplateTO> coachEarlyAlerts = easByCoach.get(person.getId());
-						coachEarlyAlerts.add(createEarlyAlertTemplateTO(earlyAlert));
-					} else {
-						coaches.put(person.getId(), person);
-						final ArrayList<EarlyAlertMessageTemplateTO> eam = Lists.newArrayList();
-						eam.add(createEarlyAlertTemplateTO(earlyAlert)); // add separately from newArrayList() call else
-																			// list will be sized to 1
-						easByCoach.put(person.getId(), eam);
-					}
-				}
+			LOGGER.debug("Early Alert: {}; Recipients: {}", earlyAlert.getEarlyAlertId(), recipients);
+			for (UUID recipientId : recipients) {
+				addToReminderDigest(easByCoach, recipientId, earlyAlert.getEarlyAlertId());
 			}
-			List<WatchStudent> watchers = earlyAlert.getPerson().getWatchers();
-			for (WatchStudent watcher : watchers) {
-				if (easByCoach.containsKey(watcher.getPerson().getId())) {
-					final List<EarlyAlertMessageTemplateTO> coachEarlyAlerts = easByCoach
-							.get(watcher.getPerson().getId());
-					coachEarlyAlerts.add(createEarlyAlertTemplateTO(earlyAlert));
-				} else {
-					coaches.put(watcher.getPerson().getId(), watcher.getPerson());
-					final ArrayList<EarlyAlertMessageTemplateTO> eam = Lists.newArrayList();
-					eam.add(createEarlyAlertTemplateTO(earlyAlert)); // add separately from newArrayList() call else
-																		// list will be sized to 1
-					easByCoach.put(watcher.getPerson().getId(), eam);
-				}
+		}
+		for (Map.Entry<UUID, Set<UUID>> watcher : dao.getResponseDueEarlyAlertIdsByWatcher(lastResponseDate).entrySet()) {
+			for (UUID earlyAlertId : watcher.getValue()) {
+				addToReminderDigest(easByCoach, watcher.getKey(), earlyAlertId);
 			}
 		}
-		for (UUID coachId : easByCoach.keySet()) {
-			Map<String, Object> messageParams = new HashMap<String, Object>();
-
-			Collections.sort(easByCoach.get(coachId), new Comparator<EarlyAlertTO>() {
-				@Override
-				public int compare(EarlyAlertTO p1, EarlyAlertTO p2) {
-					Date p1Date = p1.getLastResponseDate();
-					if (p1Date == null)
-						p1Date = p1.getCreatedDate();
-					Date p2Date = p2.getLastResponseDate();
-					if (p2Date == null)
-						p2Date = p2.getCreatedDate();
-					return p1Date.compareTo(p2Date);
-				}
 
-			});
+		final MessageTemplateRenderSession renderSession = messageTemplateService.openRenderSession();
+		try {
+			for (UUID coachId : easByCoach.keySet()) {
+				final Person coach;
+				try {
+					coach = earlyAlertCoordinators.containsKey(coachId) ? earlyAlertCoordinators.get(coachId)
+							: personService.get(coachId);
+				} catch (ObjectNotFoundException exp) {
+					LOGGER.error("Unable to send reminder emails to coach with id: " + coachId + "\n", exp);
+					continue;
+				}
 
-			Integer daysSince1900ResponseExpected = DateTimeUtils.daysSince1900(lastResponseDate);
-			List<Pair<EarlyAlertMessageTemplateTO, Integer>> earlyAlertTOPairs = new ArrayList<Pair<EarlyAlertMessageTemplateTO, Integer>>();
-			for (EarlyAlertMessageTemplateTO ea : easByCoach.get(coachId)) {
-				Integer daysOutOfCompliance;
-				if (ea.getLastResponseDate() != null) {
-					daysOutOfCompliance = daysSince1900ResponseExpected
-							- DateTimeUtils.daysSince1900(ea.getLastResponseDate());
-				} else {
-					daysOutOfCompliance = daysSince1900ResponseExpected
-							- DateTimeUtils.daysSince1900(ea.getCreatedDate());
+				// only the recipient's own alerts are read, so memory is bounded by the largest digest
+				final List<EarlyAlertMessageTemplateTO> coachEarlyAlerts = Lists.newArrayList();
+				for (EarlyAlertResponseDueTO earlyAlert : dao.getResponseDueEarlyAlertDigestLines(easByCoach.get(coachId))) {
+					coachEarlyAlerts.add(new EarlyAlertMessageTemplateTO(earlyAlert));
 				}
 
-				// Just in case attempt to only send emails for EA full day out of compliance
-				if (daysOutOfCompliance >= 0)
-					earlyAlertTOPairs.add(new Pair<EarlyAlertMessageTemplateTO, Integer>(ea, daysOutOfCompliance));
-			}
-			messageParams.put("earlyAlertTOPairs", earlyAlertTOPairs);
-			messageParams.put("coach", coaches.get(coachId));
-			messageParams.put("DateTimeUtils", DateTimeUtils.class);
-			messageParams.put("termToRepresentEarlyAlert",
-					configService.getByNameEmpty("term_to_represent_early_alert"));
-
-			SubjectAndBody subjAndBody = messageTemplateService
-					.createEarlyAlertResponseRequiredToCoachMessage(messageParams);
-			try {
-				messageService.createMessage(coaches.get(coachId), null, subjAndBody);
-			} catch (Exception exp) {
-				LOGGER.error("Unable to send reminder emails to coach: " + coaches.get(coachId).getFullName() + "\n",
-						exp);
+				Map<String, Object> messageParams = new HashMap<String, Object>();
+
+				Collections.sort(coachEarlyAlerts, new Comparator<EarlyAlertTO>() {
+					@Override
+					public int compare(EarlyAlertTO p1, EarlyAlertTO p2) {
+						Date p1Date = p1.getLastResponseDate();
+						if (p1Date == null)
+							p1Date = p1.getCreatedDate();
+						Date p2Date = p2.getLastResponseDate();
+						if (p2Date == null)
+							p2Date = p2.getCreatedDate();
+						return p1Date.compareTo(p2Date);
+					}
+
+				});
+
+				Integer daysSince1900ResponseExpected = DateTimeUtils.daysSince1900(lastResponseDate);
+				List<Pair<EarlyAlertMessageTemplateTO, Integer>> earlyAlertTOPairs = new ArrayList<Pair<EarlyAlertMessageTemplateTO, Integer>>();
+				for (EarlyAlertMessageTemplateTO ea : coachEarlyAlerts) {
+					Integer daysOutOfCompliance;
+					if (ea.getLastResponseDate() != null) {
+						daysOutOfCompliance = daysSince1900ResponseExpected
+								- DateTimeUtils.daysSince1900(ea.getLastResponseDate());
+					} else {
+						daysOutOfCompliance = daysSince1900ResponseExpected
+								- DateTimeUtils.daysSince1900(ea.getCreatedDate());
+					}
+
+					// Just in case attempt to only send emails for EA full day out of compliance
+					if (daysOutOfCompliance >= 0)
+						earlyAlertTOPairs.add(new Pair<EarlyAlertMessageTemplateTO, Integer>(ea, daysOutOfCompliance));
+				}
+				messageParams.put("earlyAlertTOPairs", earlyAlertTOPairs);
+				messageParams.put("coach", coach);
+				messageParams.put("DateTimeUtils", DateTimeUtils.class);
+				messageParams.put("termToRepresentEarlyAlert",
+						configService.getByNameEmpty("term_to_represent_early_alert"));
+
+				SubjectAndBody subjAndBody = messageTemplateService
+						.createEarlyAlertResponseRequiredToCoachMessage(messageParams);
+				try {
+					messageService.createMessage(coach, null, subjAndBody);
+				} catch (Exception exp) {
+					LOGGER.error("Unable to send reminder emails to coach: " + coach.getFullName() + "\n",
+							exp);
+				}
 			}
+		} finally {
+			renderSession.close();
 		}
 
 	}
 
-	private EarlyAlertMessageTemplateTO createEarlyAlertTemplateTO(EarlyAlert earlyAlert) {
-		Person creator = null;
+	private Person getEarlyAlertCoordinator(UUID earlyAlertId, UUID earlyAlertCoordinatorId) {
 		try {
-			creator = personService.get(earlyAlert.getCreatedBy().getId());
+			return personService.get(earlyAlertCoordinatorId);
 		} catch (ObjectNotFoundException exp) {
-			LOGGER.error("Early Alert with id: " + earlyAlert.getId() + " does not have valid creator: "
-					+ earlyAlert.getCreatedBy(), exp);
+			LOGGER.error(
+					"Early Alert with id: {} has campus with an early alert coordinator with a bad ID ({}), so skipping email to coach because no coach can be resolved.",
+					new Object[] { earlyAlertId, earlyAlertCoordinatorId, exp });
+			return null;
+		}
+	}
+
+	private void addToReminderDigest(Map<UUID, Set<UUID>> easByCoach, UUID recipientId, UUID earlyAlertId) {
+		Set<UUID> coachEarlyAlerts = easByCoach.get(recipientId);
+		if (coachEarlyAlerts == null) {
+			coachEarlyAlerts = new HashSet<UUID>();
+			easByCoach.put(recipientId, coachEarlyAlerts);
 		}
-		return new EarlyAlertMessageTemplateTO(earlyAlert, creator, earlyAlert.getPerson().getWatcherEmailAddresses());
+		coachEarlyAlerts.add(earlyAlertId);
 	}
 
 	public Map<UUID, Number> getResponsesDueCountEarlyAlerts(List<UUID> personIds) {
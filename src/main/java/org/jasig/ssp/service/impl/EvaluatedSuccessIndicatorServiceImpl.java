@@ -163,6 +163,8 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
 
     private ThreadLocal<Map<String,Object>> evaluationResourceCache = new ThreadLocal<>();
 
+    private ThreadLocal<BulkEvaluationResources> bulkEvaluationResources = new ThreadLocal<>();
+
 
     @Override
     public List<EvaluatedSuccessIndicatorTO> getForPerson(final UUID personId, final ObjectStatus status, final
@@ -211,43 +213,118 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
 
         final Person person = findPersonOrFail(personId);
 
-        final PagingWrapper<SuccessIndicator> successIndicators;
-        if (CollectionUtils.isEmpty(possibleSubsetOfIndicators)) {
-            successIndicators = successIndicatorService.getAll(allActive());
-        } else {
-            successIndicators = new PagingWrapper<>(possibleSubsetOfIndicators);
-        }
+        final PagingWrapper<SuccessIndicator> successIndicators = findSuccessIndicators(possibleSubsetOfIndicators);
 
         if ( successIndicators.getResults() <= 0L ) {
             rsltHolder.set(Lists.<EvaluatedSuccessIndicatorTO>newArrayListWithCapacity(0));
             return;
         }
 
-        final ArrayList<EvaluatedSuccessIndicatorTO> evaluations =
-                Lists.newArrayListWithExpectedSize((int) successIndicators.getResults());
         evaluationResourceCache.set(Maps.<String, Object>newLinkedHashMap());
         try {
-            for ( SuccessIndicator successIndicator : successIndicators ) {
-                try {
-                    final List<EvaluatedSuccessIndicatorTO> evaluation = evaluate(successIndicator, person);
-                    if ( evaluation != null ) {
-                        evaluations.addAll(evaluation);
-                    }
-                } catch ( Exception e ) {
-                    // This rarely happens b/c evaluate() should be catching nearly all problems since the goal
-                    // is to aways return an evaluation TO with as much possible info for all active indicators, even
-                    // if the eval fails. If we tried to do that here, we wouldn't be able to output metric values in
-                    // the TO, for example. So while this is a handled exception, it does indicate a more serious
-                    // problem (probably a bad indicator code) than elsewhere in this class, so logging at a higher
-                    // level.
-                    LOGGER.error("System failure evaluating success indicator [{}] for person [{}]",
-                            new Object[]{ successIndicatorLoggingId(successIndicator), person.getId(), e });
+            rsltHolder.set(evaluateAll(successIndicators, person));
+        } finally {
+            evaluationResourceCache.set(null);
+        }
+    }
+
+    @Override
+    public Map<UUID, List<EvaluatedSuccessIndicatorTO>> getForPeople(final Collection<UUID> personIds,
+                                    final ObjectStatus status, final List<SuccessIndicator> indicators) {
+        // Same transaction management workaround as getForPerson(), see comments there
+        TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+        transactionTemplate.setReadOnly(true);
+        final AtomicReference<Map<UUID, List<EvaluatedSuccessIndicatorTO>>> rsltHolder = new AtomicReference<>();
+        try {
+            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus txnStatus) {
+                    getForPeopleInTransaction(personIds, indicators, rsltHolder);
                 }
+            });
+        } catch ( UnexpectedRollbackException e ) {
+            // nothing to be done, totally normal. see comments in getForPerson()
+        }
+        return rsltHolder.get();
+    }
+
+    private void getForPeopleInTransaction(Collection<UUID> personIds, List<SuccessIndicator> possibleSubsetOfIndicators,
+                                           AtomicReference<Map<UUID, List<EvaluatedSuccessIndicatorTO>>> rsltHolder) {
+
+        final Map<UUID, List<EvaluatedSuccessIndicatorTO>> evaluationsByPerson = Maps.newLinkedHashMap();
+        if ( CollectionUtils.isEmpty(personIds) ) {
+            rsltHolder.set(evaluationsByPerson);
+            return;
+        }
+
+        final Map<UUID, Person> peopleById = Maps.newHashMap();
+        for ( Person person : personService.peopleFromListOfIds(Lists.newArrayList(personIds), null) ) {
+            peopleById.put(person.getId(), person);
+        }
+        // keep caller's ordering, dropping anyone who couldn't be found
+        final List<Person> people = Lists.newArrayListWithExpectedSize(peopleById.size());
+        for ( UUID personId : personIds ) {
+            final Person person = peopleById.remove(personId);
+            if ( person != null ) {
+                people.add(person);
+            }
+        }
+
+        final PagingWrapper<SuccessIndicator> successIndicators = findSuccessIndicators(possibleSubsetOfIndicators);
+
+        if ( successIndicators.getResults() <= 0L ) {
+            for ( Person person : people ) {
+                evaluationsByPerson.put(person.getId(), Lists.<EvaluatedSuccessIndicatorTO>newArrayListWithCapacity(0));
+            }
+            rsltHolder.set(evaluationsByPerson);
+            return;
+        }
+
+        // Person-independent resources (display names, current term) are shared across the whole group. Per-student
+        // resources come from the bulk loader, one query per source, on first use.
+        evaluationResourceCache.set(Maps.<String, Object>newLinkedHashMap());
+        bulkEvaluationResources.set(new BulkEvaluationResources(people));
+        try {
+            for ( Person person : people ) {
+                evaluationsByPerson.put(person.getId(), evaluateAll(successIndicators, person));
             }
         } finally {
+            bulkEvaluationResources.set(null);
             evaluationResourceCache.set(null);
         }
-        rsltHolder.set(evaluations);
+        rsltHolder.set(evaluationsByPerson);
+    }
+
+    private PagingWrapper<SuccessIndicator> findSuccessIndicators(List<SuccessIndicator> possibleSubsetOfIndicators) {
+        if (CollectionUtils.isEmpty(possibleSubsetOfIndicators)) {
+            return successIndicatorService.getAll(allActive());
+        } else {
+            return new PagingWrapper<>(possibleSubsetOfIndicators);
+        }
+    }
+
+    private List<EvaluatedSuccessIndicatorTO> evaluateAll(PagingWrapper<SuccessIndicator> successIndicators,
+                                                          Person person) {
+        final ArrayList<EvaluatedSuccessIndicatorTO> evaluations =
+                Lists.newArrayListWithExpectedSize((int) successIndicators.getResults());
+        for ( SuccessIndicator successIndicator : successIndicators ) {
+            try {
+                final List<EvaluatedSuccessIndicatorTO> evaluation = evaluate(successIndicator, person);
+                if ( evaluation != null ) {
+                    evaluations.addAll(evaluation);
+                }
+            } catch ( Exception e ) {
+                // This rarely happens b/c evaluate() should be catching nearly all problems since the goal
+                // is to aways return an evaluation TO with as much possible info for all active indicators, even
+                // if the eval fails. If we tried to do that here, we wouldn't be able to output metric values in
+                // the TO, for example. So while this is a handled exception, it does indicate a more serious
+                // problem (probably a bad indicator code) than elsewhere in this class, so logging at a higher
+                // level.
+                LOGGER.error("System failure evaluating success indicator [{}] for person [{}]",
+                        new Object[]{ successIndicatorLoggingId(successIndicator), person.getId(), e });
+            }
+        }
+        return evaluations;
     }
 
     private static class SuccessIndicatorMetric {
@@ -743,7 +820,10 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
 
         List<RegistrationStatusByTerm> regStatuses = null;
         try {
-            regStatuses = registrationStatusByTermService.getCurrentAndFutureTerms(person);
+            final BulkEvaluationResources bulk = bulkEvaluationResources.get();
+            regStatuses = bulk == null
+                    ? registrationStatusByTermService.getCurrentAndFutureTerms(person)
+                    : bulk.registrationStatusesFor(person);
         } catch ( ObjectNotFoundException e ) {
             // really shouldn't happen, but if it does, indicates all current/future terms have gone missing, so
             // handle it the same was as in that check above
@@ -872,7 +952,9 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
         // Special service method invented specifically for this use case... without it, pulling back
         // a list of actual Tasks to filter ends up taking easily half the elapsed time of the entire
         // getForPerson(). The query generated by a getAllForPerson() is nightmarish.
-        final Pair<Long, Long> openVsClosed = taskService.getOpenVsClosedTaskCountsForPerson(person);
+        final BulkEvaluationResources bulk = bulkEvaluationResources.get();
+        final Pair<Long, Long> openVsClosed = bulk == null
+                ? taskService.getOpenVsClosedTaskCountsForPerson(person) : bulk.openVsClosedTaskCountsFor(person);
 
         // No conceptual difference between 'no data' and 0's here.
         final long open = openVsClosed.getFirst();
@@ -900,20 +982,26 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
     }
 
     private SuccessIndicatorMetric findMapStatusMetric(SuccessIndicator successIndicator, Person person) {
-        AbstractPlanStatusReportTO statusReport = null;
-        try {
-            statusReport = mapStatusService.getByPersonId(person.getId());
-        } catch (ObjectNotFoundException e) {
-            // actually means 'no such person', which means something terrible has gone wrong, but we'll treat it
-            // as just a missing indicator metric
-            return emptyMetricDescriptor(successIndicator);
+        final PlanStatus status;
+        final BulkEvaluationResources bulk = bulkEvaluationResources.get();
+        if ( bulk == null ) {
+            AbstractPlanStatusReportTO statusReport = null;
+            try {
+                statusReport = mapStatusService.getByPersonId(person.getId());
+            } catch (ObjectNotFoundException e) {
+                // actually means 'no such person', which means something terrible has gone wrong, but we'll treat it
+                // as just a missing indicator metric
+                return emptyMetricDescriptor(successIndicator);
+            }
+            status = statusReport == null ? null : statusReport.getStatus();
+        } else {
+            status = bulk.planStatusFor(person);
         }
         // PlanStatus is so domain specific, we don't pass it back into the evaluate(). That function does have
         // coercion/translation/normalization capabilities, but they're all focused on very low-level types,
         // e.g. Numeric and BigDecimal, or purpose built but still very generic stuff, e.g. Ratio. So
         // we translate that enum into a name here, the same way we do it for findRegistrationMetric()
 
-        final PlanStatus status = statusReport == null ? null : statusReport.getStatus();
         return new SuccessIndicatorMetric((status == null ? null : status.name()),
                 (status == null ? null : status.getDisplayName()), null,
                 successIndicator.getCode(), successIndicator.getName());
@@ -932,8 +1020,11 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
     private SuccessIndicatorMetric findParticipationStatusMetric(@Nonnull SuccessIndicator successIndicator,
                                                  @Nonnull Person person) {
         final Term currentTerm = findCurrentTerm();
-        final List<ExternalStudentTranscriptCourse> scheduleCourses = externalStudentTranscriptCourseService.
-                getTranscriptsBySchoolIdAndTermCode(person.getSchoolId(), currentTerm.getCode());
+        final String currentTermCode = currentTerm.getCode();
+        final BulkEvaluationResources bulk = bulkEvaluationResources.get();
+        final List<ExternalStudentTranscriptCourse> scheduleCourses = bulk == null
+                ? externalStudentTranscriptCourseService.getTranscriptsBySchoolIdAndTermCode(person.getSchoolId(), currentTermCode)
+                : bulk.scheduleCoursesFor(person, currentTermCode);
         String worstParticipationScore = null; //used for default null and string comparisons
 
         if (successIndicator.getEvaluationType().equals(SuccessIndicatorEvaluationType.SCALE)) {
@@ -1067,6 +1158,10 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
     }
 
     private ExternalStudentTranscript findTranscriptFor(@Nonnull Person person) {
+        final BulkEvaluationResources bulk = bulkEvaluationResources.get();
+        if ( bulk != null ) {
+            return bulk.transcriptFor(person);
+        }
         final Map<String, Object> cache = evaluationResourceCache.get();
         if ( cache == null ) {
             return externalStudentTranscriptService.getRecordsBySchoolId(person.getSchoolId());
@@ -1093,6 +1188,10 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
     }
 
     private ExternalStudentFinancialAid findFinancialAidFor(@Nonnull Person person) {
+        final BulkEvaluationResources bulk = bulkEvaluationResources.get();
+        if ( bulk != null ) {
+            return bulk.financialAidFor(person);
+        }
         final Map<String, Object> cache = evaluationResourceCache.get();
         if ( cache == null ) {
             return externalStudentFinancialAidService.getStudentFinancialAidBySchoolId(person.getSchoolId());
@@ -1119,6 +1218,10 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
     }
 
     private Map<String,ExternalStudentRiskIndicator> findExternalRiskIndicatorsFor(@Nonnull Person person) {
+        final BulkEvaluationResources bulk = bulkEvaluationResources.get();
+        if ( bulk != null ) {
+            return bulk.externalRiskIndicatorsFor(person);
+        }
         final Map<String, Object> cache = evaluationResourceCache.get();
         if ( cache == null ) {
             final List<ExternalStudentRiskIndicator> esriList =
@@ -1146,6 +1249,135 @@ public class EvaluatedSuccessIndicatorServiceImpl implements EvaluatedSuccessInd
         }
     }
 
+    /**
+     * Per-student evaluation resources for a whole group of people, backing {@link #getForPeople}. Each source is
+     * loaded for every student in the group with a single (batched) query the first time any student needs it, and
+     * answers exactly what the corresponding single-student lookup would have, including 'nothing found'.
+     */
+    private class BulkEvaluationResources {
+        private final Collection<Person> people;
+        private final List<String> schoolIds;
+        private final List<UUID> personIds;
+        private Map<String, ExternalStudentTranscript> transcripts;
+        private Map<String, ExternalStudentFinancialAid> financialAid;
+        private Map<String, List<ExternalStudentRiskIndicator>> riskIndicators;
+        private Map<String, List<RegistrationStatusByTerm>> registrationStatuses;
+        private ObjectNotFoundException registrationStatusesFailure;
+        private Map<UUID, Pair<Long, Long>> taskCounts;
+        private Map<UUID, PlanStatus> planStatuses;
+        private String scheduleTermCode;
+        private Map<String, List<ExternalStudentTranscriptCourse>> scheduleCourses;
+
+        private BulkEvaluationResources(Collection<Person> people) {
+            this.people = people;
+            final Set<String> distinctSchoolIds = new LinkedHashSet<>();
+            this.personIds = Lists.newArrayListWithExpectedSize(people.size());
+            for ( Person person : people ) {
+                personIds.add(person.getId());
+                if ( person.getSchoolId() != null ) {
+                    distinctSchoolIds.add(person.getSchoolId());
+                }
+            }
+            this.schoolIds = Lists.newArrayList(distinctSchoolIds);
+        }
+
+        private ExternalStudentTranscript transcriptFor(Person person) {
+            if ( transcripts == null ) {
+                transcripts = Maps.newHashMap();
+                for ( ExternalStudentTranscript transcript :
+                        externalStudentTranscriptService.getBatchedRecordsBySchoolIds(schoolIds) ) {
+                    transcripts.put(transcript.getSchoolId(), transcript);
+                }
+            }
+            return transcripts.get(person.getSchoolId());
+        }
+
+        private ExternalStudentFinancialAid financialAidFor(Person person) {
+            if ( financialAid == null ) {
+                financialAid = Maps.newHashMap();
+                for ( ExternalStudentFinancialAid fa :
+                        externalStudentFinancialAidService.getStudentFinancialAidBySchoolIds(schoolIds) ) {
+                    financialAid.put(fa.getSchoolId(), fa);
+                }
+            }
+            return financialAid.get(person.getSchoolId());
+        }
+
+        private Map<String, ExternalStudentRiskIndicator> externalRiskIndicatorsFor(Person person) {
+            if ( riskIndicators == null ) {
+                riskIndicators = groupBySchoolId(externalStudentRiskIndicatorService.getBySchoolIds(schoolIds),
+                        new Function<ExternalStudentRiskIndicator, String>() {
+                            @Override
+                            public String apply(@Nullable ExternalStudentRiskIndicator input) {
+                                return input.getSchoolId();
+                            }
+                        });
+            }
+            final List<ExternalStudentRiskIndicator> esriList = riskIndicators.get(person.getSchoolId());
+            return mapOf(esriList == null ? Lists.<ExternalStudentRiskIndicator>newArrayListWithCapacity(0) : esriList);
+        }
+
+        private List<RegistrationStatusByTerm> registrationStatusesFor(Person person) throws ObjectNotFoundException {
+            if ( registrationStatuses == null && registrationStatusesFailure == null ) {
+                try {
+                    registrationStatuses = registrationStatusByTermService.getCurrentAndFutureTermsForSchoolIds(schoolIds);
+                } catch ( ObjectNotFoundException e ) {
+                    registrationStatusesFailure = e;
+                }
+            }
+            if ( registrationStatusesFailure != null ) {
+                throw registrationStatusesFailure;
+            }
+            final List<RegistrationStatusByTerm> found = registrationStatuses.get(person.getSchoolId());
+            return found == null ? Lists.<RegistrationStatusByTerm>newArrayListWithCapacity(0) : found;
+        }
+
+        private Pair<Long, Long> openVsClosedTaskCountsFor(Person person) {
+            if ( taskCounts == null ) {
+                taskCounts = taskService.getOpenVsClosedTaskCountsForPeople(personIds);
+            }
+            final Pair<Long, Long> found = taskCounts.get(person.getId());
+            return found == null ? new Pair<Long, Long>(0L, 0L) : found;
+        }
+
+        private PlanStatus planStatusFor(Person person) {
+            if ( planStatuses == null ) {
+                planStatuses = mapStatusService.getStatusesForPeople(people);
+            }
+            return planStatuses.get(person.getId());
+        }
+
+        private List<ExternalStudentTranscriptCourse> scheduleCoursesFor(Person person, String termCode) {
+            if ( scheduleCourses == null || !(termCode.equals(scheduleTermCode)) ) {
+                scheduleTermCode = termCode;
+                scheduleCourses = groupBySchoolId(
+                        externalStudentTranscriptCourseService.getTranscriptsBySchoolIdsAndTermCode(schoolIds, termCode),
+                        new Function<ExternalStudentTranscriptCourse, String>() {
+                            @Override
+                            public String apply(@Nullable ExternalStudentTranscriptCourse input) {
+                                return input.getSchoolId();
+                            }
+                        });
+            }
+            final List<ExternalStudentTranscriptCourse> found = scheduleCourses.get(person.getSchoolId());
+            return found == null ? Lists.<ExternalStudentTranscriptCourse>newArrayListWithCapacity(0) : found;
+        }
+
+        private <T> Map<String, List<T>> groupBySchoolId(List<T> records, Function<T, String> schoolIdOf) {
+            final Map<String, List<T>> grouped = Maps.newHashMap();
+            for ( T record : records ) {
+                final String schoolId = schoolIdOf.apply(record);
+                List<T> forSchoolId = grouped.get(schoolId);
+                if ( forSchoolId == null ) {
+                    forSchoolId = Lists.newArrayList();
+                    grouped.put(schoolId, forSchoolId);
+                }
+                forSchoolId.add(record);
+            }
+            return grouped;
+        }
+    }
+
     private String findEvaluationDisplayName(@Nonnull SuccessIndicatorEvaluation evaluation) {
         final Map<String, Object> cache = evaluationResourceCache.get();
         Map<String,Blurb> blurbMap = null;
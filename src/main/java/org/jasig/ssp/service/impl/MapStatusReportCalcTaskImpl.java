@@ -22,14 +22,23 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimaps;
 import org.apache.commons.lang.StringUtils;
 import org.jasig.ssp.dao.external.ExternalPersonDao;
 import org.jasig.ssp.model.MapStatusReport;
@@ -54,6 +63,8 @@ import org.jasig.ssp.transferobject.reports.MapStatusReportPerson;
 import org.jasig.ssp.transferobject.reports.MapStatusReportSummary;
 import org.jasig.ssp.transferobject.reports.MapStatusReportSummaryDetail;
 import org.jasig.ssp.util.CallableExecutor;
+import org.jasig.ssp.util.Fingerprints;
+import org.jasig.ssp.util.WorkerPool;
 import org.jasig.ssp.util.transaction.WithTransaction;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import org.slf4j.Logger;
@@ -67,6 +78,18 @@ public class MapStatusReportCalcTaskImpl implements MapStatusReportCalcTask {
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(MapStatusReportCalcTaskImpl.class);
 
+	private static final String WORKER_THREADS_CONFIG_NAME = "map_plan_status_worker_threads";
+	private static final int DEFAULT_WORKER_THREADS = 4;
+	private static final String FULL_RECALCULATION_DAYS_CONFIG_NAME = "map_plan_status_full_recalculation_days";
+	private static final int DEFAULT_FULL_RECALCULATION_DAYS = 7;
+	private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+	/**
+	 * Bump whenever {@link MapStatusReportService#evaluatePlan} changes in a
+	 * way that should invalidate every stored report fingerprint.
+	 */
+	private static final String FINGERPRINT_VERSION = "1";
+
 	@Autowired 
 	private transient PlanService planService;
 	
@@ -97,16 +120,33 @@ public class MapStatusReportCalcTaskImpl implements MapStatusReportCalcTask {
 	@Autowired
 	protected transient MessageTemplateService  messageTemplateService;
 
+	/**
+	 * Calculation left unfinished by the previous execution. Reports from the
+	 * last complete run stay in place for plans it hasn't reached yet.
+	 *
+	 * <p>Only kept in memory. After a restart there is no run to resume, but
+	 * {@link #lastFullRecalculation} is null then too, so the first execution
+	 * starts a full run which re-evaluates every plan, those the lost run
+	 * hadn't reached included. Only the work already done is repeated.</p>
+	 */
+	private transient CalculationRun pendingRun;
+
+	/**
+	 * When the last run that re-evaluated every plan regardless of
+	 * fingerprints finished. Null until one has completed in this JVM, so
+	 * the first run after startup is always a full run.
+	 */
+	private transient Date lastFullRecalculation;
 
 
 	public Class<Void> getBatchExecReturnType() {
 		return Void.TYPE;
 	}
 
-		// intentionally not transactional... this is the main loop, each iteration
-	// of which should be its own transaction.
+	// intentionally not transactional... this is the main loop, each plan
+	// is evaluated and saved in its own transaction.
 	@Override
-	public void exec(CallableExecutor<Void> batchExecutor) {
+	public void exec(final CallableExecutor<Void> batchExecutor) {
 
 		if ( Thread.currentThread().isInterrupted() ) {
 			LOGGER.info("Abandoning map status report calculation because of thread interruption");
@@ -119,80 +159,314 @@ public class MapStatusReportCalcTaskImpl implements MapStatusReportCalcTask {
 		}
 
         LOGGER.info("BEGIN : MAPSTATUS REPORT ");
-		
-		MapStatusReportSummary summary = new MapStatusReportSummary();
-		summary.setStartTime(Calendar.getInstance());
-		
-		//Hard delete all previous reports
-		mapStatusReportService.deleteAllOldReports();
 
-		final boolean useSubstitutableCourses = Boolean.parseBoolean(configService.getByNameEmpty("map_plan_status_use_substitutable_courses").trim());
-		final Collection<ExternalSubstitutableCourse> allSubstitutableCourses =
-				useSubstitutableCourses ? mapStatusReportService.getAllSubstitutableCourses() : Lists.<ExternalSubstitutableCourse>newArrayList();
+		final CalculationRun run;
+		if ( pendingRun == null ) {
+			//Lightweight query to avoid the potential 'kitchen sink' we would pull out if we fetched the Plan object
+			final boolean fullRecalculation = isFullRecalculationDue();
+			final Map<UUID,String> existingFingerprints = fullRecalculation
+					? Collections.<UUID,String>emptyMap() : mapStatusReportService.getInputFingerprintsByPlanId();
+			run = new CalculationRun(planService.getAllActivePlanIds(), fullRecalculation,
+					planService.getActivePlanRevisions(), existingFingerprints);
+			LOGGER.info("Starting {} report calculations for {} plans",
+					fullRecalculation ? "full" : "incremental", run.plansInScope);
+		} else {
+			run = pendingRun;
+			pendingRun = null;
+			LOGGER.info("Resuming report calculations with {} of {} plans remaining",
+					run.remaining.size(), run.plansInScope);
+		}
 
-        final Collection<ExternalStudentTranscriptNonCourseEntity> nonCourseEntities =
-                                            externalStudentTranscriptNonCourseEntityService.getAllNonCourseTranscripts();
-		
-		//Load up our configs
-		final Set<String> gradesSet = mapStatusReportService.getPassingGrades();
-		final Set<String> additionalCriteriaSet = mapStatusReportService.getAdditionalCriteria();
-		final boolean termBound = Boolean.parseBoolean(configService.getByNameEmpty("map_plan_status_term_bound_strict").trim());
+		final CalculationInputs inputs = loadCalculationInputs();
+
+		final AtomicBoolean abandon = new AtomicBoolean(false);
+		final AtomicLong plansEvaluated = new AtomicLong();
+		if ( batchExecutor == null ) {
+			evaluatePlans(run, inputs, null, abandon, plansEvaluated);
+		} else {
+			final int workerCount = WorkerPool.size(getWorkerCount(), run.remaining.size());
+			LOGGER.info("Evaluating {} plans with {} workers", run.remaining.size(), workerCount);
+			final boolean finished = WorkerPool.run("map-status-report", workerCount, new Runnable() {
+				@Override
+				public void run() {
+					evaluatePlans(run, inputs, batchExecutor, abandon, plansEvaluated);
+				}
+			}, abandon, new Runnable() {
+				@Override
+				public void run() {
+					LOGGER.info("Map status report calculation still running. Plans evaluated so far: {}",
+							plansEvaluated.get());
+				}
+			});
+			if ( !(finished) ) {
+				LOGGER.info("Abandoning map status report calculation because of thread interruption");
+			}
+		}
+
+		if ( !(run.remaining.isEmpty()) ) {
+			// Reports for plans not yet evaluated are left as they were. The
+			// next execution resumes with the remaining plans.
+			pendingRun = run;
+			LOGGER.info("MAPSTATUS REPORT abandoned after evaluating {} plans, {} plans left for next execution",
+					plansEvaluated.get(), run.remaining.size());
+			return;
+		}
+
+		// Every active plan now has a current report, either rewritten by this
+		// run or kept because its inputs haven't changed, or it keeps its
+		// previous report because saving the new one failed. Only reports of
+		// plans that are no longer active are deleted here.
+		retireStaleReports(batchExecutor);
+		if ( run.fullRecalculation ) {
+			lastFullRecalculation = new Date();
+		}
+
+		if ( !(run.failed.isEmpty()) ) {
+			LOGGER.warn("MAPSTATUS REPORT could not save reports for {} plans. Their previous reports were kept.",
+					run.failed.size());
+		}
+
+		final MapStatusReportSummary summary = new MapStatusReportSummary();
+		summary.setStartTime(run.startTime);
+		summary.setEndTime(Calendar.getInstance());
+		summary.setStudentsInScope(run.plansInScope);
+		summary.setPlansRecalculated((int) run.recalculated.get());
+		summary.setPlansUnchanged((int) run.unchanged.get());
+		LOGGER.info("MAPSTATUS REPORT recalculated {} plans, skipped {} unchanged plans",
+				run.recalculated.get(), run.unchanged.get());
+
+
+		sendReportEmail(summary);
+		sendOffPlanEmailsToCoaches();
+
+
+		LOGGER.info("MAPSTATUS REPORT RUNTIME: "+(summary.getEndTime().getTimeInMillis() - summary.getStartTime().getTimeInMillis())+" ms.");
+		LOGGER.info("END : MAPSTATUS REPORT ");
+
+	}
+
+	/**
+	 * Worker loop. Takes plans off the shared queue until it is empty or
+	 * some worker gives up. A plan that could not be evaluated goes back on
+	 * the queue so the next execution picks it up.
+	 */
+	private void evaluatePlans(final CalculationRun run, final CalculationInputs inputs,
+			final CallableExecutor<Void> batchExecutor, final AtomicBoolean abandon,
+			final AtomicLong plansEvaluated) {
+		MapStatusReportPerson plan;
+		while ( !(abandon.get()) && (plan = run.remaining.poll()) != null ) {
 
-		//Lets figure out our cutoff term
-		final Term cutoffTerm = mapStatusReportService.deriveCutoffTerm();
-		
-		//Lightweight query to avoid the potential 'kitchen sink' we would pull out if we fetched the Plan object
-		List<MapStatusReportPerson> allActivePlans = planService.getAllActivePlanIds();
-		LOGGER.info("Starting report calculations for {} plans",allActivePlans.size());
-		
-		
-		final List<Term> allTerms = termService.getAll();
-		//Sort terms by startDate, we do this here so we have no dependency on the default sort order in termService.getAll()
-		sortTerms(allTerms);
-		
-		//Iterate through the active plans.  A transaction is committed after each plan
-		for (final MapStatusReportPerson planIdPersonIdPair : allActivePlans) {
-			
 			if ( Thread.currentThread().isInterrupted() ) {
 				LOGGER.info("Abandoning map status report calculation because of thread interruption");
+				run.remaining.add(plan);
+				abandon.set(true);
 				return;
 			}
-			
-			LOGGER.info("MAP STATUS REPORT CALCULATION STARTING FOR: " + planIdPersonIdPair.getSchoolId());
 
-			if (batchExecutor == null) {
-				evaluatePlan(gradesSet, additionalCriteriaSet, cutoffTerm,
-						allTerms, planIdPersonIdPair, allSubstitutableCourses,nonCourseEntities,termBound,useSubstitutableCourses);
-			} else {
-				try {
+			LOGGER.debug("MAP STATUS REPORT CALCULATION STARTING FOR: {}", plan.getSchoolId());
+
+			final MapStatusReportPerson planIdPersonIdPair = plan;
+			try {
+				if (batchExecutor == null) {
+					evaluatePlan(run, inputs, planIdPersonIdPair);
+				} else {
 					batchExecutor.exec(new Callable<Void>() {
 						@Override
 						public Void call() throws Exception {
-							evaluatePlan(gradesSet, additionalCriteriaSet, cutoffTerm,
-									allTerms, planIdPersonIdPair, allSubstitutableCourses,nonCourseEntities,termBound,useSubstitutableCourses);
+							evaluatePlan(run, inputs, planIdPersonIdPair);
 							return null;
 						}
 					});
-				} catch ( RuntimeException e ) {
-					throw e;
-				} catch ( Exception e ) {
-					throw new RuntimeException(e);
 				}
+			} catch ( InterruptedException e ) {
+				LOGGER.info("Abandoning map status report calculation because of thread interruption");
+				run.remaining.add(plan);
+				abandon.set(true);
+				Thread.currentThread().interrupt(); // reassert
+				return;
+			} catch ( Exception e ) {
+				LOGGER.error("Abandoning map status report calculation because of a failure evaluating the"
+						+ " plan for {}. Remaining plans will be evaluated at the next execution.",
+						plan.getSchoolId(), e);
+				run.remaining.add(plan);
+				abandon.set(true);
+				return;
 			}
-			
-			LOGGER.info("FINISHED MAP STATUS REPORT CALCULATION FOR: " + planIdPersonIdPair.getSchoolId());
+
+			plansEvaluated.incrementAndGet();
+			LOGGER.debug("FINISHED MAP STATUS REPORT CALCULATION FOR: {}", plan.getSchoolId());
 		}
-		summary.setEndTime(Calendar.getInstance());
-		summary.setStudentsInScope(allActivePlans.size());
+	}
 
+	private CalculationInputs loadCalculationInputs() {
+		final boolean useSubstitutableCourses = Boolean.parseBoolean(configService.getByNameEmpty("map_plan_status_use_substitutable_courses").trim());
+		final Collection<ExternalSubstitutableCourse> allSubstitutableCourses =
+				useSubstitutableCourses ? mapStatusReportService.getAllSubstitutableCourses() : Lists.<ExternalSubstitutableCourse>newArrayList();
 
-		sendReportEmail(summary);
-		sendOffPlanEmailsToCoaches();
+        final ImmutableListMultimap<String,ExternalStudentTranscriptNonCourseEntity> nonCourseEntitiesBySchoolId =
+				Multimaps.index(externalStudentTranscriptNonCourseEntityService.getAllNonCourseTranscripts(),
+						new Function<ExternalStudentTranscriptNonCourseEntity, String>() {
+							@Override
+							public String apply(ExternalStudentTranscriptNonCourseEntity input) {
+								return input.getSchoolId();
+							}
+						});
+
+		final boolean termBound = Boolean.parseBoolean(configService.getByNameEmpty("map_plan_status_term_bound_strict").trim());
 
+		final List<Term> allTerms = termService.getAll();
+		//Sort terms by startDate, we do this here so we have no dependency on the default sort order in termService.getAll()
+		sortTerms(allTerms);
 
-		LOGGER.info("MAPSTATUS REPORT RUNTIME: "+(summary.getEndTime().getTimeInMillis() - summary.getStartTime().getTimeInMillis())+" ms.");
-		LOGGER.info("END : MAPSTATUS REPORT ");
+		final Set<String> gradesSet = mapStatusReportService.getPassingGrades();
+		final Set<String> additionalCriteriaSet = mapStatusReportService.getAdditionalCriteria();
+		//Lets figure out our cutoff term
+		final Term cutoffTerm = mapStatusReportService.deriveCutoffTerm();
+
+		final List<String> globalInputs = Lists.newArrayList(FINGERPRINT_VERSION,
+				String.valueOf(termBound), String.valueOf(useSubstitutableCourses),
+				cutoffTerm == null ? "" : cutoffTerm.getCode());
+		globalInputs.addAll(sorted(gradesSet));
+		globalInputs.addAll(sorted(additionalCriteriaSet));
+		for ( Term term : allTerms ) {
+			globalInputs.add(Fingerprints.fields(term.getCode(), term.getStartDate() == null ? null : term.getStartDate().getTime()));
+		}
+		final List<String> substitutions = Lists.newArrayList();
+		for ( ExternalSubstitutableCourse substitution : allSubstitutableCourses ) {
+			substitutions.add(Fingerprints.fields(substitution.getId(), substitution.getTermCode(),
+					substitution.getProgramCode(), substitution.getCatalogYearCode(),
+					substitution.getSourceFormattedCourse(), substitution.getSourceCourseCode(),
+					substitution.getSourceCreditHours(), substitution.getTargetFormattedCourse(),
+					substitution.getTargetCourseCode(), substitution.getTargetCreditHours()));
+		}
+		globalInputs.addAll(sorted(substitutions));
+
+		return new CalculationInputs(gradesSet, additionalCriteriaSet, cutoffTerm, allTerms,
+				allSubstitutableCourses, nonCourseEntitiesBySchoolId, termBound, useSubstitutableCourses,
+				Fingerprints.of(globalInputs));
+	}
 
+	/**
+	 * Full runs re-evaluate every plan even if its fingerprint is unchanged,
+	 * as a safety net for inputs the fingerprint doesn't cover.
+	 */
+	private boolean isFullRecalculationDue() {
+		if ( lastFullRecalculation == null ) {
+			return true;
+		}
+		final String daysStr = configService.getByNameNullOrDefaultValue(FULL_RECALCULATION_DAYS_CONFIG_NAME);
+		int days = DEFAULT_FULL_RECALCULATION_DAYS;
+		try {
+			days = Integer.parseInt(daysStr);
+		} catch ( NumberFormatException e ) {
+			LOGGER.info("Invalid [{}] config [{}], must be an integer. Falling back to [{}].",
+					new Object[] { FULL_RECALCULATION_DAYS_CONFIG_NAME, daysStr, DEFAULT_FULL_RECALCULATION_DAYS });
+		}
+		return days <= 0
+				|| System.currentTimeMillis() - lastFullRecalculation.getTime() >= days * MILLIS_PER_DAY;
+	}
+
+	private void retireStaleReports(final CallableExecutor<Void> batchExecutor) {
+		final Callable<Void> work = new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				return withTransaction.withNewTransaction(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						final int deleted = mapStatusReportService.deleteReportsForInactivePlans();
+						LOGGER.info("Deleted {} map status reports for plans that are no longer active", deleted);
+						return null;
+					}
+				});
+			}
+		};
+		try {
+			if ( batchExecutor == null ) {
+				work.call();
+			} else {
+				batchExecutor.exec(work);
+			}
+		} catch ( Exception e ) {
+			LOGGER.error("Failed to delete map status reports for plans that are no longer active", e);
+		}
+	}
+
+	private int getWorkerCount() {
+		final String workersStr = configService.getByNameNullOrDefaultValue(WORKER_THREADS_CONFIG_NAME);
+		try {
+			final int workers = Integer.parseInt(workersStr);
+			if ( workers > 0 ) {
+				return workers;
+			}
+		} catch ( NumberFormatException e ) {
+			// fall through to the default below
+		}
+		LOGGER.info("Invalid [{}] config [{}], must be a positive integer. Falling back to [{}].",
+				new Object[] { WORKER_THREADS_CONFIG_NAME, workersStr, DEFAULT_WORKER_THREADS });
+		return DEFAULT_WORKER_THREADS;
+	}
+
+	/**
+	 * Everything a plan evaluation reads besides the plan and transcript
+	 * themselves. Loaded once per execution and shared, read-only, by all
+	 * workers.
+	 */
+	private static final class CalculationInputs {
+		private final Set<String> gradesSet;
+		private final Set<String> additionalCriteriaSet;
+		private final Term cutoffTerm;
+		private final List<Term> allTerms;
+		private final Collection<ExternalSubstitutableCourse> allSubstitutableCourses;
+		private final ImmutableListMultimap<String,ExternalStudentTranscriptNonCourseEntity> nonCourseEntitiesBySchoolId;
+		private final boolean termBound;
+		private final boolean useSubstitutableCourses;
+		// Digest of everything above, folded into each plan's fingerprint
+		private final String globalFingerprint;
+
+		private CalculationInputs(Set<String> gradesSet, Set<String> additionalCriteriaSet, Term cutoffTerm,
+				List<Term> allTerms, Collection<ExternalSubstitutableCourse> allSubstitutableCourses,
+				ImmutableListMultimap<String,ExternalStudentTranscriptNonCourseEntity> nonCourseEntitiesBySchoolId,
+				boolean termBound, boolean useSubstitutableCourses, String globalFingerprint) {
+			this.gradesSet = Collections.unmodifiableSet(gradesSet);
+			this.additionalCriteriaSet = Collections.unmodifiableSet(additionalCriteriaSet);
+			this.cutoffTerm = cutoffTerm;
+			this.allTerms = Collections.unmodifiableList(allTerms);
+			this.allSubstitutableCourses = Collections.unmodifiableCollection(allSubstitutableCourses);
+			this.nonCourseEntitiesBySchoolId = nonCourseEntitiesBySchoolId;
+			this.termBound = termBound;
+			this.useSubstitutableCourses = useSubstitutableCourses;
+			this.globalFingerprint = globalFingerprint;
+		}
+	}
+
+	/**
+	 * One pass over all active plans, possibly spanning several executions if
+	 * interrupted.
+	 */
+	private static final class CalculationRun {
+		private final Calendar startTime;
+		private final boolean fullRecalculation;
+		// Plan id -> revision marker of the plan and its courses
+		private final Map<UUID,String> planRevisions;
+		// Plan id -> fingerprint stored with its current report. Empty for
+		// full runs.
+		private final Map<UUID,String> existingFingerprints;
+		private final int plansInScope;
+		private final Queue<MapStatusReportPerson> remaining;
+		private final AtomicLong recalculated = new AtomicLong();
+		private final AtomicLong unchanged = new AtomicLong();
+		// Plans whose new report could not be saved
+		private final Set<UUID> failed = Collections.newSetFromMap(new ConcurrentHashMap<UUID,Boolean>());
+
+		private CalculationRun(List<MapStatusReportPerson> activePlans, boolean fullRecalculation,
+				Map<UUID,String> planRevisions, Map<UUID,String> existingFingerprints) {
+			this.startTime = Calendar.getInstance();
+			this.fullRecalculation = fullRecalculation;
+			this.planRevisions = Collections.unmodifiableMap(planRevisions);
+			this.existingFingerprints = Collections.unmodifiableMap(existingFingerprints);
+			this.plansInScope = activePlans.size();
+			this.remaining = new ConcurrentLinkedQueue<MapStatusReportPerson>(activePlans);
+		}
 	}
 
 	private void sendOffPlanEmailsToCoaches() {
@@ -397,26 +671,72 @@ public class MapStatusReportCalcTaskImpl implements MapStatusReportCalcTask {
  		}
 	}
 
-	private void evaluatePlan(Set<String> gradesSet, Set<String> criteriaSet,
-			Term cutoffTerm,  List<Term> allTerms,
-			MapStatusReportPerson planIdPersonIdPair, Collection<ExternalSubstitutableCourse> allSubstitutableCourses, Collection<ExternalStudentTranscriptNonCourseEntity> allNonCourseEntities, boolean termBound, boolean useSubstitutableCourses)
+	private void evaluatePlan(CalculationRun run, CalculationInputs inputs, MapStatusReportPerson planIdPersonIdPair)
 	{ 
 		List<ExternalStudentTranscriptCourse> transcript = externalStudentTranscriptCourseService.getTranscriptsBySchoolId(planIdPersonIdPair.getSchoolId());
-		final MapStatusReport report = mapStatusReportService.evaluatePlan(gradesSet, criteriaSet, cutoffTerm, allTerms, planIdPersonIdPair,allSubstitutableCourses,allNonCourseEntities,transcript,termBound,useSubstitutableCourses);
+		final List<ExternalStudentTranscriptNonCourseEntity> nonCourseEntities =
+				inputs.nonCourseEntitiesBySchoolId.get(planIdPersonIdPair.getSchoolId());
+
+		final String inputFingerprint = planInputFingerprint(run, inputs, planIdPersonIdPair, transcript, nonCourseEntities);
+		if ( !(run.fullRecalculation)
+				&& inputFingerprint.equals(run.existingFingerprints.get(planIdPersonIdPair.getPlanId())) ) {
+			LOGGER.debug("MAP STATUS REPORT INPUTS UNCHANGED FOR: {}", planIdPersonIdPair.getSchoolId());
+			run.unchanged.incrementAndGet();
+			return;
+		}
+
+		final MapStatusReport report = mapStatusReportService.evaluatePlan(inputs.gradesSet, inputs.additionalCriteriaSet,
+				inputs.cutoffTerm, inputs.allTerms, planIdPersonIdPair, inputs.allSubstitutableCourses,
+				nonCourseEntities, transcript, inputs.termBound, inputs.useSubstitutableCourses);
+		report.setInputFingerprint(inputFingerprint);
 		try {
 			//Any new writes to this task should be included here
 			withTransaction.withNewTransaction(new Callable<MapStatusReport>() {
 
 				@Override
 				public MapStatusReport call() throws Exception {
-					return mapStatusReportService.save(report);
+					return mapStatusReportService.replaceReportsForStudent(report);
 				}
 			});
+			run.recalculated.incrementAndGet();
 		} catch (Exception e) {
-			LOGGER.error(e.getMessage());
+			// the replacement rolled back, so the previous report is still there
+			LOGGER.error("Failed to save map status report for {}. Keeping the previous report.",
+					planIdPersonIdPair.getSchoolId(), e);
+			run.failed.add(planIdPersonIdPair.getPlanId());
 		}
 	}
 
+	private String planInputFingerprint(CalculationRun run, CalculationInputs inputs,
+			MapStatusReportPerson planIdPersonIdPair, List<ExternalStudentTranscriptCourse> transcript,
+			List<ExternalStudentTranscriptNonCourseEntity> nonCourseEntities) {
+		final List<String> transcriptRows = Lists.newArrayList();
+		for ( ExternalStudentTranscriptCourse course : transcript ) {
+			transcriptRows.add(Fingerprints.fields(course.getFormattedCourse(), course.getCourseCode(), course.getTermCode(),
+					course.getGrade(), course.getCreditEarned(), course.getCreditType(), course.getStatusCode(),
+					course.getAudited(), course.getSectionNumber(), course.getTitle()));
+		}
+		final List<String> nonCourseRows = Lists.newArrayList();
+		for ( ExternalStudentTranscriptNonCourseEntity nonCourse : nonCourseEntities ) {
+			nonCourseRows.add(Fingerprints.fields(nonCourse.getTargetFormattedCourse(), nonCourse.getTermCode(),
+					nonCourse.getNonCourseCode(), nonCourse.getTitle(), nonCourse.getDescription(),
+					nonCourse.getGrade()));
+		}
+
+		final List<String> planInputs = Lists.newArrayList(inputs.globalFingerprint,
+				String.valueOf(run.planRevisions.get(planIdPersonIdPair.getPlanId())));
+		planInputs.addAll(sorted(transcriptRows));
+		planInputs.add("");
+		planInputs.addAll(sorted(nonCourseRows));
+		return Fingerprints.of(planInputs);
+	}
+
+	private static List<String> sorted(Collection<String> values) {
+		final List<String> sorted = Lists.newArrayList(values);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
 	private void sortTerms(List<Term> allTerms) {
 		Collections.sort(allTerms, new Comparator<Term>() {
 
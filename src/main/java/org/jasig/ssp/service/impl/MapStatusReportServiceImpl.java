@@ -90,6 +90,13 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MapStatusReportServiceImpl.class);
 
+	/**
+	 * Lookup table for the substitutable courses last handed to
+	 * {@link #evaluatePlan}. The nightly calculation passes the same
+	 * collection for every plan, so the table is built once per run.
+	 */
+	private volatile SubstitutionIndex substitutionIndex;
+
 
 	@Override
 	public MapStatusReport save(MapStatusReport obj)
@@ -118,10 +125,25 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 			List<ExternalStudentTranscriptCourse> transcript,
 			boolean termBound, 
 			boolean useSubstitutableCourses) {
-		LOGGER.info("Loading plan with id {}",planAndPersonInfo.getPlanId());
+		return evaluatePlan(gradesSet, criteriaSet, cutoffTerm, allTerms, planAndPersonInfo,
+				substitutionIndexFor(allSubstitutableCourses), nonCourseEntities, transcript, termBound,
+				useSubstitutableCourses);
+	}
+
+	private MapStatusReport evaluatePlan(Set<String> gradesSet,
+			Set<String> criteriaSet,
+			Term cutoffTerm,
+			List<Term> allTerms,
+			MapStatusReportPerson planAndPersonInfo,
+			SubstitutionIndex substitutions,
+			Collection<ExternalStudentTranscriptNonCourseEntity> nonCourseEntities,
+			List<ExternalStudentTranscriptCourse> transcript,
+			boolean termBound,
+			boolean useSubstitutableCourses) {
+		LOGGER.debug("Loading plan with id {}",planAndPersonInfo.getPlanId());
 		
 		List<MapPlanStatusReportCourse> planCourses = planService.getAllPlanCoursesForStatusReport(planAndPersonInfo.getPlanId()); 
-		LOGGER.info("Loading plan "+planAndPersonInfo.getPlanId()+" courses with with count {}",planCourses.size());
+		LOGGER.debug("Loading plan {} courses with with count {}",planAndPersonInfo.getPlanId(),planCourses.size());
 
         final MapStatusReport report = initReport(planAndPersonInfo);
 		
@@ -140,8 +162,8 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
         //Organize Plan Courses by term.. Preprocessing this data by term helps with term based matching
 		Map<String,List<MapPlanStatusReportCourse>> planCoursesByTerm = organizePlanCoursesByTerm(planCourses);
 		
-		//Organize Transcript Courses by Term  Preprocessing this data by term helps with term based matching
-		Map<String,List<ExternalStudentTranscriptCourse>> transcriptCoursesByTerm = organizeTranscriptCourseByTerm(transcript);
+		//Index Transcript Courses and overrides by course so each match is a lookup instead of a transcript scan
+		TranscriptIndex transcriptIndex = new TranscriptIndex(transcript, nonCourseEntities);
 		
 		Map<String,List<MapStatusReportCourseDetails>> courseReportsByTerm = new HashMap<String,List<MapStatusReportCourseDetails>>();
 
@@ -152,9 +174,9 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
                 if (planCoursesForTerm != null && !planCoursesForTerm.isEmpty()) {
                     courseReportsByTerm.put(term.getCode(),new ArrayList<MapStatusReportCourseDetails>());
                     evaluateTerm(gradesSet, criteriaSet, report,
-                            reportCourseDetails, transcriptCoursesByTerm,
-                            term, planCoursesForTerm,courseReportsByTerm,transcript,allSubstitutableCourses,
-                            reportSubstitutionDetails,nonCourseEntities,reportOverrideDetails,planAndPersonInfo);
+                            reportCourseDetails, transcriptIndex,
+                            term, planCoursesForTerm,courseReportsByTerm,substitutions,
+                            reportSubstitutionDetails,reportOverrideDetails,planAndPersonInfo);
                 }
             }
 		}
@@ -173,6 +195,15 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
         return report;
 	}
 
+	private SubstitutionIndex substitutionIndexFor(Collection<ExternalSubstitutableCourse> allSubstitutableCourses) {
+		SubstitutionIndex index = substitutionIndex;
+		if (index == null || index.source != allSubstitutableCourses) {
+			index = new SubstitutionIndex(allSubstitutableCourses);
+			substitutionIndex = index;
+		}
+		return index;
+	}
+
 	private PlanStatus calculatePlanStatus(List<MapStatusReportCourseDetails> reportCourseDetails,
                                            List<MapStatusReportSubstitutionDetails> reportSubstitutionDetails,
                                            List<MapStatusReportOverrideDetails> reportOverrideDetails,
@@ -385,35 +416,35 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 
 	private void evaluateTerm(Set<String> gradesSet, Set<String> criteriaSet, MapStatusReport report,
                               List<MapStatusReportCourseDetails> reportCourseDetails,
-                              Map<String, List<ExternalStudentTranscriptCourse>> transcriptCoursesByTerm, Term term,
+                              TranscriptIndex transcriptIndex, Term term,
                               List<MapPlanStatusReportCourse> planCoursesForTerm,
                               Map<String, List<MapStatusReportCourseDetails>> courseReportsByTerm,
-                              List<ExternalStudentTranscriptCourse> transcript,
-                              Collection<ExternalSubstitutableCourse> allSubstitutableCourses,
+                              SubstitutionIndex substitutions,
                               List<MapStatusReportSubstitutionDetails> reportSubstitutionDetails,
-                              Collection<ExternalStudentTranscriptNonCourseEntity> allNonCourseEntities,
                               List<MapStatusReportOverrideDetails> reportOverrideDetails,
                               MapStatusReportPerson planAndPersonInfo) {
-		
-		List<ExternalStudentTranscriptCourse> transcriptCoursesForTerm = transcriptCoursesByTerm.get(term.getCode());
 
 		//Iterate through the courses for the term and try to find a match
 		for (MapPlanStatusReportCourse mapPlanStatusReportCourse : planCoursesForTerm) {
+			final List<ExternalStudentTranscriptCourse> transcriptCoursesForCourse =
+					transcriptIndex.getCourses(mapPlanStatusReportCourse.getFormattedCourse());
+
 			//Try to find term bound match
-			ExternalStudentTranscriptCourse matchedTranscriptCourse = findTranscriptCourseMatch(mapPlanStatusReportCourse,transcriptCoursesForTerm,criteriaSet);
+			ExternalStudentTranscriptCourse matchedTranscriptCourse = findTranscriptCourseMatch(mapPlanStatusReportCourse,
+					transcriptIndex.getCourses(mapPlanStatusReportCourse.getFormattedCourse(), term.getCode()), criteriaSet);
 
             ExternalStudentTranscriptNonCourseEntity matchedNonCourseOverride = null;
             if (matchedTranscriptCourse == null) {
 
                 //First if no term match found check for override
-                matchedNonCourseOverride = findCourseMatchOverrideCourse(mapPlanStatusReportCourse.getFormattedCourse(), mapPlanStatusReportCourse.getTermCode(), allNonCourseEntities);
+                matchedNonCourseOverride = transcriptIndex.getOverride(mapPlanStatusReportCourse.getFormattedCourse(), mapPlanStatusReportCourse.getTermCode());
                 if (matchedNonCourseOverride != null) {
                     //TODO? matchedTranscriptCourse == matchedNonCourseOverride?
 					reportOverrideDetails.add(createOverrideEntry(matchedNonCourseOverride, mapPlanStatusReportCourse.getTermCode(), report));
                 } else {
 
 					//Second try to find term unbounded match
-					matchedTranscriptCourse = findTranscriptCourseMatch(mapPlanStatusReportCourse, transcript, criteriaSet);
+					matchedTranscriptCourse = findTranscriptCourseMatch(mapPlanStatusReportCourse, transcriptCoursesForCourse, criteriaSet);
 					if (matchedTranscriptCourse != null) {
 						//If we find a transcript match, it must have a passing grade before we log it
 						if (gradesSet.contains(matchedTranscriptCourse.getGrade().trim())) {
@@ -426,26 +457,26 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 
 			if (matchedTranscriptCourse == null && matchedNonCourseOverride == null) {
 				//Third try to find a substitutable course
-				matchedTranscriptCourse = findTranscriptCourseMatchSubstitutableCourse(mapPlanStatusReportCourse, transcript, criteriaSet, allSubstitutableCourses, planAndPersonInfo);
+				matchedTranscriptCourse = findTranscriptCourseMatchSubstitutableCourse(mapPlanStatusReportCourse, transcriptIndex, criteriaSet, substitutions, planAndPersonInfo);
 				if (matchedTranscriptCourse != null) {
 					//If we find a transcript match, it must have a passing grade before we log it
 					if (gradesSet.contains(matchedTranscriptCourse.getGrade().trim())) {
 						reportSubstitutionDetails.add(createSubstitutionEntry(matchedTranscriptCourse,mapPlanStatusReportCourse,SubstitutionCode.SUBSTITUTABLE_COURSE,report));
 					} else {
 					    //check if there is an override for the substitutable course
-                        matchedNonCourseOverride = findCourseMatchOverrideCourse(matchedTranscriptCourse.getFormattedCourse(), matchedTranscriptCourse.getTermCode(), allNonCourseEntities);
+                        matchedNonCourseOverride = transcriptIndex.getOverride(matchedTranscriptCourse.getFormattedCourse(), matchedTranscriptCourse.getTermCode());
                         if (matchedNonCourseOverride != null) {
                             reportOverrideDetails.add(createOverrideEntry(matchedNonCourseOverride, matchedTranscriptCourse.getTermCode(), report));
                         }
                     }
 				} else if (mapPlanStatusReportCourse.getOriginalFormattedCourse()!=null) {
-					matchedTranscriptCourse = findTranscriptCourseMatchElectiveCourse(planAndPersonInfo, mapPlanStatusReportCourse, transcript, criteriaSet);
+					matchedTranscriptCourse = findTranscriptCourseMatchElectiveCourse(planAndPersonInfo, mapPlanStatusReportCourse, transcriptIndex, criteriaSet);
 					if (matchedTranscriptCourse != null) {
 						if (gradesSet.contains(matchedTranscriptCourse.getGrade().trim())) {
 							reportSubstitutionDetails.add(createSubstitutionEntry(matchedTranscriptCourse, mapPlanStatusReportCourse, SubstitutionCode.ELECTIVE_COURSE, report));
                         } else {
                             //check if there is an override for the elective course
-                            matchedNonCourseOverride = findCourseMatchOverrideCourse(matchedTranscriptCourse.getFormattedCourse(), matchedTranscriptCourse.getTermCode(), allNonCourseEntities);
+                            matchedNonCourseOverride = transcriptIndex.getOverride(matchedTranscriptCourse.getFormattedCourse(), matchedTranscriptCourse.getTermCode());
                             if (matchedNonCourseOverride != null) {
                                 reportOverrideDetails.add(createOverrideEntry(matchedNonCourseOverride, matchedTranscriptCourse.getTermCode(), report));
                             }
@@ -454,7 +485,7 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 				}
 			}
 
-			MapStatusReportCourseDetails courseAnomaly = evaluateCourse(gradesSet, report, reportCourseDetails, term, mapPlanStatusReportCourse, matchedTranscriptCourse, matchedNonCourseOverride, criteriaSet, transcript);
+			MapStatusReportCourseDetails courseAnomaly = evaluateCourse(gradesSet, report, reportCourseDetails, term, mapPlanStatusReportCourse, matchedTranscriptCourse, matchedNonCourseOverride, criteriaSet, transcriptCoursesForCourse);
 
             if (courseAnomaly != null) {
 				courseReportsByTerm.get(term.getCode()).add(courseAnomaly);
@@ -500,15 +531,11 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 
 	private ExternalStudentTranscriptCourse findTranscriptCourseMatchSubstitutableCourse(
 			MapPlanStatusReportCourse mapPlanStatusReportCourse,
-			List<ExternalStudentTranscriptCourse> transcript,
-			Set<String> criteriaSet, Collection<ExternalSubstitutableCourse> allSubstitutableCourses,
+			TranscriptIndex transcriptIndex,
+			Set<String> criteriaSet, SubstitutionIndex substitutions,
             MapStatusReportPerson planAndPersonInfo) {
 
-        if (allSubstitutableCourses == null || allSubstitutableCourses.isEmpty()) {
-            return null;
-        }
-
-        for (ExternalSubstitutableCourse substitutableCourse : allSubstitutableCourses) {
+        for (ExternalSubstitutableCourse substitutableCourse : substitutions.getSubstitutions(mapPlanStatusReportCourse.getFormattedCourse())) {
 			//If term or program code are defined as null as part of the substitution then it's considered term or program unbounded
 			//In otherwords, if term is null it applies to all terms, if program is null is applies to all programs
 			if ((mapPlanStatusReportCourse.getFormattedCourse().trim().equalsIgnoreCase(substitutableCourse.getSourceFormattedCourse().trim()) &&
@@ -521,7 +548,7 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 				
 			{
 				//if a substitution is found, check to see if the student has taken the target course
-				for (ExternalStudentTranscriptCourse transcriptCourse : transcript) {
+				for (ExternalStudentTranscriptCourse transcriptCourse : transcriptIndex.getCourses(substitutableCourse.getTargetFormattedCourse())) {
 					if( (transcriptCourse.getFormattedCourse().trim().equalsIgnoreCase(substitutableCourse.getTargetFormattedCourse().trim()) &&
 							(!criteriaSet.contains(MapStatusReportServiceImpl.CONFIGURABLE_MATCH_CRITERIA_COURSE_TITLE) || transcriptCourse.getTitle().trim().equalsIgnoreCase(substitutableCourse.getTargetCourseTitle())) &&
 							(!criteriaSet.contains(MapStatusReportServiceImpl.CONFIGURABLE_MATCH_CRITERIA_CREDIT_HOURS) || transcriptCourse.getCreditEarned().equals(substitutableCourse.getTargetCreditHours())) &&
@@ -541,7 +568,7 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 	private ExternalStudentTranscriptCourse findTranscriptCourseMatchElectiveCourse(
 			MapStatusReportPerson planAndPersonInfo,
 			MapPlanStatusReportCourse mapPlanStatusReportCourse,
-			List<ExternalStudentTranscriptCourse> transcript,
+			TranscriptIndex transcriptIndex,
 			Set<String> criteriaSet) {
 
 		Plan plan;
@@ -555,13 +582,13 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 			return null;
 		}
 
-		ExternalStudentTranscriptCourse transcriptCourse = findExternalStudentTranscriptCourseForElectiveCourse(transcript, criteriaSet, planElectiveCourse.getFormattedCourse(),
+		ExternalStudentTranscriptCourse transcriptCourse = findExternalStudentTranscriptCourseForElectiveCourse(transcriptIndex.getCourses(planElectiveCourse.getFormattedCourse()), criteriaSet, planElectiveCourse.getFormattedCourse(),
 				planElectiveCourse.getCourseTitle(), planElectiveCourse.getCreditHours(), planElectiveCourse.getCourseCode());
 		if (transcriptCourse != null) {
 			return transcriptCourse;
 		}
 		for (AbstractMapElectiveCourse planElectiveCourseElective : planElectiveCourse.getElectiveCourseElectives()) {
-			transcriptCourse = findExternalStudentTranscriptCourseForElectiveCourse(transcript, criteriaSet, planElectiveCourseElective.getFormattedCourse(),
+			transcriptCourse = findExternalStudentTranscriptCourseForElectiveCourse(transcriptIndex.getCourses(planElectiveCourseElective.getFormattedCourse()), criteriaSet, planElectiveCourseElective.getFormattedCourse(),
 					planElectiveCourseElective.getCourseTitle(), planElectiveCourseElective.getCreditHours(), planElectiveCourseElective.getCourseCode());
 			if (transcriptCourse != null) {
 				return transcriptCourse;
@@ -752,42 +779,6 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 		return -1;
 	}
 
-    private ExternalStudentTranscriptNonCourseEntity findCourseMatchOverrideCourse(String formattedCourse, String termCode,
-                                                                      Collection<ExternalStudentTranscriptNonCourseEntity> allNonCourseEntities) {
-
-        if (allNonCourseEntities == null || allNonCourseEntities.isEmpty()) {
-            return null;
-        }
-
-        for (ExternalStudentTranscriptNonCourseEntity externalStudentTranscriptNonCourseEntity : allNonCourseEntities) {
-
-            if (formattedCourse.trim().equalsIgnoreCase(externalStudentTranscriptNonCourseEntity.getTargetFormattedCourse().trim())
-                     && termCode.trim().equalsIgnoreCase(externalStudentTranscriptNonCourseEntity.getTermCode().trim())) {
-                return externalStudentTranscriptNonCourseEntity;
-            }
-        }
-
-        return null;
-    }
-
-	private Map<String, List<ExternalStudentTranscriptCourse>> organizeTranscriptCourseByTerm(List<ExternalStudentTranscriptCourse> transcriptsBySchoolId) {
-		Map<String, List<ExternalStudentTranscriptCourse>> transcriptCoursesByTerm = new HashMap<String,List<ExternalStudentTranscriptCourse>>();
-
-        for (ExternalStudentTranscriptCourse transcriptCourse:transcriptsBySchoolId) {
-
-            if (transcriptCoursesByTerm.get(transcriptCourse.getTermCode()) == null) {
-				List<ExternalStudentTranscriptCourse> list = new ArrayList<ExternalStudentTranscriptCourse>();
-				list.add(transcriptCourse);
-				transcriptCoursesByTerm.put(transcriptCourse.getTermCode(), list);
-			} else {
-				List<ExternalStudentTranscriptCourse> list = transcriptCoursesByTerm.get(transcriptCourse.getTermCode());
-				list.add(transcriptCourse);
-			}
-		}
-
-		return transcriptCoursesByTerm;
-	}
-
 	private Map<String, List<MapPlanStatusReportCourse>> organizePlanCoursesByTerm(List<MapPlanStatusReportCourse> planCourses) {
 		Map<String, List<MapPlanStatusReportCourse>> planCoursesByTerm = new HashMap<String,List<MapPlanStatusReportCourse>>();
 
@@ -960,8 +951,9 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 		MapStatusReportPerson mapStatusReportPerson = new MapStatusReportPerson(plan.getId(), personId, plan.getPerson().getSchoolId(), plan.getProgramCode(),plan.getCatalogYearCode(), plan.getPerson().getFirstName(), plan.getPerson().getLastName(), plan.getPerson().getCoach().getId(), plan.getOwner().getId());
 		List<Term> allTerms = termService.getAll();
 		
+		//Substitutions here are specific to this student, so don't displace the shared lookup table
 		MapStatusReport report = evaluatePlan(gradesSet, additionalCriteriaSet, cutoffTerm, allTerms,
-                mapStatusReportPerson, allSubstitutableCourses, allNonCourseEntities, transcript,
+                mapStatusReportPerson, new SubstitutionIndex(allSubstitutableCourses), allNonCourseEntities, transcript,
                 termBound, useSubstitutableCourses);
 		save(report);
 		
@@ -983,6 +975,28 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 		return dao.getOffPlanPlansForWatcher(person);
 	}
 
+	@Override
+	public List<MapStatusReport> getAllForPersonIds(List<UUID> personIds) {
+		return dao.getAllForPersonIds(personIds);
+	}
+
+	@Override
+	public int deleteReportsForInactivePlans() {
+		return dao.deleteReportsForInactivePlans();
+	}
+
+	@Override
+	public Map<UUID, String> getInputFingerprintsByPlanId() {
+		return dao.getInputFingerprintsByPlanId();
+	}
+
+	@Override
+	public MapStatusReport replaceReportsForStudent(MapStatusReport report)
+			throws ObjectNotFoundException, ValidationException {
+		deleteAllOldReportsForStudent(report.getPerson().getId());
+		return save(report);
+	}
+
 	private PlanElectiveCourse getPlanElectiveCourse(Plan plan, String originalFormattedCourse) {
 		for (PlanElectiveCourse planElectiveCourse : plan.getPlanElectiveCourses()) {
 			if (planElectiveCourse.getFormattedCourse().equals(originalFormattedCourse)) {
@@ -991,4 +1005,101 @@ public class MapStatusReportServiceImpl extends AbstractPersonAssocAuditableServ
 		}
 		return null;
 	}
+
+	/**
+	 * Normalizes course and term codes the way matching compares them:
+	 * trimmed and case insensitive.
+	 */
+	private static String matchKey(String code) {
+		return code == null ? null : code.trim().toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * A student's transcript and non-course entities keyed by formatted
+	 * course, so finding the transcript rows for a plan course is a lookup
+	 * rather than a scan of the whole transcript. Lists keep transcript order,
+	 * so the first match found is the same one a scan would have found.
+	 */
+	private static final class TranscriptIndex {
+		private final Map<String, List<ExternalStudentTranscriptCourse>> coursesByFormattedCourse =
+				new HashMap<String, List<ExternalStudentTranscriptCourse>>();
+		private final Map<String, ExternalStudentTranscriptNonCourseEntity> overridesByCourseAndTerm =
+				new HashMap<String, ExternalStudentTranscriptNonCourseEntity>();
+
+		private TranscriptIndex(List<ExternalStudentTranscriptCourse> transcript,
+				Collection<ExternalStudentTranscriptNonCourseEntity> nonCourseEntities) {
+			for (ExternalStudentTranscriptCourse transcriptCourse : transcript) {
+				final String key = matchKey(transcriptCourse.getFormattedCourse());
+				List<ExternalStudentTranscriptCourse> courses = coursesByFormattedCourse.get(key);
+				if (courses == null) {
+					courses = new ArrayList<ExternalStudentTranscriptCourse>();
+					coursesByFormattedCourse.put(key, courses);
+				}
+				courses.add(transcriptCourse);
+			}
+			if (nonCourseEntities != null) {
+				for (ExternalStudentTranscriptNonCourseEntity nonCourseEntity : nonCourseEntities) {
+					final String key = overrideKey(nonCourseEntity.getTargetFormattedCourse(), nonCourseEntity.getTermCode());
+					//first one wins, same as a scan
+					if (!overridesByCourseAndTerm.containsKey(key)) {
+						overridesByCourseAndTerm.put(key, nonCourseEntity);
+					}
+				}
+			}
+		}
+
+		private List<ExternalStudentTranscriptCourse> getCourses(String formattedCourse) {
+			final List<ExternalStudentTranscriptCourse> courses = coursesByFormattedCourse.get(matchKey(formattedCourse));
+			return courses == null ? Collections.<ExternalStudentTranscriptCourse>emptyList() : courses;
+		}
+
+		private List<ExternalStudentTranscriptCourse> getCourses(String formattedCourse, String termCode) {
+			final List<ExternalStudentTranscriptCourse> coursesForTerm = new ArrayList<ExternalStudentTranscriptCourse>();
+			for (ExternalStudentTranscriptCourse transcriptCourse : getCourses(formattedCourse)) {
+				if (termCode.equals(transcriptCourse.getTermCode())) {
+					coursesForTerm.add(transcriptCourse);
+				}
+			}
+			return coursesForTerm;
+		}
+
+		private ExternalStudentTranscriptNonCourseEntity getOverride(String formattedCourse, String termCode) {
+			return overridesByCourseAndTerm.get(overrideKey(formattedCourse, termCode));
+		}
+
+		private static String overrideKey(String formattedCourse, String termCode) {
+			return matchKey(formattedCourse) + "|" + matchKey(termCode);
+		}
+	}
+
+	/**
+	 * Substitutable courses keyed by source formatted course. Lists keep the
+	 * original order so the first applicable substitution still wins.
+	 */
+	private static final class SubstitutionIndex {
+		private final Collection<ExternalSubstitutableCourse> source;
+		private final Map<String, List<ExternalSubstitutableCourse>> bySourceFormattedCourse =
+				new HashMap<String, List<ExternalSubstitutableCourse>>();
+
+		private SubstitutionIndex(Collection<ExternalSubstitutableCourse> allSubstitutableCourses) {
+			this.source = allSubstitutableCourses;
+			if (allSubstitutableCourses == null) {
+				return;
+			}
+			for (ExternalSubstitutableCourse substitutableCourse : allSubstitutableCourses) {
+				final String key = matchKey(substitutableCourse.getSourceFormattedCourse());
+				List<ExternalSubstitutableCourse> substitutions = bySourceFormattedCourse.get(key);
+				if (substitutions == null) {
+					substitutions = new ArrayList<ExternalSubstitutableCourse>();
+					bySourceFormattedCourse.put(key, substitutions);
+				}
+				substitutions.add(substitutableCourse);
+			}
+		}
+
+		private List<ExternalSubstitutableCourse> getSubstitutions(String sourceFormattedCourse) {
+			final List<ExternalSubstitutableCourse> substitutions = bySourceFormattedCourse.get(matchKey(sourceFormattedCourse));
+			return substitutions == null ? Collections.<ExternalSubstitutableCourse>emptyList() : substitutions;
+		}
+	}
 }
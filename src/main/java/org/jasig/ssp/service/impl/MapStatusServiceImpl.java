@@ -23,6 +23,7 @@ import org.jasig.ssp.factory.external.MapStatusReportLiteTOFactory;
 import org.jasig.ssp.model.MapStatusReport;
 import org.jasig.ssp.model.Person;
 import org.jasig.ssp.model.external.ExternalPersonPlanStatus;
+import org.jasig.ssp.model.external.PlanStatus;
 import org.jasig.ssp.service.MapStatusReportService;
 import org.jasig.ssp.service.MapStatusService;
 import org.jasig.ssp.service.ObjectNotFoundException;
@@ -36,6 +37,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -87,4 +94,47 @@ public class MapStatusServiceImpl implements MapStatusService {
             return planStatusFactory.from(externalPlanStatus);
         }
     }
+
+    @Override
+    @Transactional(readOnly=true)
+    public Map<UUID, PlanStatus> getStatusesForPeople(Collection<Person> people) {
+        final Map<UUID, PlanStatus> statuses = Maps.newHashMap();
+        if ( people == null || people.isEmpty() ) {
+            return statuses;
+        }
+
+        Boolean calcPlanStatus = Boolean.parseBoolean(configService.getByNameEmpty("calculate_map_plan_status").trim().toLowerCase());
+
+        if(calcPlanStatus)
+        {
+            final List<UUID> personIds = Lists.newArrayListWithExpectedSize(people.size());
+            for ( Person person : people ) {
+                personIds.add(person.getId());
+            }
+            for ( MapStatusReport report : mapStatusReportService.getAllForPersonIds(personIds) ) {
+                // first report wins, same as the single person lookup
+                final UUID personId = report.getPerson().getId();
+                if ( !(statuses.containsKey(personId)) ) {
+                    statuses.put(personId, report.getPlanStatus());
+                }
+            }
+        }
+        else
+        {
+            final Map<String, UUID> personIdsBySchoolId = Maps.newHashMap();
+            for ( Person person : people ) {
+                if ( person.getSchoolId() != null ) {
+                    personIdsBySchoolId.put(person.getSchoolId(), person.getId());
+                }
+            }
+            final List<String> schoolIds = Lists.newArrayList(personIdsBySchoolId.keySet());
+            for ( ExternalPersonPlanStatus externalPlanStatus : externalPersonPlanStatusService.getBySchoolIds(schoolIds) ) {
+                final UUID personId = personIdsBySchoolId.get(externalPlanStatus.getSchoolId());
+                if ( personId != null ) {
+                    statuses.put(personId, externalPlanStatus.getStatus());
+                }
+            }
+        }
+        return statuses;
+    }
 }
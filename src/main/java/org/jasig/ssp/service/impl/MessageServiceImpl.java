@@ -19,6 +19,7 @@
 package org.jasig.ssp.service.impl; // NOPMD
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.validator.EmailValidator;
 import org.jasig.ssp.dao.MessageDao;
@@ -56,9 +57,11 @@ import javax.validation.constraints.NotNull;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -76,6 +79,16 @@ public class MessageServiceImpl implements MessageService {
 
 	private static final long INTER_QUEUE_BATCH_SLEEP = 200;
 
+	private static final String DRAIN_ENABLED_CONFIG_NAME = "mail_queue_drain_enabled";
+
+	private static final String DRAIN_BATCH_SIZE_CONFIG_NAME = "mail_queue_drain_batch_size";
+
+	private static final String DRAIN_TRANSPORTS_CONFIG_NAME = "mail_queue_drain_transports";
+
+	private static final String DRAIN_MAX_PER_MINUTE_CONFIG_NAME = "mail_queue_drain_max_per_minute";
+
+	private static final String DRAIN_MAX_RUN_MILLIS_CONFIG_NAME = "mail_queue_drain_max_run_millis";
+
 	@Autowired
 	private transient JavaMailSender javaMailSender;
 
@@ -184,6 +197,13 @@ public class MessageServiceImpl implements MessageService {
 	public Message createMessage(@NotNull final Person to,
 			final String emailCC, final SubjectAndBody subjAndBody)
 			throws ObjectNotFoundException, ValidationException {
+		return save(createMessageNoSave(to, emailCC, subjAndBody));
+	}
+
+	@Override
+	public Message createMessageNoSave(@NotNull final Person to,
+			final String emailCC, @NotNull final SubjectAndBody subjAndBody)
+			throws ObjectNotFoundException, ValidationException {
 
 		if (to == null) {
 			throw new ValidationException("Recipient missing.");
@@ -207,7 +227,7 @@ public class MessageServiceImpl implements MessageService {
 		message.setRecipient(to);
 		message.setCarbonCopy(emailCC);
 
-		return save(message);
+		return message;
 	}
 
 	@Override
@@ -239,6 +259,19 @@ public class MessageServiceImpl implements MessageService {
 		return message;
 	}
 
+    private Message save (final Message message) throws ValidationException {
+        return messageDao.save(reroute(message));
+    }
+
+	@Override
+	@Transactional(readOnly = false)
+	public void saveMessages(final List<Message> messages) throws ValidationException {
+		for ( Message message : messages ) {
+			reroute(message);
+		}
+		messageDao.saveAll(messages);
+	}
+
     /**
      * Method to re-route all mail in the case of configuration set on
      *  the file system in ssp-configuration.properties. This can eliminate
@@ -248,7 +281,7 @@ public class MessageServiceImpl implements MessageService {
      * @return
      * @throws ValidationException
      */
-    private Message save (final Message message) throws ValidationException {
+    private Message reroute (final Message message) throws ValidationException {
         if (StringUtils.isNotBlank(routeAllMailToAddress) &&
                 !StringUtils.equalsIgnoreCase(routeAllMailToAddress.trim(), message.getRecipientEmailAddress().trim())) {
 
@@ -269,7 +302,7 @@ public class MessageServiceImpl implements MessageService {
                                       // since specific rules on setting recipient addrs lies above and elsewhere
         }
 
-        return messageDao.save(message);
+        return message;
     }
 
 	@Override
@@ -286,6 +319,12 @@ public class MessageServiceImpl implements MessageService {
 			LOGGER.info("Abandoning sendQueuedMessages because of thread interruption");
 		}
 
+		if ( configService.getByNameOrDefaultValue(DRAIN_ENABLED_CONFIG_NAME) ) {
+			drainQueuedMessages(batchExec);
+			LOGGER.info("END : sendQueuedMessages()");
+			return;
+		}
+
 		int startRow = 0;
 		final AtomicReference<SortingAndPaging> sap =
 				new AtomicReference<SortingAndPaging>();
@@ -408,6 +447,183 @@ public class MessageServiceImpl implements MessageService {
 		return new Pair<PagingWrapper<Message>, Collection<Throwable>>(messages, errors);
 	}
 
+	/**
+	 * Continuous alternative to the fixed-size batch loop in
+	 * {@link #sendQueuedMessages(CallableExecutor)}. Walks the queue with a
+	 * keyset cursor until it is empty, the configured run time is exhausted,
+	 * or the thread is interrupted. Each page is prepared in one transaction
+	 * and its results recorded in another. In between, with no transaction
+	 * open, the SMTP traffic for the page is spread over a bounded pool of
+	 * connections by a {@link QueuedMailDispatcher}.
+	 *
+	 * <p>Messages which fail have their retry count bumped as usual and are
+	 * skipped by the cursor, so they are retried on the next scheduled run
+	 * rather than in a tight loop.</p>
+	 */
+	private void drainQueuedMessages(CallableExecutor<Pair<PagingWrapper<Message>, Collection<Throwable>>> batchExec) {
+		final int batchSize = Math.max(1, configService.getByNameExceptionOrDefaultAsInt(DRAIN_BATCH_SIZE_CONFIG_NAME));
+		final int transports = configService.getByNameExceptionOrDefaultAsInt(DRAIN_TRANSPORTS_CONFIG_NAME);
+		final int maxPerMinute = configService.getByNameExceptionOrDefaultAsInt(DRAIN_MAX_PER_MINUTE_CONFIG_NAME);
+		final long maxRunMillis = configService.getByNameExceptionOrDefaultAsInt(DRAIN_MAX_RUN_MILLIS_CONFIG_NAME);
+
+		LOGGER.info("Draining message queue. Batch size {}, transports {},"
+				+ " max per minute {}, max run millis {}",
+				new Object[] { batchSize, transports, maxPerMinute, maxRunMillis });
+
+		final QueuedMailDispatcher dispatcher =
+				new QueuedMailDispatcher(javaMailSender, transports, maxPerMinute);
+		final AtomicReference<Message> cursor = new AtomicReference<Message>();
+		final long started = System.currentTimeMillis();
+		int sentCnt = 0;
+		int errorCnt = 0;
+		try {
+			while (true) {
+				if ( Thread.currentThread().isInterrupted() ) {
+					LOGGER.info("Abandoning message queue drain because of thread interruption");
+					break;
+				}
+				if ( maxRunMillis > 0 && System.currentTimeMillis() - started > maxRunMillis ) {
+					LOGGER.info("Stop message queue drain. Exceeded max run time of {} ms."
+							+ " Waiting for next scheduled execution before processing"
+							+ " additional messages.", maxRunMillis);
+					break;
+				}
+
+				Pair<PagingWrapper<Message>, Collection<Throwable>> rslt = null;
+				try {
+					final Callable<Pair<PagingWrapper<Message>, Collection<Throwable>>> work =
+							new Callable<Pair<PagingWrapper<Message>, Collection<Throwable>>>() {
+						@Override
+						public Pair<PagingWrapper<Message>, Collection<Throwable>> call() throws Exception {
+							return dispatchQueuedMessageBatch(cursor.get(), batchSize, dispatcher);
+						}
+					};
+					rslt = batchExec == null ? work.call() : batchExec.exec(work);
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+
+				final List<Message> msgsHandled = rslt.getFirst().getRows() == null
+						? new ArrayList<Message>() : Lists.newArrayList(rslt.getFirst().getRows());
+				final int errCnt = rslt.getSecond() == null ? 0 : rslt.getSecond().size();
+				sentCnt += msgsHandled.size() - errCnt;
+				errorCnt += errCnt;
+				if ( msgsHandled.isEmpty() ) {
+					break;
+				}
+				cursor.set(msgsHandled.get(msgsHandled.size() - 1));
+				if ( msgsHandled.size() < batchSize ) {
+					break;
+				}
+			}
+		} finally {
+			dispatcher.shutdown();
+		}
+
+		LOGGER.info("Finished message queue drain in {} ms. Sent {} messages, {} errors.",
+				new Object[] { System.currentTimeMillis() - started, sentCnt, errorCnt });
+	}
+
+	/**
+	 * Reads and prepares one page of the queue in a transaction, hands the
+	 * prepared messages to the dispatcher with no transaction open, then
+	 * records the outcome in a second transaction. Rate limit waits and SMTP
+	 * round trips therefore never hold a database transaction open.
+	 */
+	private Pair<PagingWrapper<Message>, Collection<Throwable>> dispatchQueuedMessageBatch(
+			final Message after, final int batchSize, final QueuedMailDispatcher dispatcher) throws InterruptedException {
+		final LinkedList<Throwable> errors = Lists.newLinkedList();
+		final Map<MimeMessage, UUID> prepared = Maps.newLinkedHashMap();
+		final List<Message> messages = withTransaction.withTransactionAndUncheckedExceptions(
+				new Callable<List<Message>>() {
+					@Override
+					public List<Message> call() throws Exception {
+						return prepareQueuedMessageBatch(after, batchSize, prepared, errors);
+					}
+				});
+
+		final Map<MimeMessage, Exception> failures;
+		if ( shouldSendMail() ) {
+			failures = dispatcher.dispatch(prepared.keySet());
+		} else {
+			LOGGER.warn("_ : JavaMailSender was not called; {} messages were marked sent but were not actually sent.  To enable mail, update the configuration of the app.",
+					prepared.size());
+			failures = Collections.emptyMap();
+		}
+
+		final List<UUID> sentIds = Lists.newArrayList();
+		final Map<UUID, Exception> failedIds = Maps.newHashMap();
+		for ( final Map.Entry<MimeMessage, UUID> entry : prepared.entrySet() ) {
+			final Exception failure = failures.get(entry.getKey());
+			if ( failure == null ) {
+				sentIds.add(entry.getValue());
+			} else {
+				failedIds.put(entry.getValue(), failure);
+				errors.add(failure);
+			}
+		}
+		if ( !(prepared.isEmpty()) ) {
+			withTransaction.withTransactionAndUncheckedExceptions(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					recordQueuedMessageResults(sentIds, failedIds);
+					return null;
+				}
+			});
+		}
+
+		return new Pair<PagingWrapper<Message>, Collection<Throwable>>(
+				new PagingWrapper<Message>(messages), errors);
+	}
+
+	/**
+	 * @return the page of queued messages read. Those which could be prepared
+	 *         are added to <code>prepared</code>; the rest have their retry
+	 *         count bumped and the cause added to <code>errors</code>.
+	 */
+	private List<Message> prepareQueuedMessageBatch(Message after, int batchSize,
+			Map<MimeMessage, UUID> prepared, List<Throwable> errors) {
+		final List<Message> messages = messageDao.queuedAfter(
+				after == null ? null : after.getCreatedDate(),
+				after == null ? null : after.getId(),
+				batchSize);
+		LOGGER.info("Dispatching {} queued messages", messages.size());
+
+		for ( final Message message : messages ) {
+			try {
+				prepared.put(prepareMimeMessage(message), message.getId());
+			} catch ( final MessagingException e ) {
+				LOGGER.error(addMessageIdToError(message) + "Could not prepare queued message.", e);
+				handleSendMessageError(message);
+				errors.add(e);
+			} catch ( final UnsupportedEncodingException e ) {
+				LOGGER.error(addMessageIdToError(message) + "Could not prepare queued message.", e);
+				handleSendMessageError(message);
+				errors.add(e);
+			}
+		}
+		// recordQueuedMessageResults() marks them sent behind the session's back
+		messageDao.flushAndEvict(messages);
+		return messages;
+	}
+
+	/**
+	 * Marks the given messages sent with bulk updates, then loads just the
+	 * failed ones to bump their retry count.
+	 */
+	private void recordQueuedMessageResults(List<UUID> sentIds, Map<UUID, Exception> failedIds) {
+		messageDao.markSent(sentIds, new Date());
+		if ( failedIds.isEmpty() ) {
+			return;
+		}
+		for ( final Message message : messageDao.get(Lists.newArrayList(failedIds.keySet()), null) ) {
+			LOGGER.error(addMessageIdToError(message) + "Could not send queued message.", failedIds.get(message.getId()));
+			handleSendMessageError(message);
+		}
+	}
+
 	private void maybePauseBetweenQueueBatches() {
 		if ( INTER_QUEUE_BATCH_SLEEP > 0 ) {
 			try {
@@ -464,93 +680,7 @@ public class MessageServiceImpl implements MessageService {
 		LOGGER.info(addMessageIdToError(message) + "Sending message: {}" , message.toString());
 
 		try {
-			final MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-			final MimeMessageHelper mimeMessageHelper = new MimeMessageHelper(
-					mimeMessage);
-			
-			// process FROM addresses
-			InternetAddress from;
-			String appName = configService.getByName("app_title").getValue();
-			
-			//We used the configured outbound email address for every outgoing message
-			//If a message was initiated by an end user, their name will be attached to the 'from' while
-			//the configured outbound address will be the actual address used for example "Amy Aministrator (SSP) <myconfiguredaddress@foobar.com>"
-			String fromName = appName + " Administrator";
-			InternetAddress[] replyToAddrs = null;
-			final boolean isEndUserMessage = message.getSender() != null &&
-					!message.getSender().getEmailAddresses().isEmpty() && 
-					!message.getSender().getId().equals(Person.SYSTEM_ADMINISTRATOR_ID);
-			if ( isEndUserMessage ) {
-				replyToAddrs = getEmailAddresses( message.getSender(), "from:",message.getId());
-				if(replyToAddrs.length > 0){
-					fromName = message.getSender().getFullName() + " ("+appName+")";
-				}
-			}
-
-			from = new InternetAddress(configService.getByName("outbound_email_address").getValue(), fromName);
-			if (!this.validateEmail(from.getAddress())) {
-				throw new AddressException("Invalid from: email address [" + from.getAddress() + "]");
-			}
-
-			if ( !(isEndUserMessage) ) {
-				replyToAddrs = new InternetAddress[] { from };
-			}
-			
-			 mimeMessageHelper.setFrom(from);
-			 message.setSentFromAddress(from.toString());
-			 mimeMessageHelper.setReplyTo(replyToAddrs[0]);
-			 message.setSentReplyToAddress(replyToAddrs[0].toString());
-			
-			// process TO addresses
-			InternetAddress[] tos = null;
-			if ( message.getRecipient() != null && message.getRecipient().hasEmailAddresses()) { // NOPMD by jon.adams			
-				tos = getEmailAddresses(message.getRecipient(), "to:",message.getId());
-			} else { 
-				tos = getEmailAddresses(message.getRecipientEmailAddress(), "to:", message.getId());
-			}
-			if(tos.length > 0){
-				mimeMessageHelper.setTo(tos);
-				message.setSentToAddresses(StringUtils.join(tos,",").trim());
-			}else {
-				StringBuilder errorMsg = new StringBuilder();
-				
-				errorMsg.append(addMessageIdToError(message) + " Message " + message.toString() 
-						+" could not be sent. No valid recipient email address found: '");				
-				
-				if (message.getRecipient() != null) {
-						errorMsg.append(message.getRecipient().getPrimaryEmailAddress());
-				} else {
-					errorMsg.append(message.getRecipientEmailAddress());
-				}
-				LOGGER.error(errorMsg.toString());
-				throw new MessagingException(errorMsg.toString());
-			}
-			
-			// process BCC addresses
-			try{
-				InternetAddress[] bccs = getEmailAddresses(getBcc(), "bcc:", message.getId());
-				if (bccs.length > 0 && StringUtils.isBlank(routeAllMailToAddress)) {
-					mimeMessageHelper.setBcc(bccs);
-					message.setSentBccAddresses(StringUtils.join(bccs,",").trim());
-				}
-			}catch(Exception exp){
-				LOGGER.warn("Unrecoverable errors were generated adding carbon copy to message: " + message.getId() + "Attempt to send message still initiated.", exp);
-			}
-			
-			// process CC addresses
-			try{	
-				InternetAddress[] carbonCopies = getEmailAddresses(message.getCarbonCopy(), "cc:", message.getId());
-				if(carbonCopies.length > 0){
-					mimeMessageHelper.setCc(carbonCopies);
-					message.setSentCcAddresses(StringUtils.join(carbonCopies,",").trim());
-				}
-			}catch(Exception exp){
-				LOGGER.warn("Unrecoverable errors were generated adding bcc to message: " + message.getId() + "Attempt to send message still initiated.", exp);
-			}
-			
-			mimeMessageHelper.setSubject(message.getSubject());
-			mimeMessageHelper.setText(message.getBody());
-			mimeMessage.setContent(message.getBody(), "text/html");
+			final MimeMessage mimeMessage = prepareMimeMessage(message);
 
 			send(mimeMessage);
 
@@ -566,6 +696,104 @@ public class MessageServiceImpl implements MessageService {
 		LOGGER.info("END : sendMessage()");
 		return true;
 	}
+
+	/**
+	 * Build the outbound {@link MimeMessage} for a queued {@link Message},
+	 * recording the resolved addresses on the {@link Message} as a side
+	 * effect. Does not send anything.
+	 */
+	private MimeMessage prepareMimeMessage(final Message message)
+			throws MessagingException, UnsupportedEncodingException {
+		final MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+		final MimeMessageHelper mimeMessageHelper = new MimeMessageHelper(
+				mimeMessage);
+		
+		// process FROM addresses
+		InternetAddress from;
+		String appName = configService.getByName("app_title").getValue();
+		
+		//We used the configured outbound email address for every outgoing message
+		//If a message was initiated by an end user, their name will be attached to the 'from' while
+		//the configured outbound address will be the actual address used for example "Amy Aministrator (SSP) <myconfiguredaddress@foobar.com>"
+		String fromName = appName + " Administrator";
+		InternetAddress[] replyToAddrs = null;
+		final boolean isEndUserMessage = message.getSender() != null &&
+				!message.getSender().getEmailAddresses().isEmpty() && 
+				!message.getSender().getId().equals(Person.SYSTEM_ADMINISTRATOR_ID);
+		if ( isEndUserMessage ) {
+			replyToAddrs = getEmailAddresses( message.getSender(), "from:",message.getId());
+			if(replyToAddrs.length > 0){
+				fromName = message.getSender().getFullName() + " ("+appName+")";
+			}
+		}
+
+		from = new InternetAddress(configService.getByName("outbound_email_address").getValue(), fromName);
+		if (!this.validateEmail(from.getAddress())) {
+			throw new AddressException("Invalid from: email address [" + from.getAddress() + "]");
+		}
+
+		if ( !(isEndUserMessage) ) {
+			replyToAddrs = new InternetAddress[] { from };
+		}
+		
+		 mimeMessageHelper.setFrom(from);
+		 message.setSentFromAddress(from.toString());
+		 mimeMessageHelper.setReplyTo(replyToAddrs[0]);
+		 message.setSentReplyToAddress(replyToAddrs[0].toString());
+		
+		// process TO addresses
+		InternetAddress[] tos = null;
+		if ( message.getRecipient() != null && message.getRecipient().hasEmailAddresses()) { // NOPMD by jon.adams			
+			tos = getEmailAddresses(message.getRecipient(), "to:",message.getId());
+		} else { 
+			tos = getEmailAddresses(message.getRecipientEmailAddress(), "to:", message.getId());
+		}
+		if(tos.length > 0){
+			mimeMessageHelper.setTo(tos);
+			message.setSentToAddresses(StringUtils.join(tos,",").trim());
+		}else {
+			StringBuilder errorMsg = new StringBuilder();
+			
+			errorMsg.append(addMessageIdToError(message) + " Message " + message.toString() 
+					+" could not be sent. No valid recipient email address found: '");				
+			
+			if (message.getRecipient() != null) {
+					errorMsg.append(message.getRecipient().getPrimaryEmailAddress());
+			} else {
+				errorMsg.append(message.getRecipientEmailAddress());
+			}
+			LOGGER.error(errorMsg.toString());
+			throw new MessagingException(errorMsg.toString());
+		}
+		
+		// process BCC addresses
+		try{
+			InternetAddress[] bccs = getEmailAddresses(getBcc(), "bcc:", message.getId());
+			if (bccs.length > 0 && StringUtils.isBlank(routeAllMailToAddress)) {
+				mimeMessageHelper.setBcc(bccs);
+				message.setSentBccAddresses(StringUtils.join(bccs,",").trim());
+			}
+		}catch(Exception exp){
+			LOGGER.warn("Unrecoverable errors were generated adding carbon copy to message: " + message.getId() + "Attempt to send message still initiated.", exp);
+		}
+		
+		// process CC addresses
+		try{	
+			InternetAddress[] carbonCopies = getEmailAddresses(message.getCarbonCopy(), "cc:", message.getId());
+			if(carbonCopies.length > 0){
+				mimeMessageHelper.setCc(carbonCopies);
+				message.setSentCcAddresses(StringUtils.join(carbonCopies,",").trim());
+			}
+		}catch(Exception exp){
+			LOGGER.warn("Unrecoverable errors were generated adding bcc to message: " + message.getId() + "Attempt to send message still initiated.", exp);
+		}
+		
+		mimeMessageHelper.setSubject(message.getSubject());
+		mimeMessageHelper.setText(message.getBody());
+		mimeMessage.setContent(message.getBody(), "text/html");
+
+		return mimeMessage;
+	}
 	
 	private void handleSendMessageError(Message message) {
 		message.setRetryCount((message.getRetryCount() == null) ? 1 : message.getRetryCount() + 1);
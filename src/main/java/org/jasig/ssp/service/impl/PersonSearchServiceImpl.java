@@ -21,6 +21,9 @@ package org.jasig.ssp.service.impl;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.jasig.ssp.dao.CaseloadDao;
 import org.jasig.ssp.dao.DirectoryPersonSearchDao;
 import org.jasig.ssp.dao.PersonSearchDao;
@@ -38,7 +41,9 @@ import org.jasig.ssp.service.external.ExternalStudentTranscriptService;
 import org.jasig.ssp.service.reference.ProgramStatusService;
 import org.jasig.ssp.transferobject.CaseloadReassignmentRequestTO;
 import org.jasig.ssp.transferobject.CoachPersonLiteTO;
+import org.jasig.ssp.transferobject.ImmutablePersonIdentifiersTO;
 import org.jasig.ssp.transferobject.reports.CaseLoadSearchTO;
+import org.jasig.ssp.util.csvwriter.AbstractCsvWriterHelper;
 import org.jasig.ssp.util.csvwriter.CaseloadCsvWriterHelper;
 import org.jasig.ssp.util.csvwriter.CustomizableCaseloadCsvWriterHelper;
 import org.jasig.ssp.util.sort.PagingWrapper;
@@ -47,15 +52,28 @@ import org.jasig.ssp.web.api.validation.ValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.orm.hibernate4.SessionFactoryUtils;
+import org.springframework.orm.hibernate4.SessionHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.apache.commons.lang.StringUtils;
 
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 
 /**
@@ -65,6 +83,12 @@ import java.util.*;
 public class PersonSearchServiceImpl implements PersonSearchService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(PersonSearchServiceImpl.class);
+
+	/**
+	 * Rows read, enriched and written at a time by the customizable caseload export. Also the size of the id
+	 * lists handed to each enrichment lookup, so keep it comfortably under database bind parameter limits.
+	 */
+	private static final int CUSTOMIZABLE_EXPORT_CHUNK_SIZE = 500;
 	
 	@Autowired
 	private transient PersonSearchDao dao;
@@ -105,6 +129,16 @@ public class PersonSearchServiceImpl implements PersonSearchService {
 	@Autowired
 	private transient ExternalStudentTranscriptService externalStudentTranscriptService;
 
+	@Autowired
+	private transient SessionFactory sessionFactory;
+
+	@Autowired
+	private transient PlatformTransactionManager transactionManager;
+
+	@Autowired
+	@Qualifier("searchEnrichmentExecutor")
+	private transient AsyncTaskExecutor searchEnrichmentExecutor;
+
 
 	@Override
 	@Transactional
@@ -144,14 +178,27 @@ public class PersonSearchServiceImpl implements PersonSearchService {
 			peopleIds.add(record.getId());
 		}
 
-		final Map<UUID, Date> appts = appointmentService
-				.getCurrentAppointmenDateForPeopleIds(peopleIds);
+		// the lookups are independent, so two go to the enrichment pool while this thread runs the third
+		final Future<Map<UUID, Date>> pendingAppts = submitEnrichment(new Callable<Map<UUID, Date>>() {
+			@Override
+			public Map<UUID, Date> call() {
+				return appointmentService.getCurrentAppointmenDateForPeopleIds(peopleIds);
+			}
+		});
 
-		final Map<UUID, Number> earlyAlertCounts = earlyAlertService
-				.getCountOfActiveAlertsForPeopleIds(peopleIds);
+		final Future<Map<UUID, Number>> pendingEarlyAlertCounts = submitEnrichment(new Callable<Map<UUID, Number>>() {
+			@Override
+			public Map<UUID, Number> call() {
+				return earlyAlertService.getCountOfActiveAlertsForPeopleIds(peopleIds);
+			}
+		});
 		
 		final Map<UUID, Number> numberEarlyAlertResponsesRequired = earlyAlertService.
 				getResponsesDueCountEarlyAlerts(peopleIds);
+
+		final Map<UUID, Date> appts = enrichmentResult(pendingAppts);
+
+		final Map<UUID, Number> earlyAlertCounts = enrichmentResult(pendingEarlyAlertCounts);
 		
 		for (final PersonSearchResult2 record : results) {
 			if (appts.containsKey(record.getId())) {
@@ -210,6 +257,56 @@ public class PersonSearchServiceImpl implements PersonSearchService {
 		}
 		return new PagingWrapper<PersonSearchResult2>(size, sortedAndPaged);
 	}
+
+	/**
+	 * Runs {@code lookup} on the enrichment pool in its own read-only transaction, which holds a pooled connection
+	 * of its own for the duration. The pool has no queue and rejects work when every thread is busy; in that case
+	 * the lookup runs right here instead, in the caller's transaction and on the caller's connection, so a
+	 * saturated pool never takes more than the one connection the request already has. Either way it won't see
+	 * anything the caller hasn't committed yet, which is fine for the read-only searches this is used for.
+	 */
+	private <T> Future<T> submitEnrichment(final Callable<T> lookup) {
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(true);
+		try {
+			return searchEnrichmentExecutor.submit(new Callable<T>() {
+				@Override
+				public T call() {
+					return transactionTemplate.execute(new TransactionCallback<T>() {
+						@Override
+						public T doInTransaction(TransactionStatus status) {
+							try {
+								return lookup.call();
+							} catch ( RuntimeException e ) {
+								throw e;
+							} catch ( Exception e ) {
+								throw new RuntimeException(e);
+							}
+						}
+					});
+				}
+			});
+		} catch ( TaskRejectedException e ) {
+			LOGGER.debug("Person search enrichment pool is busy, running lookup on the request thread");
+			final FutureTask<T> inline = new FutureTask<T>(lookup);
+			inline.run();
+			return inline;
+		}
+	}
+
+	private <T> T enrichmentResult(Future<T> pending) {
+		try {
+			return pending.get();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting on person search result lookups", e);
+		} catch ( ExecutionException e ) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Person search result lookup failed", e.getCause());
+		}
+	}
 	
 
 	@Override
@@ -367,6 +464,13 @@ public class PersonSearchServiceImpl implements PersonSearchService {
         return directoryPersonDao.searchFull(form);
     }
 
+	@Override
+	@Transactional
+	public List<ImmutablePersonIdentifiersTO> searchPersonDirectoryIdentifiers(PersonSearchRequest form,
+			String afterSchoolId, int maxResults) {
+		return directoryPersonDao.searchIdentifiers(form, afterSchoolId, maxResults);
+	}
+
 
 	@Override
 	@Transactional
@@ -381,6 +485,18 @@ public class PersonSearchServiceImpl implements PersonSearchService {
 		directoryPersonDao.refreshDirectoryPersonBlue();
 	}
 
+	@Override
+	@Transactional
+	public List<String> getDirectoryPersonSchoolIdsChangedSince(Date since) {
+		return directoryPersonDao.getSchoolIdsChangedSince(since);
+	}
+
+	@Override
+	@Transactional
+	public int refreshDirectoryPerson(List<String> schoolIds) {
+		return directoryPersonDao.refreshDirectoryPersonRows(schoolIds);
+	}
+
 
 	@Override
 	// explicitly leaving out @Transactional. We really shouldn't need it on most of the
@@ -448,27 +564,57 @@ public class PersonSearchServiceImpl implements PersonSearchService {
     @Override
     // explicitly leaving out @Transactional. See comment on exportDirectoryPersonSearch
     public void exportDirectoryPersonSearchCustomizable(
-            PrintWriter writer, PersonSearchRequest form, Map<Integer, Boolean> customOptions) throws IOException {
+            PrintWriter writer, PersonSearchRequest form, final Map<Integer, Boolean> customOptions) throws IOException {
 
         final CustomizableCaseloadCsvWriterHelper csvWriterHelper =
                 new CustomizableCaseloadCsvWriterHelper(writer, customOptions);
 
-        if (csvWriterHelper != null) {
-			final Map<String, PersonSearchResultFull> resultsBySchoolIdMap = Maps.newHashMap();
-			final List<PersonSearchResultFull> personDirectoryResults = directoryPersonDao.exportableCustomizableSearch(form);
-
-            if (!CollectionUtils.isEmpty(personDirectoryResults)) {
-                final List<UUID> personUUIDs = Lists.newArrayList();
-				final List<String> personSchoolIds = Lists.newArrayList();
-                final List <String> externalOnlySchoolIds = Lists.newArrayList();
-
-				loadIdListsAndResultMap(personUUIDs, personSchoolIds, externalOnlySchoolIds,
-                        resultsBySchoolIdMap, personDirectoryResults);
+        directoryPersonDao.exportableCustomizableSearch(csvWriterHelper, form, CUSTOMIZABLE_EXPORT_CHUNK_SIZE,
+                new AbstractCsvWriterHelper.ChunkPreparer<PersonSearchResultFull>() {
+                    @Override
+                    public void prepare(List<PersonSearchResultFull> chunk) {
+                        final Map<String, PersonSearchResultFull> resultsBySchoolIdMap = Maps.newHashMap();
+                        final List<UUID> personUUIDs = Lists.newArrayList();
+                        final List<String> personSchoolIds = Lists.newArrayList();
+                        final List<String> externalOnlySchoolIds = Lists.newArrayList();
+
+                        loadIdListsAndResultMap(personUUIDs, personSchoolIds, externalOnlySchoolIds,
+                                resultsBySchoolIdMap, chunk);
+
+                        inChunkSession(new Runnable() {
+                            @Override
+                            public void run() {
+                                loadCustomizableDataForOptions(customOptions, personUUIDs, personSchoolIds,
+                                        externalOnlySchoolIds, resultsBySchoolIdMap);
+                            }
+                        });
+                    }
+                });
+    }
 
-                loadCustomizableDataForOptions(customOptions, personUUIDs, personSchoolIds, externalOnlySchoolIds,
-                        resultsBySchoolIdMap);
+    /**
+     * Runs the enrichment lookups for one export chunk in a Hibernate session of their own, bound in place of the
+     * request's session and closed when they return. Whatever they load is released with the chunk, rather than
+     * piling up in the request's session for the whole export. Inside a transaction the lookups have to share its
+     * session, so they just run in it.
+     */
+    private void inChunkSession(Runnable work) {
+        if ( TransactionSynchronizationManager.isActualTransactionActive() ) {
+            work.run();
+            return;
+        }
+        final Object requestSession = TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
+        final Session session = sessionFactory.openSession();
+        session.setFlushMode(FlushMode.MANUAL);
+        TransactionSynchronizationManager.bindResource(sessionFactory, new SessionHolder(session));
+        try {
+            work.run();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(sessionFactory);
+            SessionFactoryUtils.closeSession(session);
+            if ( requestSession != null ) {
+                TransactionSynchronizationManager.bindResource(sessionFactory, requestSession);
             }
-            csvWriterHelper.write(resultsBySchoolIdMap.values(), -1L);
         }
     }
 
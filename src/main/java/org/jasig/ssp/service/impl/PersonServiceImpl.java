@@ -43,6 +43,7 @@ import org.jasig.ssp.transferobject.PersonTO;
 import org.jasig.ssp.transferobject.reports.BaseStudentReportTO;
 import org.jasig.ssp.transferobject.reports.DisabilityServicesReportTO;
 import org.jasig.ssp.transferobject.reports.PersonSearchFormTO;
+import org.jasig.ssp.util.WorkerPool;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.jasig.ssp.util.transaction.WithTransaction;
@@ -52,6 +53,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -59,6 +62,8 @@ import org.springframework.util.StringUtils;
 import javax.portlet.PortletRequest;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -110,6 +115,14 @@ public class PersonServiceImpl implements PersonService {
 	@Value("#{configProperties.per_coach_sync_transactions}")
 	private boolean perCoachSyncTransactions = true;
 
+	/**
+	 * Size of the worker pool {@link #syncCoaches()} uses to create coaches
+	 * found in the directory but not yet in SSP. Only applies when
+	 * {@link #perCoachSyncTransactions} is <code>true</code>.
+	 */
+	@Value("#{configProperties.coach_sync_worker_threads}")
+	private int coachSyncWorkerThreads = 4;
+
 
 	private static interface PersonAttributesLookup {
 		public PersonAttributesResult lookupPersonAttributes(String username) throws ObjectNotFoundException;
@@ -325,6 +338,24 @@ public class PersonServiceImpl implements PersonService {
 		return people;
 	}
 
+	@Override
+	public List<Person> getAfterUsername(final String afterUsername, final String throughUsername,
+			final SortingAndPaging sAndP) {
+		return dao.getAfterUsername(afterUsername, throughUsername, sAndP);
+	}
+
+	@Override
+	public List<String> getActiveUsernamePartitionBoundaries(final int partitions) {
+		return dao.getActiveUsernamePartitionBoundaries(partitions);
+	}
+
+	@Override
+	public List<Person> getActiveByUsernameRange(final String afterUsername,
+			final String throughUsername, final int maxResults) {
+		return dao.getActiveByUsernameRange(afterUsername, throughUsername,
+				maxResults);
+	}
+
 	/**
 	 * Retrieves the specified Person.
 	 * 
@@ -420,43 +451,72 @@ public class PersonServiceImpl implements PersonService {
 				throw new ObjectNotFoundException("Unable to find person by schoolId: " + schoolId, "Person");
 			}
 
-            Person person = null;
-            //Check if internal/external records have same username but different school_id;
-            //  left unhandled will cause error below in updatePersonFromExternalPerson if commit is true.
-            try {
-                person = dao.getByUsername(externalPerson.getUsername());
-            } catch (ObjectNotFoundException ofne) {
-                //continue no mismatch/or external-only
-            }
+			return personFromExternalPerson(externalPerson, commitPerson, isStudent);
+		}
+	}
 
-            if (person == null) {
-                person = new Person(); //no mismatch/or external-only
-                evict(person);
-            } else {
-                directoryPersonSearchDao.purgeDuplicateRecord(externalPerson.getSchoolId(), externalPerson.getUsername()); //duplicate found purge from mv directory person otherwise will block update
-            }
+	@Override
+	public Map<String, Person> getInternalOrExternalPeopleBySchoolIds(final Collection<String> schoolIds,
+			final boolean commitPerson, final boolean isStudent) {
+		final Map<String, Person> people = new HashMap<String, Person>();
+		if (schoolIds == null || schoolIds.isEmpty()) {
+			return people;
+		}
+
+		for (final Person person : dao.getBySchoolIds(schoolIds)) {
+			people.put(person.getSchoolId(), person);
+		}
+
+		final Set<String> externalOnly = new HashSet<String>(schoolIds);
+		externalOnly.removeAll(people.keySet());
+		if (!externalOnly.isEmpty()) {
+			for (final ExternalPerson externalPerson : externalPersonService.getBySchoolIds(externalOnly)) {
+				people.put(externalPerson.getSchoolId(),
+						personFromExternalPerson(externalPerson, commitPerson, isStudent));
+			}
+		}
+
+		return people;
+	}
 
-			externalPersonService.updatePersonFromExternalPerson(person, externalPerson, commitPerson, isStudent);
+	private Person personFromExternalPerson(final ExternalPerson externalPerson, final boolean commitPerson,
+											final boolean isStudent) {
+        Person person = null;
+        //Check if internal/external records have same username but different school_id;
+        //  left unhandled will cause error below in updatePersonFromExternalPerson if commit is true.
+        try {
+            person = dao.getByUsername(externalPerson.getUsername());
+        } catch (ObjectNotFoundException ofne) {
+            //continue no mismatch/or external-only
+        }
+
+        if (person == null) {
+            person = new Person(); //no mismatch/or external-only
+            evict(person);
+        } else {
+            directoryPersonSearchDao.purgeDuplicateRecord(externalPerson.getSchoolId(), externalPerson.getUsername()); //duplicate found purge from mv directory person otherwise will block update
+        }
+
+		externalPersonService.updatePersonFromExternalPerson(person, externalPerson, commitPerson, isStudent);
+
+        if (commitPerson) {
+            syncSpecialServiceGroups(person); //syncs and saves SSGs
+        } else {
+            //retrieves external SSGs syncs to internal ids and sets in model as if SSG's actually were in person
+            // used for times where we load external person but don't save yet e.g. EditPerson/CaseloadAssign etc.
+            if (CollectionUtils.isNotEmpty(person.getSpecialServiceGroups())) {
+                final Set<PersonSpecialServiceGroup> toSetForPerson = person.getSpecialServiceGroups();
+                toSetForPerson.addAll(
+                    externalStudentSpecialServiceGroupService.getStudentsExternalSSGsSyncedAsInternalSSGs(person));
+                person.setSpecialServiceGroups(toSetForPerson);
 
-            if (commitPerson) {
-                syncSpecialServiceGroups(person); //syncs and saves SSGs
             } else {
-                //retrieves external SSGs syncs to internal ids and sets in model as if SSG's actually were in person
-                // used for times where we load external person but don't save yet e.g. EditPerson/CaseloadAssign etc.
-                if (CollectionUtils.isNotEmpty(person.getSpecialServiceGroups())) {
-                    final Set<PersonSpecialServiceGroup> toSetForPerson = person.getSpecialServiceGroups();
-                    toSetForPerson.addAll(
-                        externalStudentSpecialServiceGroupService.getStudentsExternalSSGsSyncedAsInternalSSGs(person));
-                    person.setSpecialServiceGroups(toSetForPerson);
-
-                } else {
-                    person.setSpecialServiceGroups(externalStudentSpecialServiceGroupService.
-                        getStudentsExternalSSGsSyncedAsInternalSSGs(person));
-                }
+                person.setSpecialServiceGroups(externalStudentSpecialServiceGroupService.
+                    getStudentsExternalSSGsSyncedAsInternalSSGs(person));
             }
+        }
 
-			return person;
-		}
+		return person;
 	}
 
 	/**
@@ -787,7 +847,7 @@ public class PersonServiceImpl implements PersonService {
 	@Override
 	public PagingWrapper<Person> syncCoaches() {
 		long methodStart = new Date().getTime();
-		final Collection<Person> coaches = Lists.newArrayList();
+		final Collection<Person> coaches = Collections.synchronizedList(Lists.<Person>newArrayList());
 
 		if ( Thread.currentThread().isInterrupted() ) {
 			LOGGER.info("Abandoning syncCoaches because of thread interruption");
@@ -799,111 +859,192 @@ public class PersonServiceImpl implements PersonService {
 		long mergeLoopStart = new Date().getTime();
 		final AtomicLong timeInExternalReads = new AtomicLong();
 		final AtomicLong timeInExternalWrites = new AtomicLong();
-		for (final String coachUsername : coachUsernames) {
-
-			if ( Thread.currentThread().isInterrupted() ) {
-				LOGGER.info("Abandoning syncCoaches on username {} because of thread interruption", coachUsername);
-				break;
-			}
 
-			long singlePersonStart = new Date().getTime();
-
-			final AtomicReference<Person> coach = new AtomicReference<Person>();
-
-			try {
-				withCoachSyncTransaction(new Callable<Object>() {
-					@Override
-					public Object call() throws Exception {
-						long localPersonLookupStart = new Date().getTime();
+		// Coaches already in the local SSP.person table need no sync, so only
+		// the ones missing there are looked up in external data
+		final List<ExternalPerson> missingCoaches = withCoachSyncTransaction(new Callable<List<ExternalPerson>>() {
+			@Override
+			public List<ExternalPerson> call() throws Exception {
+				final Map<String, String> missingUsernames = new LinkedHashMap<String, String>();
+				for ( String coachUsername : coachUsernames ) {
+					if ( coachUsername != null ) {
+						missingUsernames.put(coachUsername.toLowerCase(), coachUsername);
+					}
+				}
 
-                        try {
-							coach.set(personFromUsername(coachUsername));
-						} catch (final ObjectNotFoundException e) {
-							LOGGER.debug("Coach {} not found", coachUsername);
-						}
+				long localPersonLookupStart = new Date().getTime();
+				for ( Person person : dao.getByUsernames(missingUsernames.values()) ) {
+					if ( person.getUsername() != null
+							&& missingUsernames.remove(person.getUsername().toLowerCase()) != null ) {
+						coaches.add(person);
+					}
+				}
+				long localPersonLookupEnd = new Date().getTime();
+				TIMING_LOGGER.info("Read {} local coaches by username in {} ms, {} missing",
+						new Object[] { coaches.size(), localPersonLookupEnd - localPersonLookupStart,
+								missingUsernames.size() });
 
-						long localPersonLookupEnd = new Date().getTime();
-						TIMING_LOGGER.info("Read local coach by username {} in {} ms",
-								coachUsername, localPersonLookupEnd - localPersonLookupStart);
+				return readExternalCoaches(missingUsernames, timeInExternalReads);
+			}
+		});
 
-						// Does coach exist in local SSP.person table?
+		if ( !(missingCoaches.isEmpty()) ) {
+			if ( perCoachSyncTransactions ) {
+				syncCoachesConcurrently(missingCoaches, coaches, timeInExternalWrites);
+			} else {
+				// Everything has to happen in the caller's transaction, so
+				// there's nothing for worker threads to do
+				for ( ExternalPerson externalPerson : missingCoaches ) {
+					if ( Thread.currentThread().isInterrupted() ) {
+						LOGGER.info("Abandoning syncCoaches on username {} because of thread interruption",
+								externalPerson.getUsername());
+						break;
+					}
+					syncCoach(externalPerson, coaches, timeInExternalWrites);
+				}
+			}
+		}
 
-						if (coach.get() == null) {
+		final Long mergeLoopEnd = new Date().getTime();
+		TIMING_LOGGER.info("All SSP merges for {} coaches completed in {} ms. Reading: {} ms. Writing: {} ms",
+				new Object[] { coachUsernames.size(), mergeLoopEnd - mergeLoopStart,
+						timeInExternalReads.get(), timeInExternalWrites.get() });
 
-							// Attempt to find coach in external data
-							try {
-								long externalPersonLookupStart = new Date().getTime();
+		final PagingWrapper pw = new PagingWrapper<Person>(coaches);
+		long methodEnd = new Date().getTime();
+		TIMING_LOGGER.info("Read and merged PersonAttributesService {} coaches in {} ms",
+                coaches.size(), methodEnd - methodStart);
 
-								final ExternalPerson externalPerson = externalPersonService
-										.getByUsername(coachUsername);
+		return pw;
+	}
 
-								long externalPersonLookupEnd = new Date().getTime();
-								long externalPersonLookupElapsed = externalPersonLookupEnd -
-										externalPersonLookupStart;
-								timeInExternalReads.set(timeInExternalReads.get()
-										+ externalPersonLookupElapsed);
-								TIMING_LOGGER.info("Read external coach by username {} in {} ms",
-										coachUsername, externalPersonLookupElapsed);
+	/**
+	 * Looks up external records for the given coaches in one batched query.
+	 * That query matches usernames exactly, so whatever it misses falls back
+	 * to the case-insensitive single lookup.
+	 *
+	 * @param missingUsernames directory usernames keyed by their lower-cased
+	 *        form
+	 */
+	private List<ExternalPerson> readExternalCoaches(final Map<String, String> missingUsernames,
+			final AtomicLong timeInExternalReads) {
+		final List<ExternalPerson> externalCoaches = Lists.newArrayList();
+		if ( missingUsernames.isEmpty() ) {
+			return externalCoaches;
+		}
 
-								long externalPersonSyncStart = new Date().getTime();
+		long externalPersonLookupStart = new Date().getTime();
+		final Map<String, String> unmatched = new LinkedHashMap<String, String>(missingUsernames);
+		for ( ExternalPerson externalPerson : externalPersonService.getByUsernames(missingUsernames.values()) ) {
+			if ( externalPerson.getUsername() != null
+					&& unmatched.remove(externalPerson.getUsername().toLowerCase()) != null ) {
+				externalCoaches.add(externalPerson);
+			}
+		}
+		for ( String coachUsername : unmatched.values() ) {
+			try {
+				externalCoaches.add(externalPersonService.getByUsername(coachUsername));
+			} catch ( final ObjectNotFoundException e ) {
+				LOGGER.debug("Coach {} not found in external data", coachUsername);
+			}
+		}
 
-								coach.set(new Person()); // NOPMD
-								externalPersonService.updatePersonFromExternalPerson(
-										coach.get(), externalPerson,true, false);
+		long externalPersonLookupElapsed = new Date().getTime() - externalPersonLookupStart;
+		timeInExternalReads.addAndGet(externalPersonLookupElapsed);
+		TIMING_LOGGER.info("Read {} of {} missing external coaches by username in {} ms",
+				new Object[] { externalCoaches.size(), missingUsernames.size(), externalPersonLookupElapsed });
 
-								long externalPersonSyncEnd = new Date().getTime();
-								long externalPersonSyncElapsed = externalPersonSyncEnd -
-										externalPersonSyncStart;
-								timeInExternalWrites.set(timeInExternalWrites.get()
-										+ externalPersonSyncElapsed);
-								TIMING_LOGGER.info("Synced external coach by username {} in {} ms",
-										coachUsername, externalPersonSyncElapsed);
+		return externalCoaches;
+	}
 
-							} catch (final ObjectNotFoundException e) {
-								LOGGER.debug("Coach {} not found in external data",
-										coachUsername);
-							}
+	/**
+	 * Creates the given coaches on a small worker pool, each in its own
+	 * transaction. Workers run as whoever is running the sync so auditing
+	 * still knows who wrote the new rows. The first unexpected failure stops
+	 * the remaining work and is rethrown once the pool is done.
+	 */
+	private void syncCoachesConcurrently(final List<ExternalPerson> missingCoaches, final Collection<Person> coaches,
+			final AtomicLong timeInExternalWrites) {
+		final Queue<ExternalPerson> remaining = new ConcurrentLinkedQueue<ExternalPerson>(missingCoaches);
+		final SecurityContext securityContext = SecurityContextHolder.getContext();
+		final AtomicBoolean abandon = new AtomicBoolean();
+		final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+		final int workerCount = WorkerPool.size(coachSyncWorkerThreads, missingCoaches.size());
+		LOGGER.info("Syncing {} coaches missing from SSP with {} workers", missingCoaches.size(), workerCount);
+		final boolean finished = WorkerPool.run("coach-sync", workerCount, new Runnable() {
+			@Override
+			public void run() {
+				SecurityContextHolder.setContext(securityContext);
+				try {
+					ExternalPerson externalPerson;
+					while ( !(abandon.get()) && (externalPerson = remaining.poll()) != null ) {
+						if ( Thread.currentThread().isInterrupted() ) {
+							LOGGER.info("Abandoning syncCoaches on username {} because of thread interruption",
+									externalPerson.getUsername());
+							abandon.set(true);
+							return;
+						}
+						try {
+							syncCoach(externalPerson, coaches, timeInExternalWrites);
+						} catch ( RuntimeException e ) {
+							failure.compareAndSet(null, e);
+							abandon.set(true);
 						}
-						return coach.get();
 					}
-				});
-			} catch ( ConstraintViolationException e ) {
-
-					if ( "uq_person_school_id".equals(e.getConstraintName()) ) {
-					LOGGER.warn("Skipping coach with non-unique schoolId '{}' (username '{}')",
-							new Object[] { coach.get().getSchoolId(), coachUsername, e });
-					coach.set(null);
-
-				} else if ( "unique_person_username".equals(e.getConstraintName()) ) {
-					LOGGER.warn("Skipping coach with non-unique username '{}' (schoolId '{}')",
-							new Object[] { coachUsername, coach.get().getSchoolId(), e });
-					coach.set(null);
-
-				} else {
-					throw e;
+				} finally {
+					SecurityContextHolder.clearContext();
 				}
 			}
-
-			if (coach.get() != null) {
-				coaches.add(coach.get());
+		}, abandon, new Runnable() {
+			@Override
+			public void run() {
+				LOGGER.info("Coach sync still running. Coaches left to sync: {}", remaining.size());
 			}
+		});
+		if ( !(finished) ) {
+			LOGGER.info("Abandoning syncCoaches because of thread interruption");
+		}
 
-			long singlePersonEnd = new Date().getTime();
-			TIMING_LOGGER.info("SSP coach merge for username {} completed in {} ms",
-                    coachUsername, singlePersonEnd - singlePersonStart);
+		if ( failure.get() != null ) {
+			throw failure.get();
 		}
+	}
 
-		final Long mergeLoopEnd = new Date().getTime();
-		TIMING_LOGGER.info("All SSP merges for {} coaches completed in {} ms. Reading: {} ms. Writing: {} ms",
-				new Object[] { coachUsernames.size(), mergeLoopEnd - mergeLoopStart,
-						timeInExternalReads.get(), timeInExternalWrites.get() });
+	private void syncCoach(final ExternalPerson externalPerson, final Collection<Person> coaches,
+			final AtomicLong timeInExternalWrites) {
+		final String coachUsername = externalPerson.getUsername();
+		long singlePersonStart = new Date().getTime();
 
-		final PagingWrapper pw = new PagingWrapper<Person>(coaches);
-		long methodEnd = new Date().getTime();
-		TIMING_LOGGER.info("Read and merged PersonAttributesService {} coaches in {} ms",
-                coaches.size(), methodEnd - methodStart);
+		final Person coach = new Person(); // NOPMD
+		try {
+			withCoachSyncTransaction(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					externalPersonService.updatePersonFromExternalPerson(coach, externalPerson, true, false);
+					return coach;
+				}
+			});
+			coaches.add(coach);
+		} catch ( ConstraintViolationException e ) {
 
-		return pw;
+			if ( "uq_person_school_id".equals(e.getConstraintName()) ) {
+				LOGGER.warn("Skipping coach with non-unique schoolId '{}' (username '{}')",
+						new Object[] { coach.getSchoolId(), coachUsername, e });
+
+			} else if ( "unique_person_username".equals(e.getConstraintName()) ) {
+				LOGGER.warn("Skipping coach with non-unique username '{}' (schoolId '{}')",
+						new Object[] { coachUsername, coach.getSchoolId(), e });
+
+			} else {
+				throw e;
+			}
+		}
+
+		long singlePersonEnd = new Date().getTime();
+		timeInExternalWrites.addAndGet(singlePersonEnd - singlePersonStart);
+		TIMING_LOGGER.info("Synced external coach by username {} in {} ms",
+				coachUsername, singlePersonEnd - singlePersonStart);
 	}
 
 	@Override
@@ -220,6 +220,11 @@ public class PlanServiceImpl extends AbstractPlanServiceImpl<Plan,PlanTO,PlanOut
 		return dao.getAllActivePlanIds();
 	}
 
+	@Override
+	public Map<UUID, String> getActivePlanRevisions() {
+		return dao.getActivePlanRevisions();
+	}
+
 	@Override
 	public List<MapPlanStatusReportCourse> getAllPlanCoursesForStatusReport(
 			UUID planId) {
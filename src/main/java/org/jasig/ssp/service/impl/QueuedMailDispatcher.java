@@ -0,0 +1,218 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import javax.mail.internet.MimeMessage;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands prepared {@link MimeMessage}s to a {@link JavaMailSender} over a
+ * bounded number of concurrent SMTP connections, optionally throttled to a
+ * maximum number of messages per minute.
+ *
+ * <p>Each connection is a single {@link JavaMailSender#send(MimeMessage[])}
+ * call, which for {@code JavaMailSenderImpl} means one SMTP session is opened
+ * and reused for every message in that chunk rather than one session per
+ * message.</p>
+ *
+ * <p>Not a Spring bean. One instance is created per queue drain and must be
+ * {@link #shutdown()} when the drain completes.</p>
+ */
+class QueuedMailDispatcher {
+
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(QueuedMailDispatcher.class);
+
+	private final JavaMailSender javaMailSender;
+
+	private final int transportCount;
+
+	private final long nanosPerMessage;
+
+	private final ExecutorService executor;
+
+	private final Clock clock;
+
+	private long nextPermitNanos;
+
+	/**
+	 * Time source and sleeper for the rate limit, replaceable in tests.
+	 */
+	interface Clock {
+
+		long nanoTime();
+
+		void sleepNanos(long nanos) throws InterruptedException;
+	}
+
+	static final Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleepNanos(long nanos) throws InterruptedException {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+	};
+
+	/**
+	 * @param javaMailSender
+	 *            sender to hand each chunk of messages to
+	 * @param transportCount
+	 *            maximum number of SMTP connections open at once; values less
+	 *            than 1 are treated as 1
+	 * @param maxPerMinute
+	 *            maximum number of messages to hand to the sender per minute;
+	 *            values less than 1 mean unlimited
+	 */
+	QueuedMailDispatcher(JavaMailSender javaMailSender, int transportCount,
+			int maxPerMinute) {
+		this(javaMailSender, transportCount, maxPerMinute, SYSTEM_CLOCK);
+	}
+
+	/**
+	 * As {@link #QueuedMailDispatcher(JavaMailSender, int, int)}, with the
+	 * rate limit measured and waited out on the given clock.
+	 */
+	QueuedMailDispatcher(JavaMailSender javaMailSender, int transportCount,
+			int maxPerMinute, Clock clock) {
+		this.javaMailSender = javaMailSender;
+		this.transportCount = Math.max(1, transportCount);
+		this.nanosPerMessage = maxPerMinute < 1 ? 0L
+				: TimeUnit.MINUTES.toNanos(1) / maxPerMinute;
+		this.executor = Executors.newFixedThreadPool(this.transportCount);
+		this.clock = clock;
+		this.nextPermitNanos = clock.nanoTime();
+	}
+
+	/**
+	 * Send the given messages, blocking until every chunk has been handed off.
+	 *
+	 * @param mimeMessages
+	 *            messages to send
+	 * @return messages which could not be sent, mapped to the cause. Never
+	 *         null. Messages not in this map were accepted by the mail server.
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while throttling or
+	 *             waiting on the connection pool
+	 */
+	Map<MimeMessage, Exception> dispatch(Collection<MimeMessage> mimeMessages)
+			throws InterruptedException {
+		final Map<MimeMessage, Exception> failures = Maps.newHashMap();
+		if ( mimeMessages == null || mimeMessages.isEmpty() ) {
+			return failures;
+		}
+
+		final List<MimeMessage> all = Lists.newArrayList(mimeMessages);
+		final int chunkSize = (all.size() + transportCount - 1) / transportCount;
+		final List<Future<Map<MimeMessage, Exception>>> pending = Lists.newArrayList();
+		for ( final List<MimeMessage> chunk : Lists.partition(all, chunkSize) ) {
+			acquire(chunk.size());
+			pending.add(executor.submit(new Callable<Map<MimeMessage, Exception>>() {
+				@Override
+				public Map<MimeMessage, Exception> call() throws Exception {
+					return sendChunk(chunk);
+				}
+			}));
+		}
+
+		for ( Future<Map<MimeMessage, Exception>> future : pending ) {
+			try {
+				failures.putAll(future.get());
+			} catch ( ExecutionException e ) {
+				// sendChunk() already traps everything, so this is unexpected
+				LOGGER.error("Unexpected failure in mail dispatch worker", e);
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Stop the connection pool. Any in-flight chunks are allowed to finish.
+	 */
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	private Map<MimeMessage, Exception> sendChunk(List<MimeMessage> chunk) {
+		final Map<MimeMessage, Exception> failures = Maps.newHashMap();
+		try {
+			javaMailSender.send(chunk.toArray(new MimeMessage[chunk.size()]));
+		} catch ( MailSendException e ) {
+			final Map<Object, Exception> failedMessages = e.getFailedMessages();
+			if ( failedMessages == null || failedMessages.isEmpty() ) {
+				markAllFailed(chunk, e, failures);
+			} else {
+				for ( Map.Entry<Object, Exception> failed : failedMessages.entrySet() ) {
+					if ( failed.getKey() instanceof MimeMessage ) {
+						failures.put((MimeMessage) failed.getKey(), failed.getValue());
+					}
+				}
+			}
+		} catch ( RuntimeException e ) {
+			markAllFailed(chunk, e, failures);
+		}
+		return failures;
+	}
+
+	private void markAllFailed(List<MimeMessage> chunk, Exception e,
+			Map<MimeMessage, Exception> failures) {
+		LOGGER.warn("Failed to send chunk of {} queued messages", chunk.size(), e);
+		for ( MimeMessage mimeMessage : chunk ) {
+			failures.put(mimeMessage, e);
+		}
+	}
+
+	/**
+	 * Blocks until {@code permits} messages may be sent without exceeding the
+	 * configured per-minute rate. Permits are reserved a chunk at a time, so
+	 * the largest burst is a single chunk.
+	 */
+	private void acquire(int permits) throws InterruptedException {
+		if ( nanosPerMessage <= 0 ) {
+			return;
+		}
+		final long now = clock.nanoTime();
+		if ( nextPermitNanos < now ) {
+			nextPermitNanos = now;
+		}
+		final long waitNanos = nextPermitNanos - now;
+		nextPermitNanos += nanosPerMessage * permits;
+		if ( waitNanos > 0 ) {
+			clock.sleepNanos(waitNanos);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import java.util.Date;
+import java.util.List;
+
+import org.jasig.ssp.model.ScheduledApplicationTaskStatus;
+import org.jasig.ssp.model.ScheduledTaskStatus;
+import org.jasig.ssp.service.PersonSearchService;
+import org.jasig.ssp.service.RefreshDirectoryPersonIncrementalTask;
+import org.jasig.ssp.service.ScheduledApplicationTaskStatusService;
+import org.jasig.ssp.service.reference.ConfigService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The refresh watermark is the start of the last successful incremental or full refresh, whichever is later, less
+ * a small overlap to catch transactions which were still in flight when that refresh started. Re-deriving a row
+ * twice is harmless. Nothing is done while a full refresh is running, or before one has ever completed.
+ */
+@Service
+public class RefreshPersonDirectoryIncrementalImpl implements RefreshDirectoryPersonIncrementalTask {
+
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(RefreshPersonDirectoryIncrementalImpl.class);
+
+	private static final String MAX_ROWS_CONFIG_NAME = "task_directory_person_incremental_max_rows";
+
+	private static final long WATERMARK_OVERLAP_MILLIS = 2 * 60 * 1000;
+
+	// keep well under SQL Server's 2100 bind parameter limit
+	private static final int BATCH_SIZE = 500;
+
+	@Autowired
+	private transient PersonSearchService personSearchService;
+
+	@Autowired
+	private transient ScheduledApplicationTaskStatusService taskStatusService;
+
+	@Autowired
+	private transient ConfigService configService;
+
+	@Override
+	public boolean refreshChangedRows() {
+		final ScheduledApplicationTaskStatus full = taskStatusService
+				.getByName(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_TASK_NAME);
+		final ScheduledApplicationTaskStatus blue = taskStatusService
+				.getByName(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_BLUE_TASK_NAME);
+		if ( !(isCompleted(full)) || full.getStartDate() == null
+				|| (blue != null && blue.getStatus() == ScheduledTaskStatus.RUNNING) ) {
+			LOGGER.info("Directory person full refresh running or never completed. Skipping incremental refresh.");
+			return true;
+		}
+
+		final ScheduledApplicationTaskStatus previous = taskStatusService
+				.getByName(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME);
+		Date watermark = full.getStartDate();
+		if ( isCompleted(previous) && previous.getStartDate() != null
+				&& previous.getStartDate().after(watermark) ) {
+			watermark = previous.getStartDate();
+		}
+		final Date since = new Date(watermark.getTime() - WATERMARK_OVERLAP_MILLIS);
+
+		taskStatusService.beginTask(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME);
+		try {
+			final List<String> schoolIds = personSearchService.getDirectoryPersonSchoolIdsChangedSince(since);
+			final int maxRows = configService.getByNameExceptionOrDefaultAsInt(MAX_ROWS_CONFIG_NAME);
+			if ( maxRows > 0 && schoolIds.size() > maxRows ) {
+				LOGGER.info("{} directory person rows changed since {}, more than the incremental limit of {}. "
+						+ "Falling back to a full refresh.", new Object[] { schoolIds.size(), since, maxRows });
+				// the full refresh starts after this one, so it becomes the next watermark
+				taskStatusService.completeTask(
+						ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME);
+				return false;
+			}
+
+			int refreshed = 0;
+			for ( List<String> batch : Lists.partition(schoolIds, BATCH_SIZE) ) {
+				refreshed += personSearchService.refreshDirectoryPerson(batch);
+			}
+			taskStatusService.completeTask(
+					ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME);
+			LOGGER.info("Incrementally refreshed {} directory person rows for {} people changed since {}",
+					new Object[] { refreshed, schoolIds.size(), since });
+			return true;
+		} catch ( RuntimeException e ) {
+			// next run falls back to the last full refresh as its watermark
+			taskStatusService.failTask(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME);
+			throw e;
+		}
+	}
+
+	private boolean isCompleted(ScheduledApplicationTaskStatus status) {
+		return status != null && status.getStatus() == ScheduledTaskStatus.COMPLETED;
+	}
+}
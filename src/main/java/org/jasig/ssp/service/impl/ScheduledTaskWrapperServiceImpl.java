@@ -103,6 +103,7 @@ public class ScheduledTaskWrapperServiceImpl
 	public static final String SYNC_EXTERNAL_PERSONS_TASK_NAME = "sync-external-persons";
 	public static final String REFRESH_DIRECTORY_PERSON_TASK_NAME = "directory-person-refresh";
 	public static final String REFRESH_DIRECTORY_PERSON_BLUE_TASK_NAME = "directory-person-refresh-blue";
+	public static final String REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME = "directory-person-refresh-incremental";
 	public static final String CALC_MAP_STATUS_REPORTS_TASK_NAME = "calc-map-status-reports";
 	public static final String BULK_JOB_QUEUE_TASK_NAME = "bulk-job-queue";
 	public static final String SEND_TASK_REMINDERS_TASK_NAME = "send-task-reminders";
@@ -137,6 +138,10 @@ public class ScheduledTaskWrapperServiceImpl
 	
 	private static final String DIRECTORY_PERSON_REFRESH_STARTUP_TASK_ID = "task_directory_person_refresh_on_start_up";
 	private static final String STARTUP_PERSON_REFRESH_TASK_TRIGGER_CONFIG_NAME = "task_directory_person_refresh_start_up_trigger";
+
+	private static final String DIRECTORY_PERSON_INCREMENTAL_REFRESH_TASK_ID = "task_directory_person_incremental_refresh";
+	private static final String DIRECTORY_PERSON_INCREMENTAL_REFRESH_TASK_TRIGGER_CONFIG_NAME = "task_directory_person_incremental_refresh_trigger";
+	private static final String DIRECTORY_PERSON_INCREMENTAL_REFRESH_TASK_DEFAULT_TRIGGER = NEVER;
 	
 
 	private static final String SCHEDULER_CONFIG_POLL_TASK_ID = "task_scheduler_config_poll";
@@ -208,6 +213,9 @@ public class ScheduledTaskWrapperServiceImpl
 	@Autowired
 	private transient RefreshDirectoryPersonBlueTask directoryPersonRefreshBlueTask;
 
+	@Autowired
+	private transient RefreshDirectoryPersonIncrementalTask directoryPersonIncrementalRefreshTask;
+
 	@Autowired
 	private transient MapStatusReportCalcTask mapStatusReportCalcTask;
 	
@@ -324,6 +332,16 @@ public class ScheduledTaskWrapperServiceImpl
                     DIRECTORY_PERSON_REFRESH_TASK_DEFAULT_TRIGGER,
                     STARTUP_PERSON_REFRESH_TASK_TRIGGER_CONFIG_NAME));
 
+            this.tasks.put(DIRECTORY_PERSON_INCREMENTAL_REFRESH_TASK_ID, new Task(DIRECTORY_PERSON_INCREMENTAL_REFRESH_TASK_ID,
+                    new Runnable() {
+                        @Override
+                        public void run () {
+                            refreshDirectoryPersonIncremental();
+                        }
+                    },
+                    DIRECTORY_PERSON_INCREMENTAL_REFRESH_TASK_DEFAULT_TRIGGER,
+                    DIRECTORY_PERSON_INCREMENTAL_REFRESH_TASK_TRIGGER_CONFIG_NAME));
+
 
             this.tasks.put(MAP_STATUS_REPORT_CALC_TASK_ID, new Task(MAP_STATUS_REPORT_CALC_TASK_ID,
                     new Runnable() {
@@ -1304,6 +1322,28 @@ public class ScheduledTaskWrapperServiceImpl
 		execBatchedTaskWithName(REFRESH_DIRECTORY_PERSON_BLUE_TASK_NAME, directoryPersonRefreshBlueTask);
 	}
 
+    /**
+     * Re-derives just the mv_directory_person rows whose SSP-side data changed since the
+     *  last refresh, falling back to the full blue/main refresh if too much changed.
+     *  Statuses are managed by the task itself since it needs the previous run's start as
+     *  its watermark.
+     *
+     * Not {@code @Scheduled} b/c its scheduling is now handled by the
+     * config polling job.
+     */
+	@Override
+	public void refreshDirectoryPersonIncremental() {
+		execWithTaskContext(REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME, new Runnable() {
+			@Override
+			public void run() {
+				if ( !(directoryPersonIncrementalRefreshTask.refreshChangedRows()) ) {
+					refreshDirectoryPersonBlue();
+					refreshDirectoryPerson();
+				}
+			}
+		}, false, null);
+	}
+
     /**
      * Calculates the MAP status calculation task which calculates active student's active
      *  plans against the trasncript and other data and marks them On or Off plan.
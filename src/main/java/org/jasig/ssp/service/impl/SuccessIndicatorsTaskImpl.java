@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.service.impl;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -46,23 +47,26 @@ import org.jasig.ssp.service.reference.SuccessIndicatorService;
 import org.jasig.ssp.transferobject.EvaluatedSuccessIndicatorTO;
 import org.jasig.ssp.transferobject.SuccessIndicatorEvaluation;
 import org.jasig.ssp.util.CallableExecutor;
+import org.jasig.ssp.util.WorkerPool;
 import org.jasig.ssp.util.collections.Pair;
-import org.jasig.ssp.util.sort.PagingWrapper;
-import org.jasig.ssp.util.sort.SortDirection;
-import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.jasig.ssp.util.transaction.WithTransaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -86,6 +90,10 @@ public class SuccessIndicatorsTaskImpl implements SuccessIndicatorsTask {
     private static final String MAX_BATCHES_PER_EXECUTION_CONFIG_NAME = "task_external_person_sync_max_batches_per_exec";
     private static final String EARLY_ALERT_CAMPUS_CODE_CONFIG_NAME = "task_success_indicator_early_alert_campus_code";
     private static final int DEFAULT_MAX_BATCHES_PER_EXECUTION = -1; // unlimited
+    private static final String PARTITIONS_CONFIG_NAME = "task_success_indicator_partitions";
+    private static final int DEFAULT_PARTITIONS = 16;
+    private static final String WORKER_THREADS_CONFIG_NAME = "task_success_indicator_worker_threads";
+    private static final int DEFAULT_WORKER_THREADS = 4;
 
     @Autowired
     private ConfigService configService;
@@ -120,15 +128,22 @@ public class SuccessIndicatorsTaskImpl implements SuccessIndicatorsTask {
     @Autowired
     protected transient SessionFactory sessionFactory;
 
-    private transient long nextPersonIndex = 0;
+    /**
+     * Partitions left unfinished by the previous execution (batch limit, error
+     * or interruption). The next execution resumes each from its last
+     * committed username instead of re-partitioning and starting over.
+     * Only kept in memory: after a restart, or on another node, the next
+     * execution partitions again and starts over from the first username.
+     */
+    private transient List<PersonPartition> pendingPartitions;
     private static Map<String, Pair<Boolean, Boolean>> configuredSuccessIndicatorsByCode;
     private static List<SuccessIndicator> configuredSuccessIndicators;
 
 
 
-    // intentionally not transactional; each iteration should be its own transaction.
+    // intentionally not transactional; each batch should be its own transaction.
     @Override
-    public void exec(CallableExecutor<Pair<Long,Long>> batchExec) {
+    public void exec(final CallableExecutor<Pair<Long,Long>> batchExec) {
 
         if ( Thread.currentThread().isInterrupted() ) {
             LOGGER.info("Abandoning success indicator count/alert task because of thread interruption");
@@ -156,169 +171,219 @@ public class SuccessIndicatorsTaskImpl implements SuccessIndicatorsTask {
 
         LOGGER.info("BEGIN : Success indicator count/alert task...");
 
-        int recordsProcessed = 0;
-        int batch = 0;
-        Exception error = null;
-        int maxBatchesAllowed = DEFAULT_MAX_BATCHES_PER_EXECUTION;
-        while ( true ) {
+        final List<PersonPartition> partitions;
+        if ( pendingPartitions == null ) {
+            partitions = newPartitions(batchExec, getPartitionCount());
+        } else {
+            partitions = pendingPartitions;
+            LOGGER.info("Resuming [{}] unfinished success indicator count/alert partitions", partitions.size());
+        }
+        if ( partitions == null ) {
+            return;
+        }
+
+        final Queue<PersonPartition> remaining = new ConcurrentLinkedQueue<>(partitions);
+        final int workerCount = WorkerPool.size(getWorkerCount(), partitions.size());
+        final AtomicInteger batchesStarted = new AtomicInteger();
+        final AtomicLong recordsProcessed = new AtomicLong();
+        final AtomicBoolean abandon = new AtomicBoolean(false);
+
+        LOGGER.info("Processing [{}] success indicator count/alert partitions with [{}] workers",
+                partitions.size(), workerCount);
+
+        final boolean finished = WorkerPool.run("success-indicators", workerCount, new Runnable() {
+            @Override
+            public void run() {
+                PersonPartition partition;
+                while ( !(abandon.get()) && (partition = remaining.poll()) != null ) {
+                    processPartition(partition, batchExec, batchesStarted, recordsProcessed, abandon);
+                }
+            }
+        }, abandon, new Runnable() {
+            @Override
+            public void run() {
+                LOGGER.debug("Success indicator count/alert task still running. Records processed so far [{}]",
+                        recordsProcessed.get());
+            }
+        });
+        if ( !(finished) ) {
+            LOGGER.error("Abandoning success indicator count/alert task because of an"
+                    + " InterruptionException. Unfinished partitions will resume at"
+                    + " the next execution.");
+        }
+
+        final List<PersonPartition> unfinished = Lists.newArrayList();
+        for ( final PersonPartition partition : partitions ) {
+            if ( !(partition.complete) ) {
+                unfinished.add(partition);
+            }
+        }
+        pendingPartitions = unfinished.isEmpty() ? null : unfinished;
+
+        LOGGER.info("END : success indicator count/alert task. Records processed [{}],"
+                + " partitions left for next execution [{}].", recordsProcessed.get(), unfinished.size());
+    }
+
+    @Override
+    public Class<Pair<Long, Long>> getBatchExecReturnType() {
+        return BATCH_RETURN_TYPE;
+    }
+
+    /**
+     * Works one partition batch by batch until it is exhausted, the batch
+     * limit is hit, or some worker gives up. The partition cursor only moves
+     * after a batch commits, so whatever is left resumes cleanly.
+     */
+    private void processPartition(final PersonPartition partition,
+                                  final CallableExecutor<Pair<Long, Long>> batchExec,
+                                  final AtomicInteger batchesStarted, final AtomicLong recordsProcessed,
+                                  final AtomicBoolean abandon) {
+        while ( !(abandon.get()) ) {
             // Check this config every time in case someone wants to abort a
             // long-running execution.
-            maxBatchesAllowed = getMaxBatchesAllowed();
+            final int maxBatchesAllowed = getMaxBatchesAllowed();
             if ( maxBatchesAllowed == 0 ) {
-                LOGGER.info("Abandoning success indicator count/alert task at position [{}]"
-                                + " and batch [{}] because the  batch limit has been"
-                                + " set to zero. Records processed: [{}]",
-                        new Object[] {nextPersonIndex, batch, recordsProcessed });
-                break;
+                LOGGER.info("Abandoning success indicator count/alert task at partition {}"
+                        + " because the batch limit has been set to zero.", partition);
+                abandon.set(true);
+                return;
+            }
+            final int batch = batchesStarted.incrementAndGet();
+            if ( maxBatchesAllowed > 0 && batch > maxBatchesAllowed ) {
+                LOGGER.debug("No more batches allowed for this execution."
+                        + " Partition {} will resume on next execution.", partition);
+                abandon.set(true);
+                return;
             }
-
-            error = null;
-            batch++;
 
             // again, look up config every time to allow for relatively immediate
             // control over runnaway executions
-            int batchSize = getBatchSize();
-            final SortingAndPaging sAndP = SortingAndPaging.createForSingleSortWithPaging(
-                    ObjectStatus.ACTIVE,
-                    new BigDecimal(nextPersonIndex).intValueExact(),  // API mismatch... see more comments below
-                    batchSize,
-                    "username",
-                    SortDirection.ASC.toString(), null);
-
-            Pair<Long,Long> processedOfTotal = null;
-            try {
-                if ( batchExec == null ) {
-                    processedOfTotal = processIndicatorsForPersonInTransaction(sAndP);
-                } else {
-                    processedOfTotal = batchExec.exec(new Callable<Pair<Long, Long>>() {
-                        @Override
-                        public Pair<Long, Long> call() throws Exception {
-                            return processIndicatorsForPersonInTransaction(sAndP);
-                        }
-                    });
+            final int batchSize = getBatchSize();
+            final AtomicReference<String> lastUsername = new AtomicReference<>();
+            final Callable<Pair<Long, Long>> work = new Callable<Pair<Long, Long>>() {
+                @Override
+                public Pair<Long, Long> call() throws Exception {
+                    return processIndicatorsForPartitionInTransaction(partition, batchSize, lastUsername);
                 }
+            };
+
+            final Pair<Long, Long> processedOfRequested;
+            try {
+                processedOfRequested = batchExec == null ? work.call() : batchExec.exec(work);
             } catch ( InterruptedException e ) {
+                LOGGER.error("Abandoning success indicator count/alert task at partition {}"
+                        + " because of an InterruptionException. Will resume at that"
+                        + " position at the next execution.", partition);
+                abandon.set(true);
                 Thread.currentThread().interrupt(); // reassert
-            } catch (final Exception e) {
-                error = e;
-            } finally {
-
-                if ( processedOfTotal == null ) {
-                    if ( error != null ) {
-                        LOGGER.error("Abandoning success indicator count/alert task at"
-                                        + " position [{}] and batch [{}] because of a"
-                                        + " processing error. Will resume at that"
-                                        + " position at the next execution.",
-                                new Object[] {nextPersonIndex, batch - 1, error });
-                        break;
-                    }
-                    if ( Thread.currentThread().isInterrupted() ) {
-                        LOGGER.error("Abandoning success indicator count/alert task at"
-                                        + " position [{}] and batch [{}] because of an"
-                                        + " InterruptionException. Will resume at that"
-                                        + " position at the next execution.",
-                                nextPersonIndex, batch - 1);
-                        break;
-                    }
-                    // programmer error, no clue what to do so let the NPE's fly...
-                }
-
-                nextPersonIndex += processedOfTotal.getFirst();
-                recordsProcessed += processedOfTotal.getFirst();
-
-                LOGGER.info("Processed [{}] of [{}] candidate person records"
-                                + " as of batch [{}] of [{}]. Total records processed [{}].",
-                        new Object[] {nextPersonIndex, processedOfTotal.getSecond(),
-                                batch, maxBatchesAllowed, recordsProcessed });
-
-                if ( processedOfTotal.getFirst() == 0 ) {
-                    // shouldn't happen but want to guard against endless loops
-                    LOGGER.debug("Appear to be more records to process but"
-                            + " last batch processed zero records. Exiting"
-                            + " success indicator count/alert task.");
-                    nextPersonIndex = 0;
-                    break;
-                }
-
-                if ( maxBatchesAllowed > 0 && batch >= getMaxBatchesAllowed() ) {
-                    LOGGER.debug("No more batches allowed for this execution."
-                            + " Exiting success indicator count/alert task. Will resume at"
-                            + " index [{}] on next execution.", nextPersonIndex);
-                    break;
-                }
-
-                if ( nextPersonIndex >= processedOfTotal.getSecond() ) {
-                    nextPersonIndex = 0;
-                    LOGGER.debug("Reached the end of the list of candidate"
-                            + " persons for success indicator count/alert task. More batches are allowed, so"
-                            + " starting over at index 0.");
-
-                    // no break!!
-                }
-
-                if ( recordsProcessed >= processedOfTotal.getSecond() ) {
-                    LOGGER.debug("More batches allowed, but all candidate" +
-                            " person records have already been processed"
-                            + " in this execution. Will resume at index"
-                            + " [{}] on next execution.", nextPersonIndex);
-                    break;
-                }
+                return;
+            } catch ( Exception e ) {
+                LOGGER.error("Abandoning success indicator count/alert task at partition {}"
+                        + " because of a processing error. Will resume at that"
+                        + " position at the next execution.", partition, e);
+                abandon.set(true);
+                return;
+            }
 
-                // Mismatch between the PagedResponse and SortingAndPaging
-                // APIs mean we can't actually deal with total result sets
-                // larger than Integer.MAX_VALUE
-                if ( nextPersonIndex > Integer.MAX_VALUE ) {
-                    LOGGER.warn("Cannot process more than {} total persons,"
-                                    + " even across executions. Abandoning and"
-                                    + " resetting success indicator count/alert task.",
-                            Integer.MAX_VALUE);
-                    nextPersonIndex = 0;
-                    break;
-                }
+            if ( lastUsername.get() != null ) {
+                partition.cursor = lastUsername.get();
+            }
+            recordsProcessed.addAndGet(processedOfRequested.getFirst());
+            LOGGER.info("Processed [{}] person records in batch [{}] of partition {}. Total records processed [{}].",
+                    new Object[] { processedOfRequested.getFirst(), batch, partition, recordsProcessed.get() });
 
+            if ( processedOfRequested.getFirst() < processedOfRequested.getSecond() ) {
+                partition.complete = true;
+                return;
             }
         }
-
-        LOGGER.info("END : success indicator count/alert task.");
     }
 
-    @Override
-    public Class<Pair<Long, Long>> getBatchExecReturnType() {
-        return BATCH_RETURN_TYPE;
+    /**
+     * Splits active people into contiguous username ranges. Returns null if
+     * the boundaries couldn't be looked up.
+     */
+    private List<PersonPartition> newPartitions(final CallableExecutor<Pair<Long, Long>> batchExec,
+                                                final int partitionCount) {
+        final AtomicReference<List<String>> boundaries = new AtomicReference<>();
+        final Callable<Pair<Long, Long>> work = new Callable<Pair<Long, Long>>() {
+            @Override
+            public Pair<Long, Long> call() throws Exception {
+                return withTransaction.withNewTransaction(new Callable<Pair<Long, Long>>() {
+                    @Override
+                    public Pair<Long, Long> call() throws Exception {
+                        boundaries.set(personService.getActiveUsernamePartitionBoundaries(partitionCount));
+                        return new Pair<>(0L, 0L);
+                    }
+                });
+            }
+        };
+        try {
+            if ( batchExec == null ) {
+                work.call();
+            } else {
+                batchExec.exec(work);
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt(); // reassert
+            LOGGER.error("Abandoning success indicator count/alert task while partitioning"
+                    + " because of an InterruptionException.");
+            return null;
+        } catch ( Exception e ) {
+            LOGGER.error("Abandoning success indicator count/alert task because the person"
+                    + " population could not be partitioned.", e);
+            return null;
+        }
+
+        final List<PersonPartition> partitions = Lists.newArrayList();
+        String after = null;
+        for ( final String through : boundaries.get() ) {
+            partitions.add(new PersonPartition(after, through));
+            after = through;
+        }
+        partitions.add(new PersonPartition(after, null));
+        return partitions;
     }
 
-    protected Pair<Long, Long> processIndicatorsForPersonInTransaction(final SortingAndPaging sAndP) throws Exception {
+    protected Pair<Long, Long> processIndicatorsForPartitionInTransaction(final PersonPartition partition,
+            final int batchSize, final AtomicReference<String> lastUsername) throws Exception {
         return withTransaction.withNewTransaction(new Callable<Pair<Long, Long>>() {
             @Override
             public Pair<Long, Long> call() throws Exception {
-                return processIndicatorsForPerson(sAndP);
+                return processIndicatorsForPartition(partition, batchSize, lastUsername);
             }
         });
     }
 
-    protected Pair<Long,Long> processIndicatorsForPerson(final SortingAndPaging sAndP) throws InterruptedException, ObjectNotFoundException {
+    /**
+     * Processes the next batch of a partition.
+     *
+     * @return number of people processed and the number requested; fewer
+     *  processed than requested means the partition is exhausted
+     */
+    protected Pair<Long,Long> processIndicatorsForPartition(final PersonPartition partition, final int batchSize,
+            final AtomicReference<String> lastUsername) throws InterruptedException, ObjectNotFoundException {
 
         sessionFactory.getCurrentSession().setFlushMode(FlushMode.COMMIT);
 
         // Use InterruptedExceptions instead of manipulating return value b/c
-        // the return value actually means "total number of possible processable"
-        // rows, so if it is returned gracefully, the caller will likely
-        // incorrectly update its internal state, as is the case with the
-        // scheduled job call site.
+        // the caller would otherwise advance the partition cursor past
+        // people who were never processed.
 
         if ( Thread.currentThread().isInterrupted() ) {
             LOGGER.info("Abandoning success indicator count/alert task because of thread interruption");
             throw new InterruptedException();
         }
 
-        LOGGER.info("success indicator count/alert task Selecting [{}] records starting at [{}]",
-                sAndP.getMaxResults(), nextPersonIndex);
+        LOGGER.info("success indicator count/alert task Selecting [{}] records of partition {}",
+                batchSize, partition);
 
-        final PagingWrapper<Person> people = personService.getAll(sAndP);
+        final List<Person> people = personService.getActiveByUsernameRange(partition.cursor,
+                partition.throughUsername, batchSize);
 
-        if ( people.getRows().isEmpty() ) {
-            LOGGER.info("success indicator count/alert task found 0 records starting at [{}]", nextPersonIndex);
-            return new Pair(0L, people.getResults());
+        if ( people.isEmpty() ) {
+            LOGGER.info("success indicator count/alert task found 0 records in partition {}", partition);
+            return new Pair<>(0L, (long) batchSize);
         }
 
         if ( Thread.currentThread().isInterrupted() ) {
@@ -326,6 +391,15 @@ public class SuccessIndicatorsTaskImpl implements SuccessIndicatorsTask {
             throw new InterruptedException();
         }
 
+        // One evaluation pass for the whole batch so student data behind the indicators is
+        // loaded once per source rather than once per person
+        final List<UUID> personIds = Lists.newArrayListWithExpectedSize(people.size());
+        for (final Person person : people) {
+            personIds.add(person.getId());
+        }
+        final Map<UUID, List<EvaluatedSuccessIndicatorTO>> evaluatedSuccessIndicatorsByPerson =
+                evaluatedSuccessIndicatorService.getForPeople(personIds, ObjectStatus.ALL, configuredSuccessIndicators);
+
         long peopleCnt = 0;
         for (final Person person : people) {
             peopleCnt++;
@@ -336,16 +410,10 @@ public class SuccessIndicatorsTaskImpl implements SuccessIndicatorsTask {
                 throw new InterruptedException();
             }
 
-            LOGGER.debug("Evaluating configured Success Indicators for person schoolId {}", person.getSchoolId());
+            LOGGER.debug("Processing evaluated Success Indicators for person schoolId {}", person.getSchoolId());
 
             final List<EvaluatedSuccessIndicatorTO> evaluatedSuccessIndicators =
-                    evaluatedSuccessIndicatorService.getForPerson(person.getId(), ObjectStatus.ALL, configuredSuccessIndicators);
-
-            if (Thread.currentThread().isInterrupted()) {
-                LOGGER.info("Abandoning success indicator count/alert task because of thread interruption on person {}",
-                        person.getSchoolId());
-                throw new InterruptedException();
-            }
+                    evaluatedSuccessIndicatorsByPerson.get(person.getId());
 
             if (CollectionUtils.isNotEmpty(evaluatedSuccessIndicators)) {
                 processEvaluatedIndicators(person, evaluatedSuccessIndicators);
@@ -355,7 +423,31 @@ public class SuccessIndicatorsTaskImpl implements SuccessIndicatorsTask {
             }
         }
 
-        return new Pair(peopleCnt, people.getResults());
+        lastUsername.set(people.get(people.size() - 1).getUsername());
+        return new Pair<>(peopleCnt, (long) batchSize);
+    }
+
+    private int getPartitionCount() {
+        return getPositiveIntConfig(PARTITIONS_CONFIG_NAME, DEFAULT_PARTITIONS);
+    }
+
+    private int getWorkerCount() {
+        return getPositiveIntConfig(WORKER_THREADS_CONFIG_NAME, DEFAULT_WORKER_THREADS);
+    }
+
+    private int getPositiveIntConfig(final String name, final int defaultValue) {
+        final String valueStr = configService.getByNameNullOrDefaultValue(name);
+        try {
+            final int value = Integer.parseInt(valueStr);
+            if ( value > 0 ) {
+                return value;
+            }
+        } catch ( NumberFormatException e ) {
+            // fall through to the default below
+        }
+        LOGGER.info("Invalid [{}] config [{}], must be a positive integer. Falling back to [{}].",
+                new Object[] { name, valueStr, defaultValue });
+        return defaultValue;
     }
 
     private int getMaxBatchesAllowed() {
@@ -546,4 +638,29 @@ public class SuccessIndicatorsTaskImpl implements SuccessIndicatorsTask {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Contiguous username range of active people: after
+     * {@code afterUsername} (exclusive) through {@code throughUsername}
+     * (inclusive), either of which may be open-ended. Only one worker owns a
+     * partition at a time; the volatile fields are read afterwards by the
+     * thread that decides what to resume next time.
+     */
+    static final class PersonPartition {
+        private final String afterUsername;
+        private final String throughUsername;
+        private volatile String cursor;
+        private volatile boolean complete;
+
+        private PersonPartition(final String afterUsername, final String throughUsername) {
+            this.afterUsername = afterUsername;
+            this.throughUsername = throughUsername;
+            this.cursor = afterUsername;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + afterUsername + ", " + throughUsername + "] at [" + cursor + "]";
+        }
+    }
+}
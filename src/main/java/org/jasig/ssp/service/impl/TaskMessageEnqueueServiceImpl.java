@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.service.impl;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -62,4 +63,14 @@ public class TaskMessageEnqueueServiceImpl extends
 		return dao.getAllForTask(task);
 	}
 
+	@Override
+	public List<TaskMessageEnqueue> getEnqueuedForTasks(Collection<UUID> taskIds) {
+		return dao.getEnqueuedForTasks(taskIds);
+	}
+
+	@Override
+	public void saveAll(List<TaskMessageEnqueue> objs) {
+		dao.saveAll(objs);
+	}
+
 }
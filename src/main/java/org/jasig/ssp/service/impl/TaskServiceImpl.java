@@ -19,6 +19,7 @@
 package org.jasig.ssp.service.impl; // NOPMD
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 import javax.mail.SendFailedException;
 import javax.validation.constraints.NotNull;
@@ -53,6 +55,7 @@ import org.jasig.ssp.service.TaskMessageEnqueueService;
 import org.jasig.ssp.service.TaskService;
 import org.jasig.ssp.service.reference.ConfidentialityLevelService;
 import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.service.reference.MessageTemplateRenderSession;
 import org.jasig.ssp.service.reference.MessageTemplateService;
 import org.jasig.ssp.transferobject.GoalTO;
 import org.jasig.ssp.transferobject.StrengthTO;
@@ -67,15 +70,19 @@ import org.jasig.ssp.util.DateTimeUtils;
 import org.jasig.ssp.util.collections.Pair;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
+import org.jasig.ssp.util.transaction.WithTransaction;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 
 @Service
 @Transactional
@@ -107,9 +114,14 @@ public class TaskServiceImpl
 	@Autowired
 	private transient ConfigService configService;
 
+	@Autowired
+	private transient WithTransaction withTransaction;
+
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(TaskServiceImpl.class);
 
+	private static final int TASK_REMINDER_PAGE_SIZE = 100;
+
 	@Override
 	protected TaskDao getDao() {
 		return dao;
@@ -391,8 +403,14 @@ public class TaskServiceImpl
 	/**
 	 * Used by ScheduledTaskWrapperService default 2 a.m.
 	 * Sends message of overdue tasks to students.
+	 *
+	 * Only tasks due on one of the configured reminder days are read, a page at a time in id order, each page in
+	 * its own transaction. Creators and already enqueued reminders are loaded once per page and the page's
+	 * messages are inserted together. Runs outside any transaction of its own so that only the current page's
+	 * transaction holds a connection and session.
 	 */
 	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public void sendAllTaskReminderNotifications() {
 
 		if ( Thread.currentThread().isInterrupted() ) {
@@ -400,60 +418,125 @@ public class TaskServiceImpl
 			return;
 		}
 
-		final SortingAndPaging sAndP = new SortingAndPaging(
-				ObjectStatus.ACTIVE);
-
 		LOGGER.info("BEGIN : sendTaskReminderNotifications()");
 
+		final MessageTemplateRenderSession renderSession = messageTemplateService.openRenderSession();
 		try {
 
+			final List<Integer> daysPrior = getNumberOfDaysPriorForTaskReminder();
+
 			// Calculate reminder window start date
 			final Integer now = DateTimeUtils.daysSince1900(new Date());
 
-			final List<Task> tasks = getAllWhichNeedRemindersSent(sAndP);
-
-			for (final Task task : tasks) {
+			UUID afterId = null;
+			int remindersSent = 0;
+			while ( true ) {
 
 				if ( Thread.currentThread().isInterrupted() ) {
 					LOGGER.info("Abandoning sendAllTaskReminderNotifications because of thread interruption");
 					break;
 				}
-				Integer dueDate = DateTimeUtils.daysSince1900(task.getDueDate());
-				
-				for(Integer daysBefore:getNumberOfDaysPriorForTaskReminder()){
-					if(daysBefore.equals(dueDate - now) && !messageSent(task, daysBefore)) {
-						sendReminderMessage(task, daysBefore);
-						break;
-					}
-				}				
+
+				final Pair<UUID, Integer> page = sendTaskReminderPageInTransaction(daysPrior, now, afterId);
+				if ( page.getFirst() == null ) {
+					break;
+				}
+				afterId = page.getFirst();
+				remindersSent += page.getSecond();
+				LOGGER.debug("sendTaskReminderNotifications() has enqueued {} reminders through task {}",
+						remindersSent, afterId);
 			}
 
+			LOGGER.info("sendTaskReminderNotifications() enqueued {} reminders", remindersSent);
+
 		} catch (final Exception e) {
 			LOGGER.error("ERROR : sendTaskReminderNotifications() : {}",
 					e.getMessage(), e);
+		} finally {
+			renderSession.close();
 		}
 
 		LOGGER.info("END : sendTaskReminderNotifications()");
 	}
-	
-	private Boolean messageSent(Task task, Integer daysBefore){
-		if(task.getMessagesSent() != null && !task.getMessagesSent().isEmpty()){
-			for(TaskMessageEnqueue messageSent:task.getMessagesSent()){
-				if(task.getDueDate().equals(messageSent.getTaskDueDate()) 
-						&& messageSent.getMessageEnqueueDate() != null 
-						&& messageSent.getDaysBefore().equals(daysBefore))
-					return true;
+
+	private Pair<UUID, Integer> sendTaskReminderPageInTransaction(final List<Integer> daysPrior,
+			final Integer now, final UUID afterId) throws Exception {
+		return withTransaction.withNewTransaction(new Callable<Pair<UUID, Integer>>() {
+			@Override
+			public Pair<UUID, Integer> call() throws Exception {
+				return sendTaskReminderPage(daysPrior, now, afterId);
 			}
+		});
+	}
+
+	/**
+	 * @return id of the last task read, or null if there were none, and the number of reminders enqueued
+	 */
+	private Pair<UUID, Integer> sendTaskReminderPage(final List<Integer> daysPrior, final Integer now,
+			final UUID afterId) throws ValidationException {
+
+		final List<Task> tasks = dao.getNextWhichNeedRemindersSent(daysPrior, afterId, TASK_REMINDER_PAGE_SIZE);
+		if ( tasks.isEmpty() ) {
+			return new Pair<UUID, Integer>(null, 0);
+		}
+
+		final Set<UUID> taskIds = new HashSet<UUID>();
+		final Set<UUID> creatorIds = new HashSet<UUID>();
+		for (final Task task : tasks) {
+			taskIds.add(task.getId());
+			creatorIds.add(task.getCreatedBy().getId());
+		}
+
+		final Map<UUID, Person> creators = Maps.newHashMap();
+		for (final Person creator : personService.peopleFromListOfIds(Lists.newArrayList(creatorIds), null)) {
+			creators.put(creator.getId(), creator);
+		}
+
+		final Multimap<UUID, TaskMessageEnqueue> messagesSent = ArrayListMultimap.create();
+		for (final TaskMessageEnqueue messageSent : taskMessageSentService.getEnqueuedForTasks(taskIds)) {
+			messagesSent.put(messageSent.getTask().getId(), messageSent);
+		}
+
+		final List<Message> messages = Lists.newArrayList();
+		final List<TaskMessageEnqueue> enqueued = Lists.newArrayList();
+		for (final Task task : tasks) {
+			Integer dueDate = DateTimeUtils.daysSince1900(task.getDueDate());
+
+			for(Integer daysBefore:daysPrior){
+				if(daysBefore.equals(dueDate - now) && !messageSent(task, messagesSent.get(task.getId()), daysBefore)) {
+					try {
+						final Message message = createReminderMessage(task, creators.get(task.getCreatedBy().getId()));
+						messages.add(message);
+						enqueued.add(new TaskMessageEnqueue(task, message, daysBefore));
+					} catch (final ObjectNotFoundException | ValidationException e) {
+						LOGGER.warn("Unable to send reminder for task {} : {}", task.getId(), e.getMessage());
+					}
+					break;
+				}
+			}
+		}
+
+		messageService.saveMessages(messages);
+		taskMessageSentService.saveAll(enqueued);
+
+		return new Pair<UUID, Integer>(tasks.get(tasks.size() - 1).getId(), messages.size());
+	}
+	
+	private Boolean messageSent(Task task, Collection<TaskMessageEnqueue> messagesSent, Integer daysBefore){
+		for(TaskMessageEnqueue messageSent:messagesSent){
+			if(task.getDueDate().equals(messageSent.getTaskDueDate()) 
+					&& messageSent.getMessageEnqueueDate() != null 
+					&& messageSent.getDaysBefore().equals(daysBefore))
+				return true;
 		}
 		return false;
 	}
 	
-	private void sendReminderMessage(final Task task, final Integer daysBefore) throws SendFailedException, 
-		ObjectNotFoundException, ValidationException{
-
+	private Message createReminderMessage(final Task task, final Person prefetchedCreator)
+			throws ObjectNotFoundException, ValidationException{
 
 		SubjectAndBody subjAndBody;
-		Person creator = personService.get(task.getCreatedBy().getId());
+		Person creator = prefetchedCreator == null ? personService.get(task.getCreatedBy().getId()) : prefetchedCreator;
 		if (task.getType().equals(Task.CUSTOM_ACTION_PLAN_TASK)) {
 			subjAndBody = messageTemplateService
 					.createCustomActionPlanTaskMessage(new TaskMessageTemplateTO(task, creator));
@@ -462,13 +545,10 @@ public class TaskServiceImpl
 					.createActionPlanStepMessage(new TaskMessageTemplateTO(task, creator));
 		}
 
-		Message message = messageService.createMessage(task.getPerson(), null,
+		return messageService.createMessageNoSave(task.getPerson(), null,
 				subjAndBody);
-		
-		taskMessageSentService.save(new TaskMessageEnqueue(task, message, daysBefore));
-
 	}
-	
+
 	
 
 	@Override
@@ -487,6 +567,11 @@ public class TaskServiceImpl
 		return dao.getOpenVsClosedTaskCountsForPerson(person);
 	}
 
+	@Override
+	public Map<UUID, Pair<Long, Long>> getOpenVsClosedTaskCountsForPeople(List<UUID> personIds) {
+		return dao.getOpenVsClosedTaskCountsForPeople(personIds);
+	}
+
 	@Override
 	public PagingWrapper<EntityStudentCountByCoachTO> getStudentTaskCountForCoaches(EntityCountByCoachSearchForm form) {
 		return dao.getStudentTaskCountForCoaches(form);
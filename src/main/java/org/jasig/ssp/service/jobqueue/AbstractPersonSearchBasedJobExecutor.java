@@ -24,6 +24,7 @@ import com.google.common.collect.Maps;
 import org.jasig.ssp.factory.PersonSearchRequestTOFactory;
 import org.jasig.ssp.model.PersonSearchRequest;
 import org.jasig.ssp.model.PersonSearchResult2;
+import org.jasig.ssp.model.jobqueue.JobTarget;
 import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.PersonSearchService;
 import org.jasig.ssp.service.reference.ConfigService;
@@ -50,6 +51,12 @@ import java.util.UUID;
 public abstract class AbstractPersonSearchBasedJobExecutor<P extends HasPersonSearchRequestCoreSpec,T extends BasePersonSearchBasedJobExecutionState>
 		extends AbstractJobExecutor<P,T> {
 
+	/**
+	 * Number of target identifiers read and written at a time while snapshotting. Independent of the page size
+	 * used for the actual per-person work, which is typically much smaller.
+	 */
+	protected static final int TARGET_SNAPSHOT_PAGE_SIZE = 1000;
+
 	private PersonSearchService personSearchService;
 	private PersonSearchRequestTOFactory personSearchRequestFactory;
 	private final ConfigService configService;
@@ -84,6 +91,7 @@ public abstract class AbstractPersonSearchBasedJobExecutor<P extends HasPersonSe
 				executionState = configureNewExecutionState(newJobExecutionState());
 			}
 
+			// targets are deleted by JobService when the job terminates, whatever the outcome
 			if ( executionState.allPagesProcessed && executionState.retryQueue.isEmpty() ) {
 				logCompletion(executionState, jobId);
 				return new JobExecutionResult<T>(JobExecutionStatus.DONE, executionState, null);
@@ -129,85 +137,154 @@ public abstract class AbstractPersonSearchBasedJobExecutor<P extends HasPersonSe
 					}
 				}
 
+			} else if ( executionState.prevPage != null && !(executionState.targetsSnapshotted) ) {
+				// Job was started before target snapshots existed, so finish it the way it was started
+				return executeNextSearchResultPage(executionSpec, executionState, jobId);
+			} else if ( !(executionState.targetsSnapshotted) ) {
+				snapshotTargets(executionSpec, executionState, jobId);
+				// commit the snapshot on its own before any per-person work starts
+				return new JobExecutionResult<T>(JobExecutionStatus.PARTIAL, executionState, null);
 			} else {
+				return executeNextTargetPage(executionSpec, executionState, jobId);
+			}
 
-				final PersonSearchRequest criteria = personSearchRequestFactory.from(executionSpec.getCoreSpec().getCriteria());
-				final SortingAndPaging origSortAndPage = criteria.getSortAndPage();
-				final SortingAndPaging nextSortAndPage;
-				int page = 1;
-				if ( executionState.prevPage != null ) {
-					page = executionState.prevPage + 1;
-				}
+		} catch ( Exception e ) {
+			return new JobExecutionResult<T>(JobExecutionStatus.ERROR, executionState, e);
+		}
+	}
 
-				logProgress("Processing result page [{}] (max page size: [{}]) in Job [{}].",
-						new Object[]{page, executionState.pageSize, jobId});
-
-				nextSortAndPage = new SortingAndPaging(origSortAndPage.getStatus(), (page - 1) * executionState.pageSize,
-						executionState.pageSize, origSortAndPage.getSortFields(), origSortAndPage.getDefaultSortProperty(),
-						origSortAndPage.getDefaultSortDirection());
-				criteria.setSortAndPage(nextSortAndPage);
-
-				final PagingWrapper<PersonSearchResult2> searchResults = personSearchService.searchPersonDirectory(criteria);
-				if ( searchResults == null || searchResults.getResults() == 0L ) {
-					logProgress("No results on page [{}] (max page size: [{}]) in Job [{}].",
-							new Object[]{page, executionState.pageSize, jobId});
-					executionState.prevPage = page;
-					executionState.allPagesProcessed = true;
-					// always return partial within this logic tree to ensure centralized completion logic at the top
-					// of this method, i.e. let the job run us again to see if we're *really* done.
-					return new JobExecutionResult<T>(JobExecutionStatus.PARTIAL, executionState, null);
-				} else {
+	/**
+	 * Runs the job's search once and records every matching person as a target of this job. Subsequent executions
+	 * walk that snapshot with {@link #executeNextTargetPage(HasPersonSearchRequestCoreSpec,
+	 * BasePersonSearchBasedJobExecutionState, java.util.UUID)}, so the search (and its count query) isn't repeated
+	 * per page and changes to the directory made while the job is running can't shift persons between pages. Reads
+	 * and writes {@link #TARGET_SNAPSHOT_PAGE_SIZE} targets at a time so the search result is never held in full.
+	 */
+	protected void snapshotTargets(P executionSpec, T executionState, UUID jobId) throws ObjectNotFoundException {
+		final PersonSearchRequest criteria = personSearchRequestFactory.from(executionSpec.getCoreSpec().getCriteria());
+		// in case an earlier attempt got as far as writing some targets
+		getJobService().deleteTargets(jobId);
+		int targetCount = 0;
+		String lastSchoolId = null;
+		while ( true ) {
+			final List<ImmutablePersonIdentifiersTO> targets = personSearchService.searchPersonDirectoryIdentifiers(
+					criteria, lastSchoolId, TARGET_SNAPSHOT_PAGE_SIZE);
+			if ( targets.isEmpty() ) {
+				break;
+			}
+			targetCount = getJobService().saveTargets(jobId, targetCount, targets);
+			if ( targets.size() < TARGET_SNAPSHOT_PAGE_SIZE ) {
+				break;
+			}
+			lastSchoolId = targets.get(targets.size() - 1).getSchoolId();
+		}
+		executionState.targetCount = targetCount;
+		executionState.lastTargetSequenceNumber = 0;
+		executionState.targetsSnapshotted = true;
+		logProgress("Recorded [{}] target persons in Job [{}].", new Object[] { executionState.targetCount, jobId });
+	}
 
-					logProgress("Processing [{}] persons on page [{}] (max page size: [{}], total persons: [{}]) in Job [{}].",
-							new Object[]{searchResults.getRows().size(), page, executionState.pageSize, searchResults.getResults(), jobId});
+	protected JobExecutionResult<T> executeNextTargetPage(P executionSpec, T executionState, UUID jobId) {
+		final int page = executionState.prevPage == null ? 1 : executionState.prevPage + 1;
+
+		logProgress("Processing target page [{}] (max page size: [{}]) in Job [{}].",
+				new Object[]{page, executionState.pageSize, jobId});
+
+		final List<JobTarget> targets = getJobService().getNextTargets(jobId,
+				executionState.lastTargetSequenceNumber, executionState.pageSize);
+		executionState.prevPage = page;
+		if ( targets.isEmpty() ) {
+			logProgress("No targets on page [{}] (max page size: [{}]) in Job [{}].",
+					new Object[]{page, executionState.pageSize, jobId});
+			executionState.allPagesProcessed = true;
+			// always return partial within this logic tree to ensure centralized completion logic at the top
+			// of executeJobDeserialized(), i.e. let the job run us again to see if we're *really* done.
+			return new JobExecutionResult<T>(JobExecutionStatus.PARTIAL, executionState, null);
+		}
 
-					final List<ImmutablePersonIdentifiersTO> targetPersonIdentifiers =
-							Lists.newArrayListWithCapacity((int) searchResults.getResults());
+		final List<ImmutablePersonIdentifiersTO> targetPersonIdentifiers = Lists.newArrayListWithCapacity(targets.size());
+		for ( JobTarget target : targets ) {
+			targetPersonIdentifiers.add(new ImmutablePersonIdentifiersTO(target.getPersonId(), target.getSchoolId()));
+		}
+		// cursor moves past this page even if it fails. failed pages go to the retry queue.
+		executionState.lastTargetSequenceNumber = targets.get(targets.size() - 1).getSequenceNumber();
+		executionState.allPagesProcessed = executionState.lastTargetSequenceNumber >= executionState.targetCount;
 
-					// build target list outside of actual 'work loop' so we have the complete
-					// list of failed targets if any one should fail (and thus rollback the whole transaction)
-					for ( PersonSearchResult2 searchResult : searchResults ) {
-						final ImmutablePersonIdentifiersTO searchResultIds =
-								new ImmutablePersonIdentifiersTO(searchResult.getId(), searchResult.getSchoolId());
-						targetPersonIdentifiers.add(searchResultIds);
-					}
+		return executeForTargets(targetPersonIdentifiers, page, executionState.targetCount, executionSpec,
+				executionState, jobId);
+	}
 
-					ImmutablePersonIdentifiersTO targetPersonIdentifier = null;
-					final LinkedHashMap<ImmutablePersonIdentifiersTO, Map<String, ?>> batchCreatedRecords = Maps.newLinkedHashMap();
-					try {
-						Iterator<ImmutablePersonIdentifiersTO> i = targetPersonIdentifiers.iterator();
-						while ( i.hasNext() ) {
-							targetPersonIdentifier = i.next();
-							logProgress("Execution attempt for person IDs [{}] in Job [{}].", new Object[]{targetPersonIdentifier, jobId});
-							batchCreatedRecords.put(targetPersonIdentifier,
-									executeForSinglePerson(targetPersonIdentifier, executionSpec, executionState, jobId));
-						}
-					} catch ( Exception e ) {
-						executionState.retryQueue.addAll(targetPersonIdentifiers);
-						logProgress("Processing error for person IDs [{}] on page [{}] (max page size: [{}]) in Job [{}]. " +
-								"Added this page to the retry queue (size: [{}])",
-								new Object[] { targetPersonIdentifier, page, executionState.pageSize, jobId, executionState.retryQueue.size() }); // exception itself logged elsewhere
-						return new JobExecutionResult<T>(JobExecutionStatus.FAILED_PARTIAL, executionState, e);
-					} finally {
-						executionState.prevPage = page;
-						final long totalResults = searchResults.getResults();
-						executionState.allPagesProcessed = (page * executionState.pageSize) >= totalResults;
-					}
+	/**
+	 * Offset-paged iteration over live search results. Only used to finish jobs which were already in flight when
+	 * target snapshots were introduced.
+	 */
+	protected JobExecutionResult<T> executeNextSearchResultPage(P executionSpec, T executionState, UUID jobId)
+			throws ObjectNotFoundException {
+		final PersonSearchRequest criteria = personSearchRequestFactory.from(executionSpec.getCoreSpec().getCriteria());
+		final SortingAndPaging origSortAndPage = criteria.getSortAndPage();
+		final int page = executionState.prevPage + 1;
+
+		logProgress("Processing result page [{}] (max page size: [{}]) in Job [{}].",
+				new Object[]{page, executionState.pageSize, jobId});
+
+		criteria.setSortAndPage(new SortingAndPaging(origSortAndPage.getStatus(), (page - 1) * executionState.pageSize,
+				executionState.pageSize, origSortAndPage.getSortFields(), origSortAndPage.getDefaultSortProperty(),
+				origSortAndPage.getDefaultSortDirection()));
+
+		final PagingWrapper<PersonSearchResult2> searchResults = personSearchService.searchPersonDirectory(criteria);
+		executionState.prevPage = page;
+		if ( searchResults == null || searchResults.getResults() == 0L ) {
+			logProgress("No results on page [{}] (max page size: [{}]) in Job [{}].",
+					new Object[]{page, executionState.pageSize, jobId});
+			executionState.allPagesProcessed = true;
+			return new JobExecutionResult<T>(JobExecutionStatus.PARTIAL, executionState, null);
+		}
 
-					for ( Map.Entry<ImmutablePersonIdentifiersTO, Map<String, ?>> createdRecords : batchCreatedRecords.entrySet() ) {
-						recordSuccessful(createdRecords.getKey(), createdRecords.getValue(), executionSpec, executionState, jobId);
-					}
-					logProgress("Processed [{}] persons on page [{}] (max page size: [{}], total persons: [{}]) in Job [{}].",
-							new Object[]{targetPersonIdentifiers.size(), page, executionState.pageSize, searchResults.getResults(), jobId});
-					return new JobExecutionResult<T>(JobExecutionStatus.PARTIAL, executionState, null);
+		final List<ImmutablePersonIdentifiersTO> targetPersonIdentifiers =
+				Lists.newArrayListWithCapacity(searchResults.getRows().size());
+		for ( PersonSearchResult2 searchResult : searchResults ) {
+			targetPersonIdentifiers.add(new ImmutablePersonIdentifiersTO(searchResult.getId(), searchResult.getSchoolId()));
+		}
+		executionState.allPagesProcessed = (page * executionState.pageSize) >= searchResults.getResults();
 
-				}
+		return executeForTargets(targetPersonIdentifiers, page, searchResults.getResults(), executionSpec,
+				executionState, jobId);
+	}
 
+	/**
+	 * Executes the job against each person in a single page. Expects paging state to have already been advanced
+	 * past this page. If any person fails, the whole page is added to the retry queue.
+	 */
+	protected JobExecutionResult<T> executeForTargets(List<ImmutablePersonIdentifiersTO> targetPersonIdentifiers,
+													  int page, long totalTargets, P executionSpec, T executionState,
+													  UUID jobId) {
+		logProgress("Processing [{}] persons on page [{}] (max page size: [{}], total persons: [{}]) in Job [{}].",
+				new Object[]{targetPersonIdentifiers.size(), page, executionState.pageSize, totalTargets, jobId});
+
+		ImmutablePersonIdentifiersTO targetPersonIdentifier = null;
+		final LinkedHashMap<ImmutablePersonIdentifiersTO, Map<String, ?>> batchCreatedRecords = Maps.newLinkedHashMap();
+		try {
+			Iterator<ImmutablePersonIdentifiersTO> i = targetPersonIdentifiers.iterator();
+			while ( i.hasNext() ) {
+				targetPersonIdentifier = i.next();
+				logProgress("Execution attempt for person IDs [{}] in Job [{}].", new Object[]{targetPersonIdentifier, jobId});
+				batchCreatedRecords.put(targetPersonIdentifier,
+						executeForSinglePerson(targetPersonIdentifier, executionSpec, executionState, jobId));
 			}
-
 		} catch ( Exception e ) {
-			return new JobExecutionResult<T>(JobExecutionStatus.ERROR, executionState, e);
+			executionState.retryQueue.addAll(targetPersonIdentifiers);
+			logProgress("Processing error for person IDs [{}] on page [{}] (max page size: [{}]) in Job [{}]. " +
+					"Added this page to the retry queue (size: [{}])",
+					new Object[] { targetPersonIdentifier, page, executionState.pageSize, jobId, executionState.retryQueue.size() }); // exception itself logged elsewhere
+			return new JobExecutionResult<T>(JobExecutionStatus.FAILED_PARTIAL, executionState, e);
+		}
+
+		for ( Map.Entry<ImmutablePersonIdentifiersTO, Map<String, ?>> createdRecords : batchCreatedRecords.entrySet() ) {
+			recordSuccessful(createdRecords.getKey(), createdRecords.getValue(), executionSpec, executionState, jobId);
 		}
+		logProgress("Processed [{}] persons on page [{}] (max page size: [{}], total persons: [{}]) in Job [{}].",
+				new Object[]{targetPersonIdentifiers.size(), page, executionState.pageSize, totalTargets, jobId});
+		return new JobExecutionResult<T>(JobExecutionStatus.PARTIAL, executionState, null);
 	}
 
 	/**
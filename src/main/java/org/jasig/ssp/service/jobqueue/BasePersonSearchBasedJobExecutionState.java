@@ -32,6 +32,9 @@ public class BasePersonSearchBasedJobExecutionState implements Serializable {
 	public Integer prevPage;
 	public int pageSize = 25;
 	public boolean allPagesProcessed;
+	public boolean targetsSnapshotted;
+	public int targetCount;
+	public int lastTargetSequenceNumber;
 	public List<ImmutablePersonIdentifiersTO> retryQueue = Lists.newArrayListWithExpectedSize(100);
 	public List<ImmutablePersonIdentifiersTO> dlq = Lists.newArrayListWithExpectedSize(10);
 	public int maxDlqLength = 100;
@@ -22,8 +22,10 @@ import java.util.List;
 import java.util.UUID;
 
 import org.jasig.ssp.model.jobqueue.Job;
+import org.jasig.ssp.model.jobqueue.JobTarget;
 import org.jasig.ssp.service.AuditableCrudService;
 import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.transferobject.ImmutablePersonIdentifiersTO;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -128,4 +130,35 @@ public interface JobService {
 	 * @return
 	 */
 	Job get(UUID jobId);
+
+	/**
+	 * Record the next page of the ordered set of persons targeted by the given {@link Job} so it can be walked in
+	 * batches via {@link #getNextTargets(java.util.UUID, int, int)}. Targets are numbered in list order, starting
+	 * right after {@code afterSequenceNumber}.
+	 *
+	 * @param jobId
+	 * @param afterSequenceNumber sequence number of the last target already recorded, 0 if none
+	 * @param targets
+	 * @return sequence number of the last target recorded
+	 */
+	int saveTargets(UUID jobId, int afterSequenceNumber, List<ImmutablePersonIdentifiersTO> targets);
+
+	/**
+	 * Keyset read of targets previously recorded via {@link #saveTargets(java.util.UUID, int, java.util.List)}.
+	 *
+	 * @param jobId
+	 * @param afterSequenceNumber only targets numbered strictly higher than this are returned
+	 * @param maxResults
+	 * @return targets in ascending sequence number order. Empty when all targets have been read.
+	 */
+	List<JobTarget> getNextTargets(UUID jobId, int afterSequenceNumber, int maxResults);
+
+	/**
+	 * Discard all targets recorded for the given {@link Job}. Happens automatically when the job terminates
+	 * via {@link #markTerminated(java.util.UUID, JobExecutionResult)}.
+	 *
+	 * @param jobId
+	 * @return number of targets deleted
+	 */
+	int deleteTargets(UUID jobId);
 }
\ No newline at end of file
@@ -28,8 +28,10 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
 import org.jasig.ssp.dao.jobqueue.JobDao;
+import org.jasig.ssp.dao.jobqueue.JobTargetDao;
 import org.jasig.ssp.model.Person;
 import org.jasig.ssp.model.jobqueue.Job;
+import org.jasig.ssp.model.jobqueue.JobTarget;
 import org.jasig.ssp.model.jobqueue.WorkflowStatus;
 import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.PersonService;
@@ -39,6 +41,7 @@ import org.jasig.ssp.service.jobqueue.JobExecutionResult;
 import org.jasig.ssp.service.jobqueue.JobExecutor;
 import org.jasig.ssp.service.jobqueue.JobService;
 import org.jasig.ssp.service.jobqueue.JobWorkflowStatusDescription;
+import org.jasig.ssp.transferobject.ImmutablePersonIdentifiersTO;
 import org.jasig.ssp.util.collections.Pair;
 import org.jasig.ssp.util.transaction.WithTransaction;
 import org.jasig.ssp.web.api.validation.ValidationException;
@@ -74,6 +77,9 @@ public class JobServiceImpl implements JobService, ApplicationContextAware, Bean
 	@Autowired
 	private transient JobDao dao;
 
+	@Autowired
+	private transient JobTargetDao targetDao;
+
 	@Autowired
 	private transient PersonService personService;
 
@@ -238,6 +244,7 @@ public class JobServiceImpl implements JobService, ApplicationContextAware, Bean
 		job.setWorkflowStatus(WorkflowStatus.ERROR);
 		job.setWorkflowStoppedDate(new Date());
 		serializeWorkflowStatusDescriptionOnto(d, job);
+		deleteTargetsOf(job);
 		return dao.save(job);
 	}
 
@@ -245,6 +252,7 @@ public class JobServiceImpl implements JobService, ApplicationContextAware, Bean
 		job.setWorkflowStatus(WorkflowStatus.FAILURE);
 		job.setWorkflowStoppedDate(new Date());
 		serializeWorkflowStatusDescriptionOnto(d, job);
+		deleteTargetsOf(job);
 		return dao.save(job);
 	}
 
@@ -252,9 +260,18 @@ public class JobServiceImpl implements JobService, ApplicationContextAware, Bean
 		job.setWorkflowStatus(WorkflowStatus.COMPLETED);
 		job.setWorkflowStoppedDate(new Date());
 		serializeWorkflowStatusDescriptionOnto(d, job);
+		deleteTargetsOf(job);
 		return dao.save(job);
 	}
 
+	// targets are only needed while the job runs, and would otherwise block cleanup of the job itself
+	private void deleteTargetsOf(Job job) {
+		final int deleted = targetDao.deleteForJob(job.getId());
+		if ( deleted > 0 ) {
+			LOGGER.debug("Deleted {} targets of terminated job {}", deleted, job.getId());
+		}
+	}
+
 	private void serializeWorkflowStatusDescriptionOnto(JobWorkflowStatusDescription d, Job job) {
 		try {
 			job.setWorkflowStatusDesc(d == null ? null : JSON_MAPPER.writeValueAsString(d));
@@ -339,6 +356,24 @@ public class JobServiceImpl implements JobService, ApplicationContextAware, Bean
 		return dao.save(job);
 	}
 
+	@Override
+	@Transactional
+	public int saveTargets(UUID jobId, int afterSequenceNumber, List<ImmutablePersonIdentifiersTO> targets) {
+		return targetDao.saveAll(jobId, afterSequenceNumber, targets);
+	}
+
+	@Override
+	@Transactional
+	public List<JobTarget> getNextTargets(UUID jobId, int afterSequenceNumber, int maxResults) {
+		return targetDao.getNextTargets(jobId, afterSequenceNumber, maxResults);
+	}
+
+	@Override
+	@Transactional
+	public int deleteTargets(UUID jobId) {
+		return targetDao.deleteForJob(jobId);
+	}
+
 	private String getProcessIdentifier() {
 		return systemId+"-"+startupTime+"."+systemId;
 	}
@@ -18,6 +18,8 @@
  */
 package org.jasig.ssp.service.reference;
 
+import java.util.Map;
+
 import org.jasig.ssp.model.reference.Config;
 import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.ReferenceService;
@@ -114,4 +116,15 @@ public interface ConfigService extends
 	 */
 	String getDatabaseConcatOperator();
 
+	/**
+	 * Counters for the process-local config cache which backs every
+	 * <code>getByName*</code> lookup: <code>hits</code>, <code>misses</code>,
+	 * <code>invalidations</code>, <code>versionChecks</code> and current
+	 * <code>size</code>. A miss is the only case that costs a row lookup in
+	 * the database.
+	 *
+	 * @return cache counters, by name
+	 */
+	Map<String, Long> getCacheStatistics();
+
 }
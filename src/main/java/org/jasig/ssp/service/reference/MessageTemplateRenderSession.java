@@ -0,0 +1,43 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.reference;
+
+/**
+ * While open, messages built by {@link MessageTemplateService} on the thread
+ * that opened the session reuse each template after its first use, along
+ * with the institution-wide values every message gets, instead of looking
+ * them up again for every message. Meant for loops that send the same kind
+ * of message to many recipients.
+ * <p>
+ * Values passed for an individual message take precedence over the shared
+ * institution values. Template edits made while a session is open aren't
+ * seen until it is closed, so keep sessions to a single batch.
+ * <p>
+ * Always close in a finally block.
+ */
+public interface MessageTemplateRenderSession {
+
+	/**
+	 * Stop reusing resolved templates on this thread. Does nothing if this
+	 * session was opened inside another session on the same thread, which
+	 * stays open.
+	 */
+	void close();
+
+}
@@ -108,4 +108,12 @@ public interface MessageTemplateService extends
 	SubjectAndBody createMapStatusReportEmail(MapStatusReportSummary summary);
 
 	MessageTemplateTO createMessageTemplatePreview(UUID uuid);
+
+	/**
+	 * Start reusing resolved templates and institution-wide values for
+	 * messages built on this thread. See {@link MessageTemplateRenderSession}.
+	 *
+	 * @return session to close once the batch of messages has been built
+	 */
+	MessageTemplateRenderSession openRenderSession();
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.reference;
+
+import java.util.Map;
+
+/**
+ * Keeps this node's Hibernate second-level cache of reference data and terms
+ * in step with edits made on other nodes. Edits made here are kept current
+ * by Hibernate itself and by
+ * {@link org.jasig.ssp.dao.reference.ReferenceCacheVersionDao#markChanged()}.
+ */
+public interface ReferenceCacheService {
+
+	/**
+	 * Check the shared reference data version and drop everything in this
+	 * node's second-level cache if another node moved it since the last
+	 * check. Runs every <code>reference_cache_revalidation_millis</code>
+	 * on its own, but can be called any time.
+	 */
+	void revalidate();
+
+	/**
+	 * Drop everything in this node's second-level cache.
+	 */
+	void evictAll();
+
+	/**
+	 * Per-region counters for this node's second-level cache, keyed by region
+	 * name: <code>hits</code>, <code>misses</code>, <code>puts</code>,
+	 * <code>elementsInMemory</code> and <code>sizeInMemory</code>. Query
+	 * cache totals are under <code>queries</code>.
+	 *
+	 * @return counters by region, empty if the cache or statistics are off
+	 */
+	Map<String, Map<String, Long>> getStatistics();
+
+}
@@ -18,6 +18,9 @@
  */
 package org.jasig.ssp.service.reference.impl;
 
+import java.util.Date;
+import java.util.List;
+
 import javax.validation.ConstraintViolationException;
 import javax.validation.constraints.NotNull;
 
@@ -26,9 +29,12 @@ import org.jasig.ssp.model.Auditable;
 import org.jasig.ssp.service.AbstractAuditableCrudService;
 import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.ReferenceService;
+import org.jasig.ssp.util.collections.Pair;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Lists;
+
 /**
  * Base reference model service methods
  * 
@@ -57,4 +63,22 @@ public abstract class AbstractReferenceService<T extends Auditable>
 	public T getByName(@NotNull final String name) {
 		return getDao().getByName(name);
 	}
-}
\ No newline at end of file
+
+	@Override
+	@Transactional(readOnly = true)
+	public Pair<Date, Long> getVersion() {
+		return getDao().getVersion();
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Pair<Date, Long>> getVersions(
+			final List<Class<? extends Auditable>> embeddedClasses) {
+		final List<Pair<Date, Long>> versions = Lists.newArrayList();
+		versions.add(getDao().getVersion());
+		for ( final Class<? extends Auditable> embeddedClass : embeddedClasses ) {
+			versions.add(getDao().getVersion(embeddedClass));
+		}
+		return versions;
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.reference.impl;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jasig.ssp.model.reference.Config;
+import org.jasig.ssp.util.collections.Pair;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Process-local, read-through cache of {@link Config} rows keyed by name.
+ *
+ * <p>Rows are held as immutable snapshots and every read hands back a fresh,
+ * detached {@link Config} copy, so callers can never mutate the cached state
+ * or accidentally attach a shared instance to their Hibernate session. Missing
+ * names are cached too, so repeated lookups of optional config are also
+ * free.</p>
+ *
+ * <p>Each snapshot can memoize one parsed value per target type. Those values
+ * are shared between callers and must be treated as read-only.</p>
+ *
+ * <p>The cache is versioned by the table-wide {@code max(modifiedDate)} and
+ * row count. The owning service calls {@link #isVersionCheckDue(long)} on
+ * reads and, when it returns true, looks up the current version and passes it
+ * to {@link #revalidate(Pair, long)}. That is how edits made on other cluster
+ * nodes, or directly in the database, become visible.</p>
+ */
+class ConfigCache {
+
+	private static final Snapshot MISSING = new Snapshot(null);
+
+	private final ConcurrentMap<String, Snapshot> entries =
+			new ConcurrentHashMap<String, Snapshot>();
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	private final AtomicLong versionChecks = new AtomicLong();
+
+	private volatile Pair<Date, Long> version;
+
+	private volatile long lastVersionCheck;
+
+	ConfigCache() {
+		this.lastVersionCheck = System.currentTimeMillis();
+	}
+
+	/**
+	 * Loads a single row on a cache miss.
+	 */
+	interface Loader {
+		Config load(String name);
+	}
+
+	/**
+	 * @return a detached copy of the row with the given name, loading and
+	 *         caching it via <code>loader</code> if necessary. Null if there is
+	 *         no such row.
+	 */
+	Config get(String name, Loader loader) {
+		Snapshot snapshot = entries.get(name);
+		if ( snapshot != null ) {
+			hits.incrementAndGet();
+			return snapshot.copy();
+		}
+		misses.incrementAndGet();
+		final long generationAtLoad = generation.get();
+		final Config loaded = loader.load(name);
+		snapshot = loaded == null ? MISSING : new Snapshot(loaded);
+		// don't repopulate with a row read before a concurrent invalidation
+		if ( generation.get() == generationAtLoad ) {
+			entries.putIfAbsent(name, snapshot);
+		}
+		return snapshot.copy();
+	}
+
+	/**
+	 * @return the value previously memoized for the given name and type, or
+	 *         null if there isn't one or it was parsed from a different
+	 *         serialized form than <code>serialized</code>
+	 */
+	Object getParsed(String name, Class<?> type, String serialized) {
+		final Snapshot snapshot = entries.get(name);
+		final Pair<String, Object> memo = snapshot == null ? null : snapshot.parsed.get(type);
+		return memo == null || !(memo.getFirst().equals(serialized)) ? null : memo.getSecond();
+	}
+
+	void putParsed(String name, Class<?> type, String serialized, Object parsed) {
+		final Snapshot snapshot = entries.get(name);
+		if ( snapshot != null && snapshot.source != null && serialized != null
+				&& parsed != null ) {
+			snapshot.parsed.put(type, new Pair<String, Object>(serialized, parsed));
+		}
+	}
+
+	void invalidate() {
+		generation.incrementAndGet();
+		entries.clear();
+		invalidations.incrementAndGet();
+	}
+
+	boolean isVersionCheckDue(long revalidationMillis) {
+		return System.currentTimeMillis() - lastVersionCheck >= revalidationMillis;
+	}
+
+	/**
+	 * Drop all cached rows if the given table version differs from the one
+	 * the cache was last validated against.
+	 */
+	synchronized void revalidate(Pair<Date, Long> currentVersion,
+			long revalidationMillis) {
+		if ( !(isVersionCheckDue(revalidationMillis)) ) {
+			// another thread got here first
+			return;
+		}
+		versionChecks.incrementAndGet();
+		if ( version == null || !(sameVersion(version, currentVersion)) ) {
+			invalidate();
+		}
+		version = currentVersion;
+		lastVersionCheck = System.currentTimeMillis();
+	}
+
+	Map<String, Long> getStatistics() {
+		final Map<String, Long> stats = Maps.newLinkedHashMap();
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("invalidations", invalidations.get());
+		stats.put("versionChecks", versionChecks.get());
+		stats.put("size", (long) entries.size());
+		return stats;
+	}
+
+	private boolean sameVersion(Pair<Date, Long> a, Pair<Date, Long> b) {
+		if ( b == null ) {
+			return false;
+		}
+		final boolean sameDate = a.getFirst() == null ? b.getFirst() == null
+				: b.getFirst() != null && a.getFirst().getTime() == b.getFirst().getTime();
+		final boolean sameCount = a.getSecond() == null ? b.getSecond() == null
+				: a.getSecond().equals(b.getSecond());
+		return sameDate && sameCount;
+	}
+
+	private static class Snapshot {
+
+		private final Config source;
+
+		private final ConcurrentMap<Class<?>, Pair<String, Object>> parsed =
+				new ConcurrentHashMap<Class<?>, Pair<String, Object>>();
+
+		private Snapshot(Config config) {
+			this.source = config == null ? null : copyOf(config);
+		}
+
+		private Config copy() {
+			return source == null ? null : copyOf(source);
+		}
+
+		private static Config copyOf(Config config) {
+			final Config copy = new Config(config.getId(), config.getName(),
+					config.getDescription(), config.getSortOrder());
+			copy.setValue(config.getValue());
+			copy.setDefaultValue(config.getDefaultValue());
+			copy.setValueValidation(config.getValueValidation());
+			copy.setIsSecret(config.getIsSecret());
+			copy.setObjectStatus(config.getObjectStatus());
+			copy.setCreatedDate(config.getCreatedDate());
+			copy.setCreatedBy(config.getCreatedBy());
+			copy.setModifiedDate(config.getModifiedDate());
+			copy.setModifiedBy(config.getModifiedBy());
+			return copy;
+		}
+	}
+}
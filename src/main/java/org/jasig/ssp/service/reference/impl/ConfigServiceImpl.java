@@ -25,14 +25,18 @@ import org.jasig.ssp.model.reference.Config;
 import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.reference.ConfigException;
 import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.web.api.validation.ValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.io.IOException;
 import java.util.Locale;
+import java.util.Map;
 
 
 /**
@@ -52,8 +56,24 @@ public class ConfigServiceImpl extends
 	@Value("#{configProperties.db_dialect}")
 	private transient String dialect;
 
+	/**
+	 * How often, at most, a read checks the config table version to pick up
+	 * edits made outside this process. Negative disables caching entirely.
+	 */
+	@Value("#{configProperties.config_cache_revalidation_millis}")
+	private transient long cacheRevalidationMillis = 5000L;
+
 	private ObjectMapper objectMapper = new ObjectMapper();
 
+	private final transient ConfigCache cache = new ConfigCache();
+
+	private final transient ConfigCache.Loader cacheLoader = new ConfigCache.Loader() {
+		@Override
+		public Config load(final String name) {
+			return dao.getByName(name);
+		}
+	};
+
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(ConfigServiceImpl.class);
 
@@ -96,8 +116,16 @@ public class ConfigServiceImpl extends
 		if ( serialized == null ) {
 			return defaultTo;
 		}
+		final Object memoized = isCacheEnabled() ? cache.getParsed(name, clazz, serialized) : null;
+		if ( memoized != null ) {
+			return (T)memoized;
+		}
 		try {
-			return (T)objectMapper.readValue(serialized, clazz);
+			final T parsed = (T)objectMapper.readValue(serialized, clazz);
+			if ( isCacheEnabled() ) {
+				cache.putParsed(name, clazz, serialized, parsed);
+			}
+			return parsed;
 		} catch (IOException e) {
 			throw new ConfigException(
 					"Failed to deserialize value for config entry named ["
@@ -107,7 +135,60 @@ public class ConfigServiceImpl extends
 
 	@Override
 	public Config getByName(final String name) {
-		return dao.getByName(name);
+		if ( !(isCacheEnabled()) ) {
+			return dao.getByName(name);
+		}
+		if ( cache.isVersionCheckDue(cacheRevalidationMillis) ) {
+			cache.revalidate(dao.getVersion(), cacheRevalidationMillis);
+		}
+		return cache.get(name, cacheLoader);
+	}
+
+	@Override
+	public Config create(final Config obj) throws ObjectNotFoundException,
+			ValidationException {
+		try {
+			return super.create(obj);
+		} finally {
+			invalidateCache();
+		}
+	}
+
+	@Override
+	public Config save(final Config obj) throws ObjectNotFoundException,
+			ValidationException {
+		try {
+			return super.save(obj);
+		} finally {
+			invalidateCache();
+		}
+	}
+
+	@Override
+	public Map<String, Long> getCacheStatistics() {
+		return cache.getStatistics();
+	}
+
+	private boolean isCacheEnabled() {
+		return cacheRevalidationMillis >= 0;
+	}
+
+	/**
+	 * Drop cached rows now so this transaction reads its own writes, and
+	 * again once the transaction completes so a rollback can't leave
+	 * uncommitted values in the cache and a commit is seen by every thread.
+	 */
+	private void invalidateCache() {
+		cache.invalidate();
+		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+			TransactionSynchronizationManager.registerSynchronization(
+					new TransactionSynchronizationAdapter() {
+						@Override
+						public void afterCompletion(int status) {
+							cache.invalidate();
+						}
+					});
+		}
 	}
 
 	@Override
@@ -19,6 +19,8 @@
 package org.jasig.ssp.service.reference.impl;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.velocity.Template;
+import org.apache.velocity.context.Context;
 import org.jasig.ssp.dao.reference.MessageTemplateDao;
 import org.jasig.ssp.model.AbstractPlan;
 import org.jasig.ssp.model.EarlyAlert;
@@ -31,6 +33,7 @@ import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.VelocityTemplateService;
 import org.jasig.ssp.service.reference.ConfigException;
 import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.service.reference.MessageTemplateRenderSession;
 import org.jasig.ssp.service.reference.MessageTemplateService;
 import org.jasig.ssp.transferobject.AbstractPlanOutputTO;
 import org.jasig.ssp.transferobject.AbstractPlanTO;
@@ -45,6 +48,7 @@ import org.jasig.ssp.transferobject.reference.MessageTemplateTO;
 import org.jasig.ssp.transferobject.reports.MapStatusReportSummary;
 import org.jasig.ssp.util.DateTimeUtils;
 import org.jasig.ssp.util.MessageTemplatePreviewTOBuilder;
+import org.jasig.ssp.web.api.validation.ValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -84,16 +88,36 @@ public class MessageTemplateServiceImpl extends
 		this.dao = dao;
 	}
 
+	protected void setVelocityTemplateService(
+			final VelocityTemplateService velocityTemplateService) {
+		this.velocityTemplateService = velocityTemplateService;
+	}
+
 	@Override
 	protected MessageTemplateDao getDao() {
 		return dao;
 	}
 
+	/**
+	 * Also drops this node's parsed copies of the template's old versions.
+	 * They would never be used again since the template ids include the
+	 * modified date, but would otherwise sit in the cache until pushed out.
+	 */
+	@Override
+	public MessageTemplate save(final MessageTemplate obj)
+			throws ObjectNotFoundException, ValidationException {
+		final MessageTemplate saved = super.save(obj);
+		velocityTemplateService.evictTemplates(saved.getId().toString());
+		return saved;
+	}
+
 	@Autowired
 	private transient ConfigService configService;
 
 	private static final String STUDENTUIPATH = "MyGPS";
 
+	private static final ThreadLocal<RenderSession> RENDER_SESSION = new ThreadLocal<RenderSession>();
+
 	private String getServerExternalPath() {
 		return configService.getByNameNull("serverExternalPath");
 	}
@@ -110,17 +134,29 @@ public class MessageTemplateServiceImpl extends
 		return configService.getByNameNull("app_title");
 	}
 	
+	// Values already set for the message win, the same as in a render session
 	private void setInstitutionValues(Map<String, Object> messageParams){
-		messageParams.put("institutionName", getInstitutionName());
-		messageParams.put("institutionHomeUrl", getInstitutionHomeUrl());
-		messageParams.put("applicationTitle", getAppTitle());
-		messageParams.put("linkToSSP", getServerExternalPath());
+		putIfMissing(messageParams, "institutionName", getInstitutionName());
+		putIfMissing(messageParams, "institutionHomeUrl", getInstitutionHomeUrl());
+		putIfMissing(messageParams, "applicationTitle", getAppTitle());
+		putIfMissing(messageParams, "linkToSSP", getServerExternalPath());
+	}
+
+	private static void putIfMissing(Map<String, Object> messageParams, String key, Object value) {
+		if (messageParams.get(key) == null) {
+			messageParams.put(key, value);
+		}
 	}
 	
 	private SubjectAndBody populateFromTemplate(
 			final UUID messageTemplateId,
 			final Map<String, Object> templateParameters) {
 
+			final RenderSession renderSession = RENDER_SESSION.get();
+			if (renderSession != null) {
+				return renderSession.render(messageTemplateId, templateParameters);
+			}
+
 			MessageTemplateTO messageTemplateTO = populateFromTemplateAsMessageTempateTO(messageTemplateId, templateParameters);
 			return new SubjectAndBody(messageTemplateTO.getSubject(), messageTemplateTO.getBody());
 	}
@@ -151,6 +187,77 @@ public class MessageTemplateServiceImpl extends
 		}
 	}
 
+	@Override
+	public MessageTemplateRenderSession openRenderSession() {
+		if (RENDER_SESSION.get() != null) {
+			// the outer session stays in charge
+			return new MessageTemplateRenderSession() {
+				@Override
+				public void close() {
+				}
+			};
+		}
+		final Map<String, Object> institutionValues = new HashMap<String, Object>();
+		setInstitutionValues(institutionValues);
+		final RenderSession renderSession = new RenderSession(
+				velocityTemplateService.createSharedContext(institutionValues));
+		RENDER_SESSION.set(renderSession);
+		return renderSession;
+	}
+
+	/**
+	 * Subject and body of one message template, parsed.
+	 */
+	private static class ResolvedTemplate {
+		private final Template subject;
+		private final Template body;
+
+		private ResolvedTemplate(final Template subject, final Template body) {
+			this.subject = subject;
+			this.body = body;
+		}
+	}
+
+	private class RenderSession implements MessageTemplateRenderSession {
+		private final Context institutionContext;
+		private final Map<UUID, ResolvedTemplate> templates = new HashMap<UUID, ResolvedTemplate>();
+
+		private RenderSession(final Context institutionContext) {
+			this.institutionContext = institutionContext;
+		}
+
+		private SubjectAndBody render(final UUID messageTemplateId,
+				final Map<String, Object> templateParameters) {
+			ResolvedTemplate template = templates.get(messageTemplateId);
+			if (template == null) {
+				try {
+					final MessageTemplate messageTemplate = dao.get(messageTemplateId);
+					template = new ResolvedTemplate(
+							velocityTemplateService.getTemplate(
+									messageTemplate.subjectTemplateId(), messageTemplate.getSubject()),
+							velocityTemplateService.getTemplate(
+									messageTemplate.bodyTemplateId(), messageTemplate.getBody()));
+				} catch (final ObjectNotFoundException e) {
+					throw new ConfigException(messageTemplateId,
+							ConfigException.TEMPLATE_TYPE, e);
+				}
+				templates.put(messageTemplateId, template);
+			}
+			return new SubjectAndBody(
+					velocityTemplateService.generateContent(template.subject,
+							institutionContext, templateParameters),
+					velocityTemplateService.generateContent(template.body,
+							institutionContext, templateParameters));
+		}
+
+		@Override
+		public void close() {
+			if (RENDER_SESSION.get() == this) {
+				RENDER_SESSION.remove();
+			}
+		}
+	}
+
 	private String formatDate(final Date date) {
 		return new SimpleDateFormat("MM/dd/yyyy").format(date);
 	}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.reference.impl;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.jasig.ssp.dao.reference.ReferenceCacheVersionDao;
+import org.jasig.ssp.service.reference.ReferenceCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Maps;
+
+@Service
+public class ReferenceCacheServiceImpl implements ReferenceCacheService, InitializingBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceCacheServiceImpl.class);
+
+	private static final long UNKNOWN_VERSION = -1L;
+
+	@Autowired
+	private transient ReferenceCacheVersionDao dao;
+
+	@Autowired
+	private transient SessionFactory sessionFactory;
+
+	@Autowired
+	private transient PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private transient TaskScheduler taskScheduler;
+
+	@Value("#{configProperties.db_second_level_cache_enabled}")
+	private transient boolean cacheEnabled = true;
+
+	@Value("#{configProperties.reference_cache_revalidation_millis}")
+	private transient long revalidationMillis = 5000L;
+
+	private final AtomicLong lastSeenVersion = new AtomicLong(UNKNOWN_VERSION);
+
+	@Override
+	public void afterPropertiesSet() {
+		if ( !(cacheEnabled) || revalidationMillis < 0 ) {
+			return;
+		}
+		taskScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					revalidate();
+				} catch ( Exception e ) {
+					// an exception would cancel all future runs
+					LOGGER.warn("Failed to check the reference cache version", e);
+				}
+			}
+		}, Math.max(1L, revalidationMillis));
+	}
+
+	@Override
+	public void revalidate() {
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(true);
+		final long version = transactionTemplate.execute(new TransactionCallback<Long>() {
+			@Override
+			public Long doInTransaction(TransactionStatus status) {
+				return dao.getVersion();
+			}
+		});
+		final long previous = lastSeenVersion.getAndSet(version);
+		if ( previous != UNKNOWN_VERSION && previous != version ) {
+			LOGGER.debug("Reference cache version moved from {} to {}, evicting", previous, version);
+			evictAll();
+		}
+	}
+
+	@Override
+	public void evictAll() {
+		sessionFactory.getCache().evictEntityRegions();
+		sessionFactory.getCache().evictCollectionRegions();
+		sessionFactory.getCache().evictQueryRegions();
+	}
+
+	@Override
+	public Map<String, Map<String, Long>> getStatistics() {
+		final Map<String, Map<String, Long>> statistics = Maps.newTreeMap();
+		final Statistics hibernateStatistics = sessionFactory.getStatistics();
+		if ( !(hibernateStatistics.isStatisticsEnabled()) ) {
+			return statistics;
+		}
+		for ( String region : hibernateStatistics.getSecondLevelCacheRegionNames() ) {
+			final SecondLevelCacheStatistics regionStatistics =
+					hibernateStatistics.getSecondLevelCacheStatistics(region);
+			if ( regionStatistics == null ) {
+				continue;
+			}
+			final Map<String, Long> counters = Maps.newLinkedHashMap();
+			counters.put("hits", regionStatistics.getHitCount());
+			counters.put("misses", regionStatistics.getMissCount());
+			counters.put("puts", regionStatistics.getPutCount());
+			counters.put("elementsInMemory", regionStatistics.getElementCountInMemory());
+			counters.put("sizeInMemory", regionStatistics.getSizeInMemory());
+			statistics.put(region, counters);
+		}
+		final Map<String, Long> queries = Maps.newLinkedHashMap();
+		queries.put("hits", hibernateStatistics.getQueryCacheHitCount());
+		queries.put("misses", hibernateStatistics.getQueryCacheMissCount());
+		queries.put("puts", hibernateStatistics.getQueryCachePutCount());
+		statistics.put("queries", queries);
+		return statistics;
+	}
+}
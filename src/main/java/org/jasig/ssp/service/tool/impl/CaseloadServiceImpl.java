@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.service.tool.impl;
 
+import au.com.bytecode.opencsv.CSVReader;
 import org.apache.commons.lang.StringUtils;
 import org.jasig.ssp.dao.CaseloadBulkAddReassignmentDao;
 import org.jasig.ssp.dao.CaseloadDao;
@@ -27,12 +28,14 @@ import org.jasig.ssp.service.*;
 import org.jasig.ssp.service.reference.MessageTemplateService;
 import org.jasig.ssp.service.tool.CaseloadService;
 import org.jasig.ssp.transferobject.BulkAddCaseloadReassignmentTO;
+import org.jasig.ssp.util.transaction.WithTransaction;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.commons.CommonsMultipartFile;
 
@@ -40,6 +43,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Person service implementation
@@ -53,6 +57,10 @@ public class CaseloadServiceImpl implements CaseloadService {
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(CaseloadServiceImpl.class);
 
+	private static final int STAGING_BATCH_SIZE = 500;
+
+	private static final int PROCESS_CHUNK_SIZE = 250;
+
 	@Autowired 
 	private CaseloadBulkAddReassignmentDao bulkReassignDao;
 
@@ -74,93 +82,230 @@ public class CaseloadServiceImpl implements CaseloadService {
 	@Autowired
 	private transient MessageTemplateService messageTemplateService;
 
+	@Autowired
+	private transient WithTransaction withTransaction;
+
 
 	protected CaseloadBulkAddReassignmentDao getBulkDao() {
 		return bulkReassignDao;
 	}
 
 
+	/**
+	 * Works through the staged rows in chunks of {@link #PROCESS_CHUNK_SIZE}, each in its own transaction. Every
+	 * chunk deletes the rows it handled when it commits, so a run that is interrupted (or fails part way) picks up
+	 * where it left off on the next scheduled execution. The notification email is sent once the staging table
+	 * has been emptied. An interrupted run sends its own summary of the records it did process, since the run
+	 * that finishes the table only reports the records it handled itself. Runs outside any transaction of its own
+	 * so that only the current chunk's transaction holds a connection and session.
+	 */
 	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public void processCaseloadBulkAddReassignment() {
-		final Map<String, AuditPerson> auditPersonMap = new HashMap<String, AuditPerson>();
-		final List<String> errors = new ArrayList<String>();
-		final List<CaseloadBulkAddReassignment> list = bulkReassignDao.getAll();
-		String notificationEmailAddress = null;
-
-        if (list.size() > 0) {
-			int successCount = 0;
-			for (CaseloadBulkAddReassignment model : list) {
-				if (notificationEmailAddress==null) {
-					notificationEmailAddress = model.getNotificationEmailAddress();
+		final long total = bulkReassignDao.count();
+		if (total == 0) {
+			return;
+		}
+
+		final BulkAddReassignmentRun run = new BulkAddReassignmentRun();
+		LOGGER.info("Caseload bulk add/reassign starting with {} staged records", total);
+
+		while (true) {
+			if (Thread.currentThread().isInterrupted()) {
+				LOGGER.info("Abandoning caseload bulk add/reassign because of thread interruption after processing"
+						+ " {} of {} staged records. Remaining records will be processed on the next execution.",
+						run.processed, total);
+				if (run.processed > 0) {
+					final List<String> errors = new ArrayList<String>(run.errors);
+					errors.add("Processing was interrupted after " + run.processed + " of " + total
+							+ " records. The remaining records will be processed and reported separately.");
+					sendNotification(run, errors);
 				}
+				return;
+			}
 
-				if (StringUtils.isNotBlank(model.getSchoolId())) {
-					try {
-						Person student = personService.getInternalOrExternalPersonBySchoolId(model.getSchoolId(), true, true); //slow, but need to add external only students
+			final BulkAddReassignmentChunk chunk = processChunkInTransaction(run, PROCESS_CHUNK_SIZE);
+			if (chunk == null) {
+				retryChunkOneRecordAtATime(run);
+			} else if (chunk.processed == 0) {
+				break;
+			} else {
+				run.merge(chunk);
+			}
 
-                        if (StringUtils.isNotBlank(model.getCoachSchoolId()) || student.getCoach() != null) {
-                            if (StringUtils.isBlank(student.getCurrentProgramStatusName())) {
-                                try {
-                                    personProgramStatusService.setActiveForStudent(student);
-                                } catch (ObjectNotFoundException | ValidationException onfve) {
-                                    createError(errors, "Active Program Status not found", model);
-                                }
-                            }
+			LOGGER.info("Caseload bulk add/reassign processed {} of {} staged records ({} reassigned, {} errors)",
+					new Object[] { run.processed, total, run.successCount, run.errors.size() });
+		}
 
-                            Person coach = null;
-                            if (StringUtils.isNotBlank(model.getCoachSchoolId())) {
-                                try {
-                                    coach = personService.getInternalOrExternalPersonBySchoolId(model.getCoachSchoolId(), true, false); //slow, but very rare need to add external only coach
+		sendNotification(run, run.errors);
+	}
 
-                                    if (coach!= null && student.getCoach() == null) {
-                                        student.setCoach(coach);
-                                    }
-                                } catch (ObjectNotFoundException e) {
-                                    createError(errors, "Coach School Id not found for record", model);
-                                }
-                            } else {
-                                coach = student.getCoach();
-                            }
+	private void sendNotification(final BulkAddReassignmentRun run, final List<String> errors) {
+		String notificationEmailAddress = run.notificationEmailAddress;
+		if (notificationEmailAddress==null) {
+			notificationEmailAddress = securityService.currentUser().getPerson().getPrimaryEmailAddress();
+		}
 
-                            AuditPerson auditPerson = null;
-                            if (StringUtils.isNotBlank(model.getModifiedBySchoolId())) {
-                                auditPerson = getAuditPerson(auditPersonMap, model.getModifiedBySchoolId());
-                            } else {
-                                final SspUser sspUser = (SspUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-                                auditPerson = new AuditPerson(sspUser.getPerson().getId());
-                                createError(errors, "Modified By School Id not found for record, using current or system user", model);
-                            }
+		final SubjectAndBody subjectAndBody = messageTemplateService.createBulkAddCaseloadReassignmentMessage(run.successCount, errors);
+		try {
+			messageService.createMessage(notificationEmailAddress, null, subjectAndBody);
+		} catch (ObjectNotFoundException e) {
+			LOGGER.error("Error creating BulkAddCaseloadReassignment email", e);
+		} catch (ValidationException e) {
+			LOGGER.error("Error creating BulkAddCaseloadReassignment email", e);
+		}
+	}
 
-                            caseloadDao.reassignStudentWithSpecifiedModifier(student, coach, auditPerson);
-                            successCount++;
+	/**
+	 * @return the outcome of the chunk, or null if its transaction could not be committed
+	 */
+	private BulkAddReassignmentChunk processChunkInTransaction(final BulkAddReassignmentRun run, final int chunkSize) {
+		try {
+			return withTransaction.withNewTransaction(new Callable<BulkAddReassignmentChunk>() {
+				@Override
+				public BulkAddReassignmentChunk call() throws Exception {
+					return processChunk(run, chunkSize);
+				}
+			});
+		} catch (Exception e) {
+			LOGGER.error("Caseload bulk add/reassign chunk failed, retrying its records one at a time", e);
+			return null;
+		}
+	}
 
-						} else {
-							createError(errors, "Student not added because student does not have a coach assigned for record nor was a coach assigned in the csv file", model);
+	/**
+	 * Falls back to one transaction per record so a single bad record can't hold up the rest of a failed chunk.
+	 * Records that still can't be committed are reported and removed from the staging table.
+	 */
+	private void retryChunkOneRecordAtATime(final BulkAddReassignmentRun run) {
+		for (int i = 0; i < PROCESS_CHUNK_SIZE; i++) {
+			final BulkAddReassignmentChunk single = processChunkInTransaction(run, 1);
+			if (single == null) {
+				final BulkAddReassignmentChunk failed = withTransaction.withNewTransactionAndUncheckedExceptions(
+						new Callable<BulkAddReassignmentChunk>() {
+					@Override
+					public BulkAddReassignmentChunk call() throws Exception {
+						final BulkAddReassignmentChunk chunk = new BulkAddReassignmentChunk(run.auditPersonMap);
+						for (final CaseloadBulkAddReassignment model : bulkReassignDao.getFirst(1)) {
+							chunk.record(model);
+							createError(chunk.errors, "Error saving the student for bulk add/reassign", model);
+							bulkReassignDao.delete(model);
 						}
-					} catch (ObjectNotFoundException e) {
-						createError(errors, "Student School Id not found for record", model);
-					} catch (Exception e) {
-						createError(errors, "Error saving the student for bulk add/reassign: " + e.getMessage(), model);
+						return chunk;
 					}
-				} else {
-					createError(errors, "Student School Id was not set for record", model);
+				});
+				run.merge(failed);
+				if (failed.processed == 0) {
+					return;
 				}
+			} else if (single.processed == 0) {
+				return;
+			} else {
+				run.merge(single);
 			}
-            bulkReassignDao.truncate();
+		}
+	}
 
-			if (notificationEmailAddress==null) {
-				notificationEmailAddress = securityService.currentUser().getPerson().getPrimaryEmailAddress();
+	private BulkAddReassignmentChunk processChunk(final BulkAddReassignmentRun run, final int chunkSize) {
+		final BulkAddReassignmentChunk chunk = new BulkAddReassignmentChunk(run.auditPersonMap);
+		final List<CaseloadBulkAddReassignment> list = bulkReassignDao.getFirst(chunkSize);
+		if (list.isEmpty()) {
+			return chunk;
+		}
+
+		// Resolve everyone the chunk refers to up front, materializing external-only people in bulk, rather than
+		// two lookups per school id per record
+		final Set<String> studentSchoolIds = new HashSet<String>();
+		final Set<String> staffSchoolIds = new HashSet<String>();
+		for (CaseloadBulkAddReassignment model : list) {
+			if (StringUtils.isNotBlank(model.getSchoolId())) {
+				studentSchoolIds.add(model.getSchoolId());
+			}
+			if (StringUtils.isNotBlank(model.getCoachSchoolId())) {
+				staffSchoolIds.add(model.getCoachSchoolId());
+			}
+			if (StringUtils.isNotBlank(model.getModifiedBySchoolId())
+					&& !(chunk.auditPersonMap.containsKey(model.getModifiedBySchoolId()))) {
+				staffSchoolIds.add(model.getModifiedBySchoolId());
 			}
+		}
+		staffSchoolIds.removeAll(studentSchoolIds); // don't materialize the same external-only person twice
+		final Map<String, Person> people = new HashMap<String, Person>();
+		people.putAll(personService.getInternalOrExternalPeopleBySchoolIds(studentSchoolIds, true, true));
+		people.putAll(personService.getInternalOrExternalPeopleBySchoolIds(staffSchoolIds, true, false));
+
+		for (CaseloadBulkAddReassignment model : list) {
+			chunk.record(model);
+
+			if (StringUtils.isNotBlank(model.getSchoolId())) {
+				try {
+					Person student = getPerson(people, model.getSchoolId(), true);
+
+                    if (StringUtils.isNotBlank(model.getCoachSchoolId()) || student.getCoach() != null) {
+                        if (StringUtils.isBlank(student.getCurrentProgramStatusName())) {
+                            try {
+                                personProgramStatusService.setActiveForStudent(student);
+                            } catch (ObjectNotFoundException | ValidationException onfve) {
+                                createError(chunk.errors, "Active Program Status not found", model);
+                            }
+                        }
 
-			final SubjectAndBody subjectAndBody = messageTemplateService.createBulkAddCaseloadReassignmentMessage(successCount, errors);
-			try {
-				messageService.createMessage(notificationEmailAddress, null, subjectAndBody);
-			} catch (ObjectNotFoundException e) {
-				LOGGER.error("Error creating BulkAddCaseloadReassignment email", e);
-			} catch (ValidationException e) {
-				LOGGER.error("Error creating BulkAddCaseloadReassignment email", e);
+                        Person coach = null;
+                        if (StringUtils.isNotBlank(model.getCoachSchoolId())) {
+                            try {
+                                coach = getPerson(people, model.getCoachSchoolId(), false);
+
+                                if (coach!= null && student.getCoach() == null) {
+                                    student.setCoach(coach);
+                                }
+                            } catch (ObjectNotFoundException e) {
+                                createError(chunk.errors, "Coach School Id not found for record", model);
+                            }
+                        } else {
+                            coach = student.getCoach();
+                        }
+
+                        AuditPerson auditPerson = null;
+                        if (StringUtils.isNotBlank(model.getModifiedBySchoolId())) {
+                            auditPerson = getAuditPerson(chunk.auditPersonMap, people, model.getModifiedBySchoolId());
+                        } else {
+                            final SspUser sspUser = (SspUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+                            auditPerson = new AuditPerson(sspUser.getPerson().getId());
+                            createError(chunk.errors, "Modified By School Id not found for record, using current or system user", model);
+                        }
+
+                        caseloadDao.reassignStudentWithSpecifiedModifier(student, coach, auditPerson);
+                        chunk.successCount++;
+
+					} else {
+						createError(chunk.errors, "Student not added because student does not have a coach assigned for record nor was a coach assigned in the csv file", model);
+					}
+				} catch (ObjectNotFoundException e) {
+					createError(chunk.errors, "Student School Id not found for record", model);
+				} catch (Exception e) {
+					createError(chunk.errors, "Error saving the student for bulk add/reassign: " + e.getMessage(), model);
+				}
+			} else {
+				createError(chunk.errors, "Student School Id was not set for record", model);
 			}
+
+			bulkReassignDao.delete(model);
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * Prefers the bulk prefetched Person, falling back to the single lookup for ids the prefetch didn't return
+	 * (e.g. a case mismatch between the csv and the person record) so not found handling stays the same.
+	 */
+	private Person getPerson(Map<String, Person> people, String schoolId, boolean isStudent)
+			throws ObjectNotFoundException {
+		final Person person = people.get(schoolId);
+		if (person != null) {
+			return person;
 		}
+		return personService.getInternalOrExternalPersonBySchoolId(schoolId, true, isStudent);
 	}
 
 	private void createError(List<String> errors, String error, CaseloadBulkAddReassignment model) {
@@ -169,11 +314,11 @@ public class CaseloadServiceImpl implements CaseloadService {
 		LOGGER.warn(message);
 	}
 
-	private AuditPerson getAuditPerson(Map<String, AuditPerson> map, String schoolId) {
+	private AuditPerson getAuditPerson(Map<String, AuditPerson> map, Map<String, Person> people, String schoolId) {
 		AuditPerson auditPerson = map.get(schoolId);
 		if (auditPerson==null) {
 			try {
-				final Person modifiedBy = personService.getInternalOrExternalPersonBySchoolId(schoolId, true, false); //slow, but external lookup ideally won't occur. Plus need to add external only in order to set person.id
+				final Person modifiedBy = getPerson(people, schoolId, false); //need to add external only in order to set person.id
 				auditPerson = new AuditPerson();
 				auditPerson.setFirstName(modifiedBy.getFirstName());
 				auditPerson.setLastName(modifiedBy.getLastName());
@@ -186,6 +331,48 @@ public class CaseloadServiceImpl implements CaseloadService {
 		return auditPerson;
 	}
 
+	/**
+	 * Totals for a whole processing run. Only updated from chunks whose transaction committed.
+	 */
+	private static class BulkAddReassignmentRun {
+		private Map<String, AuditPerson> auditPersonMap = new HashMap<String, AuditPerson>();
+		private final List<String> errors = new ArrayList<String>();
+		private int successCount = 0;
+		private long processed = 0;
+		private String notificationEmailAddress;
+
+		private void merge(BulkAddReassignmentChunk chunk) {
+			// AuditPersons can reference people materialized in the chunk, so they're only
+			// shared once that chunk has committed
+			auditPersonMap = chunk.auditPersonMap;
+			errors.addAll(chunk.errors);
+			successCount += chunk.successCount;
+			processed += chunk.processed;
+			if (notificationEmailAddress==null) {
+				notificationEmailAddress = chunk.notificationEmailAddress;
+			}
+		}
+	}
+
+	private static class BulkAddReassignmentChunk {
+		private final Map<String, AuditPerson> auditPersonMap;
+		private final List<String> errors = new ArrayList<String>();
+		private int successCount = 0;
+		private int processed = 0;
+		private String notificationEmailAddress;
+
+		private BulkAddReassignmentChunk(Map<String, AuditPerson> auditPersonMap) {
+			this.auditPersonMap = new HashMap<String, AuditPerson>(auditPersonMap);
+		}
+
+		private void record(CaseloadBulkAddReassignment model) {
+			processed++;
+			if (notificationEmailAddress==null) {
+				notificationEmailAddress = model.getNotificationEmailAddress();
+			}
+		}
+	}
+
 	@Override
 	public void loadCaseloadBulkAddReassignment(BulkAddCaseloadReassignmentTO uploadItem,
 			FileUploadResponse extjsFormResult) throws IOException,
@@ -198,40 +385,69 @@ public class CaseloadServiceImpl implements CaseloadService {
 		//Remove all rows from the table
         bulkReassignDao.truncate();
 
-		final BufferedReader bReader = new BufferedReader(new InputStreamReader(file.getInputStream()));
-
-		//read file line by line
-		String line;
-		Integer count = new Integer(1);
-		while( (line = bReader.readLine()) != null){
-			final CaseloadBulkAddReassignment model = createCaseloadBulkAddReassignmentFromCSVString(line, count, securityService.currentUser().getPerson().getPrimaryEmailAddress());
-			save(model);
-			//TODO Need to handle duplicate id exception
+		final String notificationEmailAddress = securityService.currentUser().getPerson().getPrimaryEmailAddress();
+		final CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(file.getInputStream())));
+		try {
+			//read file record by record, staging rows in batches
+			final List<CaseloadBulkAddReassignment> batch = new ArrayList<CaseloadBulkAddReassignment>(STAGING_BATCH_SIZE);
+			String[] values;
+			int count = 0;
+			while( (values = reader.readNext()) != null){
+				count++;
+				final List<String> fields = trimFields(values);
+				if (fields.isEmpty()) {
+					continue;
+				}
+				batch.add(createCaseloadBulkAddReassignmentFromCSVValues(fields, count, notificationEmailAddress));
+				if (batch.size() >= STAGING_BATCH_SIZE) {
+					bulkReassignDao.createAll(batch);
+					batch.clear();
+				}
+				//TODO Need to handle duplicate id exception
+			}
+			if (!(batch.isEmpty())) {
+				bulkReassignDao.createAll(batch);
+			}
+		} finally {
+			reader.close();
 		}
 
 		//set extjs return - sucsess
 		extjsFormResult.setSuccess(true);
 	}
 
-	private CaseloadBulkAddReassignment createCaseloadBulkAddReassignmentFromCSVString(String line, Integer count, String notificationEmailAddress) throws ObjectNotFoundException {
+	/**
+	 * Trims each value, quoted or not, and drops trailing empty values, so "a,b,c," is read as three values and
+	 * a blank line as none. Quoted values are trimmed too because the reader doesn't say which values were quoted,
+	 * and stray spaces inside quotes would otherwise keep school ids from matching.
+	 */
+	private List<String> trimFields(String[] values) {
+		final List<String> fields = new ArrayList<String>(values.length);
+		for (String value : values) {
+			fields.add(value == null ? "" : value.trim());
+		}
+		while (!(fields.isEmpty()) && fields.get(fields.size() - 1).isEmpty()) {
+			fields.remove(fields.size() - 1);
+		}
+		return fields;
+	}
 
-		final String[] values = line.replaceAll("^\"", "").split("\"?(,|$)(?=(([^\"]*\"){2})*[^\"]*$) *\"?");
+	private CaseloadBulkAddReassignment createCaseloadBulkAddReassignmentFromCSVValues(List<String> values, int count, String notificationEmailAddress) {
 
-		if (values.length < 3 || values.length > 4) {
+		if (values.size() < 3 || values.size() > 4) {
 			throw new IllegalArgumentException("CVS file not formatted properly.  Each row must contain three or four values.  Row " + count + " is invalid.");
 		}
 
 		final CaseloadBulkAddReassignment caseloadBulkAddReassignment = new CaseloadBulkAddReassignment();
-		caseloadBulkAddReassignment.setSchoolId(values[0]);
-		caseloadBulkAddReassignment.setCoachSchoolId(values[1]);
-		caseloadBulkAddReassignment.setModifiedBySchoolId(values[2]);
+		caseloadBulkAddReassignment.setSchoolId(values.get(0));
+		caseloadBulkAddReassignment.setCoachSchoolId(values.get(1));
+		caseloadBulkAddReassignment.setModifiedBySchoolId(values.get(2));
 
-        if (values.length == 4) {
-			caseloadBulkAddReassignment.setJournalEntryComment(values[3]);
+        if (values.size() == 4) {
+			caseloadBulkAddReassignment.setJournalEntryComment(values.get(3));
 		}
 
 		caseloadBulkAddReassignment.setNotificationEmailAddress(notificationEmailAddress);
-		count++;
 
         return caseloadBulkAddReassignment;
 	}
@@ -0,0 +1,72 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.transferobject;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Projection of an {@link org.jasig.ssp.model.EarlyAlert} awaiting a response, carrying only what is needed to
+ * decide who should be reminded about it.
+ */
+public class EarlyAlertResponseDueRecipientTO implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private UUID earlyAlertId;
+	private UUID coachId;
+	private UUID campusId;
+	private UUID earlyAlertCoordinatorId;
+
+	public EarlyAlertResponseDueRecipientTO() {
+
+	}
+
+	public UUID getEarlyAlertId() {
+		return earlyAlertId;
+	}
+
+	public void setEarlyAlertId(final UUID earlyAlertId) {
+		this.earlyAlertId = earlyAlertId;
+	}
+
+	public UUID getCoachId() {
+		return coachId;
+	}
+
+	public void setCoachId(final UUID coachId) {
+		this.coachId = coachId;
+	}
+
+	public UUID getCampusId() {
+		return campusId;
+	}
+
+	public void setCampusId(final UUID campusId) {
+		this.campusId = campusId;
+	}
+
+	public UUID getEarlyAlertCoordinatorId() {
+		return earlyAlertCoordinatorId;
+	}
+
+	public void setEarlyAlertCoordinatorId(final UUID earlyAlertCoordinatorId) {
+		this.earlyAlertCoordinatorId = earlyAlertCoordinatorId;
+	}
+}
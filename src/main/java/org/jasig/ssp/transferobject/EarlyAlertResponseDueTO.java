@@ -0,0 +1,136 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.transferobject;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Projection of an {@link org.jasig.ssp.model.EarlyAlert} awaiting a response, carrying only the fields shown
+ * in the response reminder digest.
+ */
+public class EarlyAlertResponseDueTO implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private UUID id;
+	private Date createdDate;
+	private Date lastResponseDate;
+	private String courseTitle;
+	private String courseTermCode;
+	private UUID studentId;
+	private String studentFirstName;
+	private String studentLastName;
+	private UUID creatorId;
+	private String creatorFirstName;
+	private String creatorLastName;
+
+	public EarlyAlertResponseDueTO() {
+
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public void setId(final UUID id) {
+		this.id = id;
+	}
+
+	public Date getCreatedDate() {
+		return createdDate;
+	}
+
+	public void setCreatedDate(final Date createdDate) {
+		this.createdDate = createdDate;
+	}
+
+	public Date getLastResponseDate() {
+		return lastResponseDate;
+	}
+
+	public void setLastResponseDate(final Date lastResponseDate) {
+		this.lastResponseDate = lastResponseDate;
+	}
+
+	public String getCourseTitle() {
+		return courseTitle;
+	}
+
+	public void setCourseTitle(final String courseTitle) {
+		this.courseTitle = courseTitle;
+	}
+
+	public String getCourseTermCode() {
+		return courseTermCode;
+	}
+
+	public void setCourseTermCode(final String courseTermCode) {
+		this.courseTermCode = courseTermCode;
+	}
+
+	public UUID getStudentId() {
+		return studentId;
+	}
+
+	public void setStudentId(final UUID studentId) {
+		this.studentId = studentId;
+	}
+
+	public String getStudentFirstName() {
+		return studentFirstName;
+	}
+
+	public void setStudentFirstName(final String studentFirstName) {
+		this.studentFirstName = studentFirstName;
+	}
+
+	public String getStudentLastName() {
+		return studentLastName;
+	}
+
+	public void setStudentLastName(final String studentLastName) {
+		this.studentLastName = studentLastName;
+	}
+
+	public UUID getCreatorId() {
+		return creatorId;
+	}
+
+	public void setCreatorId(final UUID creatorId) {
+		this.creatorId = creatorId;
+	}
+
+	public String getCreatorFirstName() {
+		return creatorFirstName;
+	}
+
+	public void setCreatorFirstName(final String creatorFirstName) {
+		this.creatorFirstName = creatorFirstName;
+	}
+
+	public String getCreatorLastName() {
+		return creatorLastName;
+	}
+
+	public void setCreatorLastName(final String creatorLastName) {
+		this.creatorLastName = creatorLastName;
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.transferobject.jobqueue;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Everything needed to replay a report request in the background: the request path within the API servlet and its
+ * query parameters.
+ */
+public class ReportJobSpec {
+
+	private String servletPath;
+
+	private String pathInfo;
+
+	private Map<String, List<String>> parameters = Maps.newLinkedHashMap();
+
+	public ReportJobSpec() {
+	}
+
+	public ReportJobSpec(String servletPath, String pathInfo, Map<String, List<String>> parameters) {
+		this.servletPath = servletPath;
+		this.pathInfo = pathInfo;
+		this.parameters = parameters;
+	}
+
+	public String getServletPath() {
+		return servletPath;
+	}
+
+	public void setServletPath(String servletPath) {
+		this.servletPath = servletPath;
+	}
+
+	public String getPathInfo() {
+		return pathInfo;
+	}
+
+	public void setPathInfo(String pathInfo) {
+		this.pathInfo = pathInfo;
+	}
+
+	public Map<String, List<String>> getParameters() {
+		return parameters;
+	}
+
+	public void setParameters(Map<String, List<String>> parameters) {
+		this.parameters = parameters;
+	}
+}
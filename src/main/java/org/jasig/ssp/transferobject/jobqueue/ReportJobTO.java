@@ -0,0 +1,69 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.transferobject.jobqueue;
+
+import java.util.Date;
+
+import org.jasig.ssp.model.jobqueue.Job;
+import org.jasig.ssp.model.jobqueue.WorkflowStatus;
+
+/**
+ * {@link JobTO} for a report generated in the background. {@code downloadable} is set once the report file is ready.
+ */
+public class ReportJobTO extends JobTO {
+
+	private WorkflowStatus workflowStatus;
+
+	private Date executionStartedDate;
+
+	private Date workflowStoppedDate;
+
+	private boolean downloadable;
+
+	private String fileName;
+
+	public ReportJobTO(Job job, boolean downloadable, String fileName) {
+		super(job);
+		this.workflowStatus = job.getWorkflowStatus();
+		this.executionStartedDate = job.getExecutionStartedDate();
+		this.workflowStoppedDate = job.getWorkflowStoppedDate();
+		this.downloadable = downloadable;
+		this.fileName = fileName;
+	}
+
+	public WorkflowStatus getWorkflowStatus() {
+		return workflowStatus;
+	}
+
+	public Date getExecutionStartedDate() {
+		return executionStartedDate;
+	}
+
+	public Date getWorkflowStoppedDate() {
+		return workflowStoppedDate;
+	}
+
+	public boolean isDownloadable() {
+		return downloadable;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+}
@@ -24,6 +24,7 @@ import java.util.Set;
 
 import org.jasig.ssp.model.EarlyAlert;
 import org.jasig.ssp.model.Person;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueTO;
 import org.jasig.ssp.transferobject.EarlyAlertTO;
 
 public class EarlyAlertMessageTemplateTO extends EarlyAlertTO {
@@ -59,6 +60,27 @@ public class EarlyAlertMessageTemplateTO extends EarlyAlertTO {
 			getWatcherEmails().addAll(watcherEmailAddresses);
 	}
 
+	/**
+	 * Builds a response reminder digest line from a projection instead of a
+	 * loaded EarlyAlert. Only the fields carried by
+	 * {@link EarlyAlertResponseDueTO} are set.
+	 */
+	public EarlyAlertMessageTemplateTO(EarlyAlertResponseDueTO earlyAlert) {
+		super();
+		setId(earlyAlert.getId());
+		setCreatedDate(earlyAlert.getCreatedDate());
+		setLastResponseDate(earlyAlert.getLastResponseDate());
+		setCourseTitle(earlyAlert.getCourseTitle());
+		setCourseTermCode(earlyAlert.getCourseTermCode());
+		this.person = new StudentPersonLiteMessageTemplateTO(earlyAlert.getStudentId(),
+				earlyAlert.getStudentFirstName(), earlyAlert.getStudentLastName(),
+				null, null, null, null, null, null);
+		if(earlyAlert.getCreatorId() != null)
+			this.creator = new CoachPersonLiteMessageTemplateTO(earlyAlert.getCreatorId(),
+					earlyAlert.getCreatorFirstName(), earlyAlert.getCreatorLastName(),
+					null, null, null, null, null, null);
+	}
+
 	public StudentPersonLiteMessageTemplateTO getPerson() {
 		return person;
 	}
@@ -31,6 +31,10 @@ public class MapStatusReportSummary {
 	private int studentsInScope;
 	
 	private boolean updateCurrentTerm;
+
+	private int plansRecalculated;
+
+	private int plansUnchanged;
 	
 	private List<MapStatusReportSummaryDetail> summaryDetails = new ArrayList<MapStatusReportSummaryDetail>();
 	
@@ -59,6 +63,18 @@ public class MapStatusReportSummary {
 	public void setUpdateCurrentTerm(boolean updateCurrentTerm) {
 		this.updateCurrentTerm = updateCurrentTerm;
 	}
+	public int getPlansRecalculated() {
+		return plansRecalculated;
+	}
+	public void setPlansRecalculated(int plansRecalculated) {
+		this.plansRecalculated = plansRecalculated;
+	}
+	public int getPlansUnchanged() {
+		return plansUnchanged;
+	}
+	public void setPlansUnchanged(int plansUnchanged) {
+		this.plansUnchanged = plansUnchanged;
+	}
 	public List<MapStatusReportSummaryDetail> getSummaryDetails() {
 		return summaryDetails;
 	}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.util;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Digests of the data a background job read, so it can tell on its next run
+ * whether working through the same data again would come out the same.
+ */
+public final class Fingerprints {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * This class is only called statically
+	 */
+	private Fingerprints() {
+		super();
+	}
+
+	/**
+	 * Joins the given values into one line, null-safe.
+	 *
+	 * @param values
+	 *            values to join, in a fixed order
+	 * @return a line which only equals another if all their values do
+	 */
+	public static String fields(final Object... values) {
+		final StringBuilder sb = new StringBuilder();
+		for ( Object value : values ) {
+			// escape the separator so adjacent fields can't run together
+			sb.append(value == null ? "\\N"
+					: value.toString().replace("\\", "\\\\").replace("|", "\\|")).append('|');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * SHA1 digest of the given lines, as 40 hex characters.
+	 *
+	 * @param lines
+	 *            lines to digest, in a fixed order
+	 */
+	public static String of(final List<String> lines) {
+		final MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA1");
+		} catch ( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException("SHA1 digest not available", e);
+		}
+		for ( String line : lines ) {
+			md.update(line.getBytes(UTF_8));
+			md.update((byte) '\n');
+		}
+		final byte[] mdbytes = md.digest();
+		final StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < mdbytes.length; i++ ) {
+			sb.append(Integer.toString((mdbytes[i] & 0xff) + 0x100, 16).substring(1));
+		}
+		return sb.toString();
+	}
+
+}
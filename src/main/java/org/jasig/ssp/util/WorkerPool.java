@@ -0,0 +1,122 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs the same worker loop on a few short-lived threads and waits for all of
+ * them, for background tasks which split one run over a shared work queue.
+ */
+public final class WorkerPool {
+
+	/**
+	 * This class is only called statically
+	 */
+	private WorkerPool() {
+		super();
+	}
+
+	/**
+	 * Number of workers to start for the given amount of work; never more
+	 * than there are work items to hand out, never less than one.
+	 *
+	 * @param configuredWorkers
+	 *            configured maximum number of workers
+	 * @param workItems
+	 *            number of work items in the queue
+	 */
+	public static int size(final int configuredWorkers, final int workItems) {
+		return Math.max(1, Math.min(configuredWorkers, workItems));
+	}
+
+	/**
+	 * Runs {@code worker} once on each of {@code workerCount} daemon threads
+	 * named after {@code name} and waits for all of them to return.
+	 *
+	 * @param name
+	 *            thread name prefix, so the workers can be told apart in
+	 *            thread dumps
+	 * @param workerCount
+	 *            number of threads to start, see {@link #size(int, int)}
+	 * @param worker
+	 *            worker loop; should poll its queue until it is empty or
+	 *            {@code abandon} is set
+	 * @param abandon
+	 *            set before the workers are interrupted if the calling thread
+	 *            is interrupted while waiting
+	 * @param stillRunning
+	 *            called every minute while the workers are still busy, e.g. to
+	 *            log progress; may be null
+	 * @return false if the calling thread was interrupted while waiting. The
+	 *         workers have still all returned by then, so whatever state they
+	 *         shared is safe to read, and the caller's interrupt status is
+	 *         reasserted.
+	 */
+	public static boolean run(final String name, final int workerCount, final Runnable worker,
+			final AtomicBoolean abandon, final Runnable stillRunning) {
+		final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(name + "-");
+		threadFactory.setDaemon(true);
+		final ExecutorService workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+		try {
+			for ( int i = 0; i < workerCount; i++ ) {
+				workers.execute(worker);
+			}
+			workers.shutdown();
+			while ( !(workers.awaitTermination(1, TimeUnit.MINUTES)) ) {
+				if ( stillRunning != null ) {
+					stillRunning.run();
+				}
+			}
+			return true;
+		} catch ( InterruptedException e ) {
+			abandon.set(true);
+			workers.shutdownNow();
+			awaitTerminationUninterruptibly(workers, stillRunning);
+			Thread.currentThread().interrupt(); // reassert
+			return false;
+		}
+	}
+
+	/**
+	 * Waits for abandoned workers to notice and return. Callers read what the
+	 * workers wrote as soon as {@link #run} returns, so it mustn't return
+	 * while any of them could still be writing, even if interrupted again.
+	 */
+	private static void awaitTerminationUninterruptibly(final ExecutorService workers,
+			final Runnable stillRunning) {
+		while ( true ) {
+			try {
+				if ( workers.awaitTermination(1, TimeUnit.MINUTES) ) {
+					return;
+				}
+				if ( stillRunning != null ) {
+					stillRunning.run();
+				}
+			} catch ( InterruptedException e ) {
+				// keep waiting; the caller's interrupt is reasserted once the workers are done
+			}
+		}
+	}
+}
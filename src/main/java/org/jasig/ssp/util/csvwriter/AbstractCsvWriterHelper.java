@@ -82,6 +82,56 @@ public abstract class AbstractCsvWriterHelper<T> {
 		}, maxCount);
 	}
 
+	/**
+	 * Like {@link #write(ScrollableResults, Long)}, but reads {@code chunkSize} rows ahead at a time and hands each
+	 * chunk to {@code preparer} before any of its rows are written, e.g. so rows can be decorated with batched
+	 * lookups. Only the current chunk is held in memory.
+	 */
+	public void write(final ScrollableResults model, final int chunkSize, final ChunkPreparer<T> preparer,
+			final Long maxCount) throws IOException {
+		doWrite(new Iterator<T>() {
+			private final List<T> chunk = Lists.newArrayListWithCapacity(chunkSize);
+			private int position;
+			private boolean exhausted;
+
+			@Override
+			public boolean hasNext() {
+				if ( position >= chunk.size() ) {
+					nextChunk();
+				}
+				return position < chunk.size();
+			}
+
+			@Override
+			public T next() {
+				if ( !(hasNext()) ) {
+					throw new NoSuchElementException(); // per Iterator interface
+				}
+				return chunk.get(position++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			private void nextChunk() {
+				chunk.clear();
+				position = 0;
+				while ( !(exhausted) && chunk.size() < chunkSize ) {
+					if ( model.next() ) {
+						chunk.add((T)model.get()[0]);
+					} else {
+						exhausted = true;
+					}
+				}
+				if ( !(chunk.isEmpty()) ) {
+					preparer.prepare(chunk);
+				}
+			}
+		}, maxCount);
+	}
+
 	public void write(Collection<T> model, Long maxCount) throws IOException {
 		doWrite(model.iterator(), maxCount);
 	}
@@ -137,6 +187,16 @@ public abstract class AbstractCsvWriterHelper<T> {
 		}
 	}
 
+	/**
+	 * Callback for {@link AbstractCsvWriterHelper#write(ScrollableResults, int, ChunkPreparer, Long)}
+	 */
+	public interface ChunkPreparer<T> {
+		/**
+		 * Called once per chunk, before any of its rows are written. May modify the rows but not the list.
+		 */
+		void prepare(List<T> chunk);
+	}
+
 	protected abstract String[] csvHeaderRow();
 
 	/**
@@ -19,17 +19,42 @@
 package org.jasig.ssp.util.hibernate;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.Entity;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
 
 import org.hibernate.SessionFactory;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.dialect.function.SQLFunction;
 import org.hibernate.type.BasicType;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
 import org.springframework.orm.hibernate4.LocalSessionFactoryBuilder;
+import org.springframework.util.ClassUtils;
+
+import com.google.common.collect.Sets;
 
 public class TypeRegistryOverridingLocalSessionFactoryBean extends LocalSessionFactoryBean {
 
 	private List<BasicType> basicTypeOverrides;
 
+	private Map<String, SQLFunction> sqlFunctions;
+
+	private String[] packagesToScan;
+
+	private List<Class<?>> cachedEntityTypes;
+
+	private String cacheConcurrencyStrategy = "read-write";
+
 	@Override
 	public void afterPropertiesSet() throws IOException {
 		super.afterPropertiesSet();
@@ -38,6 +63,8 @@ public class TypeRegistryOverridingLocalSessionFactoryBean extends LocalSessionF
 	@Override
 	protected SessionFactory buildSessionFactory(LocalSessionFactoryBuilder sfb) {
 		overrideBasicTypes(sfb);
+		registerSqlFunctions(sfb);
+		applyCacheConcurrencyStrategies(sfb);
 		return super.buildSessionFactory(sfb);
 	}
 
@@ -50,8 +77,105 @@ public class TypeRegistryOverridingLocalSessionFactoryBean extends LocalSessionF
 		}
 	}
 
+	/**
+	 * Registers HQL functions independently of the configured dialect, so
+	 * deployments running a stock Hibernate dialect still get them.
+	 */
+	protected void registerSqlFunctions(LocalSessionFactoryBuilder sfb) {
+		if ( sqlFunctions == null || sqlFunctions.isEmpty() ) {
+			return;
+		}
+		for ( Map.Entry<String, SQLFunction> sqlFunction : sqlFunctions.entrySet() ) {
+			sfb.addSqlFunction(sqlFunction.getKey(), sqlFunction.getValue());
+		}
+	}
+
+	/**
+	 * Marks every entity in {@link #setPackagesToScan(String...)} which
+	 * extends one of the {@link #setCachedEntityTypes(List)} as cacheable in
+	 * the second-level cache, along with its collections of other such
+	 * entities. Done here rather than with {@code @Cache} annotations because
+	 * Hibernate only reads those off the entity class itself, not off
+	 * shared {@code @MappedSuperclass}es. {@code @Immutable} entities are
+	 * cached read-only. Has no effect unless the second-level cache is
+	 * turned on in the Hibernate properties.
+	 */
+	protected void applyCacheConcurrencyStrategies(LocalSessionFactoryBuilder sfb) {
+		if ( cachedEntityTypes == null || cachedEntityTypes.isEmpty() || packagesToScan == null ) {
+			return;
+		}
+		final Set<Class<?>> cachedEntities = findCachedEntities();
+		for ( Class<?> entity : cachedEntities ) {
+			final String strategy = entity.isAnnotationPresent(Immutable.class) ? "read-only" : cacheConcurrencyStrategy;
+			sfb.setCacheConcurrencyStrategy(entity.getName(), strategy);
+			for ( Class<?> declaring = entity; declaring != null; declaring = declaring.getSuperclass() ) {
+				for ( Field field : declaring.getDeclaredFields() ) {
+					if ( (field.isAnnotationPresent(OneToMany.class) || field.isAnnotationPresent(ManyToMany.class))
+							&& cachedEntities.contains(collectionElementType(field)) ) {
+						sfb.setCollectionCacheConcurrencyStrategy(entity.getName() + "." + field.getName(), strategy);
+					}
+				}
+			}
+		}
+	}
+
+	private Set<Class<?>> findCachedEntities() {
+		final ClassPathScanningCandidateComponentProvider scanner =
+				new ClassPathScanningCandidateComponentProvider(false);
+		scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+		final Set<Class<?>> entities = Sets.newHashSet();
+		for ( String packageToScan : packagesToScan ) {
+			for ( BeanDefinition candidate : scanner.findCandidateComponents(packageToScan) ) {
+				final Class<?> entity = ClassUtils.resolveClassName(candidate.getBeanClassName(),
+						ClassUtils.getDefaultClassLoader());
+				// Hibernate only takes cache settings on the root of an entity hierarchy
+				if ( isCachedType(entity) && !(entity.getSuperclass().isAnnotationPresent(Entity.class)) ) {
+					entities.add(entity);
+				}
+			}
+		}
+		return entities;
+	}
+
+	private boolean isCachedType(Class<?> entity) {
+		for ( Class<?> cachedType : cachedEntityTypes ) {
+			if ( cachedType.isAssignableFrom(entity) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Class<?> collectionElementType(Field field) {
+		final Type type = field.getGenericType();
+		if ( !(type instanceof ParameterizedType) ) {
+			return null;
+		}
+		final Type[] typeArguments = ((ParameterizedType) type).getActualTypeArguments();
+		final Type elementType = typeArguments[typeArguments.length - 1];
+		return elementType instanceof Class ? (Class<?>) elementType : null;
+	}
+
+	@Override
+	public void setPackagesToScan(String... packagesToScan) {
+		super.setPackagesToScan(packagesToScan);
+		this.packagesToScan = packagesToScan;
+	}
+
+	public void setCachedEntityTypes(List<Class<?>> cachedEntityTypes) {
+		this.cachedEntityTypes = cachedEntityTypes;
+	}
+
+	public void setCacheConcurrencyStrategy(String cacheConcurrencyStrategy) {
+		this.cacheConcurrencyStrategy = cacheConcurrencyStrategy;
+	}
+
 	public void setBasicTypeOverrides(List<BasicType> basicTypeOverrides) {
 		this.basicTypeOverrides = basicTypeOverrides;
 	}
 
+	public void setSqlFunctions(Map<String, SQLFunction> sqlFunctions) {
+		this.sqlFunctions = sqlFunctions;
+	}
+
 }
@@ -0,0 +1,66 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.util.hibernate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.transform.ResultTransformer;
+
+/**
+ * Strips the trailing {@code count(*) over()} column added by
+ * {@link org.jasig.ssp.util.sort.PagedQueryCountMode#WINDOW_FUNCTION} queries
+ * off each tuple, remembering its value, and hands the rest of the tuple to
+ * the wrapped transformer. Not thread safe, use one instance per query.
+ */
+public class WindowCountResultTransformer implements ResultTransformer {
+
+	private static final long serialVersionUID = 3170480537151256102L;
+
+	private final ResultTransformer delegate;
+
+	private Long totalRows;
+
+	public WindowCountResultTransformer(ResultTransformer delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Object transformTuple(Object[] tuple, String[] aliases) {
+		final int last = tuple.length - 1;
+		if ( totalRows == null && tuple[last] != null ) {
+			totalRows = ((Number) tuple[last]).longValue();
+		}
+		return delegate.transformTuple(Arrays.copyOf(tuple, last), Arrays.copyOf(aliases, last));
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public List transformList(List collection) {
+		return delegate.transformList(collection);
+	}
+
+	/**
+	 * @return total row count carried by the transformed rows, or null if the
+	 *         query returned no rows
+	 */
+	public Long getTotalRows() {
+		return totalRows;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.util.sort;
+
+/**
+ * How {@link SortingAndPaging#applySortingAndPagingToPagedQuery(Object, String, String, StringBuilder, boolean, String, Boolean, java.util.Map, PagedQueryCountMode)}
+ * arrives at the total row count for a paged HQL query.
+ */
+public enum PagedQueryCountMode {
+
+	/**
+	 * Run a separate {@code count()} query before the page query. Always
+	 * exact, costs a second round trip.
+	 */
+	SEPARATE_QUERY,
+
+	/**
+	 * Add a {@code count(*) over()} column to the page query so the total
+	 * comes back with every row. Exact only if the query cannot return
+	 * duplicate rows, i.e. it neither needs {@code distinct} nor joins
+	 * collections.
+	 */
+	WINDOW_FUNCTION,
+
+	/**
+	 * Skip counting entirely. The page query fetches one row past the page
+	 * so the caller can tell whether another page exists, which is all the
+	 * total is good for in that case.
+	 */
+	ESTIMATE
+
+}
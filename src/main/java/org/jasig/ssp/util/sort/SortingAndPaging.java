@@ -58,6 +58,18 @@ public final class SortingAndPaging { // NOPMD
 	 */
 	final public static Integer MAXIMUM_ALLOWABLE_RESULTS = 1000;
 
+	/**
+	 * HQL function rendering {@code count(*) over()}, registered on the
+	 * session factory.
+	 */
+	final public static String WINDOW_COUNT_FUNCTION = "count_over";
+
+	/**
+	 * Alias of the trailing total row count column added to
+	 * {@link PagedQueryCountMode#WINDOW_FUNCTION} queries.
+	 */
+	final public static String WINDOW_COUNT_ALIAS = "windowTotalRows";
+
 	final transient private ObjectStatus status;
 
 	final private transient Integer firstResult;
@@ -367,6 +379,27 @@ public final class SortingAndPaging { // NOPMD
 			  final String hqlSelectClause,
 			  final StringBuilder hqlWithoutSelect,
 			  final boolean filterByStatus,String objectToAddStatusFilter, Boolean isInitialRestriction, Map<String,Object> bindParams) {
+		return applySortingAndPagingToPagedQuery(session, countColumn, hqlSelectClause, hqlWithoutSelect,
+				filterByStatus, objectToAddStatusFilter, isInitialRestriction, bindParams,
+				PagedQueryCountMode.SEPARATE_QUERY);
+	}
+
+	/**
+	 * As {@link #applySortingAndPagingToPagedQuery(Object, String, String, StringBuilder, boolean, String, Boolean, Map)}
+	 * but lets the caller pick how the total is found. The returned count is
+	 * only non-null for {@link PagedQueryCountMode#SEPARATE_QUERY}. For
+	 * {@link PagedQueryCountMode#WINDOW_FUNCTION} the total is the last
+	 * column of every row (see
+	 * {@link org.jasig.ssp.util.hibernate.WindowCountResultTransformer}), and
+	 * for {@link PagedQueryCountMode#ESTIMATE} the query returns up to one
+	 * row more than the page size.
+	 */
+	public Pair<Long,Query> applySortingAndPagingToPagedQuery(Object session,
+			  final String countColumn,
+			  final String hqlSelectClause,
+			  final StringBuilder hqlWithoutSelect,
+			  final boolean filterByStatus,String objectToAddStatusFilter, Boolean isInitialRestriction, Map<String,Object> bindParams,
+			  final PagedQueryCountMode countMode) {
 
 		if (filterByStatus && StringUtils.isNotBlank(objectToAddStatusFilter)) {
 			addStatusFilterToQuery(hqlWithoutSelect, objectToAddStatusFilter, isInitialRestriction);
@@ -388,7 +421,11 @@ public final class SortingAndPaging { // NOPMD
 		
 		Query fullQuery = null;
 		Query rowCntQuery = null;
-		final StringBuilder fullHql = new StringBuilder(hqlSelectClause).append(addSortingToQuery(hqlWithoutSelect));
+		final StringBuilder fullHql = new StringBuilder(hqlSelectClause);
+		if ( countMode == PagedQueryCountMode.WINDOW_FUNCTION ) {
+			fullHql.append(", ").append(WINDOW_COUNT_FUNCTION).append("() as ").append(WINDOW_COUNT_ALIAS).append(" ");
+		}
+		fullHql.append(addSortingToQuery(hqlWithoutSelect));
 		if(session instanceof Session)
 		{
 			Session thisSession = (Session)session;
@@ -408,6 +445,13 @@ public final class SortingAndPaging { // NOPMD
 					"must be of type Session or StatelessSession");
 		}
 
+		if ( countMode == PagedQueryCountMode.ESTIMATE && isPaged() ) {
+			fullQuery.setMaxResults(maxResults + 1);
+		}
+		if ( countMode != PagedQueryCountMode.SEPARATE_QUERY ) {
+			return new Pair<Long,Query>(null,fullQuery);
+		}
+
 		rowCntQuery.setProperties(bindParams);
 		rowCntQuery = postProcessBindParams(rowCntQuery, bindParams);
 		final Long totalRows = (Long)rowCntQuery.list().get(0);
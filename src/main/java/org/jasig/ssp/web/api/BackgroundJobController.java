@@ -98,6 +98,19 @@ public class BackgroundJobController extends AbstractBaseController {
         return new ServiceResponse(true, "success");
     }
 
+    /**
+     * Executes the incremental mv_directory_person refresh task, which re-derives only the
+     *   rows whose SSP-side data changed since the last refresh.
+     * @param request
+     * @return
+     */
+    @RequestMapping(value = "/directorypersonrefreshincremental", method = RequestMethod.GET)
+    public @ResponseBody ServiceResponse runDirectoryPersonRefreshIncremental(HttpServletRequest  request) {
+        LOGGER.debug("Manually running refreshDirectoryPersonIncremental... ");
+        scheduledTaskWrapperService.refreshDirectoryPersonIncremental();
+        return new ServiceResponse(true, "success");
+    }
+
     /**
      * Executes the send Early Alert reminders task which notifies coaches if an
      *   alert hasn't been responded to in configured a timeframe (default 2 days).
@@ -269,11 +269,13 @@ public class PersonSearchController extends AbstractBaseController {
 	 final @RequestParam(required = false) String homeCampus,
 	 final @RequestParam(required = false) String successIndicator,
 	 final @RequestParam(required = false) String transferGoals,
+	 // true skips counting, results is then only accurate enough to tell whether there is a next page
+	 final @RequestParam(required = false) Boolean estimateTotal,
 	 final HttpServletRequest request) throws ObjectNotFoundException
 	 {
 		assertSearchApiAuthorization(request);
 		SortingAndPaging sortAndPage = buildSortAndPage( limit,  start,  sort,  sortDirection);
-		final PagingWrapper<PersonSearchResult2> models = service.searchPersonDirectory(personSearchRequestFactory.from(schoolId,
+		final PersonSearchRequest form = personSearchRequestFactory.from(schoolId,
 				firstName, lastName, 
 				programStatus,specialServiceGroup, 
 				coachId,declaredMajor,
@@ -285,7 +287,9 @@ public class PersonSearchController extends AbstractBaseController {
 				sapStatusCode,
 				planStatus,planExists, partialPlan,
 				myCaseload,myPlans,myWatchList, birthDate, actualStartTerm, personTableType,
-				homeCampus, successIndicator, transferGoals, sortAndPage));
+				homeCampus, successIndicator, transferGoals, sortAndPage);
+		form.setEstimateTotal(estimateTotal);
+		final PagingWrapper<PersonSearchResult2> models = service.searchPersonDirectory(form);
 
          return new PagedResponse<PersonSearchResult2TO>(true, models.getResults(), factory2.asTOList(models.getRows()));
 	}
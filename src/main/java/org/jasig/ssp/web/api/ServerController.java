@@ -35,7 +35,9 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang.StringUtils;
 import org.jasig.ssp.service.ServerService;
+import org.jasig.ssp.security.permissions.Permission;
 import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.service.reference.ReferenceCacheService;
 import org.jasig.ssp.transferobject.jsonserializer.DateOnlyFormatting;
 import org.jasig.ssp.util.DateTimeUtils;
 import org.jasig.ssp.util.security.DynamicPermissionChecking;
@@ -44,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -59,6 +62,9 @@ public class ServerController extends AbstractBaseController {
 	@Autowired
 	private ServerService serverService;
 
+	@Autowired
+	private ReferenceCacheService referenceCacheService;
+
 
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(ServerController.class);
@@ -91,6 +97,17 @@ public class ServerController extends AbstractBaseController {
 		return serverService.getClientTimeout();
 	}
 	
+	/**
+	 * Second-level cache counters by region on the node serving the request.
+	 * Empty unless db_hibernate_statistics_enabled is on.
+	 */
+	@RequestMapping(value = "/referenceCacheStatistics", method = RequestMethod.GET)
+	@PreAuthorize(Permission.SECURITY_REFERENCE_READ)
+	public @ResponseBody
+	Map<String, Map<String, Long>> getReferenceCacheStatistics() {
+		return referenceCacheService.getStatistics();
+	}
+
 	@Override
 	protected Logger getLogger() {
 		return LOGGER;
@@ -18,25 +18,36 @@
  */
 package org.jasig.ssp.web.api.reference;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.jasig.ssp.factory.TOFactory;
+import org.jasig.ssp.model.Auditable;
 import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.reference.AbstractReference;
 import org.jasig.ssp.security.permissions.Permission;
 import org.jasig.ssp.service.AuditableCrudService;
 import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.service.ReferenceService;
 import org.jasig.ssp.transferobject.PagedResponse;
 import org.jasig.ssp.transferobject.ServiceResponse;
 import org.jasig.ssp.transferobject.reference.AbstractReferenceTO;
+import org.jasig.ssp.util.collections.Pair;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.jasig.ssp.web.api.AbstractBaseController;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -44,6 +55,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
 
 /**
  * Basic REST command implementation to responds with standard transfer objects
@@ -66,6 +85,31 @@ public abstract class AbstractAuditableReferenceController<T extends AbstractRef
 	protected static final Logger LOGGER = LoggerFactory
 			.getLogger(AbstractAuditableReferenceController.class);
 
+	/**
+	 * Upper bound on distinct parameter combinations remembered per controller
+	 * in {@link #listResponseCache}. Clients ask for a handful of variants, so
+	 * hitting this usually means someone is iterating pages or sorts; we just
+	 * start over rather than track recency.
+	 */
+	private static final int MAX_CACHED_LIST_RESPONSES = 32;
+
+	/**
+	 * Configured like the mapper behind Spring MVC's default JSON message
+	 * converter so cached bodies are byte-for-byte what the converter would
+	 * have written.
+	 */
+	private static final ObjectMapper LIST_RESPONSE_MAPPER = Jackson2ObjectMapperBuilder
+			.json().build();
+
+	/**
+	 * Serialized {@link #getAll(ObjectStatus, Integer, Integer, String, String)}
+	 * responses keyed by request parameters. Each entry carries the ETag it
+	 * was rendered for and is only served while that still matches the
+	 * current version of the table and of its {@link #getEmbeddedClasses()}.
+	 */
+	private final ConcurrentMap<String, CachedListResponse> listResponseCache = Maps
+			.newConcurrentMap();
+
 	/**
 	 * Service that handles the business logic for the implementing type for T.
 	 */
@@ -141,6 +185,51 @@ public abstract class AbstractAuditableReferenceController<T extends AbstractRef
 			final @RequestParam(required = false) String sort,
 			final @RequestParam(required = false) String sortDirection) {
 
+		final ServletWebRequest webRequest = currentWebRequestIfCacheable();
+		if ( webRequest == null ) {
+			return loadAll(status, start, limit, sort, sortDirection);
+		}
+
+		final String etag = versionTag(((ReferenceService<?>) getService())
+				.getVersions(getEmbeddedClasses()));
+		// Overrides the blanket no-store from the WebContentInterceptor:
+		// browsers may keep the body but must revalidate it every time.
+		webRequest.getResponse().setHeader("Cache-Control", "private, no-cache");
+		if ( webRequest.checkNotModified(etag) ) {
+			return null;
+		}
+
+		final String key = status + "|" + start + "|" + limit + "|" + sort
+				+ "|" + sortDirection;
+		final CachedListResponse cached = listResponseCache.get(key);
+		if ( cached != null && cached.etag.equals(etag) ) {
+			writeJson(webRequest.getResponse(), cached.body);
+			return null;
+		}
+
+		final PagedResponse<TO> response = loadAll(status, start, limit, sort,
+				sortDirection);
+		final byte[] body;
+		try {
+			body = LIST_RESPONSE_MAPPER.writeValueAsBytes(response);
+		} catch ( final JsonProcessingException e ) {
+			LOGGER.warn("Unable to cache {} list response, serving uncached",
+					persistentClass.getSimpleName(), e);
+			return response;
+		}
+		if ( listResponseCache.size() >= MAX_CACHED_LIST_RESPONSES
+				&& !(listResponseCache.containsKey(key)) ) {
+			listResponseCache.clear();
+		}
+		listResponseCache.put(key, new CachedListResponse(etag, body));
+		writeJson(webRequest.getResponse(), body);
+		return null;
+	}
+
+	private PagedResponse<TO> loadAll(final ObjectStatus status,
+			final Integer start, final Integer limit, final String sort,
+			final String sortDirection) {
+
 		// Run getAll
 		final PagingWrapper<T> data = getService().getAll(
 				SortingAndPaging.createForSingleSortWithPaging(
@@ -151,6 +240,91 @@ public abstract class AbstractAuditableReferenceController<T extends AbstractRef
 				.asTOList(data.getRows()));
 	}
 
+	/**
+	 * Conditional GET and body caching only apply when this class's
+	 * {@link #getAll(ObjectStatus, Integer, Integer, String, String)} is the
+	 * handler itself. Subclasses that override it may post-process or replace
+	 * the result (e.g. filtering sensitive config values), which a cached body
+	 * or a bare 304 would silently skip. Also requires a live servlet request,
+	 * which direct calls from tests or other controllers won't have.
+	 *
+	 * @return the current request and response, or null if they shouldn't be
+	 *         used for caching
+	 */
+	private ServletWebRequest currentWebRequestIfCacheable() {
+		if ( !(getService() instanceof ReferenceService) ) {
+			return null;
+		}
+		try {
+			if ( getClass().getMethod("getAll", ObjectStatus.class,
+					Integer.class, Integer.class, String.class, String.class)
+					.getDeclaringClass() != AbstractAuditableReferenceController.class ) {
+				return null;
+			}
+		} catch ( final NoSuchMethodException e ) {
+			return null;
+		}
+		final RequestAttributes attributes = RequestContextHolder
+				.getRequestAttributes();
+		if ( !(attributes instanceof ServletRequestAttributes) ) {
+			return null;
+		}
+		final ServletRequestAttributes servletAttributes = (ServletRequestAttributes) attributes;
+		if ( servletAttributes.getResponse() == null ) {
+			return null;
+		}
+		return new ServletWebRequest(servletAttributes.getRequest(),
+				servletAttributes.getResponse());
+	}
+
+	/**
+	 * Other tables whose rows {@link #getFactory()} copies into each TO, e.g.
+	 * child collections. Their versions are folded into the list ETag, so a
+	 * change to any of them invalidates cached list responses just like a
+	 * change to this controller's own table. Subclasses with composite TOs
+	 * must list them here or the list GET would keep serving stale children.
+	 *
+	 * @return mapped classes of the embedded tables; empty by default
+	 */
+	protected List<Class<? extends Auditable>> getEmbeddedClasses() {
+		return Collections.emptyList();
+	}
+
+	private String versionTag(final List<Pair<Date, Long>> versions) {
+		final StringBuilder tag = new StringBuilder(
+				persistentClass.getSimpleName());
+		for ( final Pair<Date, Long> version : versions ) {
+			tag.append('-')
+					.append(version.getFirst() == null ? 0L : version
+							.getFirst().getTime()).append('-')
+					.append(version.getSecond());
+		}
+		return tag.toString();
+	}
+
+	private void writeJson(final HttpServletResponse response,
+			final byte[] body) {
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		response.setContentLength(body.length);
+		try {
+			response.getOutputStream().write(body);
+		} catch ( final IOException e ) {
+			// Almost always the client going away mid-response
+			LOGGER.debug("Unable to write cached {} list response",
+					persistentClass.getSimpleName(), e);
+		}
+	}
+
+	private static final class CachedListResponse {
+		private final String etag;
+		private final byte[] body;
+
+		private CachedListResponse(final String etag, final byte[] body) {
+			this.etag = etag;
+			this.body = body;
+		}
+	}
+
 	protected String getDefaultSortColumn() {
 		return "name";
 	}
@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.web.api.reference; // NOPMD
 
+import java.util.List;
 import java.util.UUID;
 
 import javax.validation.Valid;
@@ -26,9 +27,12 @@ import javax.validation.constraints.NotNull;
 import org.jasig.ssp.factory.TOFactory;
 import org.jasig.ssp.factory.reference.ChallengeReferralTOFactory;
 import org.jasig.ssp.factory.reference.ChallengeTOFactory;
+import org.jasig.ssp.model.Auditable;
 import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.reference.Challenge;
+import org.jasig.ssp.model.reference.ChallengeChallengeReferral;
 import org.jasig.ssp.model.reference.ChallengeReferral;
+import org.jasig.ssp.model.reference.SelfHelpGuideQuestion;
 import org.jasig.ssp.security.permissions.Permission;
 import org.jasig.ssp.service.AuditableCrudService;
 import org.jasig.ssp.service.ObjectNotFoundException;
@@ -53,6 +57,8 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.google.common.collect.ImmutableList;
+
 @Controller
 @RequestMapping("/1/reference/challenge")
 @PreAuthorize(Permission.SECURITY_REFERENCE_COUNSELING_REF_GUIDE_WRITE)
@@ -89,11 +95,24 @@ public class ChallengeController
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(ChallengeController.class);
 
+	/**
+	 * {@link ChallengeTO} carries the challenge's referrals (through the
+	 * join table) and its self help guide questions.
+	 */
+	private static final List<Class<? extends Auditable>> EMBEDDED_CLASSES = ImmutableList
+			.<Class<? extends Auditable>> of(ChallengeChallengeReferral.class,
+					ChallengeReferral.class, SelfHelpGuideQuestion.class);
+
 	@Override
 	protected Logger getLogger() {
 		return LOGGER;
 	}
 
+	@Override
+	protected List<Class<? extends Auditable>> getEmbeddedClasses() {
+		return EMBEDDED_CLASSES;
+	}
+
 	/**
 	 * Get all {@link ChallengeReferralTO} associated with the specified
 	 * {@link ChallengeTO}.
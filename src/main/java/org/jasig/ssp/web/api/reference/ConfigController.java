@@ -18,6 +18,7 @@
  */
 package org.jasig.ssp.web.api.reference;
 
+import java.util.Map;
 import java.util.UUID;
 import javax.validation.Valid;
 
@@ -131,6 +132,16 @@ public class ConfigController
 		return filterSensitiveValues(config == null ? null : this.getFactory().from(config));
 	}
 
+	/**
+	 * Hit/miss counters for the in-memory config cache on the node serving
+	 * the request.
+	 */
+	@RequestMapping(value = "/cacheStatistics", method = RequestMethod.GET)
+	public @ResponseBody
+	Map<String, Long> getCacheStatistics() {
+		return ((ConfigService) getService()).getCacheStatistics();
+	}
+
 	@Override
 	@RequestMapping(method = RequestMethod.GET)
 	@PreAuthorize(Permission.SECURITY_REFERENCE_READ)
@@ -0,0 +1,73 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.web.api.reports;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.jasig.ssp.security.permissions.Permission;
+import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.transferobject.jobqueue.ReportJobTO;
+import org.jasig.ssp.web.api.AbstractBaseController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Status and download endpoints for reports queued with {@code async=true}. See {@link AsyncReportGenerator}.
+ * Only the person who queued a report can see it.
+ * <p>
+ * Mapped to URI path <code>report/async</code>
+ */
+@Controller
+@RequestMapping("/1/report/async")
+public class AsyncReportController extends AbstractBaseController {
+
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(AsyncReportController.class);
+
+	@Autowired
+	private transient AsyncReportGenerator asyncReportGenerator;
+
+	@Override
+	protected Logger getLogger() {
+		return LOGGER;
+	}
+
+	@RequestMapping(value = "/{id}", method = RequestMethod.GET)
+	@PreAuthorize(Permission.SECURITY_REPORT_READ)
+	public @ResponseBody ReportJobTO get(@PathVariable final UUID id) throws ObjectNotFoundException {
+		return asyncReportGenerator.toTO(asyncReportGenerator.getOwnedJob(id));
+	}
+
+	@RequestMapping(value = "/{id}/file", method = RequestMethod.GET)
+	@PreAuthorize(Permission.SECURITY_REPORT_READ)
+	public @ResponseBody void getFile(@PathVariable final UUID id, final HttpServletResponse response)
+			throws ObjectNotFoundException, IOException {
+		asyncReportGenerator.writeReport(asyncReportGenerator.getOwnedJob(id), response);
+	}
+}
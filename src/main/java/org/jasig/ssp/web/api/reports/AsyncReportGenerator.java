@@ -0,0 +1,467 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.web.api.reports;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.jobqueue.Job;
+import org.jasig.ssp.security.SspUser;
+import org.jasig.ssp.security.permissions.Permission;
+import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.service.SecurityService;
+import org.jasig.ssp.service.jobqueue.AbstractJobExecutor;
+import org.jasig.ssp.service.jobqueue.JobExecutionResult;
+import org.jasig.ssp.service.jobqueue.JobExecutionStatus;
+import org.jasig.ssp.service.jobqueue.JobService;
+import org.jasig.ssp.service.jobqueue.JobWorkflowStatusDescription;
+import org.jasig.ssp.transferobject.jobqueue.ReportJobSpec;
+import org.jasig.ssp.transferobject.jobqueue.ReportJobTO;
+import org.jasig.ssp.web.api.validation.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.access.expression.DefaultWebSecurityExpressionHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerAdapter;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Runs report requests as {@link Job}s so long-running reports don't hold a request thread and database connection
+ * for their whole duration. A report request carrying {@code async=true} is queued by {@link AsyncReportInterceptor}
+ * instead of being handled inline. When the job runs, the original request is replayed against the same report
+ * controller, as the user who submitted it, and the response body is written to a local file store from which
+ * {@link AsyncReportController} serves it.
+ *
+ * <p>Lives in the MVC application context, not the root context, b/c replaying a request needs that context's
+ * handler mappings and adapters.</p>
+ *
+ * <p>Report jobs are picked up by the same scheduler as bulk jobs. At most {@code report_async_max_concurrent} run
+ * at once; any more are requeued for the scheduler's next pass so a burst of report requests can't take over the
+ * shared job thread pool.</p>
+ *
+ * <p>Report files are written by whichever node runs the job, so in a cluster {@code report_async_file_store_dir}
+ * has to be shared by every node. Otherwise polls and downloads answered by another node can't find the file.</p>
+ */
+public class AsyncReportGenerator implements InitializingBean, ApplicationContextAware {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncReportGenerator.class);
+
+	public static final String REPORT_JOB_EXECUTOR_NAME = "report-executor";
+
+	public static final String ASYNC_PARAM_NAME = "async";
+
+	private static final String CONTENT_DISPOSITION_HEADER = "Content-disposition";
+	private static final String FILENAME_MARKER = "filename=";
+	private static final String REPORT_FILE_SUFFIX = ".report";
+	private static final String DEFAULT_FILE_STORE_DIR_NAME = "ssp-reports";
+	private static final String TOO_MANY_REPORTS_MSG = "Too many reports already running. Requeued.";
+
+	static class ReportJobExecutionState {
+		public String contentType;
+		public String contentDisposition;
+		public long size;
+	}
+
+	@Autowired
+	private transient JobService jobService;
+
+	@Autowired
+	private transient PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private transient SecurityService securityService;
+
+	@Autowired
+	private ServletContext servletContext;
+
+	@Value("#{configProperties.report_async_max_concurrent}")
+	private int maxConcurrent = 2;
+
+	@Value("#{configProperties.report_async_file_store_dir}")
+	private String fileStoreDir;
+
+	@Value("#{configProperties.report_async_retention_hours}")
+	private int retentionHours = 24;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final DefaultWebSecurityExpressionHandler securityExpressionHandler =
+			new DefaultWebSecurityExpressionHandler();
+
+	private ApplicationContext applicationContext;
+
+	private Semaphore permits;
+
+	private AbstractJobExecutor<ReportJobSpec, ReportJobExecutionState> reportJobExecutor;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		this.permits = new Semaphore(Math.max(1, maxConcurrent));
+		initReportJobExecutor();
+	}
+
+	@Override
+	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+		this.applicationContext = applicationContext;
+	}
+
+	/**
+	 * Queue the given report request for background generation as the currently authenticated user.
+	 *
+	 * @throws AccessDeniedException if the current user may not run the report the request is for. Checked here
+	 *         b/c the handler's own {@link PreAuthorize} only runs when the job replays the request.
+	 */
+	public ReportJobTO queue(HttpServletRequest request, HttpServletResponse response, HandlerMethod handler)
+			throws ValidationException {
+		final SspUser currentSspUser = securityService.currentlyAuthenticatedUser();
+		if ( currentSspUser == null ) {
+			throw new AccessDeniedException("Anonymous users may not queue reports");
+		}
+		if ( !(isAuthorized(request, response, handler)) ) {
+			throw new AccessDeniedException("Not allowed to run report [" + request.getRequestURI() + "]");
+		}
+		final Person currentPerson = currentSspUser.getPerson();
+
+		final Map<String, List<String>> parameters = Maps.newLinkedHashMap();
+		for ( Map.Entry<String, String[]> parameter : request.getParameterMap().entrySet() ) {
+			if ( !(ASYNC_PARAM_NAME.equals(parameter.getKey())) ) {
+				parameters.put(parameter.getKey(), Arrays.asList(parameter.getValue()));
+			}
+		}
+		final ReportJobSpec spec = new ReportJobSpec(request.getServletPath(), request.getPathInfo(), parameters);
+		final Job job = reportJobExecutor.queueNewJob(currentPerson.getId(), currentPerson.getId(), spec);
+		return toTO(job);
+	}
+
+	/**
+	 * Evaluates the handler's {@link PreAuthorize} expression, or {@link Permission#SECURITY_REPORT_READ} if it has
+	 * none, against the current authentication. The report expressions only test roles, so they're evaluated as web
+	 * expressions. Any expression that can't be evaluated that way, e.g. one referring to method arguments, is
+	 * treated as a denial.
+	 */
+	boolean isAuthorized(HttpServletRequest request, HttpServletResponse response, HandlerMethod handler) {
+		final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if ( authentication == null ) {
+			return false;
+		}
+		PreAuthorize preAuthorize = handler.getMethodAnnotation(PreAuthorize.class);
+		if ( preAuthorize == null ) {
+			preAuthorize = AnnotationUtils.findAnnotation(handler.getBeanType(), PreAuthorize.class);
+		}
+		final String expression = preAuthorize == null ? Permission.SECURITY_REPORT_READ : preAuthorize.value();
+		try {
+			final FilterInvocation filterInvocation = new FilterInvocation(request, response, new FilterChain() {
+				@Override
+				public void doFilter(ServletRequest request, ServletResponse response) {
+					throw new UnsupportedOperationException();
+				}
+			});
+			return ExpressionUtils.evaluateAsBoolean(
+					securityExpressionHandler.getExpressionParser().parseExpression(expression),
+					securityExpressionHandler.createEvaluationContext(authentication, filterInvocation));
+		} catch ( RuntimeException e ) {
+			LOGGER.warn("Could not evaluate security expression [{}] for report [{}]. Denying access.",
+					new Object[] { expression, request.getRequestURI(), e });
+			return false;
+		}
+	}
+
+	/**
+	 * @throws ObjectNotFoundException if there is no such report job or it belongs to somebody else
+	 */
+	public Job getOwnedJob(UUID jobId) throws ObjectNotFoundException {
+		final Job job = jobService.get(jobId);
+		final SspUser currentSspUser = securityService.currentlyAuthenticatedUser();
+		if ( job == null || !(REPORT_JOB_EXECUTOR_NAME.equals(job.getExecutionComponentName()))
+				|| currentSspUser == null
+				|| !(job.getOwner().getId().equals(currentSspUser.getPerson().getId())) ) {
+			throw new ObjectNotFoundException(jobId, Job.class.getName());
+		}
+		return job;
+	}
+
+	public ReportJobTO toTO(Job job) {
+		final ReportJobExecutionState state = readState(job);
+		final boolean downloadable = state != null && getReportFile(job.getId()).isFile();
+		return new ReportJobTO(job, downloadable, state == null ? null : fileNameFrom(state.contentDisposition));
+	}
+
+	/**
+	 * Copy the generated report for the given job to the response, restoring the headers the report controller set
+	 * when it was generated.
+	 *
+	 * @throws ObjectNotFoundException if the report isn't ready or has already been purged
+	 */
+	public void writeReport(Job job, HttpServletResponse response) throws ObjectNotFoundException, IOException {
+		final ReportJobExecutionState state = readState(job);
+		final File reportFile = getReportFile(job.getId());
+		if ( state == null || !(reportFile.isFile()) ) {
+			throw new ObjectNotFoundException("Report for job " + job.getId() + " is not available",
+					Job.class.getName());
+		}
+		if ( state.contentType != null ) {
+			response.setContentType(state.contentType);
+		}
+		if ( state.contentDisposition != null ) {
+			response.setHeader(CONTENT_DISPOSITION_HEADER, state.contentDisposition);
+		}
+		response.setContentLength((int) Math.min(Integer.MAX_VALUE, reportFile.length()));
+		FileUtils.copyFile(reportFile, response.getOutputStream());
+		response.flushBuffer();
+	}
+
+	private void initReportJobExecutor() {
+		this.reportJobExecutor = new AbstractJobExecutor<ReportJobSpec, ReportJobExecutionState>(
+				REPORT_JOB_EXECUTOR_NAME, jobService, transactionManager, objectMapper) {
+
+			@Override
+			public JobExecutionResult<JobWorkflowStatusDescription> execute(UUID jobId) {
+				if ( !(permits.tryAcquire()) ) {
+					LOGGER.debug("Requeueing report job [{}]. Already running the max of [{}] reports.",
+							jobId, maxConcurrent);
+					return new JobExecutionResult<JobWorkflowStatusDescription>(JobExecutionStatus.INTERRUPTED,
+							new JobWorkflowStatusDescription(null, Lists.newArrayList(TOO_MANY_REPORTS_MSG)));
+				}
+				try {
+					return super.execute(jobId);
+				} finally {
+					permits.release();
+				}
+			}
+
+			@Override
+			protected JobExecutionResult<ReportJobExecutionState> executeJobDeserialized(ReportJobSpec executionSpec,
+					ReportJobExecutionState executionState, UUID jobId) {
+				return generateReport(executionSpec, jobId);
+			}
+
+			@Override
+			protected ReportJobSpec deserializeJobSpecWithCheckedExceptions(String jobSpecStr) throws Exception {
+				return getObjectMapper().readValue(jobSpecStr, ReportJobSpec.class);
+			}
+
+			@Override
+			protected ReportJobExecutionState deserializeJobStateWithCheckedExceptions(String jobStateStr) throws Exception {
+				return getObjectMapper().readValue(jobStateStr, ReportJobExecutionState.class);
+			}
+
+			@Override
+			protected Logger getCurrentLogger() {
+				return LOGGER;
+			}
+		};
+
+		this.jobService.registerJobExecutor(this.reportJobExecutor);
+	}
+
+	JobExecutionResult<ReportJobExecutionState> generateReport(ReportJobSpec spec, UUID jobId) {
+		purgeExpiredReports();
+
+		final ReportJobExecutionState state = new ReportJobExecutionState();
+		final File reportFile = getReportFile(jobId);
+		ReportFileResponse response = null;
+		try {
+			response = new ReportFileResponse(reportFile);
+			dispatch(newReplayRequest(spec), response);
+			response.close();
+		} catch ( Exception e ) {
+			closeQuietly(response);
+			FileUtils.deleteQuietly(reportFile);
+			return new JobExecutionResult<ReportJobExecutionState>(JobExecutionStatus.FAILED, state, e);
+		}
+
+		if ( response.getStatus() >= HttpServletResponse.SC_BAD_REQUEST ) {
+			FileUtils.deleteQuietly(reportFile);
+			return new JobExecutionResult<ReportJobExecutionState>(JobExecutionStatus.FAILED, state,
+					new IllegalStateException("Report request for job [" + jobId + "] failed with HTTP status ["
+							+ response.getStatus() + "]"));
+		}
+
+		state.contentType = response.getContentType();
+		state.contentDisposition = response.getHeader(CONTENT_DISPOSITION_HEADER);
+		state.size = reportFile.length();
+		LOGGER.debug("Wrote [{}] byte report for job [{}]", state.size, jobId);
+		return new JobExecutionResult<ReportJobExecutionState>(JobExecutionStatus.DONE, state, null);
+	}
+
+	private MockHttpServletRequest newReplayRequest(ReportJobSpec spec) {
+		final MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", null);
+		final String contextPath = StringUtils.defaultString(servletContext.getContextPath());
+		final String servletPath = StringUtils.defaultString(spec.getServletPath());
+		final String pathInfo = spec.getPathInfo();
+		request.setContextPath(contextPath);
+		request.setServletPath(servletPath);
+		request.setPathInfo(pathInfo);
+		request.setRequestURI(contextPath + servletPath + StringUtils.defaultString(pathInfo));
+		if ( spec.getParameters() != null ) {
+			for ( Map.Entry<String, List<String>> parameter : spec.getParameters().entrySet() ) {
+				final List<String> values = parameter.getValue();
+				request.addParameter(parameter.getKey(), values.toArray(new String[values.size()]));
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * Roughly what {@code DispatcherServlet} does for a real request, minus interceptors, view resolution and
+	 * exception resolution. Any exception is left for the caller to turn into a failed job.
+	 */
+	private void dispatch(HttpServletRequest request, HttpServletResponse response) throws Exception {
+		final RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		try {
+			for ( HandlerMapping handlerMapping : beansOfType(HandlerMapping.class) ) {
+				final HandlerExecutionChain chain = handlerMapping.getHandler(request);
+				if ( chain == null ) {
+					continue;
+				}
+				final Object handler = chain.getHandler();
+				if ( !(handler instanceof HandlerMethod)
+						|| !(((HandlerMethod) handler).getBean() instanceof ReportBaseController) ) {
+					throw new IllegalArgumentException("[" + request.getRequestURI() + "] is not a report");
+				}
+				for ( HandlerAdapter handlerAdapter : beansOfType(HandlerAdapter.class) ) {
+					if ( handlerAdapter.supports(handler) ) {
+						handlerAdapter.handle(request, response, handler);
+						return;
+					}
+				}
+			}
+			throw new IllegalArgumentException("No report mapped to [" + request.getRequestURI() + "]");
+		} finally {
+			if ( previousAttributes == null ) {
+				RequestContextHolder.resetRequestAttributes();
+			} else {
+				RequestContextHolder.setRequestAttributes(previousAttributes);
+			}
+		}
+	}
+
+	private <T> List<T> beansOfType(Class<T> type) {
+		final List<T> beans = Lists.newArrayList(BeanFactoryUtils.beansOfTypeIncludingAncestors(
+				applicationContext, type, true, false).values());
+		AnnotationAwareOrderComparator.sort(beans);
+		return beans;
+	}
+
+	private ReportJobExecutionState readState(Job job) {
+		if ( job.getExecutionState() == null ) {
+			return null;
+		}
+		try {
+			final ReportJobExecutionState state = objectMapper.readValue(job.getExecutionState(),
+					ReportJobExecutionState.class);
+			// state is also written for failed jobs, but only successful ones have a content type
+			return state.contentType == null && state.contentDisposition == null ? null : state;
+		} catch ( IOException e ) {
+			LOGGER.warn("Could not read execution state for report job [{}]", job.getId(), e);
+			return null;
+		}
+	}
+
+	private String fileNameFrom(String contentDisposition) {
+		if ( contentDisposition == null || !(contentDisposition.contains(FILENAME_MARKER)) ) {
+			return null;
+		}
+		return contentDisposition.substring(contentDisposition.indexOf(FILENAME_MARKER) + FILENAME_MARKER.length());
+	}
+
+	File getReportFile(UUID jobId) {
+		return new File(getFileStore(), jobId + REPORT_FILE_SUFFIX);
+	}
+
+	private File getFileStore() {
+		final File fileStore = StringUtils.isBlank(fileStoreDir)
+				? new File(System.getProperty("java.io.tmpdir"), DEFAULT_FILE_STORE_DIR_NAME)
+				: new File(fileStoreDir);
+		if ( !(fileStore.isDirectory()) && !(fileStore.mkdirs()) ) {
+			LOGGER.warn("Could not create report file store [{}]", fileStore);
+		}
+		return fileStore;
+	}
+
+	void purgeExpiredReports() {
+		final long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours);
+		final File[] expired = getFileStore().listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(REPORT_FILE_SUFFIX) && file.lastModified() < cutoff;
+			}
+		});
+		if ( expired == null ) {
+			return;
+		}
+		for ( File file : expired ) {
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	private void closeQuietly(ReportFileResponse response) {
+		if ( response == null ) {
+			return;
+		}
+		try {
+			response.close();
+		} catch ( IOException e ) {
+			LOGGER.debug("Failed to close report file", e);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.web.api.reports;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jasig.ssp.transferobject.jobqueue.ReportJobTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Diverts report requests carrying {@code async=true} to {@link AsyncReportGenerator}. The report is queued and the
+ * request is answered immediately with a {@code 202 Accepted} and the {@link ReportJobTO} to poll via
+ * {@link AsyncReportController}. Requests without the flag are handled inline, exactly as before.
+ *
+ * <p>Runs after the handler has been resolved, so by the time the report is queued Spring Security has already
+ * authenticated the request. The handler's method-level authorization hasn't run yet, so it is checked before
+ * queueing, answering {@code 403 Forbidden} if denied, and again when the job replays the request.</p>
+ */
+public class AsyncReportInterceptor extends HandlerInterceptorAdapter {
+
+	@Autowired
+	private AsyncReportGenerator asyncReportGenerator;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Override
+	public boolean preHandle(HttpServletRequest request,
+							 HttpServletResponse response,
+							 Object handler) throws Exception {
+		if ( !(Boolean.parseBoolean(request.getParameter(AsyncReportGenerator.ASYNC_PARAM_NAME)))
+				|| !(handler instanceof HandlerMethod)
+				|| !(((HandlerMethod) handler).getBean() instanceof ReportBaseController) ) {
+			return true;
+		}
+		final ReportJobTO job;
+		try {
+			job = asyncReportGenerator.queue(request, response, (HandlerMethod) handler);
+		} catch ( AccessDeniedException e ) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN, e.getMessage());
+			return false;
+		}
+		response.setStatus(HttpServletResponse.SC_ACCEPTED);
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		objectMapper.writeValue(response.getOutputStream(), job);
+		return false;
+	}
+}
@@ -18,11 +18,11 @@
  */
 package org.jasig.ssp.web.api.reports;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletResponse;
 import net.sf.jasperreports.engine.DefaultJasperReportsContext;
@@ -31,11 +31,21 @@ import net.sf.jasperreports.engine.JREmptyDataSource;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRExporterParameter;
 import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperCompileManager;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
 import net.sf.jasperreports.engine.export.JRCsvExporter;
 import net.sf.jasperreports.engine.export.JRXlsAbstractExporterParameter;
+import net.sf.jasperreports.engine.fill.JRAbstractLRUVirtualizer;
+import net.sf.jasperreports.engine.fill.JRGzipVirtualizer;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jasig.ssp.service.EarlyAlertResponseService;
@@ -49,6 +59,7 @@ import org.jasig.ssp.web.api.AbstractBaseController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 
 abstract class ReportBaseController<R> extends AbstractBaseController {
@@ -63,9 +74,27 @@ abstract class ReportBaseController<R> extends AbstractBaseController {
 			.getLogger(ReportBaseController.class);
 	private static final String DEFAULT_REPORT_NAME = "report"; // no 'ssp' prefix b/c that's branding
 
+	private static final String JRXML_EXTENSION = ".jrxml";
+	private static final String VIRTUALIZER_GZIP = "gzip";
+	private static final String VIRTUALIZER_SWAP = "swap";
+	private static final int SWAP_FILE_BLOCK_SIZE = 4096;
+	private static final int SWAP_FILE_MIN_GROW_COUNT = 100;
+
+	/**
+	 * Keyed by report view URL. Shared by all report controllers b/c those URLs are classpath locations.
+	 */
+	private static final ConcurrentMap<String, JasperReport> JASPER_REPORTS =
+			new ConcurrentHashMap<String, JasperReport>();
+
 	@Autowired
 	private ServletContext servletContext;
 
+	@Value("#{configProperties.report_virtualizer}")
+	private String virtualizerType;
+
+	@Value("#{configProperties.report_virtualizer_max_pages}")
+	private int virtualizerMaxPages = 100;
+
 	@Override
 	protected Logger getLogger() {
 		return LOGGER;
@@ -124,10 +153,8 @@ abstract class ReportBaseController<R> extends AbstractBaseController {
 									  String reportName) throws JRException, IOException{
 
 		SearchParameters.addReportDateToMap(reportParameters);
-		final InputStream is = getClass().getResourceAsStream(reportViewUrl);
-		final ByteArrayOutputStream os = new ByteArrayOutputStream();
-		
-		
+		final JasperReport jasperReport = loadJasperReport(reportViewUrl);
+
 		JRDataSource beanDS;
 		if (reportResults == null || reportResults.size() <= 0) {
 			beanDS = new JREmptyDataSource();
@@ -146,34 +173,89 @@ abstract class ReportBaseController<R> extends AbstractBaseController {
 				reportParameters.put("realPath", servletContext.getRealPath("/"));
 			}
 		}
-		
-		JasperFillManager.fillReportToStream(is, os, reportParameters, beanDS);
-		final InputStream decodedInput = new ByteArrayInputStream(
-				os.toByteArray());
 
-		if (REPORT_TYPE_PDF.equals(reportType)) {
-			response.setHeader(
-					"Content-disposition",
-					"attachment; filename=" + reportName + "." + REPORT_TYPE_PDF);
-			JasperExportManager.exportReportToPdfStream(decodedInput,
-					response.getOutputStream());
-		} else if ("csv".equals(reportType)) {
-			writeCsvHttpResponseHeaders(response, reportName);
-
-			final JRCsvExporter exporter = new JRCsvExporter();
-			exporter.setParameter(JRExporterParameter.INPUT_STREAM,
-					decodedInput);
-			exporter.setParameter(JRExporterParameter.OUTPUT_STREAM,
-					response.getOutputStream());
-			exporter.setParameter(JRXlsAbstractExporterParameter.IS_ONE_PAGE_PER_SHEET,
-					Boolean.FALSE);
-
-			exporter.exportReport();
+		final JRAbstractLRUVirtualizer virtualizer = newVirtualizer();
+		if ( virtualizer != null ) {
+			reportParameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
 		}
-		
-		response.flushBuffer();
-		is.close();
-		os.close();		
+		try {
+			// Export straight from the filled report to the response rather than serializing it to a
+			// byte array and reading it back
+			final JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, reportParameters, beanDS);
+			if ( virtualizer != null ) {
+				// nothing left to write, so pages swapped out during the fill needn't be written out again
+				virtualizer.setReadOnly(true);
+			}
+
+			if (REPORT_TYPE_PDF.equals(reportType)) {
+				response.setHeader(
+						"Content-disposition",
+						"attachment; filename=" + reportName + "." + REPORT_TYPE_PDF);
+				JasperExportManager.exportReportToPdfStream(jasperPrint,
+						response.getOutputStream());
+			} else if ("csv".equals(reportType)) {
+				writeCsvHttpResponseHeaders(response, reportName);
+
+				final JRCsvExporter exporter = new JRCsvExporter();
+				exporter.setParameter(JRExporterParameter.JASPER_PRINT,
+						jasperPrint);
+				exporter.setParameter(JRExporterParameter.OUTPUT_STREAM,
+						response.getOutputStream());
+				exporter.setParameter(JRXlsAbstractExporterParameter.IS_ONE_PAGE_PER_SHEET,
+						Boolean.FALSE);
+
+				exporter.exportReport();
+			}
+
+			response.flushBuffer();
+		} finally {
+			if ( virtualizer != null ) {
+				virtualizer.cleanup();
+			}
+		}
+	}
+
+	/**
+	 * Loads the report at the given classpath location, compiling it first if it is a {@code .jrxml} source file.
+	 * The result is cached for the life of the JVM, so each report is only read and deserialized (or compiled) once.
+	 * {@link JasperReport}s are never modified by a fill, so a single instance is safely shared by concurrent
+	 * requests.
+	 */
+	protected JasperReport loadJasperReport(String reportViewUrl) throws JRException {
+		JasperReport jasperReport = JASPER_REPORTS.get(reportViewUrl);
+		if ( jasperReport != null ) {
+			return jasperReport;
+		}
+		final InputStream is = getClass().getResourceAsStream(reportViewUrl);
+		if ( is == null ) {
+			throw new JRException("No report found at [" + reportViewUrl + "]");
+		}
+		try {
+			if ( reportViewUrl.endsWith(JRXML_EXTENSION) ) {
+				jasperReport = JasperCompileManager.compileReport(is);
+			} else {
+				jasperReport = (JasperReport) JRLoader.loadObject(is);
+			}
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+		final JasperReport existing = JASPER_REPORTS.putIfAbsent(reportViewUrl, jasperReport);
+		return existing == null ? jasperReport : existing;
+	}
+
+	/**
+	 * @return a new virtualizer for a single fill as configured by {@code report_virtualizer}, or {@code null} if
+	 *         fills should be held entirely in memory
+	 */
+	protected JRAbstractLRUVirtualizer newVirtualizer() {
+		if ( VIRTUALIZER_GZIP.equalsIgnoreCase(virtualizerType) ) {
+			return new JRGzipVirtualizer(virtualizerMaxPages);
+		} else if ( VIRTUALIZER_SWAP.equalsIgnoreCase(virtualizerType) ) {
+			final JRSwapFile swapFile = new JRSwapFile(System.getProperty("java.io.tmpdir"),
+					SWAP_FILE_BLOCK_SIZE, SWAP_FILE_MIN_GROW_COUNT);
+			return new JRSwapFileVirtualizer(virtualizerMaxPages, swapFile, true);
+		}
+		return null;
 	}
 
 	/**
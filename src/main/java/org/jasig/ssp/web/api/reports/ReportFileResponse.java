@@ -0,0 +1,112 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.web.api.reports;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Response handed to a report controller when a report is generated in the background. Headers and status are
+ * captured as usual for a {@link MockHttpServletResponse} but the body is written straight to a file rather than
+ * buffered in memory.
+ */
+class ReportFileResponse extends MockHttpServletResponse {
+
+	private final OutputStream fileOut;
+
+	private final ServletOutputStream servletOut;
+
+	private PrintWriter writer;
+
+	ReportFileResponse(File file) throws IOException {
+		this.fileOut = new BufferedOutputStream(new FileOutputStream(file));
+		this.servletOut = new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				fileOut.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				fileOut.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				fileOut.flush();
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		return servletOut;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if ( writer == null ) {
+			writer = new PrintWriter(new OutputStreamWriter(servletOut, getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+	@Override
+	public void flushBuffer() {
+		super.flushBuffer();
+		try {
+			if ( writer != null ) {
+				writer.flush();
+			}
+			fileOut.flush();
+		} catch ( IOException e ) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Flush and close the underlying file. Must always be called once the report has been written.
+	 */
+	void close() throws IOException {
+		if ( writer != null ) {
+			writer.flush();
+		}
+		fileOut.close();
+	}
+}
@@ -27,7 +27,9 @@ Ext.define('Ssp.store.reference.AbstractReferences', {
 	constructor: function(){
 		var me=this;
 		Ext.apply(me, { 
-						    proxy: me.apiProperties.getProxy(''), 
+						    // No cache-buster: reference lists answer with an ETag,
+						    // so the browser revalidates and gets a 304 when unchanged
+						    proxy: Ext.apply(me.apiProperties.getProxy(''), { noCache: false }), 
 							autoLoad: false,
 							autoSync: false,
 						    pageSize: me.apiProperties.getPagingSize(),
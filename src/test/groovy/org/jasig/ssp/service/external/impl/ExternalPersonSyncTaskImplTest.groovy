@@ -18,8 +18,19 @@
  */
 package org.jasig.ssp.service.external.impl
 
+import org.hibernate.Session
+import org.hibernate.SessionFactory
+import org.jasig.ssp.dao.external.ExternalPersonDao
+import org.jasig.ssp.dao.external.ExternalStudentSpecialServiceGroupDao
+import org.jasig.ssp.model.ObjectStatus
+import org.jasig.ssp.model.Person
+import org.jasig.ssp.model.external.ExternalPerson
+import org.jasig.ssp.service.PersonService
+import org.jasig.ssp.service.external.ExternalPersonService
+import org.jasig.ssp.service.external.ExternalPersonSyncBatch
+import org.jasig.ssp.service.external.ExternalStudentSpecialServiceGroupService
 import org.jasig.ssp.service.reference.ConfigService
-import org.jasig.ssp.util.collections.Pair
+import org.jasig.ssp.util.sort.PagingWrapper
 import org.jasig.ssp.util.sort.SortingAndPaging
 import org.jasig.ssp.util.transaction.WithTransactionImpl
 import spock.lang.Specification
@@ -37,52 +48,73 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 		)
 	}
 
+	static List<String> usernames(int cnt) {
+		(0..<cnt).collect { String.format("u%03d", it) }
+	}
+
+	// reads persons the way the keyset paged query would
+	static ExternalPersonSyncBatch read(List<String> usernames, ExternalPersonSyncBatch batch, SortingAndPaging sAndP) {
+		def page = usernames.findAll {
+			(batch.afterUsername == null || it > batch.afterUsername) &&
+					(batch.throughUsername == null || it <= batch.throughUsername)
+		}
+		if ( sAndP.paged ) {
+			page = page.take(sAndP.maxResults)
+		}
+		if ( page ) {
+			batch.lastUsername = page.last()
+		}
+		batch.processed = page.size()
+		page.each { batch.incrementUpdated() }
+		batch
+	}
 
 	def "defaults to processing all available records once, possibly starting in the middle"() {
 
 		given: "a sync task starting in the middle of all persons"
-		syncTask.nextPersonIndex = 4
-
-		and: "a sync implementation that reads records endlessly"
-		def batchCnt = 0
-		def batchIndices = []
-		syncTask.syncWithPersonImpl = { sAndP ->
-			batchCnt++
-			batchIndices << sAndP.firstResult
-			// always read the next 2 of 10 records
-			new Pair(2L,10L)
+		syncTask.lastSyncedUsername = "u003"
+		configService.getByNameNullOrDefaultValue("task_external_person_sync_batch_size") >> 2
+
+		and: "a sync implementation reading 10 persons"
+		def people = usernames(10)
+		def batchStarts = []
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
+			batchStarts << [batch.afterUsername, batch.throughUsername]
+			read(people, batch, sAndP)
 		}
 
 		when: "the task is executed"
 		syncTask.exec()
 
-		then: "enough batches run, and with the correct indices, to process everyone"
-		batchCnt == 5
-		batchIndices == [4,6,8,0,2]
-		syncTask.nextPersonIndex == 4
+		then: "enough batches run, and with the correct bounds, to process everyone once"
+		batchStarts == [["u003",null],["u005",null],["u007",null],["u009",null],
+				[null,"u003"],["u001","u003"],["u003","u003"]]
+		syncTask.lastSyncedUsername == "u003"
 
 	}
 
 	def "requests configured number of batches"() {
-		given: "a configuration allowing only 2 of a possible 3 batches"
+		given: "a configuration allowing only 2 of a possible 5 batches"
 		configService.getByNameNullOrDefaultValue("task_external_person_sync_max_batches_per_exec") >> 2
+		configService.getByNameNullOrDefaultValue("task_external_person_sync_batch_size") >> 2
 
-		and: "a sync implementation that reads records endlessly"
+		and: "a sync implementation reading 10 persons"
+		def people = usernames(10)
 		def batchCnt = 0
-		def batchIndices = []
-		syncTask.syncWithPersonImpl = { sAndP ->
+		def batchStarts = []
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
-			batchIndices << sAndP.firstResult
-			// always read the next 2 of 10 records
-			new Pair(2L,10L)
+			batchStarts << batch.afterUsername
+			read(people, batch, sAndP)
 		}
 
 		when: "the task is executed"
 		syncTask.exec()
 
 		then: "two batches run, with second starting off where first one ended"
-		batchIndices == [0,2]
+		batchStarts == [null,"u001"]
 		batchCnt == 2
+		syncTask.lastSyncedUsername == "u003"
 	}
 
 	def "requests batches of the configured size"() {
@@ -90,12 +122,13 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 		configService.getByNameNullOrDefaultValue("task_external_person_sync_batch_size") >>> [6, 13]
 
 		and: "a sync job that will read two batches and record the request size of each"
+		def people = usernames(18)
 		def batchSizes = []
-		def batchIndices = []
-		syncTask.syncWithPersonImpl = { sAndP ->
+		def batchStarts = []
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchSizes << sAndP.maxResults
-			batchIndices << sAndP.firstResult
-			batchSizes.size() == 1 ? new Pair(6L,19L) : new Pair(13L,19L)
+			batchStarts << batch.afterUsername
+			read(people, batch, sAndP)
 		}
 
 		when: "the task is executed"
@@ -103,7 +136,7 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 
 		then: "two batches run, each with different max sizes, and with the second starting off where first one ended"
 		batchSizes == [6,13]
-		batchIndices == [0,6]
+		batchStarts == [null,"u005"]
 	}
 
 	def "requests batches in a default size if misconfigured"() {
@@ -111,12 +144,13 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 		configService.getByNameNullOrDefaultValue("task_external_person_sync_batch_size") >>> ["nonsense", "foo"]
 
 		and: "a sync job that will read two batches and record the request size of each"
+		def people = usernames(150)
 		def batchSizes = []
-		def batchIndices = []
-		syncTask.syncWithPersonImpl = { sAndP ->
+		def batchStarts = []
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchSizes << sAndP.maxResults
-			batchIndices << sAndP.firstResult
-			new Pair(100L,200L)
+			batchStarts << batch.afterUsername
+			read(people, batch, sAndP)
 		}
 
 		when: "the task is executed"
@@ -124,7 +158,7 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 
 		then: "two batches run with the same batch size but with the second starting off where first one ended"
 		batchSizes == [100,100]
-		batchIndices == [0,100]
+		batchStarts == [null,"u099"]
 	}
 
 	def "requests batches in a default size if config missing"() {
@@ -132,12 +166,13 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 		configService.getByNameNullOrDefaultValue("task_external_person_sync_batch_size") >> null
 
 		and: "a sync job that will read two batches and record the request size of each"
+		def people = usernames(150)
 		def batchSizes = []
-		def batchIndices = []
-		syncTask.syncWithPersonImpl = { sAndP ->
+		def batchStarts = []
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchSizes << sAndP.maxResults
-			batchIndices << sAndP.firstResult
-			new Pair(100L,200L)
+			batchStarts << batch.afterUsername
+			read(people, batch, sAndP)
 		}
 
 		when: "the task is executed"
@@ -145,17 +180,18 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 
 		then:
 		batchSizes == [100,100]
-		batchIndices == [0,100]
+		batchStarts == [null,"u099"]
 	}
 
 	def "resets if batch yields no results"() {
 		given: "a sync job that works one time but not the next"
+		def people = usernames(300)
 		def batchCnt = 0
-		def batchIndices = []
-		syncTask.syncWithPersonImpl = { sAndP ->
+		def batchStarts = []
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
-			batchIndices << sAndP.firstResult
-			batchCnt == 1 ? new Pair(100L,300L) : new Pair(0L, 300L)
+			batchStarts << batch.afterUsername
+			batchCnt == 1 ? read(people, batch, sAndP) : batch
 		}
 
 		when: "the task is executed the first time"
@@ -163,21 +199,23 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 
 		then:
 		batchCnt == 2
-		batchIndices == [0,100]
+		batchStarts == [null,"u099"]
+		syncTask.lastSyncedUsername == null
 
-		when: "the task is executed again processes all batches starting at index zero"
+		when: "the task is executed again processes all batches starting at the beginning"
 		batchCnt = 0
-		batchIndices = []
-		syncTask.syncWithPersonImpl = { sAndP ->
+		batchStarts = []
+		people = usernames(250)
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
-			batchIndices << sAndP.firstResult
-			return new Pair(100L,300L)
+			batchStarts << batch.afterUsername
+			read(people, batch, sAndP)
 		}
 		syncTask.exec()
 
 		then:
 		batchCnt == 3
-		batchIndices == [0,100,200]
+		batchStarts == [null,"u099","u199"]
 
 	}
 
@@ -189,10 +227,11 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 
 		when: "the task is executed "
 		def batchCnt = 0
-		syncTask.syncWithPersonImpl = { sAndP ->
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
-			return new Pair(2L,10L)
+			read(usernames(10), batch, sAndP)
 		}
+		syncTask.exec()
 
 		then:
 		batchCnt == 0
@@ -200,11 +239,12 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 
 	def "abandons execution and reasserts interruption if interrupted"() {
 		given: "a sync job that works one time but is interrupted the next"
+		def people = usernames(300)
 		def batchCnt = 0
-		syncTask.syncWithPersonImpl = { sAndP ->
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
 			if ( batchCnt == 1 ) {
-				new Pair(100L,300L)
+				read(people, batch, sAndP)
 			} else {
 				throw new InterruptedException("Interrupted!");
 			}
@@ -219,33 +259,33 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 
 		when: "the task is executed the next time it should resume where it left off"
 		batchCnt = 0
-		def startIdx = 0
-		syncTask.syncWithPersonImpl = { sAndP ->
+		def startAfter = null
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
-			startIdx = sAndP.firstResult
-			new Pair(300L,300L) // claim to process everything so we just get one iteration
+			startAfter = batch.afterUsername
+			batch // claim there's nothing left so we just get one iteration
 		}
 		syncTask.exec()
 
 		then:
 		batchCnt == 1
-		startIdx == 100
+		startAfter == "u099"
 
 		cleanup:
 		Thread.interrupted()
 	}
 
-	// We have to just give up b/c we're treating each batch as a transaction
-	// so there's no way to just skip the problematic record/s. This might need
-	// to change. Chances are, though, that the underlying issue was probably
-	// transient.
+	// A failed batch is retried one record at a time, but if even reading a
+	// single record fails there's nothing to skip past, so give up. Chances
+	// are the underlying issue was transient.
 	def "abandons execution if batch errors out"() {
 		given: "a sync job that works one time but errors out the next"
+		def people = usernames(300)
 		def batchCnt = 0
-		syncTask.syncWithPersonImpl = { sAndP ->
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
 			if ( batchCnt == 1 ) {
-				new Pair(100L,300L)
+				read(people, batch, sAndP)
 			} else {
 				throw new RuntimeException("Woops!")
 			}
@@ -254,23 +294,191 @@ public class ExternalPersonSyncTaskImplTest extends Specification {
 		when: "the task is executed the first time"
 		syncTask.exec()
 
-		then:
-		batchCnt == 2
+		then: "the failed batch and the first single record retry ran"
+		batchCnt == 3
 
 		when: "the task is executed the next time it should resume where it left off"
 		batchCnt = 0
-		def startIdx = 0
-		syncTask.syncWithPersonImpl = { sAndP ->
+		def startAfter = null
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
 			batchCnt++
-			startIdx = sAndP.firstResult
-			new Pair(300L,300L) // claim to process everything so we just get one iteration
+			startAfter = batch.afterUsername
+			batch // claim there's nothing left so we just get one iteration
 		}
 		syncTask.exec()
 
 		then:
 		batchCnt == 1
-		startIdx == 100
+		startAfter == "u099"
+
+	}
+
+	def "skips records that fail on their own and carries on"() {
+		given: "a sync job that always fails on one of five persons"
+		configService.getByNameNullOrDefaultValue("task_external_person_sync_batch_size") >> 10
+		def people = usernames(5)
+		def batchStarts = []
+		def batchSizes = []
+		syncTask.syncWithPersonImpl = { batch, sAndP ->
+			batchStarts << batch.afterUsername
+			batchSizes << sAndP.maxResults
+			read(people, batch, sAndP)
+			if ( batch.afterUsername < "u002" && batch.lastUsername >= "u002" ) {
+				throw new RuntimeException("Woops!")
+			}
+			batch
+		}
+
+		when: "the task is executed"
+		syncTask.exec()
+
+		then: "the failed batch is retried one record at a time through to the end"
+		batchStarts == [null,null,"u000","u001","u002","u003","u004"]
+		batchSizes == [10,1,1,1,1,1,1]
+		syncTask.lastSyncedUsername == null
+	}
+
+
+	// Below here the real syncWithPerson(), with a fake update which copies
+	// names and resolves a coach only if there is one to resolve
+
+	Person person
+	ExternalPerson externalPerson
+	Map<String, String> syncConfig = [:]
+	Map<String, Person> coaches = [:]
+	int updates = 0
+
+	ExternalPersonSyncBatch sync() {
+		def syncTask = new ExternalPersonSyncTaskImpl(
+			personService: Stub(PersonService) {
+				getAfterUsername(*_) >> { [person] }
+			},
+			dao: [getBySchoolIds: { schoolIds, sAndP ->
+				new PagingWrapper<ExternalPerson>([externalPerson])
+			}] as ExternalPersonDao,
+			externalStudentSpecialServiceGroupDao: [getStudentSpecialServiceGroupsBySchoolIds: { schoolIds ->
+				[]
+			}] as ExternalStudentSpecialServiceGroupDao,
+			externalStudentSpecialServiceGroupService: Stub(ExternalStudentSpecialServiceGroupService),
+			externalPersonService: [updatePersonFromExternalPerson: { Person p, ExternalPerson e, boolean commit,
+					boolean isStudent ->
+				updates++
+				p.firstName = e.firstName
+				p.lastName = e.lastName
+				if ( syncConfig.coachSetFromExternalData != "false" ) {
+					p.coach = coaches[e.coachSchoolId]
+				}
+			}] as ExternalPersonService,
+			configService: [getByNameNullOrDefaultValue: { String name -> syncConfig[name] }] as ConfigService,
+			sessionFactory: Stub(SessionFactory) {
+				getCurrentSession() >> Stub(Session)
+			}
+		)
+		syncTask.syncWithPerson(new ExternalPersonSyncBatch(null, null),
+				SortingAndPaging.createForSingleSortWithPaging(ObjectStatus.ACTIVE, 0, 10, "username", "ASC", null))
+	}
+
+	def setupPersonSync() {
+		person = new Person(id: UUID.randomUUID(), schoolId: "s001", username: "u001")
+		externalPerson = new ExternalPerson(schoolId: "s001", username: "u001", firstName: "Jo", lastName: "Doe")
+	}
+
+	def "skips persons synced before if nothing the sync depends on changed"() {
+		given: "a person synced once"
+		setupPersonSync()
+		def first = sync()
+
+		when: "the person is synced again"
+		def second = sync()
+
+		then: "only the first sync updated the person"
+		first.updated == 1
+		person.externalSyncFingerprint != null
+		second.processed == 1
+		second.unchanged == 1
+		second.updated == 0
+		updates == 1
+	}
+
+	def "syncs persons again when their external record changes"() {
+		given: "a person synced once"
+		setupPersonSync()
+		sync()
+		def fingerprint = person.externalSyncFingerprint
+
+		when: "their external record changes and they're synced again"
+		externalPerson.lastName = "Roe"
+		def second = sync()
+
+		then: "they're updated from it"
+		second.updated == 1
+		person.lastName == "Roe"
+		person.externalSyncFingerprint != fingerprint
+		updates == 2
+	}
+
+	def "syncs persons again when synced fields are edited locally"() {
+		given: "a person synced once"
+		setupPersonSync()
+		sync()
+
+		when: "a synced field is edited locally and they're synced again"
+		person.firstName = "Joanna"
+		def second = sync()
+
+		then: "the local edit is overwritten by the external value"
+		second.updated == 1
+		person.firstName == "Jo"
+		updates == 2
+	}
+
+	def "syncs everyone again when sync config changes"() {
+		given: "a person synced once"
+		setupPersonSync()
+		sync()
+
+		when: "external coach assignment is disabled and they're synced again"
+		syncConfig.coachSetFromExternalData = "false"
+		def second = sync()
+
+		then: "they're updated again"
+		second.updated == 1
+		updates == 2
+
+		when: "they're synced yet again"
+		def third = sync()
+
+		then: "they're skipped"
+		third.unchanged == 1
+		updates == 2
+	}
 
+	def "keeps syncing persons whose coach can't be resolved until it can"() {
+		given: "a person whose external record names a coach that doesn't exist yet"
+		setupPersonSync()
+		externalPerson.coachSchoolId = "c001"
+
+		when: "they're synced twice"
+		def first = sync()
+		def second = sync()
+
+		then: "they're updated both times and not fingerprinted"
+		first.updated == 1
+		second.updated == 1
+		person.coach == null
+		person.externalSyncFingerprint == null
+
+		when: "the coach shows up and they're synced twice more"
+		coaches.c001 = new Person(id: UUID.randomUUID(), schoolId: "c001", username: "coach")
+		def third = sync()
+		def fourth = sync()
+
+		then: "the coach is assigned and the person is skipped from then on"
+		third.updated == 1
+		person.coach.schoolId == "c001"
+		person.externalSyncFingerprint != null
+		fourth.unchanged == 1
+		updates == 3
 	}
 
 }
@@ -280,11 +488,11 @@ class StubbedExternalPersonSyncTaskImpl extends ExternalPersonSyncTaskImpl {
 	Closure syncWithPersonImpl
 
 	@Override
-	def Pair<Long, Long> syncWithPerson(final SortingAndPaging sAndP) {
+	def ExternalPersonSyncBatch syncWithPerson(final ExternalPersonSyncBatch batch, final SortingAndPaging sAndP) {
 		if (!(syncWithPersonImpl)) {
-			new Pair(0L,0L)
+			batch
 		} else {
-			syncWithPersonImpl.call(sAndP)
+			syncWithPersonImpl.call(batch, sAndP)
 		}
 	}
 
@@ -300,11 +508,11 @@ class StubbedExternalPersonSyncTaskImpl extends ExternalPersonSyncTaskImpl {
 		metaClass.setAttribute(ExternalPersonSyncTaskImpl, this, "withTransaction", wt, false, true)
 	}
 
-	void setNextPersonIndex(lr) {
-		metaClass.setAttribute(ExternalPersonSyncTaskImpl, this, "nextPersonIndex", lr, false, true)
+	void setLastSyncedUsername(lsu) {
+		metaClass.setAttribute(ExternalPersonSyncTaskImpl, this, "lastSyncedUsername", lsu, false, true)
 	}
 
-	int getNextPersonIndex() {
-		metaClass.getAttribute(ExternalPersonSyncTaskImpl, this, "nextPersonIndex", false, true)
+	String getLastSyncedUsername() {
+		metaClass.getAttribute(ExternalPersonSyncTaskImpl, this, "lastSyncedUsername", false, true)
 	}
 }
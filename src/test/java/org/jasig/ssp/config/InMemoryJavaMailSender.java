@@ -0,0 +1,156 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.config;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessagePreparator;
+
+/**
+ * {@link JavaMailSender} stand-in which never opens a socket. Sent messages
+ * are collected in memory and each simulated SMTP session and message can be
+ * given a fixed latency, which makes it suitable for measuring mail queue
+ * throughput without an SMTP server.
+ */
+public class InMemoryJavaMailSender implements JavaMailSender {
+
+	private final Session session = Session.getInstance(new Properties());
+
+	private final List<MimeMessage> sent = new CopyOnWriteArrayList<MimeMessage>();
+
+	private final AtomicInteger sessionCount = new AtomicInteger();
+
+	private final long sessionLatencyMillis;
+
+	private final long messageLatencyMillis;
+
+	public InMemoryJavaMailSender() {
+		this(0L, 0L);
+	}
+
+	/**
+	 * @param sessionLatencyMillis
+	 *            simulated cost of opening an SMTP session
+	 * @param messageLatencyMillis
+	 *            simulated cost of sending a single message on an open session
+	 */
+	public InMemoryJavaMailSender(long sessionLatencyMillis,
+			long messageLatencyMillis) {
+		this.sessionLatencyMillis = sessionLatencyMillis;
+		this.messageLatencyMillis = messageLatencyMillis;
+	}
+
+	public List<MimeMessage> getSentMessages() {
+		return sent;
+	}
+
+	/**
+	 * @return number of simulated SMTP sessions opened so far
+	 */
+	public int getSessionCount() {
+		return sessionCount.get();
+	}
+
+	@Override
+	public MimeMessage createMimeMessage() {
+		return new MimeMessage(session);
+	}
+
+	@Override
+	public MimeMessage createMimeMessage(final InputStream contentStream)
+			throws MailException {
+		try {
+			return new MimeMessage(session, contentStream);
+		} catch ( MessagingException e ) {
+			throw new MailParseException(e);
+		}
+	}
+
+	@Override
+	public void send(final MimeMessage mimeMessage) throws MailException {
+		send(new MimeMessage[] { mimeMessage });
+	}
+
+	@Override
+	public void send(final MimeMessage[] mimeMessages) throws MailException {
+		sessionCount.incrementAndGet();
+		pause(sessionLatencyMillis);
+		for ( MimeMessage mimeMessage : mimeMessages ) {
+			pause(messageLatencyMillis);
+			sent.add(mimeMessage);
+		}
+	}
+
+	@Override
+	public void send(final MimeMessagePreparator mimeMessagePreparator)
+			throws MailException {
+		send(new MimeMessagePreparator[] { mimeMessagePreparator });
+	}
+
+	@Override
+	public void send(final MimeMessagePreparator[] mimeMessagePreparators)
+			throws MailException {
+		final MimeMessage[] mimeMessages = new MimeMessage[mimeMessagePreparators.length];
+		for ( int i = 0; i < mimeMessagePreparators.length; i++ ) {
+			mimeMessages[i] = createMimeMessage();
+			try {
+				mimeMessagePreparators[i].prepare(mimeMessages[i]);
+			} catch ( Exception e ) {
+				throw new MailParseException(e);
+			}
+		}
+		send(mimeMessages);
+	}
+
+	@Override
+	public void send(final SimpleMailMessage simpleMessage)
+			throws MailException {
+		throw new UnsupportedOperationException("Only MimeMessages are supported");
+	}
+
+	@Override
+	public void send(final SimpleMailMessage[] simpleMessages)
+			throws MailException {
+		throw new UnsupportedOperationException("Only MimeMessages are supported");
+	}
+
+	private void pause(long millis) {
+		if ( millis <= 0 ) {
+			return;
+		}
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.jasig.ssp.util.service.stub.Stubs;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests the incremental refresh of the directory person tables.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("dao-testConfig.xml")
+@TransactionConfiguration(defaultRollback = true)
+@Transactional
+public class DirectoryPersonSearchDaoTest {
+
+	private static final String[] TABLES = { "mv_directory_person", "mv_directory_person_blue" };
+
+	private static final String SCHOOL_ID = Stubs.PersonFixture.KEN.schoolId();
+
+	private static final String PREVIOUS_SCHOOL_ID = "ken.previous";
+
+	@Autowired
+	private transient DirectoryPersonSearchDao dao;
+
+	@Autowired
+	private transient SessionFactory sessionFactory;
+
+	@Test
+	public void refreshReplacesRowsInBothTables() {
+		for ( String table : TABLES ) {
+			execute("delete from " + table + " where id = '" + SCHOOL_ID + "'");
+			execute("insert into " + table + " select * from v_directory_person where id = '" + SCHOOL_ID + "'");
+			execute("update " + table + " set first_name = 'Stale' where id = '" + SCHOOL_ID + "'");
+		}
+
+		assertEquals(1, dao.refreshDirectoryPersonRows(Lists.newArrayList(SCHOOL_ID)));
+
+		for ( String table : TABLES ) {
+			assertEquals(table, 1, count(table, SCHOOL_ID));
+			assertEquals(table, Stubs.PersonFixture.KEN.firstName(), sessionFactory.getCurrentSession()
+					.createSQLQuery("select first_name from " + table + " where id = '" + SCHOOL_ID + "'")
+					.uniqueResult());
+		}
+	}
+
+	@Test
+	public void refreshDropsRowsKeyedByAPreviousSchoolId() {
+		for ( String table : TABLES ) {
+			execute("delete from " + table + " where id in ('" + SCHOOL_ID + "', '" + PREVIOUS_SCHOOL_ID + "')");
+			execute("insert into " + table + " select * from v_directory_person where id = '" + SCHOOL_ID + "'");
+			execute("update " + table + " set id = '" + PREVIOUS_SCHOOL_ID + "', school_id = '"
+					+ PREVIOUS_SCHOOL_ID + "' where id = '" + SCHOOL_ID + "'");
+		}
+
+		dao.refreshDirectoryPersonRows(Lists.newArrayList(SCHOOL_ID));
+
+		for ( String table : TABLES ) {
+			assertEquals(table, 0, count(table, PREVIOUS_SCHOOL_ID));
+			assertEquals(table, 1, count(table, SCHOOL_ID));
+		}
+	}
+
+	@Test
+	public void refreshOfNothingWritesNothing() {
+		assertEquals(0, dao.refreshDirectoryPersonRows(Lists.<String>newArrayList()));
+	}
+
+	@Test
+	public void changedSchoolIdsAreLimitedByModifiedDate() {
+		final List<String> all = dao.getSchoolIdsChangedSince(new Date(0));
+		assertTrue(all.contains(SCHOOL_ID));
+
+		final Date tomorrow = new Date(System.currentTimeMillis() + 24 * 60 * 60 * 1000L);
+		assertTrue(dao.getSchoolIdsChangedSince(tomorrow).isEmpty());
+	}
+
+	private void execute(final String sql) {
+		sessionFactory.getCurrentSession().createSQLQuery(sql).executeUpdate();
+	}
+
+	private int count(final String table, final String id) {
+		return ((Number) sessionFactory.getCurrentSession()
+				.createSQLQuery("select count(*) from " + table + " where id = '" + id + "'")
+				.uniqueResult()).intValue();
+	}
+}
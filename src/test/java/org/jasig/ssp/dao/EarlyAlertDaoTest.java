@@ -23,6 +23,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -44,6 +45,8 @@ import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.PersonService;
 import org.jasig.ssp.service.impl.SecurityServiceInTestEnvironment;
 import org.jasig.ssp.service.reference.CampusService;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueRecipientTO;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueTO;
 import org.jasig.ssp.transferobject.reports.EarlyAlertStudentReportTO;
 import org.jasig.ssp.transferobject.reports.EarlyAlertStudentSearchTO;
 import org.jasig.ssp.transferobject.reports.PersonSearchFormTO;
@@ -259,6 +262,40 @@ public class EarlyAlertDaoTest {
 		}
 	}
 
+	@Test
+	public void getResponseDueEarlyAlertRecipientsAndDigestLines()
+			throws ObjectNotFoundException {
+		final EarlyAlert earlyAlert = createTestClosedEarlyAlert();
+		earlyAlert.setClosedDate(null);
+		earlyAlert.setClosedBy(null);
+		final EarlyAlert saved = dao.save(earlyAlert);
+		sessionFactory.getCurrentSession().flush();
+
+		try {
+			final Date lastResponseDate = getDateSetByDayOffset(1);
+			boolean found = false;
+			for (final EarlyAlertResponseDueRecipientTO recipient : dao
+					.getResponseDueEarlyAlertRecipients(lastResponseDate)) {
+				if (saved.getId().equals(recipient.getEarlyAlertId())) {
+					found = true;
+					assertEquals("Campus was not expected.", saved.getCampus()
+							.getId(), recipient.getCampusId());
+				}
+			}
+			assertTrue("Response due early alert was not found.", found);
+
+			final List<EarlyAlertResponseDueTO> digestLines = dao
+					.getResponseDueEarlyAlertDigestLines(Lists
+							.newArrayList(saved.getId()));
+			assertEquals("Digest line count was not expected.", 1,
+					digestLines.size());
+			assertEquals("Student was not expected.", PERSON_ID, digestLines
+					.get(0).getStudentId());
+		} finally {
+			dao.delete(saved);
+		}
+	}
+
 	@Test
 	public void getCountOfActiveAlertsForPeopleIdsWithoutNew()
 			throws ObjectNotFoundException {
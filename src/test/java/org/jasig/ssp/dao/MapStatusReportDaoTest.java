@@ -0,0 +1,124 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import org.hibernate.SessionFactory;
+import org.jasig.ssp.model.MapStatusReport;
+import org.jasig.ssp.model.ObjectStatus;
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.Plan;
+import org.jasig.ssp.model.external.PlanStatus;
+import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.service.PersonService;
+import org.jasig.ssp.service.impl.SecurityServiceInTestEnvironment;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Tests for the {@link MapStatusReportDao} class.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("dao-testConfig.xml")
+@TransactionConfiguration(defaultRollback = true)
+@Transactional
+public class MapStatusReportDaoTest {
+
+	@Autowired
+	private transient MapStatusReportDao dao;
+
+	@Autowired
+	private transient PlanDao planDao;
+
+	@Autowired
+	private transient SecurityServiceInTestEnvironment securityService;
+
+	@Autowired
+	private transient PersonService personService;
+
+	@Autowired
+	protected transient SessionFactory sessionFactory;
+
+	@Before
+	public void setUp() {
+		securityService.setCurrent(new Person(Person.SYSTEM_ADMINISTRATOR_ID));
+	}
+
+	@Test
+	public void testDeleteReportsForInactivePlans() throws ObjectNotFoundException {
+		// test student = ken thompson
+		final Person ken = personService.get(UUID.fromString("f549ecab-5110-4cc1-b2bb-369cac854dea"));
+		// test student = james gosling
+		final Person james = personService.get(UUID.fromString("1010e4a0-1001-0110-1011-4ffc02fe81ff"));
+
+		final MapStatusReport activeReport = saveReport(savePlan(ken, ObjectStatus.ACTIVE), "active");
+		final MapStatusReport inactiveReport = saveReport(savePlan(james, ObjectStatus.INACTIVE), "inactive");
+		sessionFactory.getCurrentSession().flush();
+
+		Map<UUID, String> fingerprints = dao.getInputFingerprintsByPlanId();
+		assertEquals("active", fingerprints.get(activeReport.getPlan().getId()));
+		assertEquals("inactive", fingerprints.get(inactiveReport.getPlan().getId()));
+
+		dao.deleteReportsForInactivePlans();
+		sessionFactory.getCurrentSession().clear();
+
+		assertEquals(ken.getId(), dao.get(activeReport.getId()).getPerson().getId());
+		try {
+			dao.get(inactiveReport.getId());
+			throw new AssertionError("Report for an inactive plan was not deleted");
+		} catch ( ObjectNotFoundException e ) {
+			// expected
+		}
+
+		fingerprints = dao.getInputFingerprintsByPlanId();
+		assertEquals("active", fingerprints.get(activeReport.getPlan().getId()));
+		assertFalse(fingerprints.containsKey(inactiveReport.getPlan().getId()));
+	}
+
+	private Plan savePlan(Person person, ObjectStatus objectStatus) {
+		final Plan plan = new Plan();
+		plan.setPerson(person);
+		plan.setName("TestPlan");
+		plan.setOwner(person);
+		plan.setObjectStatus(objectStatus);
+		return planDao.save(plan);
+	}
+
+	private MapStatusReport saveReport(Plan plan, String inputFingerprint) {
+		final MapStatusReport report = new MapStatusReport();
+		report.setPerson(plan.getPerson());
+		report.setPlan(plan);
+		report.setPlanStatus(PlanStatus.ON);
+		report.setPlanRatio(new BigDecimal("0.50"));
+		report.setInputFingerprint(inputFingerprint);
+		return dao.save(report);
+	}
+}
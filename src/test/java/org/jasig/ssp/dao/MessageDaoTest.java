@@ -41,6 +41,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.UUID;
 
+import com.google.common.collect.Lists;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -202,6 +204,33 @@ public class MessageDaoTest {
 		}
 	}
 
+	/**
+	 * Test that {@link MessageDao#markSent(Collection, Date)} sets the sent
+	 * date on exactly the given messages, which reads see once the session's
+	 * copies are evicted.
+	 */
+	@Test
+	@Rollback
+	public void markSent() throws ObjectNotFoundException {
+		final Message first = dao.save(createTestMessage());
+		final Message second = dao.save(createTestMessage());
+		final Message untouched = dao.save(createTestMessage());
+		final Date sentDate = new Date();
+
+		assertEquals("Unexpected number of messages marked sent.", 2,
+				dao.markSent(Lists.newArrayList(first.getId(), second.getId()), sentDate));
+		dao.flushAndEvict(Lists.newArrayList(first, second, untouched));
+
+		assertNotNull("First message should have been marked sent.",
+				dao.get(first.getId()).getSentDate());
+		assertNotNull("Second message should have been marked sent.",
+				dao.get(second.getId()).getSentDate());
+		assertNull("Other messages should not have been marked sent.",
+				dao.get(untouched.getId()).getSentDate());
+		assertEquals("Nothing to mark should have updated nothing.", 0,
+				dao.markSent(Lists.<UUID>newArrayList(), sentDate));
+	}
+
 	/**
 	 * Create a new sample message to use for testing.
 	 * 
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.jasig.ssp.model.ObjectStatus;
@@ -53,6 +54,7 @@ import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration("dao-testConfig.xml")
@@ -110,6 +112,41 @@ public class PersonDaoTest { // NOPMD Test suites love lots of methods!
 				listFiltered.size(), listAll.size());
 	}
 
+	@Test
+	public void testUsernamePartitionsCoverActivePeopleOnce() {
+		final List<String> expected = Lists.newArrayList();
+		for ( final Person person : dao.getAll(
+				new SortingAndPaging(ObjectStatus.ACTIVE, null, null, null,
+						"username", SortDirection.ASC)).getRows() ) {
+			expected.add(person.getUsername());
+		}
+
+		final List<String> boundaries = dao
+				.getActiveUsernamePartitionBoundaries(3);
+		assertTrue("Should not have more boundaries than partitions - 1.",
+				boundaries.size() <= 2);
+
+		final List<String> actual = Lists.newArrayList();
+		String after = null;
+		final List<String> uppers = Lists.newArrayList(boundaries);
+		uppers.add(null);
+		for ( final String through : uppers ) {
+			String cursor = after;
+			List<Person> page;
+			do {
+				page = dao.getActiveByUsernameRange(cursor, through, 2);
+				for ( final Person person : page ) {
+					actual.add(person.getUsername());
+					cursor = person.getUsername();
+				}
+			} while ( page.size() == 2 );
+			after = through;
+		}
+
+		assertEquals("Partitions should have returned every active person"
+				+ " exactly once, in username order.", expected, actual);
+	}
+
 	@Test
 	public void testGet() throws ObjectNotFoundException {
 		assertEquals("Ids did not match.", Person.SYSTEM_ADMINISTRATOR_ID, dao
@@ -172,6 +209,19 @@ public class PersonDaoTest { // NOPMD Test suites love lots of methods!
 				.fromUsername("system").getId());
 	}
 
+	@Test
+	public void testGetByUsernames() {
+		final List<Person> people = dao.getByUsernames(Lists.newArrayList("SYSTEM", PERSON_USER_ID, "borkborkbork"));
+
+		assertEquals("Only existing usernames should have been found.", 2, people.size());
+		final Set<UUID> ids = Sets.newHashSet();
+		for ( final Person person : people ) {
+			ids.add(person.getId());
+		}
+		assertTrue("system should have been found, ignoring case.", ids.contains(Person.SYSTEM_ADMINISTRATOR_ID));
+		assertTrue("Person should have been found.", ids.contains(PERSON_ID));
+	}
+
 	@Test
 	public void getPeopleInList() throws ValidationException {
 		final List<UUID> personIds = Lists.newArrayList();
@@ -19,6 +19,8 @@
 package org.jasig.ssp.dao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 
 import java.math.BigDecimal;
 import java.util.Collection;
@@ -319,6 +321,51 @@ public class PlanDaoTest {
 		
 	}
 	
+	@Test
+	public void testActivePlanRevisionsChangeWithPlanCourses() throws ObjectNotFoundException {
+		// test student = ken thompson
+		final Person person = personService.get(UUID
+				.fromString("f549ecab-5110-4cc1-b2bb-369cac854dea"));
+		final Session session = sessionFactory.getCurrentSession();
+
+		Plan plan = new Plan();
+		plan.setPerson(person);
+		plan.setName("TestPlan");
+		plan.setOwner(person);
+		plan.setObjectStatus(ObjectStatus.ACTIVE);
+		dao.save(plan);
+
+		Plan inactivePlan = new Plan();
+		inactivePlan.setPerson(person);
+		inactivePlan.setName("InactiveTestPlan");
+		inactivePlan.setOwner(person);
+		inactivePlan.setObjectStatus(ObjectStatus.INACTIVE);
+		dao.save(inactivePlan);
+		session.flush();
+
+		final String revision = dao.getActivePlanRevisions().get(plan.getId());
+		assertNotNull(revision);
+		assertFalse(dao.getActivePlanRevisions().containsKey(inactivePlan.getId()));
+
+		PlanCourse course = new PlanCourse();
+		course.setCourseCode("MAT");
+		course.setCourseDescription("TEST");
+		course.setCourseTitle("TEST");
+		course.setFormattedCourse("TEST");
+		course.setOrderInTerm(1);
+		course.setTermCode("SP13");
+		course.setIsDev(false);
+		course.setCreatedBy(new AuditPerson(person.getId()));
+		course.setPlan(plan);
+		course.setPerson(person);
+		course.setCreditHours(new BigDecimal(3.0));
+		plan.getPlanCourses().add(course);
+		dao.save(plan);
+		session.flush();
+
+		assertFalse(revision.equals(dao.getActivePlanRevisions().get(plan.getId())));
+	}
+
 	@Test
 	public void  testDaoReportMethodsNull(){
 		SearchPlanTO form = new SearchPlanTO(null, null, null, null, null, null, null);
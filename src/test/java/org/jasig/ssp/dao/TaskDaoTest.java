@@ -25,9 +25,12 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
+import org.apache.commons.lang.time.DateUtils;
 import org.jasig.ssp.TestUtils;
 import org.jasig.ssp.dao.reference.ChallengeDao;
 import org.jasig.ssp.dao.reference.ChallengeReferralDao;
@@ -56,6 +59,7 @@ import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration("dao-testConfig.xml")
@@ -192,6 +196,73 @@ public class TaskDaoTest {
 						ObjectStatus.ACTIVE)));
 	}
 
+	/**
+	 * Pages through the tasks due on a reminder day with a page size smaller than the number of matches. Tasks due
+	 * on other days must not be returned, and the pages together must return every match exactly once.
+	 */
+	@Test
+	public void getNextWhichNeedRemindersSent() throws ObjectNotFoundException {
+		final List<Integer> daysBefore = Lists.newArrayList(0, 1, 14);
+		final Set<UUID> due = Sets.newHashSet();
+		final Set<UUID> notDue = Sets.newHashSet(testTask.getId());
+		final List<Task> created = Lists.newArrayList();
+		try {
+			for ( int days : new int[] { 0, 1, 14, 14 } ) {
+				final Task task = createTaskDueIn(days);
+				created.add(task);
+				due.add(task.getId());
+			}
+			for ( int days : new int[] { 2, 15 } ) {
+				final Task task = createTaskDueIn(days);
+				created.add(task);
+				notDue.add(task.getId());
+			}
+
+			final Date today = DateUtils.truncate(new Date(), Calendar.DATE);
+			final Set<UUID> found = Sets.newHashSet();
+			UUID afterId = null;
+			while ( true ) {
+				final List<Task> page = dao.getNextWhichNeedRemindersSent(daysBefore, afterId, 2);
+				TestUtils.assertListDoesNotContainNullItems(page);
+				assertTrue("Page should not exceed max results", page.size() <= 2);
+				if ( page.isEmpty() ) {
+					break;
+				}
+				for ( Task task : page ) {
+					assertTrue("Pages should not repeat tasks", found.add(task.getId()));
+					final Date dueDay = DateUtils.truncate(task.getDueDate(), Calendar.DATE);
+					boolean onReminderDay = false;
+					for ( Integer days : daysBefore ) {
+						onReminderDay |= dueDay.equals(DateUtils.addDays(today, days));
+					}
+					assertTrue("Task " + task.getId() + " is not due on a reminder day", onReminderDay);
+				}
+				afterId = page.get(page.size() - 1).getId();
+			}
+
+			assertTrue("Every task due on a reminder day should have been found", found.containsAll(due));
+			assertTrue("Tasks not due on a reminder day should not have been found",
+					Sets.intersection(found, notDue).isEmpty());
+		} finally {
+			for ( Task task : created ) {
+				dao.delete(task);
+			}
+		}
+	}
+
+	/**
+	 * A task for ken due late on the day the given number of days from today, so it falls inside that day whatever
+	 * time the test runs.
+	 */
+	private Task createTaskDueIn(final int days) throws ObjectNotFoundException {
+		final Date dueDate = DateUtils.addHours(
+				DateUtils.addDays(DateUtils.truncate(new Date(), Calendar.DATE), days), 23);
+		final Task task = new Task("reminderTask" + days, "task due in " + days + " days", dueDate, ken, null, null);
+		task.setObjectStatus(ObjectStatus.ACTIVE);
+		task.setConfidentialityLevel(confidentialityLevelService.get(CONFIDENTIALITYLEVEL_ID));
+		return dao.save(task);
+	}
+
 	@Test
 	public void getAllForPersonIdAndChallengeReferralId() {
 		TestUtils.assertListDoesNotContainNullItems(dao
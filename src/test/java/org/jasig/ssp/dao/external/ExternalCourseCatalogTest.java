@@ -0,0 +1,105 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.dao.external;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.jasig.ssp.model.external.ExternalCourse;
+import org.jasig.ssp.transferobject.external.SearchExternalCourseTO;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSetMultimap;
+
+public class ExternalCourseCatalogTest {
+
+	private ExternalCourse engl101;
+
+	private ExternalCourse math101;
+
+	private ExternalCourse math201;
+
+	private ExternalCourseCatalog catalog;
+
+	@Before
+	public void setUp() {
+		engl101 = course("ENG", "101");
+		math101 = course("MAT", "101");
+		math201 = course("MAT", "201");
+		catalog = new ExternalCourseCatalog(ImmutableList.of(engl101, math101,
+				math201), ImmutableListMultimap.of("MAT-101", "DEV",
+				"MAT-101", "STEM", "MAT-201", "STEM"), ImmutableSetMultimap.of(
+				"MAT-101", "SCI", "MAT-201", "SCI", "ENG-101", "ART"),
+				ImmutableSetMultimap.of("MAT-101", "FA12", "MAT-201", "FA12",
+						"MAT-201", "SP13"));
+	}
+
+	@Test
+	public void testUnboundedSearchReturnsWholeCatalog() {
+		assertSame(catalog.getCourses(), catalog.search(form(null, null, null,
+				null, null)));
+	}
+
+	@Test
+	public void testPivotedTags() {
+		assertEquals("DEV,STEM", math101.getPivotedTags());
+		assertEquals("STEM", math201.getPivotedTags());
+		assertEquals("", engl101.getPivotedTags());
+	}
+
+	@Test
+	public void testSearchCombinesCriteria() {
+		assertEquals(ImmutableList.of(math101, math201), catalog.search(form(
+				"SCI", null, "MAT", null, null)));
+		assertEquals(ImmutableList.of(math101), catalog.search(form(null,
+				null, null, "101", "DEV")));
+		assertEquals(ImmutableList.of(math201), catalog.search(form("SCI",
+				"SP13", null, null, "STEM")));
+		assertEquals(ImmutableList.of(), catalog.search(form("ART", "FA12",
+				null, null, null)));
+	}
+
+	@Test
+	public void testTermSearchIsDescending() {
+		final List<ExternalCourse> result = catalog.search(form(null, "FA12",
+				null, null, null));
+		assertEquals(ImmutableList.of(math201, math101), result);
+	}
+
+	private SearchExternalCourseTO form(final String programCode,
+			final String termCode, final String subjectAbbreviation,
+			final String courseNumber, final String tag) {
+		return new SearchExternalCourseTO(programCode, termCode,
+				subjectAbbreviation, courseNumber, tag);
+	}
+
+	private ExternalCourse course(final String subject, final String number) {
+		final ExternalCourse course = new ExternalCourse();
+		course.setCode(subject + "-" + number);
+		course.setFormattedCourse(subject + number);
+		course.setSubjectAbbreviation(subject);
+		course.setNumber(number);
+		return course;
+	}
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.external.RegistrationStatusByTerm;
@@ -38,6 +39,8 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Lists;
+
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration("../dao-testConfig.xml")
 @TransactionConfiguration(defaultRollback = false)
@@ -83,4 +86,14 @@ public class RegistrationStatusByTermDaoTest {
 				"Should not find any values with a course_count greater than zero",
 				rsbt);
 	}
+
+	@Test
+	public void getForTermsMatchesSingleTermLookups() {
+		final List<RegistrationStatusByTerm> found = dao.getForTerms(
+				Lists.newArrayList("ken.1"), Lists.newArrayList("FA12", "SP13"));
+		assertEquals("should only find ken's autumn 12 reg status, spring 13 has zero courses",
+				1, found.size());
+		assertEquals("ken.1", found.get(0).getSchoolId());
+		assertEquals("FA12", found.get(0).getTermCode());
+	}
 }
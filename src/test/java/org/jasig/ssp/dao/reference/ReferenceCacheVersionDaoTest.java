@@ -0,0 +1,117 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.dao.reference;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hibernate.Cache;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Checks that {@link ReferenceCacheVersionDao#markChanged()} bumps the shared
+ * version once per transaction, at commit, rather than on every write.
+ */
+public class ReferenceCacheVersionDaoTest {
+
+	private final ReferenceCacheVersionDao dao = new ReferenceCacheVersionDao();
+
+	private SQLQuery bump;
+
+	private Cache cache;
+
+	@Before
+	public void setUp() {
+		final SessionFactory sessionFactory = mock(SessionFactory.class);
+		final Session session = mock(Session.class);
+		bump = mock(SQLQuery.class);
+		cache = mock(Cache.class);
+		when(sessionFactory.getCurrentSession()).thenReturn(session);
+		when(sessionFactory.getCache()).thenReturn(cache);
+		when(session.createSQLQuery(anyString())).thenReturn(bump);
+		when(bump.addSynchronizedQuerySpace(anyString())).thenReturn(bump);
+		ReflectionTestUtils.setField(dao, "sessionFactory", sessionFactory);
+	}
+
+	@After
+	public void tearDown() {
+		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	public void bumpsOnceAtCommitHoweverManyWrites() {
+		TransactionSynchronizationManager.initSynchronization();
+
+		dao.markChanged();
+		dao.markChanged();
+		dao.markChanged();
+		verify(bump, never()).executeUpdate();
+
+		for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() ) {
+			synchronization.beforeCommit(false);
+		}
+		verify(bump, times(1)).executeUpdate();
+		// limits what Hibernate invalidates for the native update to the version table itself
+		verify(bump, times(1)).addSynchronizedQuerySpace("reference_cache_version");
+		verify(cache, never()).evictQueryRegions();
+
+		for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() ) {
+			synchronization.afterCommit();
+		}
+		verify(cache, times(1)).evictCollectionRegions();
+		verify(cache, times(1)).evictQueryRegions();
+	}
+
+	@Test
+	public void doesNotBumpWhenTheTransactionRollsBack() {
+		TransactionSynchronizationManager.initSynchronization();
+
+		dao.markChanged();
+		for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() ) {
+			synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+		}
+
+		verify(bump, never()).executeUpdate();
+		verify(cache, never()).evictQueryRegions();
+	}
+
+	@Test
+	public void bumpsImmediatelyOutsideATransaction() {
+		dao.markChanged();
+		dao.markChanged();
+
+		verify(bump, times(2)).executeUpdate();
+		verify(cache, times(2)).evictCollectionRegions();
+		verify(cache, times(2)).evictQueryRegions();
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * {@link VelocityTemplateService} test suite
+ */
+public class VelocityTemplateServiceTest {
+
+	private static final int MAX_CACHED_TEMPLATES = 256;
+
+	private transient VelocityTemplateService service;
+
+	@Before
+	public void setUp() throws Exception {
+		// same loader setup as the velocityEngine bean
+		final Properties properties = new Properties();
+		properties.setProperty("resource.loader", "string");
+		properties.setProperty("string.resource.loader.class", StringResourceLoader.class.getName());
+		final VelocityEngine velocityEngine = new VelocityEngine(properties);
+		velocityEngine.init();
+
+		service = new VelocityTemplateService();
+		ReflectionTestUtils.setField(service, "velocityEngine", velocityEngine);
+	}
+
+	@Test
+	public void rendersTemplateText() {
+		final Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put("name", "Ada");
+
+		assertEquals("Hello Ada", service.generateContentFromTemplate("Hello $name", "greeting", parameters));
+	}
+
+	@Test
+	public void reusesParsedTemplateAndDoesNotKeepItsText() {
+		final Template first = service.getTemplate("t1", "one");
+
+		assertSame(first, service.getTemplate("t1", "one"));
+		assertNull(StringResourceLoader.getRepository().getStringResource("t1"));
+	}
+
+	@Test
+	public void dropsLeastRecentlyUsedTemplates() {
+		final Template first = service.getTemplate("t0", "text 0");
+		final Template second = service.getTemplate("t1", "text 1");
+		for ( int i = 2; i < MAX_CACHED_TEMPLATES; i++ ) {
+			service.getTemplate("t" + i, "text " + i);
+		}
+
+		// touch t0 so t1 is now the least recently used, then overflow the cache by one
+		assertSame(first, service.getTemplate("t0", "text 0"));
+		service.getTemplate("t" + MAX_CACHED_TEMPLATES, "text " + MAX_CACHED_TEMPLATES);
+
+		assertSame(first, service.getTemplate("t0", "text 0"));
+		assertNotSame(second, service.getTemplate("t1", "text 1"));
+	}
+
+	@Test
+	public void evictsTemplatesByIdPrefix() {
+		final Template oldVersion = service.getTemplate("abc-1", "old");
+		final Template otherTemplate = service.getTemplate("xyz-1", "other");
+
+		service.evictTemplates("abc");
+
+		assertNotSame(oldVersion, service.getTemplate("abc-1", "old"));
+		assertSame(otherTemplate, service.getTemplate("xyz-1", "other"));
+	}
+}
@@ -0,0 +1,538 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.jasig.ssp.model.ObjectStatus;
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.SuccessIndicatorEvaluationType;
+import org.jasig.ssp.model.SuccessIndicatorGroup;
+import org.jasig.ssp.model.external.ExternalStudentFinancialAid;
+import org.jasig.ssp.model.external.ExternalStudentRiskIndicator;
+import org.jasig.ssp.model.external.ExternalStudentTranscript;
+import org.jasig.ssp.model.external.ExternalStudentTranscriptCourse;
+import org.jasig.ssp.model.external.PlanStatus;
+import org.jasig.ssp.model.external.RegistrationStatusByTerm;
+import org.jasig.ssp.model.external.Term;
+import org.jasig.ssp.model.reference.Blurb;
+import org.jasig.ssp.model.reference.SuccessIndicator;
+import org.jasig.ssp.service.MapStatusService;
+import org.jasig.ssp.service.PersonService;
+import org.jasig.ssp.service.TaskService;
+import org.jasig.ssp.service.external.ExternalStudentFinancialAidService;
+import org.jasig.ssp.service.external.ExternalStudentRiskIndicatorService;
+import org.jasig.ssp.service.external.ExternalStudentTranscriptCourseService;
+import org.jasig.ssp.service.external.ExternalStudentTranscriptService;
+import org.jasig.ssp.service.external.RegistrationStatusByTermService;
+import org.jasig.ssp.service.external.TermService;
+import org.jasig.ssp.service.reference.BlurbService;
+import org.jasig.ssp.service.reference.SuccessIndicatorService;
+import org.jasig.ssp.transferobject.EvaluatedSuccessIndicatorTO;
+import org.jasig.ssp.transferobject.SuccessIndicatorEvaluation;
+import org.jasig.ssp.transferobject.external.AbstractPlanStatusReportTO;
+import org.jasig.ssp.transferobject.external.MapStatusReportLiteTO;
+import org.jasig.ssp.util.Fingerprints;
+import org.jasig.ssp.util.collections.Pair;
+import org.jasig.ssp.util.sort.PagingWrapper;
+import org.jasig.ssp.util.sort.SortingAndPaging;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks that {@link EvaluatedSuccessIndicatorServiceImpl#getForPeople} evaluates every indicator exactly as
+ * {@link EvaluatedSuccessIndicatorServiceImpl#getForPerson} does, for students with and without data in each
+ * source. Single and bulk lookups are answered from the same test data.
+ */
+public class EvaluatedSuccessIndicatorServiceImplTest {
+
+	private static final String RISK_MODEL = "RISK_MODEL";
+
+	@Mock
+	private SuccessIndicatorService successIndicatorService;
+
+	@Mock
+	private ExternalStudentTranscriptService externalStudentTranscriptService;
+
+	@Mock
+	private RegistrationStatusByTermService registrationStatusByTermService;
+
+	@Mock
+	private TermService termService;
+
+	@Mock
+	private PersonService personService;
+
+	@Mock
+	private TaskService taskService;
+
+	@Mock
+	private MapStatusService mapStatusService;
+
+	@Mock
+	private ExternalStudentFinancialAidService externalStudentFinancialAidService;
+
+	@Mock
+	private ExternalStudentRiskIndicatorService externalStudentRiskIndicatorService;
+
+	@Mock
+	private ExternalStudentTranscriptCourseService externalStudentTranscriptCourseService;
+
+	@Mock
+	private BlurbService blurbService;
+
+	@Mock
+	private PlatformTransactionManager platformTransactionManager;
+
+	@InjectMocks
+	private EvaluatedSuccessIndicatorServiceImpl service;
+
+	private final Term currentTerm = term("FA15");
+
+	private final Term futureTerm = term("SP16");
+
+	private final Map<UUID, Person> people = Maps.newLinkedHashMap();
+
+	private final Map<String, ExternalStudentTranscript> transcripts = Maps.newHashMap();
+
+	private final Map<String, ExternalStudentFinancialAid> financialAid = Maps.newHashMap();
+
+	private final Map<String, List<ExternalStudentRiskIndicator>> riskIndicators = Maps.newHashMap();
+
+	private final Map<String, List<RegistrationStatusByTerm>> registrations = Maps.newHashMap();
+
+	private final Map<UUID, Pair<Long, Long>> taskCounts = Maps.newHashMap();
+
+	private final Map<UUID, PlanStatus> planStatuses = Maps.newHashMap();
+
+	private final Map<String, List<ExternalStudentTranscriptCourse>> scheduleCourses = Maps.newHashMap();
+
+	private List<SuccessIndicator> indicators;
+
+	private Person withEverything;
+
+	private Person withNothing;
+
+	private Person withSome;
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		indicators = Lists.newArrayList(
+				scale("system.student.gpa", SuccessIndicatorGroup.STUDENT, "0", "1.99", "2", "2.99", "3", "4"),
+				string("system.student.registration", SuccessIndicatorGroup.STUDENT, "NONE", "FUTURE", "CURRENT,CURRENT_AND_FUTURE"),
+				scale("system.student.creditcompletion", SuccessIndicatorGroup.STUDENT, "0", "49", "50", "79", "80", "100"),
+				string("system.student.standing", SuccessIndicatorGroup.STUDENT, "probation", "warning", "good"),
+				string("system.student.sap", SuccessIndicatorGroup.STUDENT, "N", "W", "Y"),
+				string("system.student.restrictions", SuccessIndicatorGroup.STUDENT, "hold", "", "none"),
+				string("system.intervention.intakesubmitted", SuccessIndicatorGroup.INTERVENTION, "N", "", "Y"),
+				scale("system.intervention.opentasks", SuccessIndicatorGroup.INTERVENTION, "5", null, "1", "4", "0", "0"),
+				scale("system.intervention.openalerts", SuccessIndicatorGroup.INTERVENTION, "3", null, "1", "2", "0", "0"),
+				string("system.intervention.mapstatus", SuccessIndicatorGroup.INTERVENTION, "OFF", "ON_TRACK_SEQUENCE", "ON"),
+				scale("system.intervention.participation", SuccessIndicatorGroup.INTERVENTION, "0", "59", "60", "79", "80", "100"),
+				riskScale("R1"),
+				riskScale("R*"));
+
+		withEverything = person("everything");
+		withEverything.setStudentIntakeCompleteDate(new Date());
+		withEverything.setActiveAlertsCount(2);
+		withEverything.setClosedAlertsCount(1);
+		transcripts.put("everything", transcript("everything", "3.5", "85", "Good", "None"));
+		financialAid.put("everything", financialAid("everything", "Y"));
+		riskIndicators.put("everything", Lists.newArrayList(riskIndicator("everything", "R1", "0.4"),
+				riskIndicator("everything", "R2", "0.9")));
+		registrations.put("everything", Lists.newArrayList(registration("everything", currentTerm, 3),
+				registration("everything", futureTerm, 2)));
+		taskCounts.put(withEverything.getId(), new Pair<Long, Long>(2L, 3L));
+		planStatuses.put(withEverything.getId(), PlanStatus.ON);
+		scheduleCourses.put("everything", Lists.newArrayList(course("everything", "80"), course("everything", "65")));
+
+		withNothing = person("nothing");
+
+		withSome = person("some");
+		withSome.setStudentIntakeRequestDate(new Date());
+		transcripts.put("some", transcript("some", "1.5", null, null, "Hold"));
+		riskIndicators.put("some", Lists.newArrayList(riskIndicator("some", "R1", "not a number")));
+		registrations.put("some", Lists.newArrayList(registration("some", currentTerm, 0),
+				registration("some", futureTerm, 4)));
+		planStatuses.put(withSome.getId(), PlanStatus.OFF);
+		scheduleCourses.put("some", Lists.newArrayList(course("some", "n/a")));
+
+		stubLookups();
+	}
+
+	@Test
+	public void bulkEvaluationMatchesSingleEvaluation() throws Exception {
+		final Map<UUID, List<EvaluatedSuccessIndicatorTO>> bulk =
+				service.getForPeople(people.keySet(), ObjectStatus.ACTIVE, indicators);
+
+		assertEquals(Lists.newArrayList(people.keySet()), Lists.newArrayList(bulk.keySet()));
+		for ( UUID personId : people.keySet() ) {
+			final List<String> single = describe(service.getForPerson(personId, ObjectStatus.ACTIVE, indicators));
+			assertEquals("Evaluations for " + people.get(personId).getSchoolId(), single, describe(bulk.get(personId)));
+		}
+
+		// each source is loaded once for the whole group
+		verify(externalStudentTranscriptService, times(1)).getBatchedRecordsBySchoolIds(anyListOf(String.class));
+		verify(externalStudentRiskIndicatorService, times(1)).getBySchoolIds(anyListOf(String.class));
+		verify(mapStatusService, times(1)).getStatusesForPeople(any(Collection.class));
+		verify(taskService, times(1)).getOpenVsClosedTaskCountsForPeople(anyListOf(UUID.class));
+	}
+
+	@Test
+	public void evaluationsReflectTheTestData() {
+		final Map<UUID, List<EvaluatedSuccessIndicatorTO>> bulk =
+				service.getForPeople(people.keySet(), ObjectStatus.ACTIVE, indicators);
+
+		// guards against the parity test passing because nothing was evaluated at all
+		final Map<String, EvaluatedSuccessIndicatorTO> everything = byEvaluatedCode(bulk.get(withEverything.getId()));
+		assertEquals(SuccessIndicatorEvaluation.HIGH, everything.get("system.student.gpa").getEvaluation());
+		assertEquals("CURRENT+FUTURE", everything.get("system.student.registration").getDisplayValue());
+		assertEquals("On Plan", everything.get("system.intervention.mapstatus").getDisplayValue());
+		assertEquals("2/5", everything.get("system.intervention.opentasks").getDisplayValue());
+		assertEquals("0.9", everything.get("R2").getDisplayValue());
+
+		final Map<String, EvaluatedSuccessIndicatorTO> nothing = byEvaluatedCode(bulk.get(withNothing.getId()));
+		assertEquals("[NO DATA]", nothing.get("system.student.gpa").getDisplayValue());
+		assertEquals("NONE", nothing.get("system.student.registration").getDisplayValue());
+		assertEquals("[NO DATA]", nothing.get("system.intervention.mapstatus").getDisplayValue());
+		assertEquals("0/0", nothing.get("system.intervention.opentasks").getDisplayValue());
+		assertTrue(nothing.containsKey("R1"));
+		assertTrue(!(nothing.containsKey("R2")));
+
+		final Map<String, EvaluatedSuccessIndicatorTO> some = byEvaluatedCode(bulk.get(withSome.getId()));
+		assertEquals(SuccessIndicatorEvaluation.LOW, some.get("system.student.gpa").getEvaluation());
+		assertEquals("FUTURE", some.get("system.student.registration").getDisplayValue());
+		assertEquals("Off Plan", some.get("system.intervention.mapstatus").getDisplayValue());
+	}
+
+	private void stubLookups() throws Exception {
+		when(personService.get(any(UUID.class))).thenAnswer(new Answer<Person>() {
+			@Override
+			public Person answer(InvocationOnMock invocation) {
+				return people.get(invocation.getArguments()[0]);
+			}
+		});
+		when(personService.peopleFromListOfIds(anyListOf(UUID.class), any(SortingAndPaging.class)))
+				.thenAnswer(new Answer<List<Person>>() {
+			@Override
+			public List<Person> answer(InvocationOnMock invocation) {
+				final List<Person> found = Lists.newArrayList();
+				for ( Object personId : (List<?>) invocation.getArguments()[0] ) {
+					found.add(people.get(personId));
+				}
+				return found;
+			}
+		});
+		when(blurbService.getAll(any(SortingAndPaging.class), anyString()))
+				.thenReturn(new PagingWrapper<Blurb>(Lists.<Blurb>newArrayList()));
+		when(termService.getCurrentTerm()).thenReturn(currentTerm);
+		when(termService.getCurrentAndFutureTerms()).thenReturn(Lists.newArrayList(currentTerm, futureTerm));
+
+		when(externalStudentTranscriptService.getRecordsBySchoolId(anyString()))
+				.thenAnswer(new SingleAnswer<ExternalStudentTranscript>(transcripts));
+		when(externalStudentTranscriptService.getBatchedRecordsBySchoolIds(anyListOf(String.class)))
+				.thenAnswer(new BulkAnswer<ExternalStudentTranscript>(transcripts));
+		when(externalStudentFinancialAidService.getStudentFinancialAidBySchoolId(anyString()))
+				.thenAnswer(new SingleAnswer<ExternalStudentFinancialAid>(financialAid));
+		when(externalStudentFinancialAidService.getStudentFinancialAidBySchoolIds(anyListOf(String.class)))
+				.thenAnswer(new BulkAnswer<ExternalStudentFinancialAid>(financialAid));
+		when(externalStudentRiskIndicatorService.getBySchoolId(anyString()))
+				.thenAnswer(new SingleListAnswer<ExternalStudentRiskIndicator>(riskIndicators));
+		when(externalStudentRiskIndicatorService.getBySchoolIds(anyListOf(String.class)))
+				.thenAnswer(new BulkListAnswer<ExternalStudentRiskIndicator>(riskIndicators));
+		when(externalStudentTranscriptCourseService.getTranscriptsBySchoolIdAndTermCode(anyString(),
+				anyString())).thenAnswer(new SingleListAnswer<ExternalStudentTranscriptCourse>(scheduleCourses));
+		when(externalStudentTranscriptCourseService.getTranscriptsBySchoolIdsAndTermCode(anyListOf(String.class),
+				anyString())).thenAnswer(new BulkListAnswer<ExternalStudentTranscriptCourse>(scheduleCourses));
+
+		when(registrationStatusByTermService.getCurrentAndFutureTerms(any(Person.class)))
+				.thenAnswer(new Answer<List<RegistrationStatusByTerm>>() {
+			@Override
+			public List<RegistrationStatusByTerm> answer(InvocationOnMock invocation) {
+				final List<RegistrationStatusByTerm> found =
+						registrations.get(((Person) invocation.getArguments()[0]).getSchoolId());
+				return found == null ? Lists.<RegistrationStatusByTerm>newArrayList() : found;
+			}
+		});
+		when(registrationStatusByTermService.getCurrentAndFutureTermsForSchoolIds(anyListOf(String.class)))
+				.thenAnswer(new Answer<Map<String, List<RegistrationStatusByTerm>>>() {
+			@Override
+			public Map<String, List<RegistrationStatusByTerm>> answer(InvocationOnMock invocation) {
+				final Map<String, List<RegistrationStatusByTerm>> found = Maps.newHashMap();
+				for ( Object schoolId : (List<?>) invocation.getArguments()[0] ) {
+					if ( registrations.containsKey(schoolId) ) {
+						found.put((String) schoolId, registrations.get(schoolId));
+					}
+				}
+				return found;
+			}
+		});
+
+		when(taskService.getOpenVsClosedTaskCountsForPerson(any(Person.class)))
+				.thenAnswer(new Answer<Pair<Long, Long>>() {
+			@Override
+			public Pair<Long, Long> answer(InvocationOnMock invocation) {
+				final Pair<Long, Long> found = taskCounts.get(((Person) invocation.getArguments()[0]).getId());
+				return found == null ? new Pair<Long, Long>(0L, 0L) : found;
+			}
+		});
+		when(taskService.getOpenVsClosedTaskCountsForPeople(anyListOf(UUID.class)))
+				.thenAnswer(new Answer<Map<UUID, Pair<Long, Long>>>() {
+			@Override
+			public Map<UUID, Pair<Long, Long>> answer(InvocationOnMock invocation) {
+				return Maps.newHashMap(taskCounts);
+			}
+		});
+
+		when(mapStatusService.getByPersonId(any(UUID.class))).thenAnswer(new Answer<AbstractPlanStatusReportTO>() {
+			@Override
+			public AbstractPlanStatusReportTO answer(InvocationOnMock invocation) {
+				// a report without a status, as for a person without a plan
+				final MapStatusReportLiteTO report = new MapStatusReportLiteTO();
+				report.setStatus(planStatuses.get(invocation.getArguments()[0]));
+				return report;
+			}
+		});
+		when(mapStatusService.getStatusesForPeople(any(Collection.class))).thenAnswer(new Answer<Map<UUID, PlanStatus>>() {
+			@Override
+			public Map<UUID, PlanStatus> answer(InvocationOnMock invocation) {
+				return Maps.newHashMap(planStatuses);
+			}
+		});
+	}
+
+	private static List<String> describe(final List<EvaluatedSuccessIndicatorTO> evaluations) {
+		final List<String> described = Lists.newArrayList();
+		for ( EvaluatedSuccessIndicatorTO evaluation : evaluations ) {
+			described.add(Fingerprints.fields(evaluation.getId(), evaluation.getPersonId(),
+					evaluation.getIndicatorId(), evaluation.getIndicatorCode(), evaluation.getEvaluatedIndicatorCode(),
+					evaluation.getDisplayName(), evaluation.getDisplayValue(),
+					evaluation.getDisplayValueDescription(), evaluation.getEvaluation(),
+					evaluation.getEvaluationDisplayName()));
+		}
+		return described;
+	}
+
+	private static Map<String, EvaluatedSuccessIndicatorTO> byEvaluatedCode(
+			final List<EvaluatedSuccessIndicatorTO> evaluations) {
+		final Map<String, EvaluatedSuccessIndicatorTO> byCode = Maps.newHashMap();
+		for ( EvaluatedSuccessIndicatorTO evaluation : evaluations ) {
+			byCode.put(evaluation.getEvaluatedIndicatorCode(), evaluation);
+		}
+		return byCode;
+	}
+
+	private Person person(final String schoolId) {
+		final Person person = new Person(UUID.randomUUID());
+		person.setSchoolId(schoolId);
+		people.put(person.getId(), person);
+		return person;
+	}
+
+	private static Term term(final String code) {
+		final Term term = new Term(code);
+		term.setName(code);
+		return term;
+	}
+
+	private SuccessIndicator indicator(final String code, final SuccessIndicatorGroup group,
+			final SuccessIndicatorEvaluationType type) {
+		final SuccessIndicator indicator = new SuccessIndicator();
+		indicator.setId(UUID.randomUUID());
+		indicator.setName(code);
+		indicator.setCode(code);
+		indicator.setIndicatorGroup(group);
+		indicator.setEvaluationType(type);
+		indicator.setObjectStatus(ObjectStatus.ACTIVE);
+		indicator.setSortOrder(indicators == null ? 0 : indicators.size());
+		indicator.setNoDataExistsEvaluation(SuccessIndicatorEvaluation.DEFAULT);
+		indicator.setNoDataMatchesEvaluation(SuccessIndicatorEvaluation.DEFAULT);
+		return indicator;
+	}
+
+	private SuccessIndicator scale(final String code, final SuccessIndicatorGroup group, final String lowFrom,
+			final String lowTo, final String mediumFrom, final String mediumTo, final String highFrom,
+			final String highTo) {
+		final SuccessIndicator indicator = indicator(code, group, SuccessIndicatorEvaluationType.SCALE);
+		indicator.setScaleEvaluationLowFrom(decimal(lowFrom));
+		indicator.setScaleEvaluationLowTo(decimal(lowTo));
+		indicator.setScaleEvaluationMediumFrom(decimal(mediumFrom));
+		indicator.setScaleEvaluationMediumTo(decimal(mediumTo));
+		indicator.setScaleEvaluationHighFrom(decimal(highFrom));
+		indicator.setScaleEvaluationHighTo(decimal(highTo));
+		return indicator;
+	}
+
+	private SuccessIndicator string(final String code, final SuccessIndicatorGroup group, final String low,
+			final String medium, final String high) {
+		final SuccessIndicator indicator = indicator(code, group, SuccessIndicatorEvaluationType.STRING);
+		indicator.setStringEvaluationLow(low);
+		indicator.setStringEvaluationMedium(medium);
+		indicator.setStringEvaluationHigh(high);
+		return indicator;
+	}
+
+	private SuccessIndicator riskScale(final String code) {
+		final SuccessIndicator indicator = scale(code, SuccessIndicatorGroup.RISK, "0.8", "1", "0.5", "0.79", "0",
+				"0.49");
+		indicator.setModelCode(RISK_MODEL);
+		return indicator;
+	}
+
+	private static BigDecimal decimal(final String value) {
+		return value == null ? null : new BigDecimal(value);
+	}
+
+	private static ExternalStudentTranscript transcript(final String schoolId, final String gpa,
+			final String creditCompletion, final String standing, final String restrictions) {
+		final ExternalStudentTranscript transcript = new ExternalStudentTranscript();
+		transcript.setSchoolId(schoolId);
+		transcript.setGradePointAverage(decimal(gpa));
+		transcript.setCreditCompletionRate(decimal(creditCompletion));
+		transcript.setAcademicStanding(standing);
+		transcript.setCurrentRestrictions(restrictions);
+		return transcript;
+	}
+
+	private static ExternalStudentFinancialAid financialAid(final String schoolId, final String sapStatusCode) {
+		final ExternalStudentFinancialAid fa = new ExternalStudentFinancialAid();
+		fa.setSchoolId(schoolId);
+		fa.setSapStatusCode(sapStatusCode);
+		return fa;
+	}
+
+	private static ExternalStudentRiskIndicator riskIndicator(final String schoolId, final String code,
+			final String value) {
+		final ExternalStudentRiskIndicator riskIndicator = new ExternalStudentRiskIndicator();
+		riskIndicator.setSchoolId(schoolId);
+		riskIndicator.setModelCode(RISK_MODEL);
+		riskIndicator.setIndicatorCode(code);
+		riskIndicator.setIndicatorName(code);
+		riskIndicator.setIndicatorValue(value);
+		return riskIndicator;
+	}
+
+	private static RegistrationStatusByTerm registration(final String schoolId, final Term term,
+			final int registeredCourseCount) {
+		final RegistrationStatusByTerm registration = new RegistrationStatusByTerm();
+		registration.setSchoolId(schoolId);
+		registration.setTermCode(term.getCode());
+		registration.setRegisteredCourseCount(registeredCourseCount);
+		return registration;
+	}
+
+	private ExternalStudentTranscriptCourse course(final String schoolId, final String participation) {
+		final ExternalStudentTranscriptCourse course = new ExternalStudentTranscriptCourse();
+		course.setSchoolId(schoolId);
+		course.setTermCode(currentTerm.getCode());
+		course.setParticipation(participation);
+		return course;
+	}
+
+	/** Single-student lookup by the school id in the first argument */
+	private static class SingleAnswer<T> implements Answer<T> {
+		private final Map<String, T> records;
+
+		private SingleAnswer(final Map<String, T> records) {
+			this.records = records;
+		}
+
+		@Override
+		public T answer(final InvocationOnMock invocation) {
+			return records.get(invocation.getArguments()[0]);
+		}
+	}
+
+	/** Batched lookup by the school ids in the first argument, omitting ids without a record */
+	private static class BulkAnswer<T> implements Answer<List<T>> {
+		private final Map<String, T> records;
+
+		private BulkAnswer(final Map<String, T> records) {
+			this.records = records;
+		}
+
+		@Override
+		public List<T> answer(final InvocationOnMock invocation) {
+			final List<T> found = Lists.newArrayList();
+			for ( Object schoolId : (List<?>) invocation.getArguments()[0] ) {
+				if ( records.containsKey(schoolId) ) {
+					found.add(records.get(schoolId));
+				}
+			}
+			return found;
+		}
+	}
+
+	private static class SingleListAnswer<T> implements Answer<List<T>> {
+		private final Map<String, List<T>> records;
+
+		private SingleListAnswer(final Map<String, List<T>> records) {
+			this.records = records;
+		}
+
+		@Override
+		public List<T> answer(final InvocationOnMock invocation) {
+			final List<T> found = records.get(invocation.getArguments()[0]);
+			return found == null ? Lists.<T>newArrayList() : found;
+		}
+	}
+
+	private static class BulkListAnswer<T> implements Answer<List<T>> {
+		private final Map<String, List<T>> records;
+
+		private BulkListAnswer(final Map<String, List<T>> records) {
+			this.records = records;
+		}
+
+		@Override
+		public List<T> answer(final InvocationOnMock invocation) {
+			final List<T> found = Lists.newArrayList();
+			for ( Object schoolId : (List<?>) invocation.getArguments()[0] ) {
+				if ( records.containsKey(schoolId) ) {
+					found.addAll(records.get(schoolId));
+				}
+			}
+			return found;
+		}
+	}
+}
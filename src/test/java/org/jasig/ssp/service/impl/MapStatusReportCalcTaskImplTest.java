@@ -0,0 +1,317 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.jasig.ssp.model.MapStatusReport;
+import org.jasig.ssp.model.Plan;
+import org.jasig.ssp.model.external.ExternalStudentTranscriptCourse;
+import org.jasig.ssp.model.external.ExternalStudentTranscriptNonCourseEntity;
+import org.jasig.ssp.model.external.ExternalSubstitutableCourse;
+import org.jasig.ssp.model.external.Term;
+import org.jasig.ssp.service.MapStatusReportService;
+import org.jasig.ssp.service.MessageService;
+import org.jasig.ssp.service.PlanService;
+import org.jasig.ssp.service.external.ExternalStudentTranscriptCourseService;
+import org.jasig.ssp.service.external.ExternalStudentTranscriptNonCourseEntityService;
+import org.jasig.ssp.service.external.TermService;
+import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.service.reference.MessageTemplateService;
+import org.jasig.ssp.transferobject.reports.MapStatusReportPerson;
+import org.jasig.ssp.util.transaction.WithTransactionImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests the run management in {@link MapStatusReportCalcTaskImpl}. Plan evaluation itself is mocked out.
+ */
+public class MapStatusReportCalcTaskImplTest {
+
+	@Mock
+	private PlanService planService;
+
+	@Mock
+	private TermService termService;
+
+	@Mock
+	private ConfigService configService;
+
+	@Mock
+	private MapStatusReportService mapStatusReportService;
+
+	@Mock
+	private ExternalStudentTranscriptCourseService externalStudentTranscriptCourseService;
+
+	@Mock
+	private ExternalStudentTranscriptNonCourseEntityService externalStudentTranscriptNonCourseEntityService;
+
+	@Mock
+	private MessageService messageService;
+
+	@Mock
+	private MessageTemplateService messageTemplateService;
+
+	@InjectMocks
+	private MapStatusReportCalcTaskImpl task;
+
+	private List<MapStatusReportPerson> plans;
+
+	// fingerprints of the reports saved so far, as the report table would hold them
+	private final Map<UUID, String> savedFingerprints = Maps.newHashMap();
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		ReflectionTestUtils.setField(task, "withTransaction", new WithTransactionImpl());
+		when(configService.getByNameEmpty(anyString())).thenReturn("");
+		when(configService.getByNameEmpty("calculate_map_plan_status")).thenReturn("true");
+
+		plans = Lists.newArrayList(plan("s1"), plan("s2"), plan("s3"));
+		when(planService.getAllActivePlanIds()).thenReturn(plans);
+		when(mapStatusReportService.evaluatePlan(anySetOf(String.class), anySetOf(String.class), any(Term.class),
+				anyListOf(Term.class), any(MapStatusReportPerson.class),
+				anyCollectionOf(ExternalSubstitutableCourse.class),
+				anyCollectionOf(ExternalStudentTranscriptNonCourseEntity.class),
+				anyListOf(ExternalStudentTranscriptCourse.class), anyBoolean(), anyBoolean()))
+				.thenAnswer(new Answer<MapStatusReport>() {
+					@Override
+					public MapStatusReport answer(InvocationOnMock invocation) throws Throwable {
+						return reportFor((MapStatusReportPerson) invocation.getArguments()[4]);
+					}
+				});
+		when(mapStatusReportService.replaceReportsForStudent(any(MapStatusReport.class)))
+				.thenAnswer(new Answer<MapStatusReport>() {
+					@Override
+					public MapStatusReport answer(InvocationOnMock invocation) throws Throwable {
+						final MapStatusReport report = (MapStatusReport) invocation.getArguments()[0];
+						if ( report != null ) {
+							savedFingerprints.put(report.getPlan().getId(), report.getInputFingerprint());
+						}
+						return report;
+					}
+				});
+		when(mapStatusReportService.getInputFingerprintsByPlanId()).thenAnswer(new Answer<Map<UUID, String>>() {
+			@Override
+			public Map<UUID, String> answer(InvocationOnMock invocation) throws Throwable {
+				return Maps.newHashMap(savedFingerprints);
+			}
+		});
+	}
+
+	@Test
+	public void resumesInterruptedRunWithRemainingPlans() throws Exception {
+		when(mapStatusReportService.evaluatePlan(anySetOf(String.class), anySetOf(String.class), any(Term.class),
+				anyListOf(Term.class), eq(plans.get(1)), anyCollectionOf(ExternalSubstitutableCourse.class),
+				anyCollectionOf(ExternalStudentTranscriptNonCourseEntity.class),
+				anyListOf(ExternalStudentTranscriptCourse.class), anyBoolean(), anyBoolean()))
+				.thenThrow(new IllegalStateException("Evaluation failed"))
+				.thenReturn(reportFor(plans.get(1)));
+
+		task.exec(null);
+
+		verifyEvaluated(plans.get(0), 1);
+		verifyEvaluated(plans.get(1), 1);
+		verifyEvaluated(plans.get(2), 0);
+		verify(mapStatusReportService, never()).deleteReportsForInactivePlans();
+
+		task.exec(null);
+
+		verify(planService, times(1)).getAllActivePlanIds();
+		verifyEvaluated(plans.get(0), 1);
+		verifyEvaluated(plans.get(1), 2);
+		verifyEvaluated(plans.get(2), 1);
+		verify(mapStatusReportService).deleteReportsForInactivePlans();
+	}
+
+	@Test
+	public void startsNewRunOnceThePreviousOneCompleted() throws Exception {
+		task.exec(null);
+		task.exec(null);
+
+		verify(planService, times(2)).getAllActivePlanIds();
+		verify(mapStatusReportService, times(2)).deleteReportsForInactivePlans();
+	}
+
+	@Test
+	public void keepsPreviousReportWhenSavingTheNewOneFails() throws Exception {
+		when(mapStatusReportService.replaceReportsForStudent(argThat(forPlan(plans.get(1)))))
+				.thenThrow(new IllegalStateException("Save failed"));
+
+		task.exec(null);
+
+		// the failure didn't stop the run, and only reports of inactive plans were deleted after it
+		final InOrder inOrder = inOrder(mapStatusReportService);
+		for ( MapStatusReportPerson plan : plans ) {
+			inOrder.verify(mapStatusReportService).replaceReportsForStudent(argThat(forPlan(plan)));
+		}
+		inOrder.verify(mapStatusReportService).deleteReportsForInactivePlans();
+
+		// and the run is complete, so nothing is carried over to the next execution
+		task.exec(null);
+		verify(planService, times(2)).getAllActivePlanIds();
+	}
+
+	@Test
+	public void skipsPlansWhoseInputsAreUnchanged() throws Exception {
+		task.exec(null);
+		task.exec(null);
+
+		// the first run after startup is a full run, the second only looks at fingerprints
+		verify(mapStatusReportService, times(1)).getInputFingerprintsByPlanId();
+		for ( MapStatusReportPerson plan : plans ) {
+			assertNotNull(savedFingerprints.get(plan.getPlanId()));
+			verifyEvaluated(plan, 1);
+		}
+		verify(mapStatusReportService, times(3)).replaceReportsForStudent(any(MapStatusReport.class));
+		verify(mapStatusReportService, times(2)).deleteReportsForInactivePlans();
+	}
+
+	@Test
+	public void recalculatesPlansWhoseInputsChanged() throws Exception {
+		task.exec(null);
+
+		// s2 got a new transcript row, s3's plan was edited
+		final ExternalStudentTranscriptCourse course = new ExternalStudentTranscriptCourse();
+		course.setSchoolId("s2");
+		course.setFormattedCourse("ENG101");
+		course.setTermCode("FA12");
+		course.setGrade("A");
+		when(externalStudentTranscriptCourseService.getTranscriptsBySchoolId("s2"))
+				.thenReturn(Lists.newArrayList(course));
+		when(planService.getActivePlanRevisions())
+				.thenReturn(ImmutableMap.of(plans.get(2).getPlanId(), "edited"));
+
+		task.exec(null);
+
+		verifyEvaluated(plans.get(0), 1);
+		verifyEvaluated(plans.get(1), 2);
+		verifyEvaluated(plans.get(2), 2);
+	}
+
+	@Test
+	public void recalculatesEveryPlanWhenSharedInputsChange() throws Exception {
+		task.exec(null);
+
+		when(mapStatusReportService.getPassingGrades()).thenReturn(Sets.newHashSet("A", "B", "C"));
+
+		task.exec(null);
+
+		for ( MapStatusReportPerson plan : plans ) {
+			verifyEvaluated(plan, 2);
+		}
+	}
+
+	@Test
+	public void recalculatesEveryPlanWhenFullRecalculationIsAlwaysForced() throws Exception {
+		when(configService.getByNameNullOrDefaultValue("map_plan_status_full_recalculation_days")).thenReturn("0");
+
+		task.exec(null);
+		task.exec(null);
+
+		verify(mapStatusReportService, never()).getInputFingerprintsByPlanId();
+		for ( MapStatusReportPerson plan : plans ) {
+			verifyEvaluated(plan, 2);
+		}
+	}
+
+	@Test
+	public void recalculatesEveryPlanOnceTheFullRecalculationIntervalHasPassed() throws Exception {
+		when(configService.getByNameNullOrDefaultValue("map_plan_status_full_recalculation_days")).thenReturn("7");
+
+		task.exec(null);
+		ReflectionTestUtils.setField(task, "lastFullRecalculation",
+				new Date(System.currentTimeMillis() - 8L * 24L * 60L * 60L * 1000L));
+		task.exec(null);
+
+		verify(mapStatusReportService, never()).getInputFingerprintsByPlanId();
+		for ( MapStatusReportPerson plan : plans ) {
+			verifyEvaluated(plan, 2);
+		}
+
+		// and the interval starts over
+		task.exec(null);
+		verify(mapStatusReportService, times(1)).getInputFingerprintsByPlanId();
+		for ( MapStatusReportPerson plan : plans ) {
+			verifyEvaluated(plan, 2);
+		}
+	}
+
+	private void verifyEvaluated(MapStatusReportPerson plan, int times) {
+		verify(mapStatusReportService, times(times)).evaluatePlan(anySetOf(String.class), anySetOf(String.class),
+				any(Term.class), anyListOf(Term.class), eq(plan), anyCollectionOf(ExternalSubstitutableCourse.class),
+				anyCollectionOf(ExternalStudentTranscriptNonCourseEntity.class),
+				anyListOf(ExternalStudentTranscriptCourse.class), anyBoolean(), anyBoolean());
+	}
+
+	private MapStatusReport reportFor(MapStatusReportPerson plan) {
+		final Plan reportPlan = new Plan();
+		reportPlan.setId(plan.getPlanId());
+		final MapStatusReport report = new MapStatusReport();
+		report.setPlan(reportPlan);
+		return report;
+	}
+
+	private ArgumentMatcher<MapStatusReport> forPlan(final MapStatusReportPerson plan) {
+		return new ArgumentMatcher<MapStatusReport>() {
+			@Override
+			public boolean matches(Object argument) {
+				return argument instanceof MapStatusReport
+						&& plan.getPlanId().equals(((MapStatusReport) argument).getPlan().getId());
+			}
+		};
+	}
+
+	private MapStatusReportPerson plan(String schoolId) {
+		return new MapStatusReportPerson(UUID.randomUUID(), UUID.randomUUID(), schoolId, "PROG", "2012",
+				"First " + schoolId, "Last " + schoolId, null, null);
+	}
+}
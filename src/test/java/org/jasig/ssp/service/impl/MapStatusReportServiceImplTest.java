@@ -0,0 +1,255 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jasig.ssp.model.MapStatusReport;
+import org.jasig.ssp.model.MapStatusReportCourseDetails;
+import org.jasig.ssp.model.MapStatusReportOverrideDetails;
+import org.jasig.ssp.model.MapStatusReportSubstitutionDetails;
+import org.jasig.ssp.model.external.ExternalStudentTranscriptCourse;
+import org.jasig.ssp.model.external.ExternalStudentTranscriptNonCourseEntity;
+import org.jasig.ssp.model.external.ExternalSubstitutableCourse;
+import org.jasig.ssp.model.external.Term;
+import org.jasig.ssp.service.PlanService;
+import org.jasig.ssp.service.external.TermService;
+import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.transferobject.reports.MapPlanStatusReportCourse;
+import org.jasig.ssp.transferobject.reports.MapStatusReportPerson;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Checks that plan courses are matched against the transcript, non-course
+ * overrides and substitutable courses exactly as a scan of each list did:
+ * course codes compared trimmed and case insensitively, term codes compared
+ * exactly for term bound matches, one substitution hop, substitutions in
+ * their original order, and term restricted substitutions applying only in
+ * their term.
+ */
+public class MapStatusReportServiceImplTest {
+
+	private static final Set<String> PASSING_GRADES = Sets.newHashSet("A", "B", "C");
+
+	@Mock
+	private PlanService planService;
+
+	@Mock
+	private TermService termService;
+
+	@Mock
+	private ConfigService configService;
+
+	@InjectMocks
+	private MapStatusReportServiceImpl service;
+
+	private final Term fall = term("FA12", 2012, Calendar.AUGUST, Calendar.DECEMBER);
+
+	private final Term spring = term("SP13", 2013, Calendar.JANUARY, Calendar.MAY);
+
+	private final MapStatusReportPerson plan = new MapStatusReportPerson(UUID.randomUUID(), UUID.randomUUID(),
+			"student", "PROG", "2012", "First", "Last", null, null);
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+	}
+
+	@Test
+	public void matchesCourseCodesIgnoringCaseAndWhitespace() {
+		planCourses(planCourse("FA12", "ENG101"), planCourse("SP13", "MAT101"), planCourse("SP13", "BIO101"),
+				planCourse("FA12", "PSY101"));
+		final List<ExternalStudentTranscriptCourse> transcript = Lists.newArrayList(
+				transcriptCourse("FA12", " eng101 ", "A"),
+				transcriptCourse("FA12", "Mat101", "B"),
+				// term codes are compared exactly for term bound matches
+				transcriptCourse("fa12", "PSY101", "A"));
+		final List<ExternalStudentTranscriptNonCourseEntity> nonCourseEntities =
+				Lists.newArrayList(nonCourseEntity("sp13 ", " bio101 "));
+
+		final MapStatusReport report = evaluate(transcript, nonCourseEntities, noSubstitutions());
+
+		assertEquals(Lists.newArrayList(
+				"OVERRIDE  bio101  SP13",
+				"SUBSTITUTION MAT101 SP13 -> Mat101 FA12 TERM",
+				"SUBSTITUTION PSY101 FA12 -> PSY101 fa12 TERM"), describe(report));
+	}
+
+	@Test
+	public void takesTheFirstTranscriptRowMatchingTheConfiguredCriteria() {
+		planCourses(new MapPlanStatusReportCourse("FA12", "ENG101", "ENG", "literature", new BigDecimal("3"), null),
+				new MapPlanStatusReportCourse("FA12", "ENG102", "ENG", "Poetry", new BigDecimal("3"), null));
+		final ExternalStudentTranscriptCourse composition = transcriptCourse("FA12", "ENG101", "A");
+		composition.setTitle("Composition");
+		final ExternalStudentTranscriptCourse literature = transcriptCourse("FA12", "eng101", "A");
+		literature.setTitle("Literature ");
+		final ExternalStudentTranscriptCourse drama = transcriptCourse("FA12", "ENG102", "A");
+		drama.setTitle("Drama");
+
+		final MapStatusReport report = service.evaluatePlan(PASSING_GRADES, Sets.newHashSet("COURSE_TITLE"), spring,
+				Lists.newArrayList(fall, spring), plan, noSubstitutions(),
+				Lists.<ExternalStudentTranscriptNonCourseEntity>newArrayList(),
+				Lists.newArrayList(composition, literature, drama), true, true);
+
+		assertEquals(Lists.newArrayList("ANOMALY ENG102 FA12 COURSE_NOT_TAKEN"), describe(report));
+	}
+
+	@Test
+	public void appliesSubstitutionsOneHopInOrderAndOnlyInTheirTerm() {
+		planCourses(planCourse("FA12", "HIS101"), planCourse("SP13", "HIS101"), planCourse("FA12", " Chm101 "),
+				planCourse("FA12", "CHM102"), planCourse("FA12", "BIO110"), planCourse("SP13", "ART101"));
+		final List<ExternalStudentTranscriptCourse> transcript = Lists.newArrayList(
+				transcriptCourse("FA12", "HIS201", "A"),
+				transcriptCourse("FA12", "CHM103", "A"),
+				transcriptCourse("FA12", "BIO112", "A"),
+				transcriptCourse("FA12", "ART201", "A"));
+		final List<ExternalSubstitutableCourse> substitutions = Lists.newArrayList(
+				substitution("FA12", "HIS101", "HIS201"),
+				substitution(null, "chm101", "CHM102"),
+				substitution(null, "CHM102", "CHM103"),
+				substitution(null, "BIO110", "BIO111"),
+				substitution(null, "BIO110", "BIO112"),
+				// the student took the target, but not in the substitution's term
+				substitution("SP13", "ART101", "ART201"));
+
+		final MapStatusReport report = evaluate(transcript, null, substitutions);
+
+		assertEquals(Lists.newArrayList(
+				"ANOMALY  Chm101  FA12 COURSE_NOT_TAKEN",
+				"ANOMALY ART101 SP13 COURSE_NOT_TAKEN",
+				"ANOMALY HIS101 SP13 COURSE_NOT_TAKEN",
+				"SUBSTITUTION BIO110 FA12 -> BIO112 FA12 SUBSTITUTABLE_COURSE",
+				"SUBSTITUTION CHM102 FA12 -> CHM103 FA12 SUBSTITUTABLE_COURSE",
+				"SUBSTITUTION HIS101 FA12 -> HIS201 FA12 SUBSTITUTABLE_COURSE"), describe(report));
+	}
+
+	@Test
+	public void usesTheSubstitutionsPassedWithEachEvaluation() {
+		planCourses(planCourse("FA12", "BIO110"));
+		final List<ExternalStudentTranscriptCourse> transcript =
+				Lists.newArrayList(transcriptCourse("FA12", "BIO112", "A"));
+
+		assertEquals(Lists.newArrayList("SUBSTITUTION BIO110 FA12 -> BIO112 FA12 SUBSTITUTABLE_COURSE"),
+				describe(evaluate(transcript, null, Lists.newArrayList(substitution(null, "BIO110", "BIO112")))));
+		assertEquals(Lists.newArrayList("ANOMALY BIO110 FA12 COURSE_NOT_TAKEN"),
+				describe(evaluate(transcript, null, noSubstitutions())));
+	}
+
+	private MapStatusReport evaluate(List<ExternalStudentTranscriptCourse> transcript,
+			List<ExternalStudentTranscriptNonCourseEntity> nonCourseEntities,
+			Collection<ExternalSubstitutableCourse> substitutions) {
+		return service.evaluatePlan(PASSING_GRADES, Sets.<String>newHashSet(), spring,
+				Lists.newArrayList(fall, spring), plan, substitutions, nonCourseEntities, transcript, true, true);
+	}
+
+	private void planCourses(MapPlanStatusReportCourse... planCourses) {
+		when(planService.getAllPlanCoursesForStatusReport(plan.getPlanId()))
+				.thenReturn(Lists.newArrayList(planCourses));
+	}
+
+	private static List<String> describe(MapStatusReport report) {
+		final List<String> described = Lists.newArrayList();
+		for ( MapStatusReportCourseDetails detail : report.getCourseDetails() ) {
+			described.add("ANOMALY " + detail.getFormattedCourse() + " " + detail.getTermCode() + " "
+					+ detail.getAnomalyCode());
+		}
+		for ( MapStatusReportSubstitutionDetails detail : report.getSubstitutionDetails() ) {
+			described.add("SUBSTITUTION " + detail.getFormattedCourse() + " " + detail.getTermCode() + " -> "
+					+ detail.getSubstitutedFormattedCourse() + " " + detail.getSubstitutedTermCode() + " "
+					+ detail.getSubstitutionCode());
+		}
+		for ( MapStatusReportOverrideDetails detail : report.getOverrideDetails() ) {
+			described.add("OVERRIDE " + detail.getTargetFormattedCourse() + " " + detail.getTermCode());
+		}
+		Collections.sort(described);
+		return described;
+	}
+
+	private static List<ExternalSubstitutableCourse> noSubstitutions() {
+		return Lists.newArrayList();
+	}
+
+	private static Term term(String code, int year, int startMonth, int endMonth) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, startMonth, 1);
+		final Date startDate = calendar.getTime();
+		calendar.set(year, endMonth, 28);
+		final Term term = new Term(code);
+		term.setName(code);
+		term.setStartDate(startDate);
+		term.setEndDate(calendar.getTime());
+		return term;
+	}
+
+	private static MapPlanStatusReportCourse planCourse(String termCode, String formattedCourse) {
+		return new MapPlanStatusReportCourse(termCode, formattedCourse, formattedCourse.trim(), formattedCourse.trim(),
+				new BigDecimal("3"), null);
+	}
+
+	private static ExternalStudentTranscriptCourse transcriptCourse(String termCode, String formattedCourse,
+			String grade) {
+		final ExternalStudentTranscriptCourse course = new ExternalStudentTranscriptCourse();
+		course.setSchoolId("student");
+		course.setTermCode(termCode);
+		course.setFormattedCourse(formattedCourse);
+		course.setCourseCode(formattedCourse.trim());
+		course.setTitle(formattedCourse.trim());
+		course.setCreditEarned(new BigDecimal("3"));
+		course.setGrade(grade);
+		return course;
+	}
+
+	private static ExternalStudentTranscriptNonCourseEntity nonCourseEntity(String termCode,
+			String targetFormattedCourse) {
+		final ExternalStudentTranscriptNonCourseEntity nonCourseEntity = new ExternalStudentTranscriptNonCourseEntity();
+		nonCourseEntity.setSchoolId("student");
+		nonCourseEntity.setTermCode(termCode);
+		nonCourseEntity.setTargetFormattedCourse(targetFormattedCourse);
+		nonCourseEntity.setNonCourseCode("TRANSFER");
+		return nonCourseEntity;
+	}
+
+	private static ExternalSubstitutableCourse substitution(String termCode, String source, String target) {
+		final ExternalSubstitutableCourse substitution = new ExternalSubstitutableCourse();
+		substitution.setTermCode(termCode);
+		substitution.setSourceFormattedCourse(source);
+		substitution.setSourceCourseCode(source.trim());
+		substitution.setTargetFormattedCourse(target);
+		substitution.setTargetCourseCode(target);
+		return substitution;
+	}
+}
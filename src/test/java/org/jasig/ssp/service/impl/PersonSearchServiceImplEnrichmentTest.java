@@ -0,0 +1,231 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jasig.ssp.dao.PersonSearchDao;
+import org.jasig.ssp.model.ObjectStatus;
+import org.jasig.ssp.model.PersonSearchRequest;
+import org.jasig.ssp.model.PersonSearchResult2;
+import org.jasig.ssp.service.AppointmentService;
+import org.jasig.ssp.service.EarlyAlertService;
+import org.jasig.ssp.util.sort.PagingWrapper;
+import org.jasig.ssp.util.sort.SortingAndPaging;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks that person search lookups go to the enrichment pool when it has a free thread and fall back to the
+ * request thread, with the same results, when it doesn't.
+ */
+public class PersonSearchServiceImplEnrichmentTest {
+
+	private static final String POOL_THREAD_PREFIX = "test-search-enrichment-";
+
+	@Mock
+	private PersonSearchDao dao;
+
+	@Mock
+	private AppointmentService appointmentService;
+
+	@Mock
+	private EarlyAlertService earlyAlertService;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@InjectMocks
+	private PersonSearchServiceImpl service;
+
+	private ThreadPoolTaskExecutor executor;
+
+	private final UUID personId = UUID.randomUUID();
+
+	private final Date appointment = new Date();
+
+	private final List<String> lookupThreads = Lists.newArrayList();
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+
+		when(dao.search(any(PersonSearchRequest.class))).thenAnswer(new Answer<List<PersonSearchResult2>>() {
+			@Override
+			public List<PersonSearchResult2> answer(InvocationOnMock invocation) throws Throwable {
+				final PersonSearchResult2 record = new PersonSearchResult2();
+				record.setId(personId);
+				return Lists.newArrayList(record);
+			}
+		});
+		when(appointmentService.getCurrentAppointmenDateForPeopleIds(anyListOf(UUID.class)))
+				.thenAnswer(new Answer<Map<UUID, Date>>() {
+			@Override
+			public Map<UUID, Date> answer(InvocationOnMock invocation) throws Throwable {
+				recordLookupThread();
+				final Map<UUID, Date> appts = Maps.newHashMap();
+				appts.put(personId, appointment);
+				return appts;
+			}
+		});
+		when(earlyAlertService.getCountOfActiveAlertsForPeopleIds(anyListOf(UUID.class)))
+				.thenAnswer(new Answer<Map<UUID, Number>>() {
+			@Override
+			public Map<UUID, Number> answer(InvocationOnMock invocation) throws Throwable {
+				recordLookupThread();
+				final Map<UUID, Number> counts = Maps.newHashMap();
+				counts.put(personId, 3);
+				return counts;
+			}
+		});
+		when(earlyAlertService.getResponsesDueCountEarlyAlerts(anyListOf(UUID.class)))
+				.thenReturn(Maps.<UUID, Number>newHashMap());
+	}
+
+	@After
+	public void tearDown() {
+		if ( executor != null ) {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void lookupsRunOnThePoolWhenItHasFreeThreads() {
+		useExecutor(2);
+
+		assertEnriched(service.search2(newForm()));
+
+		assertEquals(2, lookupThreads.size());
+		for ( final String thread : lookupThreads ) {
+			assertTrue("Lookup ran on " + thread, thread.startsWith(POOL_THREAD_PREFIX));
+		}
+	}
+
+	@Test
+	public void lookupsRunOnTheRequestThreadWhenThePoolIsBusy() throws Exception {
+		useExecutor(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<?> blocker = occupyPoolThread(started, release);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		try {
+			assertEnriched(service.search2(newForm()));
+		} finally {
+			release.countDown();
+		}
+		blocker.get(5, TimeUnit.SECONDS);
+
+		assertEquals(2, lookupThreads.size());
+		for ( final String thread : lookupThreads ) {
+			assertEquals(Thread.currentThread().getName(), thread);
+		}
+	}
+
+	@Test
+	public void requestThreadLookupFailuresPropagate() throws Exception {
+		useExecutor(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<?> blocker = occupyPoolThread(started, release);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		when(appointmentService.getCurrentAppointmenDateForPeopleIds(anyListOf(UUID.class)))
+				.thenThrow(new IllegalStateException("lookup failed"));
+
+		try {
+			service.search2(newForm());
+			fail("Expected the lookup failure to reach the caller");
+		} catch ( IllegalStateException e ) {
+			assertEquals("lookup failed", e.getMessage());
+		} finally {
+			release.countDown();
+		}
+		blocker.get(5, TimeUnit.SECONDS);
+	}
+
+	private void useExecutor(final int poolSize) {
+		executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(0);
+		executor.setThreadNamePrefix(POOL_THREAD_PREFIX);
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		executor.initialize();
+		ReflectionTestUtils.setField(service, "searchEnrichmentExecutor", executor);
+	}
+
+	private Future<?> occupyPoolThread(final CountDownLatch started, final CountDownLatch release) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				started.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return null;
+			}
+		});
+	}
+
+	private synchronized void recordLookupThread() {
+		lookupThreads.add(Thread.currentThread().getName());
+	}
+
+	private PersonSearchRequest newForm() {
+		final PersonSearchRequest form = new PersonSearchRequest();
+		form.setSortAndPage(new SortingAndPaging(ObjectStatus.ACTIVE));
+		return form;
+	}
+
+	private void assertEnriched(final PagingWrapper<PersonSearchResult2> results) {
+		final Collection<PersonSearchResult2> rows = results.getRows();
+		assertEquals(1, rows.size());
+		final PersonSearchResult2 record = rows.iterator().next();
+		assertEquals(appointment, record.getCurrentAppointmentStartTime());
+		assertEquals(3, record.getActiveAlerts());
+		assertFalse(lookupThreads.isEmpty());
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.jasig.ssp.dao.DirectoryPersonSearchDao;
+import org.jasig.ssp.model.PersonSearchRequest;
+import org.jasig.ssp.model.PersonSearchResultFull;
+import org.jasig.ssp.model.Plan;
+import org.jasig.ssp.service.PlanService;
+import org.jasig.ssp.util.csvwriter.AbstractCsvWriterHelper;
+import org.jasig.ssp.util.csvwriter.CustomizableCaseloadCsvWriterHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.orm.hibernate4.SessionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks that the customizable caseload export runs each chunk's enrichment lookups in a short session of their
+ * own, so nothing they load stays in the request's session once the chunk is done.
+ */
+public class PersonSearchServiceImplExportTest {
+
+	private static final int MAP_DATA_OPTION = 14;
+
+	@Mock
+	private DirectoryPersonSearchDao directoryPersonDao;
+
+	@Mock
+	private PlanService planService;
+
+	@Mock
+	private SessionFactory sessionFactory;
+
+	@InjectMocks
+	private PersonSearchServiceImpl service;
+
+	private Session requestSession;
+
+	private SessionHolder requestSessionHolder;
+
+	private final List<Session> openedSessions = Lists.newArrayList();
+
+	private final List<Session> lookupSessions = Lists.newArrayList();
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		requestSession = mock(Session.class);
+		requestSessionHolder = new SessionHolder(requestSession);
+		TransactionSynchronizationManager.bindResource(sessionFactory, requestSessionHolder);
+
+		when(sessionFactory.openSession()).thenAnswer(new Answer<Session>() {
+			@Override
+			public Session answer(InvocationOnMock invocation) throws Throwable {
+				final Session session = mock(Session.class);
+				openedSessions.add(session);
+				return session;
+			}
+		});
+		when(planService.getCurrentPlansForStudents(anyListOf(UUID.class))).thenAnswer(new Answer<List<Plan>>() {
+			@Override
+			public List<Plan> answer(InvocationOnMock invocation) throws Throwable {
+				lookupSessions.add(
+						((SessionHolder) TransactionSynchronizationManager.getResource(sessionFactory)).getSession());
+				return Lists.newArrayList();
+			}
+		});
+		// three chunks of search results
+		doAnswer(new Answer<Void>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				final AbstractCsvWriterHelper.ChunkPreparer<PersonSearchResultFull> preparer =
+						(AbstractCsvWriterHelper.ChunkPreparer<PersonSearchResultFull>) invocation.getArguments()[3];
+				for ( int chunk = 0 ; chunk < 3 ; chunk++ ) {
+					preparer.prepare(Lists.newArrayList(result("s" + chunk + "a"), result("s" + chunk + "b")));
+				}
+				return null;
+			}
+		}).when(directoryPersonDao).exportableCustomizableSearch(any(CustomizableCaseloadCsvWriterHelper.class),
+				any(PersonSearchRequest.class), anyInt(),
+				any(AbstractCsvWriterHelper.ChunkPreparer.class));
+	}
+
+	@After
+	public void tearDown() {
+		TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
+	}
+
+	@Test
+	public void eachChunkIsEnrichedInItsOwnSession() throws Exception {
+		service.exportDirectoryPersonSearchCustomizable(new PrintWriter(new StringWriter()),
+				new PersonSearchRequest(), options(MAP_DATA_OPTION));
+
+		assertEquals("Each chunk should have opened one session", 3, openedSessions.size());
+		assertEquals("Lookups should have run in the chunk sessions", openedSessions, lookupSessions);
+		for ( Session session : openedSessions ) {
+			assertFalse("Lookups should not have used the request's session", session == requestSession);
+			verify(session).close();
+		}
+		assertSame("Request's session should be bound again afterwards", requestSessionHolder,
+				TransactionSynchronizationManager.getResource(sessionFactory));
+		verify(requestSession, never()).evict(any());
+	}
+
+	private Map<Integer, Boolean> options(int enabled) {
+		final Map<Integer, Boolean> options = Maps.newHashMap();
+		for ( int i = 0 ; i <= 20 ; i++ ) {
+			options.put(i, i == enabled);
+		}
+		return options;
+	}
+
+	private PersonSearchResultFull result(String schoolId) {
+		final PersonSearchResultFull result = new PersonSearchResultFull();
+		result.setId(UUID.randomUUID());
+		result.setSchoolId(schoolId);
+		return result;
+	}
+}
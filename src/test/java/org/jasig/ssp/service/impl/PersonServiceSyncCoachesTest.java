@@ -0,0 +1,220 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.jasig.ssp.dao.PersonDao;
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.external.ExternalPerson;
+import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.service.PersonAttributesService;
+import org.jasig.ssp.service.external.ExternalPersonService;
+import org.jasig.ssp.util.transaction.WithTransactionImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+
+/**
+ * {@link PersonServiceImpl#syncCoaches()} test suite
+ */
+public class PersonServiceSyncCoachesTest {
+
+	@Mock
+	private PersonDao dao;
+
+	@Mock
+	private PersonAttributesService personAttributesService;
+
+	@Mock
+	private ExternalPersonService externalPersonService;
+
+	@InjectMocks
+	private PersonServiceImpl service;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		ReflectionTestUtils.setField(service, "withTransaction", new WithTransactionImpl());
+		ReflectionTestUtils.setField(service, "perCoachSyncTransactions", false);
+		when(dao.getByUsernames(anyCollectionOf(String.class))).thenReturn(Collections.<Person>emptyList());
+		when(externalPersonService.getByUsernames(anyCollectionOf(String.class)))
+				.thenReturn(Collections.<ExternalPerson>emptyList());
+		// copy the username over so the synced coaches can be told apart
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				final Person person = (Person) invocation.getArguments()[0];
+				final ExternalPerson externalPerson = (ExternalPerson) invocation.getArguments()[1];
+				person.setUsername(externalPerson.getUsername());
+				return null;
+			}
+		}).when(externalPersonService).updatePersonFromExternalPerson(any(Person.class),
+				any(ExternalPerson.class), eq(true), eq(false));
+	}
+
+	@Test
+	public void matchesLocalAndExternalCoachesCaseInsensitively() throws ObjectNotFoundException {
+		directoryCoaches("Alice", "BOB");
+		when(dao.getByUsernames(anyCollectionOf(String.class))).thenReturn(Lists.newArrayList(person("alice")));
+		when(externalPersonService.getByUsernames(anyCollectionOf(String.class)))
+				.thenReturn(Lists.newArrayList(externalPerson("bob")));
+
+		final Collection<Person> coaches = service.syncCoaches().getRows();
+
+		assertEquals(Lists.newArrayList("alice", "bob"), usernamesOf(coaches));
+		// alice is already local, bob was found by the batched lookup
+		verify(externalPersonService, never()).updatePersonFromExternalPerson(any(Person.class),
+				argThat(forUsername("alice")), eq(true), eq(false));
+		verify(externalPersonService, never()).getByUsername(any(String.class));
+	}
+
+	@Test
+	public void fallsBackToSingleExternalLookupForBatchMisses() throws ObjectNotFoundException {
+		directoryCoaches("carol", "dave");
+		when(externalPersonService.getByUsername("carol")).thenReturn(externalPerson("Carol"));
+		when(externalPersonService.getByUsername("dave")).thenThrow(
+				new ObjectNotFoundException("dave", ExternalPerson.class.getName()));
+
+		final Collection<Person> coaches = service.syncCoaches().getRows();
+
+		assertEquals(Lists.newArrayList("Carol"), usernamesOf(coaches));
+		verify(externalPersonService).getByUsername("carol");
+		verify(externalPersonService).getByUsername("dave");
+	}
+
+	@Test
+	public void skipsCoachesViolatingUniqueConstraints() throws ObjectNotFoundException {
+		directoryCoaches("erin", "frank", "grace");
+		when(externalPersonService.getByUsernames(anyCollectionOf(String.class))).thenReturn(
+				Lists.newArrayList(externalPerson("erin"), externalPerson("frank"), externalPerson("grace")));
+		failSync("erin", new ConstraintViolationException("duplicate", new SQLException(), "uq_person_school_id"));
+		failSync("frank", new ConstraintViolationException("duplicate", new SQLException(),
+				"unique_person_username"));
+
+		final Collection<Person> coaches = service.syncCoaches().getRows();
+
+		assertEquals(Lists.newArrayList("grace"), usernamesOf(coaches));
+	}
+
+	@Test
+	public void propagatesOtherConstraintViolations() throws ObjectNotFoundException {
+		directoryCoaches("erin");
+		when(externalPersonService.getByUsernames(anyCollectionOf(String.class)))
+				.thenReturn(Lists.newArrayList(externalPerson("erin")));
+		final ConstraintViolationException violation =
+				new ConstraintViolationException("bad reference", new SQLException(), "fk_person_campus");
+		failSync("erin", violation);
+
+		try {
+			service.syncCoaches();
+			fail("Expected the constraint violation to propagate");
+		} catch ( ConstraintViolationException e ) {
+			assertSame(violation, e);
+		}
+	}
+
+	@Test
+	public void workersRethrowTheFirstFailureAndStop() throws ObjectNotFoundException {
+		ReflectionTestUtils.setField(service, "perCoachSyncTransactions", true);
+		// a single worker works through the coaches in order
+		ReflectionTestUtils.setField(service, "coachSyncWorkerThreads", 1);
+		directoryCoaches("heidi", "ivan", "judy");
+		when(externalPersonService.getByUsernames(anyCollectionOf(String.class))).thenReturn(
+				Lists.newArrayList(externalPerson("heidi"), externalPerson("ivan"), externalPerson("judy")));
+		final IllegalStateException failure = new IllegalStateException("sync failed");
+		failSync("ivan", failure);
+
+		try {
+			service.syncCoaches();
+			fail("Expected the worker failure to propagate");
+		} catch ( IllegalStateException e ) {
+			assertSame(failure, e);
+		}
+		verify(externalPersonService, never()).updatePersonFromExternalPerson(any(Person.class),
+				argThat(forUsername("judy")), eq(true), eq(false));
+	}
+
+	private void directoryCoaches(final String... usernames) {
+		when(personAttributesService.getCoaches()).thenReturn(Lists.newArrayList(usernames));
+	}
+
+	private void failSync(final String username, final RuntimeException e) {
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				throw e;
+			}
+		}).when(externalPersonService).updatePersonFromExternalPerson(any(Person.class),
+				argThat(forUsername(username)), eq(true), eq(false));
+	}
+
+	private static Person person(final String username) {
+		final Person person = new Person();
+		person.setUsername(username);
+		return person;
+	}
+
+	private static ExternalPerson externalPerson(final String username) {
+		final ExternalPerson externalPerson = new ExternalPerson();
+		externalPerson.setUsername(username);
+		return externalPerson;
+	}
+
+	private static List<String> usernamesOf(final Collection<Person> people) {
+		final List<String> usernames = Lists.newArrayList();
+		for ( Person person : people ) {
+			usernames.add(person.getUsername());
+		}
+		return usernames;
+	}
+
+	private static ArgumentMatcher<ExternalPerson> forUsername(final String username) {
+		return new ArgumentMatcher<ExternalPerson>() {
+			@Override
+			public boolean matches(final Object argument) {
+				return argument != null && username.equals(((ExternalPerson) argument).getUsername());
+			}
+		};
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.internet.MimeMessage;
+
+import org.jasig.ssp.config.InMemoryJavaMailSender;
+import org.junit.Test;
+import org.springframework.mail.MailSendException;
+
+import com.google.common.collect.Lists;
+
+/**
+ * {@link QueuedMailDispatcher} tests. Uses {@link InMemoryJavaMailSender} to
+ * count the SMTP sessions opened without a real mail server, and a fake clock
+ * so the rate limit is checked without waiting on it.
+ */
+public class QueuedMailDispatcherTest {
+
+	private List<MimeMessage> messages(InMemoryJavaMailSender sender, int count) {
+		final List<MimeMessage> messages = Lists.newArrayList();
+		for ( int i = 0; i < count; i++ ) {
+			messages.add(sender.createMimeMessage());
+		}
+		return messages;
+	}
+
+	@Test
+	public void testDispatchReusesOneSessionPerTransport() throws Exception {
+		final InMemoryJavaMailSender sender = new InMemoryJavaMailSender();
+		final QueuedMailDispatcher dispatcher = new QueuedMailDispatcher(sender, 4, 0);
+		try {
+			final Map<MimeMessage, Exception> failures =
+					dispatcher.dispatch(messages(sender, 100));
+			assertTrue("Unexpected failures", failures.isEmpty());
+			assertEquals("Not all messages sent", 100, sender.getSentMessages().size());
+			assertEquals("Should have opened exactly one session per transport",
+					4, sender.getSessionCount());
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testDispatchReportsOnlyFailedMessages() throws Exception {
+		final InMemoryJavaMailSender delegate = new InMemoryJavaMailSender();
+		final List<MimeMessage> messages = messages(delegate, 10);
+		final MimeMessage bad = messages.get(3);
+		final InMemoryJavaMailSender sender = new InMemoryJavaMailSender() {
+			@Override
+			public void send(MimeMessage[] mimeMessages) {
+				final Map<Object, Exception> failed = new HashMap<Object, Exception>();
+				for ( MimeMessage mimeMessage : mimeMessages ) {
+					if ( mimeMessage == bad ) {
+						failed.put(mimeMessage, new Exception("rejected"));
+					}
+				}
+				if ( !(failed.isEmpty()) ) {
+					throw new MailSendException(failed);
+				}
+			}
+		};
+		final QueuedMailDispatcher dispatcher = new QueuedMailDispatcher(sender, 2, 0);
+		try {
+			final Map<MimeMessage, Exception> failures = dispatcher.dispatch(messages);
+			assertEquals("Expected exactly one failure", 1, failures.size());
+			assertTrue("Wrong message reported as failed", failures.containsKey(bad));
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testDispatchHonorsRateLimit() throws Exception {
+		final InMemoryJavaMailSender sender = new InMemoryJavaMailSender();
+		final FakeClock clock = new FakeClock();
+		// 600/min == one every 100ms. Two chunks of 5 means the second chunk
+		// has to wait for the first chunk's 500ms allowance.
+		final QueuedMailDispatcher dispatcher = new QueuedMailDispatcher(sender, 2, 600, clock);
+		try {
+			dispatcher.dispatch(messages(sender, 10));
+			assertEquals("Second chunk should have waited out the first chunk's allowance",
+					Lists.newArrayList(TimeUnit.MILLISECONDS.toNanos(500)), clock.sleeps);
+
+			// the allowance carries over to the next page
+			dispatcher.dispatch(messages(sender, 10));
+			assertEquals("Both chunks of the next page should have waited",
+					Lists.newArrayList(TimeUnit.MILLISECONDS.toNanos(500), TimeUnit.MILLISECONDS.toNanos(500),
+							TimeUnit.MILLISECONDS.toNanos(500)), clock.sleeps);
+			assertEquals("Not all messages sent", 20, sender.getSentMessages().size());
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testDispatchWithoutRateLimitNeverWaits() throws Exception {
+		final InMemoryJavaMailSender sender = new InMemoryJavaMailSender();
+		final FakeClock clock = new FakeClock();
+		final QueuedMailDispatcher dispatcher = new QueuedMailDispatcher(sender, 2, 0, clock);
+		try {
+			dispatcher.dispatch(messages(sender, 10));
+			assertTrue("Unlimited dispatch should not wait", clock.sleeps.isEmpty());
+			assertEquals("Not all messages sent", 10, sender.getSentMessages().size());
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testPooledSessionsVersusSessionPerMessage() throws Exception {
+		final int count = 200;
+
+		final InMemoryJavaMailSender legacySender = new InMemoryJavaMailSender();
+		for ( MimeMessage mimeMessage : messages(legacySender, count) ) {
+			legacySender.send(mimeMessage);
+		}
+
+		final InMemoryJavaMailSender pooledSender = new InMemoryJavaMailSender();
+		final QueuedMailDispatcher dispatcher = new QueuedMailDispatcher(pooledSender, 4, 0);
+		try {
+			for ( List<MimeMessage> batch : Lists.partition(messages(pooledSender, count), 50) ) {
+				dispatcher.dispatch(batch);
+			}
+		} finally {
+			dispatcher.shutdown();
+		}
+
+		assertEquals("Not all legacy messages sent", count, legacySender.getSentMessages().size());
+		assertEquals("Legacy path should open a session per message", count, legacySender.getSessionCount());
+		assertEquals("Not all pooled messages sent", count, pooledSender.getSentMessages().size());
+		assertEquals("Pooled dispatch should open one session per transport per page",
+				4 * 4, pooledSender.getSessionCount());
+	}
+
+	/**
+	 * Clock which only moves when the dispatcher sleeps on it, recording each
+	 * sleep.
+	 */
+	private static class FakeClock implements QueuedMailDispatcher.Clock {
+
+		private final List<Long> sleeps = Lists.newArrayList();
+
+		private long now;
+
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+
+		@Override
+		public void sleepNanos(long nanos) {
+			sleeps.add(nanos);
+			now += nanos;
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+
+import org.jasig.ssp.model.ScheduledApplicationTaskStatus;
+import org.jasig.ssp.model.ScheduledTaskStatus;
+import org.jasig.ssp.service.PersonSearchService;
+import org.jasig.ssp.service.ScheduledApplicationTaskStatusService;
+import org.jasig.ssp.service.reference.ConfigService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+
+public class RefreshPersonDirectoryIncrementalImplTest {
+
+	private static final long OVERLAP_MILLIS = 2 * 60 * 1000;
+
+	@Mock
+	private PersonSearchService personSearchService;
+
+	@Mock
+	private ScheduledApplicationTaskStatusService taskStatusService;
+
+	@Mock
+	private ConfigService configService;
+
+	@InjectMocks
+	private RefreshPersonDirectoryIncrementalImpl task;
+
+	private final Date fullRefreshStart = new Date(1000000000000L);
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		status(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_TASK_NAME, ScheduledTaskStatus.COMPLETED,
+				fullRefreshStart);
+		when(configService.getByNameExceptionOrDefaultAsInt("task_directory_person_incremental_max_rows"))
+				.thenReturn(20000);
+		when(personSearchService.getDirectoryPersonSchoolIdsChangedSince(any(Date.class)))
+				.thenReturn(Lists.<String>newArrayList());
+	}
+
+	@Test
+	public void skipsWhileFullRefreshIsRunning() {
+		status(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_TASK_NAME, ScheduledTaskStatus.RUNNING,
+				fullRefreshStart);
+
+		assertTrue(task.refreshChangedRows());
+
+		verify(taskStatusService, never()).beginTask(any(String.class));
+		verify(personSearchService, never()).getDirectoryPersonSchoolIdsChangedSince(any(Date.class));
+	}
+
+	@Test
+	public void watermarkIsTheLaterOfTheLastFullAndIncrementalRefresh() {
+		final Date incrementalStart = new Date(fullRefreshStart.getTime() + 60 * 60 * 1000);
+		status(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME,
+				ScheduledTaskStatus.COMPLETED, incrementalStart);
+
+		task.refreshChangedRows();
+
+		assertEquals(incrementalStart.getTime() - OVERLAP_MILLIS, since().getTime());
+	}
+
+	@Test
+	public void failedIncrementalRefreshFallsBackToTheFullRefreshWatermark() {
+		status(ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME,
+				ScheduledTaskStatus.FAILED, new Date(fullRefreshStart.getTime() + 60 * 60 * 1000));
+
+		task.refreshChangedRows();
+
+		assertEquals(fullRefreshStart.getTime() - OVERLAP_MILLIS, since().getTime());
+	}
+
+	@Test
+	public void refreshesChangedRowsInBatches() {
+		final List<String> schoolIds = Lists.newArrayList();
+		for ( int i = 0; i < 1200; i++ ) {
+			schoolIds.add("s" + i);
+		}
+		when(personSearchService.getDirectoryPersonSchoolIdsChangedSince(any(Date.class))).thenReturn(schoolIds);
+
+		assertTrue(task.refreshChangedRows());
+
+		@SuppressWarnings("rawtypes")
+		final ArgumentCaptor<List> batches = ArgumentCaptor.forClass(List.class);
+		verify(personSearchService, times(3)).refreshDirectoryPerson(batches.capture());
+		assertEquals(500, batches.getAllValues().get(0).size());
+		assertEquals(500, batches.getAllValues().get(1).size());
+		assertEquals(200, batches.getAllValues().get(2).size());
+		verify(taskStatusService).completeTask(
+				ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME);
+	}
+
+	@Test
+	public void tooManyChangesFallBackToAFullRefresh() {
+		when(configService.getByNameExceptionOrDefaultAsInt("task_directory_person_incremental_max_rows"))
+				.thenReturn(2);
+		when(personSearchService.getDirectoryPersonSchoolIdsChangedSince(any(Date.class)))
+				.thenReturn(Lists.newArrayList("s1", "s2", "s3"));
+
+		assertFalse(task.refreshChangedRows());
+
+		verify(personSearchService, never()).refreshDirectoryPerson(anyListOf(String.class));
+	}
+
+	@Test
+	public void failureMarksTheTaskFailed() {
+		when(personSearchService.getDirectoryPersonSchoolIdsChangedSince(any(Date.class)))
+				.thenThrow(new IllegalStateException("query failed"));
+
+		try {
+			task.refreshChangedRows();
+		} catch ( IllegalStateException e ) {
+			// expected
+		}
+
+		verify(taskStatusService).failTask(
+				ScheduledTaskWrapperServiceImpl.REFRESH_DIRECTORY_PERSON_INCREMENTAL_TASK_NAME);
+		verify(taskStatusService, never()).completeTask(any(String.class));
+	}
+
+	private void status(final String taskName, final ScheduledTaskStatus taskStatus, final Date startDate) {
+		final ScheduledApplicationTaskStatus status = new ScheduledApplicationTaskStatus();
+		status.setTaskName(taskName);
+		status.setStatus(taskStatus);
+		status.setStartDate(startDate);
+		when(taskStatusService.getByName(taskName)).thenReturn(status);
+	}
+
+	private Date since() {
+		final ArgumentCaptor<Date> since = ArgumentCaptor.forClass(Date.class);
+		verify(personSearchService).getDirectoryPersonSchoolIdsChangedSince(since.capture());
+		return since.getValue();
+	}
+}
@@ -20,6 +20,7 @@ package org.jasig.ssp.service.impl;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -27,21 +28,26 @@ import static org.mockito.Mockito.verify;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.apache.commons.lang3.time.DateUtils;
 import org.jasig.ssp.config.EarlyAlertResponseReminderRecipientsConfig;
 import org.jasig.ssp.dao.EarlyAlertDao;
 import org.jasig.ssp.model.AuditPerson;
-import org.jasig.ssp.model.EarlyAlert;
 import org.jasig.ssp.model.Person;
 import org.jasig.ssp.model.SubjectAndBody;
 import org.jasig.ssp.model.reference.Campus;
 import org.jasig.ssp.service.MessageService;
 import org.jasig.ssp.service.PersonService;
 import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.service.reference.MessageTemplateRenderSession;
 import org.jasig.ssp.service.reference.MessageTemplateService;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueRecipientTO;
+import org.jasig.ssp.transferobject.EarlyAlertResponseDueTO;
 import org.junit.After;
 import org.junit.Before;
 import org.mockito.InjectMocks;
@@ -61,24 +67,33 @@ public abstract class SendAllEarlyAlertReminderNotificationsTestBase {
 	@Mock protected EarlyAlertResponseReminderRecipientsConfig config;
 	@Mock protected MessageService messageService;
 	@Mock protected MessageTemplateService messageTemplateService;
+	@Mock protected MessageTemplateRenderSession renderSession;
 	@Mock protected PersonService personService;
 	@Mock protected SubjectAndBody subjectAndBody;
 
 	protected Person coach;
 	protected Person earlyAlertCoordinator;
-	protected List<EarlyAlert> earlyAlerts;
+	protected List<EarlyAlertResponseDueRecipientTO> earlyAlerts;
+	protected List<EarlyAlertResponseDueTO> earlyAlertDigestLines;
+	protected Map<UUID, Set<UUID>> earlyAlertIdsByWatcher;
 
 	@InjectMocks protected EarlyAlertServiceImpl service;
 
 	@Before
 	public void setUp() throws Exception {
 		MockitoAnnotations.initMocks(this);
-		this.earlyAlerts = new ArrayList<EarlyAlert>();
+		this.earlyAlerts = new ArrayList<EarlyAlertResponseDueRecipientTO>();
+		this.earlyAlertDigestLines = new ArrayList<EarlyAlertResponseDueTO>();
+		this.earlyAlertIdsByWatcher = new HashMap<UUID, Set<UUID>>();
+		given(this.campus.getId()).willReturn(UUID.randomUUID());
 		this.setMaximumDaysBeforeEarlyAlertResponseConfig(2);
 		this.setTermToRepresentEarlyAlertConfig("EarlyAlert");
 		this.setUpEarlyAlertCreator();
+		given(this.messageTemplateService.openRenderSession()).willReturn(this.renderSession);
 		given(this.messageTemplateService.createEarlyAlertResponseRequiredToCoachMessage(org.mockito.Matchers.anyMap())).willReturn(this.subjectAndBody);
-		given(this.earlyAlertDao.getResponseDueEarlyAlerts(any(Date.class))).willReturn(this.earlyAlerts);
+		given(this.earlyAlertDao.getResponseDueEarlyAlertRecipients(any(Date.class))).willReturn(this.earlyAlerts);
+		given(this.earlyAlertDao.getResponseDueEarlyAlertIdsByWatcher(any(Date.class))).willReturn(this.earlyAlertIdsByWatcher);
+		given(this.earlyAlertDao.getResponseDueEarlyAlertDigestLines(anyCollectionOf(UUID.class))).willReturn(this.earlyAlertDigestLines);
 		this.additionalSetUp();
 	}
 
@@ -212,14 +227,21 @@ public abstract class SendAllEarlyAlertReminderNotificationsTestBase {
 
 	protected void addEarlyAlertForStudent(final Person person, final Campus campus) throws Exception {
 		final UUID id = UUID.randomUUID();
-		final EarlyAlert earlyAlert = mock(EarlyAlert.class);
-		given(earlyAlert.getId()).willReturn(id);
-		given(earlyAlert.getPerson()).willReturn(person);
-		given(earlyAlert.getCreatedBy()).willReturn(this.earlyAlertCreatorAuditPerson);
-		given(earlyAlert.getCreatedDate()).willReturn(DateUtils.addDays(new Date(), -3));
-		given(earlyAlert.getCampus()).willReturn(campus);
+		final EarlyAlertResponseDueRecipientTO earlyAlert = new EarlyAlertResponseDueRecipientTO();
+		earlyAlert.setEarlyAlertId(id);
+		earlyAlert.setCoachId(person.getCoach() == null ? null : person.getCoach().getId());
+		if (campus != null) {
+			earlyAlert.setCampusId(campus.getId());
+			earlyAlert.setEarlyAlertCoordinatorId(campus.getEarlyAlertCoordinatorId());
+		}
 		this.earlyAlerts.add(earlyAlert);
-		given(this.earlyAlertDao.get(id)).willReturn(earlyAlert);
+
+		final EarlyAlertResponseDueTO digestLine = new EarlyAlertResponseDueTO();
+		digestLine.setId(id);
+		digestLine.setStudentId(person.getId());
+		digestLine.setCreatorId(this.earlyAlertCreatorAuditPerson.getId());
+		digestLine.setCreatedDate(DateUtils.addDays(new Date(), -3));
+		this.earlyAlertDigestLines.add(digestLine);
 	}
 
 	protected void campusHasNoEacId(final Campus campus) {
@@ -236,10 +258,11 @@ public abstract class SendAllEarlyAlertReminderNotificationsTestBase {
 		given(this.personService.get(eacUuid)).willReturn(eac);
 	}
 
-	protected Person createMockPerson() {
+	protected Person createMockPerson() throws Exception {
 		final UUID id = UUID.randomUUID();
 		final Person person = mock(Person.class);
 		given(person.getId()).willReturn(id);
+		given(this.personService.get(id)).willReturn(person);
 		return person;
 	}
 
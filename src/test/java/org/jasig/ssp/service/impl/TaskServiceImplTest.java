@@ -0,0 +1,243 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jasig.ssp.dao.TaskDao;
+import org.jasig.ssp.factory.TaskTOFactory;
+import org.jasig.ssp.model.AuditPerson;
+import org.jasig.ssp.model.Message;
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.SubjectAndBody;
+import org.jasig.ssp.model.Task;
+import org.jasig.ssp.model.TaskMessageEnqueue;
+import org.jasig.ssp.model.reference.ConfidentialityLevel;
+import org.jasig.ssp.service.MessageService;
+import org.jasig.ssp.service.PersonService;
+import org.jasig.ssp.service.TaskMessageEnqueueService;
+import org.jasig.ssp.service.reference.ConfidentialityLevelService;
+import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.service.reference.MessageTemplateRenderSession;
+import org.jasig.ssp.service.reference.MessageTemplateService;
+import org.jasig.ssp.transferobject.messagetemplate.TaskMessageTemplateTO;
+import org.jasig.ssp.util.sort.SortingAndPaging;
+import org.jasig.ssp.util.transaction.WithTransactionImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests the paged reminder run in {@link TaskServiceImpl#sendAllTaskReminderNotifications()}. The task query is
+ * mocked out; {@code TaskDaoTest} covers it against the database.
+ */
+public class TaskServiceImplTest {
+
+	private static final UUID CREATOR_ID = UUID.randomUUID();
+
+	private static final int PAGE_SIZE = 100;
+
+	@Mock
+	private TaskDao dao;
+
+	@Mock
+	private TaskTOFactory factory;
+
+	@Mock
+	private MessageService messageService;
+
+	@Mock
+	private PersonService personService;
+
+	@Mock
+	private MessageTemplateService messageTemplateService;
+
+	@Mock
+	private TaskMessageEnqueueService taskMessageSentService;
+
+	@Mock
+	private ConfidentialityLevelService confidentialityLevelService;
+
+	@Mock
+	private ConfigService configService;
+
+	@InjectMocks
+	private TaskServiceImpl service;
+
+	// tasks the mocked query pages through, in id order
+	private final List<Task> tasks = Lists.newArrayList();
+
+	private final List<TaskMessageEnqueue> alreadyEnqueued = Lists.newArrayList();
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		ReflectionTestUtils.setField(service, "withTransaction", new WithTransactionImpl());
+		when(configService.getByNameNull("numberOfDaysPriorForTaskReminders")).thenReturn("1,14");
+		when(messageTemplateService.openRenderSession()).thenReturn(mock(MessageTemplateRenderSession.class));
+		when(messageTemplateService.createCustomActionPlanTaskMessage(any(TaskMessageTemplateTO.class)))
+				.thenReturn(new SubjectAndBody("subject", "body"));
+		when(messageService.createMessageNoSave(any(Person.class), anyString(), any(SubjectAndBody.class)))
+				.thenAnswer(new Answer<Message>() {
+					@Override
+					public Message answer(InvocationOnMock invocation) throws Throwable {
+						return new Message((SubjectAndBody) invocation.getArguments()[2]);
+					}
+				});
+		when(personService.peopleFromListOfIds(anyListOf(UUID.class), any(SortingAndPaging.class)))
+				.thenReturn(Lists.newArrayList(new Person(CREATOR_ID)));
+		when(taskMessageSentService.getEnqueuedForTasks(anyCollectionOf(UUID.class))).thenReturn(alreadyEnqueued);
+		when(dao.getNextWhichNeedRemindersSent(anyCollectionOf(Integer.class), any(UUID.class), anyInt()))
+				.thenAnswer(new Answer<List<Task>>() {
+					@Override
+					public List<Task> answer(InvocationOnMock invocation) throws Throwable {
+						final UUID afterId = (UUID) invocation.getArguments()[1];
+						final int maxResults = (Integer) invocation.getArguments()[2];
+						int from = 0;
+						if ( afterId != null ) {
+							while ( from < tasks.size() && !(tasks.get(from).getId().equals(afterId)) ) {
+								from++;
+							}
+							from++;
+						}
+						from = Math.min(from, tasks.size());
+						return Lists.newArrayList(tasks.subList(from, Math.min(from + maxResults, tasks.size())));
+					}
+				});
+	}
+
+	@Test
+	public void skipsRemindersAlreadyEnqueuedForTheSameDueDateAndDay() throws Exception {
+		final Task dueTomorrow = task(1);
+		final Task alreadyReminded = task(14);
+		final Task dueDateMoved = task(14);
+		final Task remindedForOtherDay = task(14);
+		final Task notAReminderDay = task(2);
+		tasks.addAll(Lists.newArrayList(dueTomorrow, alreadyReminded, dueDateMoved, remindedForOtherDay,
+				notAReminderDay));
+
+		alreadyEnqueued.add(new TaskMessageEnqueue(alreadyReminded, new Date(), alreadyReminded.getDueDate(), 14,
+				null));
+		alreadyEnqueued.add(new TaskMessageEnqueue(dueDateMoved, new Date(), daysFromNow(20), 14, null));
+		alreadyEnqueued.add(new TaskMessageEnqueue(remindedForOtherDay, new Date(),
+				remindedForOtherDay.getDueDate(), 1, null));
+
+		service.sendAllTaskReminderNotifications();
+
+		final List<TaskMessageEnqueue> saved = savedEnqueues(1).get(0);
+		assertEquals("Reminded tasks did not match", Sets.newHashSet(dueTomorrow, dueDateMoved, remindedForOtherDay),
+				tasksOf(saved));
+		for ( TaskMessageEnqueue enqueue : saved ) {
+			assertEquals("Reminder day did not match", enqueue.getTask() == dueTomorrow ? 1 : 14,
+					enqueue.getDaysBefore().intValue());
+		}
+		assertEquals("Saved messages did not match the saved reminders", saved.size(), savedMessages(1).get(0).size());
+	}
+
+	@Test
+	public void savesEachPageInOneBatch() throws Exception {
+		for ( int i = 0 ; i < PAGE_SIZE + 50 ; i++ ) {
+			tasks.add(task(1));
+		}
+
+		service.sendAllTaskReminderNotifications();
+
+		final List<List<Message>> messagePages = savedMessages(2);
+		assertEquals("First page size did not match", PAGE_SIZE, messagePages.get(0).size());
+		assertEquals("Second page size did not match", 50, messagePages.get(1).size());
+
+		final List<List<TaskMessageEnqueue>> enqueuePages = savedEnqueues(2);
+		final Set<Task> reminded = tasksOf(enqueuePages.get(0));
+		reminded.addAll(tasksOf(enqueuePages.get(1)));
+		assertEquals("Every task should have been reminded exactly once", Sets.newHashSet(tasks), reminded);
+
+		verify(dao, times(3)).getNextWhichNeedRemindersSent(anyCollectionOf(Integer.class), any(UUID.class),
+				anyInt());
+		verify(taskMessageSentService, times(2)).getEnqueuedForTasks(anyCollectionOf(UUID.class));
+		verify(personService, times(2)).peopleFromListOfIds(anyListOf(UUID.class), any(SortingAndPaging.class));
+		verify(personService, never()).get(any(UUID.class));
+		verify(taskMessageSentService, never()).save(any(TaskMessageEnqueue.class));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private List<List<Message>> savedMessages(final int pages) throws Exception {
+		final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		verify(messageService, times(pages)).saveMessages(captor.capture());
+		return (List) captor.getAllValues();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private List<List<TaskMessageEnqueue>> savedEnqueues(final int pages) {
+		final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		verify(taskMessageSentService, times(pages)).saveAll(captor.capture());
+		return (List) captor.getAllValues();
+	}
+
+	private Set<Task> tasksOf(final Collection<TaskMessageEnqueue> enqueues) {
+		final Set<Task> result = Sets.newHashSet();
+		for ( TaskMessageEnqueue enqueue : enqueues ) {
+			result.add(enqueue.getTask());
+		}
+		return result;
+	}
+
+	private Task task(final int dueInDays) {
+		final Task task = new Task();
+		task.setId(UUID.randomUUID());
+		task.setName("task");
+		task.setDescription("task due in " + dueInDays + " days");
+		task.setDueDate(daysFromNow(dueInDays));
+		task.setPerson(new Person(UUID.randomUUID()));
+		task.setConfidentialityLevel(new ConfidentialityLevel(UUID.randomUUID()));
+		task.setCreatedBy(new AuditPerson(CREATOR_ID));
+		return task;
+	}
+
+	private Date daysFromNow(final int days) {
+		final Calendar cal = Calendar.getInstance();
+		cal.add(Calendar.DAY_OF_YEAR, days);
+		return cal.getTime();
+	}
+}
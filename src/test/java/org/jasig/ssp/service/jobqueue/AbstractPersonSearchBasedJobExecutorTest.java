@@ -0,0 +1,261 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.jobqueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.jasig.ssp.factory.PersonSearchRequestTOFactory;
+import org.jasig.ssp.model.ObjectStatus;
+import org.jasig.ssp.model.PersonSearchRequest;
+import org.jasig.ssp.model.PersonSearchResult2;
+import org.jasig.ssp.model.jobqueue.JobTarget;
+import org.jasig.ssp.service.PersonSearchService;
+import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.transferobject.ImmutablePersonIdentifiersTO;
+import org.jasig.ssp.transferobject.PersonSearchRequestTO;
+import org.jasig.ssp.transferobject.form.BulkWatchChangeJobSpec;
+import org.jasig.ssp.transferobject.form.BulkWatchChangeRequestForm;
+import org.jasig.ssp.util.sort.PagingWrapper;
+import org.jasig.ssp.util.sort.SortingAndPaging;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests the target snapshot and paging template in {@link AbstractPersonSearchBasedJobExecutor}.
+ */
+public class AbstractPersonSearchBasedJobExecutorTest {
+
+	private static final UUID JOB_ID = UUID.randomUUID();
+
+	private JobService jobService;
+
+	private PersonSearchService personSearchService;
+
+	private PersonSearchRequest criteria;
+
+	private TestJobExecutor executor;
+
+	private final BulkWatchChangeJobSpec spec = new BulkWatchChangeJobSpec(new BulkWatchChangeRequestForm());
+
+	@Before
+	public void setUp() throws Exception {
+		jobService = mock(JobService.class);
+		personSearchService = mock(PersonSearchService.class);
+		final PersonSearchRequestTOFactory personSearchRequestFactory = mock(PersonSearchRequestTOFactory.class);
+		criteria = new PersonSearchRequest();
+		criteria.setSortAndPage(new SortingAndPaging(ObjectStatus.ACTIVE));
+		when(personSearchRequestFactory.from(any(PersonSearchRequestTO.class))).thenReturn(criteria);
+		when(jobService.saveTargets(eq(JOB_ID), anyInt(), anyListOf(ImmutablePersonIdentifiersTO.class)))
+				.thenAnswer(new Answer<Integer>() {
+					@Override
+					public Integer answer(InvocationOnMock invocation) throws Throwable {
+						return (Integer) invocation.getArguments()[1]
+								+ ((List<?>) invocation.getArguments()[2]).size();
+					}
+				});
+		executor = new TestJobExecutor(jobService, personSearchService, personSearchRequestFactory,
+				mock(ConfigService.class));
+	}
+
+	@Test
+	public void snapshotsTargetsOnePageAtATime() throws Exception {
+		final List<ImmutablePersonIdentifiersTO> firstPage =
+				targets(0, AbstractPersonSearchBasedJobExecutor.TARGET_SNAPSHOT_PAGE_SIZE);
+		final List<ImmutablePersonIdentifiersTO> lastPage =
+				targets(AbstractPersonSearchBasedJobExecutor.TARGET_SNAPSHOT_PAGE_SIZE, 3);
+		when(personSearchService.searchPersonDirectoryIdentifiers(criteria, null,
+				AbstractPersonSearchBasedJobExecutor.TARGET_SNAPSHOT_PAGE_SIZE)).thenReturn(firstPage);
+		when(personSearchService.searchPersonDirectoryIdentifiers(criteria,
+				firstPage.get(firstPage.size() - 1).getSchoolId(),
+				AbstractPersonSearchBasedJobExecutor.TARGET_SNAPSHOT_PAGE_SIZE)).thenReturn(lastPage);
+
+		final JobExecutionResult<BasePersonSearchBasedJobExecutionState> result =
+				executor.executeJobDeserialized(spec, null, JOB_ID);
+
+		assertEquals("Snapshot should have been committed on its own", JobExecutionStatus.PARTIAL,
+				result.getStatus());
+		final BasePersonSearchBasedJobExecutionState state = result.getDetail();
+		assertTrue(state.targetsSnapshotted);
+		assertEquals(AbstractPersonSearchBasedJobExecutor.TARGET_SNAPSHOT_PAGE_SIZE + 3, state.targetCount);
+		assertEquals(0, state.lastTargetSequenceNumber);
+		assertTrue("No person should have been processed while snapshotting", executor.executed.isEmpty());
+
+		final InOrder inOrder = inOrder(jobService);
+		inOrder.verify(jobService).deleteTargets(JOB_ID);
+		inOrder.verify(jobService).saveTargets(JOB_ID, 0, firstPage);
+		inOrder.verify(jobService).saveTargets(JOB_ID, AbstractPersonSearchBasedJobExecutor.TARGET_SNAPSHOT_PAGE_SIZE,
+				lastPage);
+		verify(personSearchService, never()).searchPersonDirectoryIdentifiers(criteria,
+				lastPage.get(lastPage.size() - 1).getSchoolId(),
+				AbstractPersonSearchBasedJobExecutor.TARGET_SNAPSHOT_PAGE_SIZE);
+	}
+
+	@Test
+	public void walksSnapshottedTargetsByKeyset() throws Exception {
+		final List<JobTarget> targets = Lists.newArrayList();
+		for ( ImmutablePersonIdentifiersTO target : targets(0, 5) ) {
+			targets.add(new JobTarget(JOB_ID, targets.size() + 1, target.getId(), target.getSchoolId()));
+		}
+		when(jobService.getNextTargets(JOB_ID, 0, 2)).thenReturn(targets.subList(0, 2));
+		when(jobService.getNextTargets(JOB_ID, 2, 2)).thenReturn(targets.subList(2, 4));
+		when(jobService.getNextTargets(JOB_ID, 4, 2)).thenReturn(targets.subList(4, 5));
+
+		BasePersonSearchBasedJobExecutionState state = new BasePersonSearchBasedJobExecutionState();
+		state.pageSize = 2;
+		state.targetsSnapshotted = true;
+		state.targetCount = 5;
+
+		final List<JobExecutionStatus> statuses = runToCompletion(state);
+
+		assertEquals(Lists.newArrayList(JobExecutionStatus.PARTIAL, JobExecutionStatus.PARTIAL,
+				JobExecutionStatus.PARTIAL, JobExecutionStatus.DONE), statuses);
+		assertEquals(targets(0, 5), executor.executed);
+		assertEquals(5, state.personsSucceededCount);
+		verify(jobService, never()).getNextTargets(JOB_ID, 5, 2);
+		verify(personSearchService, never()).searchPersonDirectory(any(PersonSearchRequest.class));
+	}
+
+	@Test
+	public void finishesJobsStartedBeforeSnapshotsFromLiveSearchResults() throws Exception {
+		final List<ImmutablePersonIdentifiersTO> remaining = targets(2, 1);
+		final PersonSearchResult2 searchResult = new PersonSearchResult2();
+		searchResult.setId(remaining.get(0).getId());
+		searchResult.setSchoolId(remaining.get(0).getSchoolId());
+		when(personSearchService.searchPersonDirectory(criteria)).thenReturn(
+				new PagingWrapper<PersonSearchResult2>(3L, Collections.singletonList(searchResult)));
+
+		// state as written by an execution predating target snapshots, after its first page
+		final BasePersonSearchBasedJobExecutionState state = new BasePersonSearchBasedJobExecutionState();
+		state.pageSize = 2;
+		state.prevPage = 1;
+		state.personsSucceededCount = 2;
+
+		final List<JobExecutionStatus> statuses = runToCompletion(state);
+
+		assertEquals(Lists.newArrayList(JobExecutionStatus.PARTIAL, JobExecutionStatus.DONE), statuses);
+		assertEquals("Second page should have been read", Integer.valueOf(2),
+				criteria.getSortAndPage().getFirstResult());
+		assertEquals(remaining, executor.executed);
+		assertEquals(3, state.personsSucceededCount);
+		verify(personSearchService, never()).searchPersonDirectoryIdentifiers(any(PersonSearchRequest.class),
+				anyString(), anyInt());
+		verify(jobService, never()).deleteTargets(JOB_ID);
+		verify(jobService, never()).getNextTargets(eq(JOB_ID), anyInt(), anyInt());
+	}
+
+	private List<JobExecutionStatus> runToCompletion(BasePersonSearchBasedJobExecutionState state) {
+		final List<JobExecutionStatus> statuses = Lists.newArrayList();
+		JobExecutionResult<BasePersonSearchBasedJobExecutionState> result;
+		do {
+			result = executor.executeJobDeserialized(spec, state, JOB_ID);
+			statuses.add(result.getStatus());
+			state = result.getDetail();
+		} while ( result.getStatus() == JobExecutionStatus.PARTIAL && statuses.size() < 10 );
+		return statuses;
+	}
+
+	private List<ImmutablePersonIdentifiersTO> targets(int first, int count) {
+		final List<ImmutablePersonIdentifiersTO> targets = Lists.newArrayListWithCapacity(count);
+		for ( int i = first; i < first + count; i++ ) {
+			targets.add(new ImmutablePersonIdentifiersTO(new UUID(0L, i), String.format("s%05d", i)));
+		}
+		return targets;
+	}
+
+	private static class TestJobExecutor extends
+			AbstractPersonSearchBasedJobExecutor<BulkWatchChangeJobSpec, BasePersonSearchBasedJobExecutionState> {
+
+		private static final Logger LOGGER = LoggerFactory.getLogger(TestJobExecutor.class);
+
+		private final List<ImmutablePersonIdentifiersTO> executed = Lists.newArrayList();
+
+		TestJobExecutor(JobService jobService, PersonSearchService personSearchService,
+				PersonSearchRequestTOFactory personSearchRequestFactory, ConfigService configService) {
+			super("test-executor", jobService, null, null, personSearchService, personSearchRequestFactory,
+					configService);
+		}
+
+		@Override
+		protected Map<String, ?> executeForSinglePerson(ImmutablePersonIdentifiersTO personIds,
+				BulkWatchChangeJobSpec executionSpec, BasePersonSearchBasedJobExecutionState executionState,
+				UUID jobId) {
+			executed.add(personIds);
+			return Collections.emptyMap();
+		}
+
+		@Override
+		protected BasePersonSearchBasedJobExecutionState newJobExecutionState() {
+			return new BasePersonSearchBasedJobExecutionState();
+		}
+
+		@Override
+		protected String getPageSizeConfigName() {
+			return "test_page_size";
+		}
+
+		@Override
+		protected String getDlqSizeConfigName() {
+			return "test_dlq_size";
+		}
+
+		@Override
+		protected String getFailOnSlqOverflowConfigName() {
+			return "test_fail_on_dlq_overflow";
+		}
+
+		@Override
+		protected BulkWatchChangeJobSpec deserializeJobSpecWithCheckedExceptions(String jobSpecStr) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected BasePersonSearchBasedJobExecutionState deserializeJobStateWithCheckedExceptions(
+				String jobStateStr) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected Logger getCurrentLogger() {
+			return LOGGER;
+		}
+	}
+}
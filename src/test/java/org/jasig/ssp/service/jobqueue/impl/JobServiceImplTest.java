@@ -0,0 +1,100 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.jobqueue.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import org.jasig.ssp.dao.jobqueue.JobDao;
+import org.jasig.ssp.dao.jobqueue.JobTargetDao;
+import org.jasig.ssp.model.jobqueue.Job;
+import org.jasig.ssp.service.jobqueue.JobExecutionResult;
+import org.jasig.ssp.service.jobqueue.JobExecutionStatus;
+import org.jasig.ssp.service.jobqueue.JobWorkflowStatusDescription;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests job termination in {@link JobServiceImpl}.
+ */
+public class JobServiceImplTest {
+
+	@Mock
+	private JobDao dao;
+
+	@Mock
+	private JobTargetDao targetDao;
+
+	@InjectMocks
+	private JobServiceImpl service;
+
+	private UUID jobId;
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		final Job job = new Job();
+		jobId = UUID.randomUUID();
+		job.setId(jobId);
+		when(dao.get(jobId)).thenReturn(job);
+		when(dao.save(any(Job.class))).thenAnswer(new Answer<Job>() {
+			@Override
+			public Job answer(InvocationOnMock invocation) throws Throwable {
+				return (Job) invocation.getArguments()[0];
+			}
+		});
+	}
+
+	@Test
+	public void deletesTargetsOfCompletedJob() throws Exception {
+		service.markTerminated(jobId, result(JobExecutionStatus.DONE));
+		verify(targetDao).deleteForJob(jobId);
+	}
+
+	@Test
+	public void deletesTargetsOfFailedJob() throws Exception {
+		service.markTerminated(jobId, result(JobExecutionStatus.FAILED));
+		verify(targetDao).deleteForJob(jobId);
+	}
+
+	@Test
+	public void deletesTargetsOfErroredJob() throws Exception {
+		service.markTerminated(jobId, result(JobExecutionStatus.ERROR));
+		verify(targetDao).deleteForJob(jobId);
+	}
+
+	@Test
+	public void keepsTargetsOfRequeuedJob() throws Exception {
+		service.markTerminated(jobId, result(JobExecutionStatus.INTERRUPTED));
+		verify(targetDao, never()).deleteForJob(jobId);
+	}
+
+	private JobExecutionResult<JobWorkflowStatusDescription> result(JobExecutionStatus status) {
+		return new JobExecutionResult<JobWorkflowStatusDescription>(status, new JobWorkflowStatusDescription());
+	}
+}
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -263,6 +264,77 @@ public class ConfigServiceTest {
 		service.getObjectByNameOrDefault("foo", Map.class, new HashMap());
 	}
 
+	@Test
+	public void testGetByNameIsCached() {
+		final Config daoOne = new Config(UUID.randomUUID(), "foo", null, (short)0);
+		daoOne.setValue("bar");
+
+		// exactly once
+		expect(dao.getByName("foo")).andReturn(daoOne);
+		expect(dao.getByName("missing")).andReturn(null);
+
+		replay(dao);
+
+		assertEquals("bar", service.getByNameEmpty("foo"));
+		assertEquals("bar", service.getByNameEmpty("foo"));
+		assertNull(service.getByNameNull("missing"));
+		assertNull(service.getByNameNull("missing"));
+
+		final Map<String, Long> stats = service.getCacheStatistics();
+		assertEquals(Long.valueOf(2), stats.get("hits"));
+		assertEquals(Long.valueOf(2), stats.get("misses"));
+		verify(dao);
+	}
+
+	@Test
+	public void testCachedConfigIsACopy() {
+		final Config daoOne = new Config(UUID.randomUUID(), "foo", null, (short)0);
+		daoOne.setValue("bar");
+
+		expect(dao.getByName("foo")).andReturn(daoOne);
+
+		replay(dao);
+
+		service.getByName("foo").setValue("changed");
+		assertEquals("bar", service.getByNameEmpty("foo"));
+		verify(dao);
+	}
+
+	@Test
+	public void testSaveInvalidatesCache() throws ObjectNotFoundException,
+			ValidationException {
+		final Config daoOne = new Config(UUID.randomUUID(), "foo", null, (short)0);
+		daoOne.setValue("bar");
+		final Config daoTwo = new Config(daoOne.getId(), "foo", null, (short)0);
+		daoTwo.setValue("baz");
+
+		expect(dao.getByName("foo")).andReturn(daoOne);
+		expect(dao.save(daoTwo)).andReturn(daoTwo);
+		expect(dao.getByName("foo")).andReturn(daoTwo);
+
+		replay(dao);
+
+		assertEquals("bar", service.getByNameEmpty("foo"));
+		service.save(daoTwo);
+		assertEquals("baz", service.getByNameEmpty("foo"));
+		verify(dao);
+	}
+
+	@Test
+	public void testParsedValueIsMemoized() {
+		final Config daoOne = new Config(UUID.randomUUID(), "foo", null, (short)0);
+		daoOne.setValue("{\"bar-key\": \"bar-value\"}");
+
+		expect(dao.getByName("foo")).andReturn(daoOne);
+
+		replay(dao);
+
+		final Map first = service.getObjectByNameOrDefault("foo", Map.class, new HashMap());
+		final Map second = service.getObjectByNameOrDefault("foo", Map.class, new HashMap());
+		assertTrue("Parsed value should have been reused", first == second);
+		verify(dao);
+	}
+
 	static class Foo {
 		private String barKey;
 		private String bazKey;
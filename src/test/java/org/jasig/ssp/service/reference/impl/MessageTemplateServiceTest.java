@@ -23,23 +23,35 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
 
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
 import org.jasig.ssp.dao.reference.MessageTemplateDao;
 import org.jasig.ssp.model.ObjectStatus;
+import org.jasig.ssp.model.SubjectAndBody;
 import org.jasig.ssp.model.reference.MessageTemplate;
 import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.service.VelocityTemplateService;
+import org.jasig.ssp.service.reference.ConfigService;
+import org.jasig.ssp.service.reference.MessageTemplateRenderSession;
 import org.jasig.ssp.util.sort.PagingWrapper;
 import org.jasig.ssp.util.sort.SortingAndPaging;
 import org.jasig.ssp.web.api.validation.ValidationException;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * MessageTemplate service tests
@@ -56,6 +68,7 @@ public class MessageTemplateServiceTest {
 		dao = createMock(MessageTemplateDao.class);
 
 		service.setDao(dao);
+		service.setVelocityTemplateService(new VelocityTemplateService());
 	}
 
 	@Test
@@ -101,6 +114,152 @@ public class MessageTemplateServiceTest {
 		verify(dao);
 	}
 
+	@Test
+	public void testSaveEvictsCachedTemplateVersions()
+			throws ObjectNotFoundException, ValidationException {
+		final UUID id = UUID.randomUUID();
+		final MessageTemplate daoOne = new MessageTemplate(id);
+		final VelocityTemplateService velocityTemplateService = createMock(VelocityTemplateService.class);
+		service.setVelocityTemplateService(velocityTemplateService);
+
+		expect(dao.save(daoOne)).andReturn(daoOne);
+		velocityTemplateService.evictTemplates(id.toString());
+
+		replay(dao, velocityTemplateService);
+
+		service.save(daoOne);
+		verify(dao, velocityTemplateService);
+	}
+
+	@Test
+	public void testRenderSessionProducesSameSubjectAndBody()
+			throws ObjectNotFoundException {
+		final MessageTemplate template = useRenderableTemplate();
+		// twice outside the session, once for the whole session
+		expect(dao.get(template.getId())).andReturn(template).times(3);
+		replay(dao);
+
+		final SubjectAndBody first = service
+				.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Ada"));
+		final SubjectAndBody second = service
+				.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Grace"));
+
+		final MessageTemplateRenderSession session = service.openRenderSession();
+		try {
+			assertSameMessage(first, service
+					.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Ada")));
+			assertSameMessage(second, service
+					.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Grace")));
+			assertSameMessage(first, service
+					.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Ada")));
+		} finally {
+			session.close();
+		}
+
+		assertEquals("Alert for Ada at Apereo University", first.getSubject());
+		assertEquals("Ada in BIO 101. SSP http://ssp.example.edu http://www.example.edu",
+				first.getBody());
+		verify(dao);
+	}
+
+	@Test
+	public void testMessageValuesTakePrecedenceOverInstitutionValues()
+			throws ObjectNotFoundException {
+		final MessageTemplate template = useRenderableTemplate();
+		expect(dao.get(template.getId())).andReturn(template).times(2);
+		replay(dao);
+
+		final Map<String, Object> params = earlyAlertParams("Ada");
+		params.put("institutionName", "Example College");
+		params.put("applicationTitle", "");
+		final SubjectAndBody outside = service
+				.createEarlyAlertFacultyConfirmationMessage(new HashMap<String, Object>(params));
+
+		final SubjectAndBody inside;
+		final MessageTemplateRenderSession session = service.openRenderSession();
+		try {
+			inside = service.createEarlyAlertFacultyConfirmationMessage(
+					new HashMap<String, Object>(params));
+		} finally {
+			session.close();
+		}
+
+		assertEquals("Alert for Ada at Example College", outside.getSubject());
+		assertEquals("Ada in BIO 101.  http://ssp.example.edu http://www.example.edu",
+				outside.getBody());
+		assertSameMessage(outside, inside);
+		verify(dao);
+	}
+
+	@Test
+	public void testNestedRenderSessionLeavesOuterSessionOpen()
+			throws ObjectNotFoundException {
+		final MessageTemplate template = useRenderableTemplate();
+		// once for the outer session, once after it closes
+		expect(dao.get(template.getId())).andReturn(template).times(2);
+		replay(dao);
+
+		final MessageTemplateRenderSession outer = service.openRenderSession();
+		try {
+			service.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Ada"));
+			final MessageTemplateRenderSession inner = service.openRenderSession();
+			try {
+				service.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Ada"));
+			} finally {
+				inner.close();
+			}
+			service.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Ada"));
+		} finally {
+			outer.close();
+		}
+		service.createEarlyAlertFacultyConfirmationMessage(earlyAlertParams("Ada"));
+
+		verify(dao);
+	}
+
+	/**
+	 * Renders with a real Velocity engine and fixed institution config, and
+	 * returns the template the dao should answer with.
+	 */
+	private MessageTemplate useRenderableTemplate() {
+		// same loader setup as the velocityEngine bean
+		final Properties properties = new Properties();
+		properties.setProperty("resource.loader", "string");
+		properties.setProperty("string.resource.loader.class", StringResourceLoader.class.getName());
+		final VelocityEngine velocityEngine = new VelocityEngine(properties);
+		velocityEngine.init();
+		final VelocityTemplateService velocityTemplateService = new VelocityTemplateService();
+		ReflectionTestUtils.setField(velocityTemplateService, "velocityEngine", velocityEngine);
+		service.setVelocityTemplateService(velocityTemplateService);
+
+		final ConfigService configService = createMock(ConfigService.class);
+		expect(configService.getByNameNull("inst_name")).andReturn("Apereo University").anyTimes();
+		expect(configService.getByNameNull("inst_home_url")).andReturn("http://www.example.edu").anyTimes();
+		expect(configService.getByNameNull("app_title")).andReturn("SSP").anyTimes();
+		expect(configService.getByNameNull("serverExternalPath")).andReturn("http://ssp.example.edu").anyTimes();
+		replay(configService);
+		ReflectionTestUtils.setField(service, "configService", configService);
+
+		final MessageTemplate template = new MessageTemplate(
+				MessageTemplate.EARLYALERT_CONFIRMATIONTOFACULTY_ID);
+		template.setModifiedDate(new Date());
+		template.setSubject("Alert for $FirstName at $institutionName");
+		template.setBody("$FirstName in $CourseName. $applicationTitle $linkToSSP $institutionHomeUrl");
+		return template;
+	}
+
+	private Map<String, Object> earlyAlertParams(final String firstName) {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("FirstName", firstName);
+		params.put("CourseName", "BIO 101");
+		return params;
+	}
+
+	private void assertSameMessage(final SubjectAndBody expected, final SubjectAndBody actual) {
+		assertEquals(expected.getSubject(), actual.getSubject());
+		assertEquals(expected.getBody(), actual.getBody());
+	}
+
 	@Test
 	public void testDelete() throws ObjectNotFoundException {
 		final UUID id = UUID.randomUUID();
@@ -0,0 +1,135 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.reference.impl;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jasig.ssp.dao.reference.ReferenceCacheVersionDao;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Cross-node invalidation in {@link ReferenceCacheServiceImpl}. Two nodes,
+ * each with its own second-level cache, share one version counter the way
+ * they share the <code>reference_cache_version</code> row.
+ */
+public class ReferenceCacheServiceImplTest {
+
+	private final AtomicLong sharedVersion = new AtomicLong(7L);
+
+	@Test
+	public void firstCheckOnlyRecordsTheVersion() {
+		final Node node = new Node();
+
+		node.service.revalidate();
+
+		verify(node.cache, never()).evictEntityRegions();
+	}
+
+	@Test
+	public void writeOnOneNodeEvictsTheOtherNodeOnce() {
+		final Node writer = new Node();
+		final Node reader = new Node();
+		writer.service.revalidate();
+		reader.service.revalidate();
+
+		reader.service.revalidate();
+		verify(reader.cache, never()).evictEntityRegions();
+
+		writer.dao.markChanged();
+		reader.service.revalidate();
+		verify(reader.cache, times(1)).evictEntityRegions();
+		verify(reader.cache, times(1)).evictCollectionRegions();
+		verify(reader.cache, times(1)).evictQueryRegions();
+
+		reader.service.revalidate();
+		verify(reader.cache, times(1)).evictEntityRegions();
+	}
+
+	@Test
+	public void severalWritesBetweenChecksEvictOnce() {
+		final Node writer = new Node();
+		final Node reader = new Node();
+		reader.service.revalidate();
+
+		writer.dao.markChanged();
+		writer.dao.markChanged();
+		reader.service.revalidate();
+
+		verify(reader.cache, times(1)).evictEntityRegions();
+	}
+
+	@Test
+	public void statisticsAreEmptyWhenHibernateStatisticsAreOff() {
+		final Node node = new Node();
+		final Statistics statistics = mock(Statistics.class);
+		when(node.sessionFactory.getStatistics()).thenReturn(statistics);
+		when(statistics.isStatisticsEnabled()).thenReturn(false);
+
+		assertTrue("Statistics should be empty", node.service.getStatistics().isEmpty());
+	}
+
+	/**
+	 * One application node. Its DAO reads and bumps the shared version.
+	 */
+	private class Node {
+
+		private final ReferenceCacheServiceImpl service = new ReferenceCacheServiceImpl();
+
+		private final ReferenceCacheVersionDao dao = mock(ReferenceCacheVersionDao.class);
+
+		private final SessionFactory sessionFactory = mock(SessionFactory.class);
+
+		private final Cache cache = mock(Cache.class);
+
+		Node() {
+			when(dao.getVersion()).thenAnswer(new Answer<Long>() {
+				@Override
+				public Long answer(InvocationOnMock invocation) throws Throwable {
+					return sharedVersion.get();
+				}
+			});
+			doAnswer(new Answer<Void>() {
+				@Override
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					sharedVersion.incrementAndGet();
+					return null;
+				}
+			}).when(dao).markChanged();
+			when(sessionFactory.getCache()).thenReturn(cache);
+			ReflectionTestUtils.setField(service, "dao", dao);
+			ReflectionTestUtils.setField(service, "sessionFactory", sessionFactory);
+			ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+		}
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.service.tool.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import org.jasig.ssp.dao.CaseloadBulkAddReassignmentDao;
+import org.jasig.ssp.dao.CaseloadDao;
+import org.jasig.ssp.model.AuditPerson;
+import org.jasig.ssp.model.CaseloadBulkAddReassignment;
+import org.jasig.ssp.model.FileUploadResponse;
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.SubjectAndBody;
+import org.jasig.ssp.security.SspUser;
+import org.jasig.ssp.service.MessageService;
+import org.jasig.ssp.service.PersonProgramStatusService;
+import org.jasig.ssp.service.PersonService;
+import org.jasig.ssp.service.SecurityService;
+import org.jasig.ssp.service.reference.MessageTemplateService;
+import org.jasig.ssp.transferobject.BulkAddCaseloadReassignmentTO;
+import org.jasig.ssp.util.transaction.WithTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.commons.CommonsMultipartFile;
+
+/**
+ * {@link CaseloadServiceImpl} test suite for the bulk add/reassign csv upload
+ * and its chunked processing.
+ */
+public class CaseloadServiceImplTest {
+
+	private static final String NOTIFICATION_ADDRESS = "uploader@example.edu";
+
+	@Mock
+	private CaseloadBulkAddReassignmentDao bulkReassignDao;
+
+	@Mock
+	private CaseloadDao caseloadDao;
+
+	@Mock
+	private SecurityService securityService;
+
+	@Mock
+	private PersonService personService;
+
+	@Mock
+	private PersonProgramStatusService personProgramStatusService;
+
+	@Mock
+	private MessageService messageService;
+
+	@Mock
+	private MessageTemplateService messageTemplateService;
+
+	@InjectMocks
+	private CaseloadServiceImpl service;
+
+	/** Stands in for the staging table */
+	private List<CaseloadBulkAddReassignment> staged;
+
+	/** Set when a reassignment should make its transaction fail on commit */
+	private boolean rollbackOnly;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		ReflectionTestUtils.setField(service, "withTransaction", new RollbackTransaction());
+		staged = new ArrayList<CaseloadBulkAddReassignment>();
+
+		final Person uploader = new Person(UUID.randomUUID());
+		uploader.setPrimaryEmailAddress(NOTIFICATION_ADDRESS);
+		final SspUser sspUser = mock(SspUser.class);
+		when(sspUser.getPerson()).thenReturn(uploader);
+		when(securityService.currentUser()).thenReturn(sspUser);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				@SuppressWarnings("unchecked")
+				final List<CaseloadBulkAddReassignment> batch =
+						(List<CaseloadBulkAddReassignment>) invocation.getArguments()[0];
+				staged.addAll(batch); // the service reuses the batch list
+				return null;
+			}
+		}).when(bulkReassignDao).createAll(anyListOf(CaseloadBulkAddReassignment.class));
+		when(bulkReassignDao.count()).thenAnswer(new Answer<Long>() {
+			@Override
+			public Long answer(InvocationOnMock invocation) {
+				return (long) staged.size();
+			}
+		});
+		when(bulkReassignDao.getFirst(anyInt())).thenAnswer(new Answer<List<CaseloadBulkAddReassignment>>() {
+			@Override
+			public List<CaseloadBulkAddReassignment> answer(InvocationOnMock invocation) {
+				final int maxResults = (Integer) invocation.getArguments()[0];
+				return new ArrayList<CaseloadBulkAddReassignment>(
+						staged.subList(0, Math.min(maxResults, staged.size())));
+			}
+		});
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				staged.remove(invocation.getArguments()[0]);
+				return null;
+			}
+		}).when(bulkReassignDao).delete(any(CaseloadBulkAddReassignment.class));
+
+		when(personService.getInternalOrExternalPeopleBySchoolIds(anyCollectionOf(String.class), anyBoolean(),
+				anyBoolean())).thenAnswer(new Answer<Map<String, Person>>() {
+			@Override
+			public Map<String, Person> answer(InvocationOnMock invocation) {
+				@SuppressWarnings("unchecked")
+				final Collection<String> schoolIds = (Collection<String>) invocation.getArguments()[0];
+				final Map<String, Person> people = new HashMap<String, Person>();
+				for ( String schoolId : schoolIds ) {
+					final Person person = new Person(UUID.randomUUID());
+					person.setSchoolId(schoolId);
+					people.put(schoolId, person);
+				}
+				return people;
+			}
+		});
+		when(messageTemplateService.createBulkAddCaseloadReassignmentMessage(anyInt(), anyListOf(String.class)))
+				.thenReturn(new SubjectAndBody("subject", "body"));
+	}
+
+	@After
+	public void clearInterrupt() {
+		Thread.interrupted();
+	}
+
+	@Test
+	public void readsQuotedValuesWithCommas() throws Exception {
+		upload("\"s1\",\"c1\",\"m1\",\"moved, at the student's request\"\n");
+
+		assertEquals(1, staged.size());
+		assertRow(staged.get(0), "s1", "c1", "m1", "moved, at the student's request");
+	}
+
+	@Test
+	public void trimsQuotedValuesToo() throws Exception {
+		upload("\" s1 \",\"c1 \", m1,\" a comment \"\n");
+
+		assertEquals(1, staged.size());
+		assertRow(staged.get(0), "s1", "c1", "m1", "a comment");
+	}
+
+	@Test
+	public void acceptsThreeOrFourValuesPerRow() throws Exception {
+		upload("s1,c1,m1\ns2, c2 ,m2,a comment\ns3,c3,m3,\n");
+
+		assertEquals(3, staged.size());
+		assertRow(staged.get(0), "s1", "c1", "m1", null);
+		assertRow(staged.get(1), "s2", "c2", "m2", "a comment");
+		// a trailing empty value doesn't count as a fourth column
+		assertRow(staged.get(2), "s3", "c3", "m3", null);
+		for ( CaseloadBulkAddReassignment row : staged ) {
+			assertEquals(NOTIFICATION_ADDRESS, row.getNotificationEmailAddress());
+		}
+	}
+
+	@Test
+	public void skipsBlankLines() throws Exception {
+		upload("s1,c1,m1\n\n   \ns2,c2,m2\n\n");
+
+		assertEquals(2, staged.size());
+		assertRow(staged.get(0), "s1", "c1", "m1", null);
+		assertRow(staged.get(1), "s2", "c2", "m2", null);
+	}
+
+	@Test
+	public void reportsTheRowNumberOfTooFewValues() throws Exception {
+		assertRejected("s1,c1,m1\n\ns3,c3\n", "Row 3 is invalid");
+	}
+
+	@Test
+	public void reportsTheRowNumberOfTooManyValues() throws Exception {
+		assertRejected("s1,c1,m1\ns2,c2,m2,comment,extra\n", "Row 2 is invalid");
+	}
+
+	@Test
+	public void retriesAFailedChunkOneRecordAtATime() throws Exception {
+		stage("s1", "c1", "m1");
+		stage("bad", "c1", "m1");
+		stage("s3", "c1", "m1");
+		rollbackOnCommitFor("bad");
+
+		service.processCaseloadBulkAddReassignment();
+
+		assertTrue(staged.isEmpty());
+		final List<String> errors = verifyNotification(2);
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0), errors.get(0).startsWith("Error saving the student for bulk add/reassign -->"));
+		assertTrue(errors.get(0), errors.get(0).contains("bad"));
+	}
+
+	@Test
+	public void interruptedRunReportsWhatItProcessed() throws Exception {
+		stage("nocoach", "", "m1");
+		for ( int i = 1; i < 300; i++ ) {
+			stage("s" + i, "c1", "m1");
+		}
+		// interrupt once the first chunk is done
+		doAnswer(new Answer<Boolean>() {
+			private int reassigned = 0;
+
+			@Override
+			public Boolean answer(InvocationOnMock invocation) {
+				if ( ++reassigned == 249 ) {
+					Thread.currentThread().interrupt();
+				}
+				return true;
+			}
+		}).when(caseloadDao).reassignStudentWithSpecifiedModifier(any(Person.class), any(Person.class),
+				any(AuditPerson.class));
+
+		service.processCaseloadBulkAddReassignment();
+
+		assertEquals(50, staged.size());
+		final List<String> errors = verifyNotification(249);
+		assertEquals(2, errors.size());
+		assertTrue(errors.get(0), errors.get(0).startsWith("Student not added because student does not have a coach"));
+		assertTrue(errors.get(1), errors.get(1).startsWith("Processing was interrupted after 250 of 300 records."));
+	}
+
+	private void upload(final String csv) throws Exception {
+		final CommonsMultipartFile file = mock(CommonsMultipartFile.class);
+		when(file.getOriginalFilename()).thenReturn("reassign.csv");
+		when(file.getInputStream()).thenReturn(new ByteArrayInputStream(csv.getBytes("UTF-8")));
+		final BulkAddCaseloadReassignmentTO uploadItem = new BulkAddCaseloadReassignmentTO();
+		uploadItem.setFile(file);
+		service.loadCaseloadBulkAddReassignment(uploadItem, new FileUploadResponse());
+	}
+
+	private void assertRejected(final String csv, final String expectedMessage) throws Exception {
+		try {
+			upload(csv);
+			fail("Expected the upload to be rejected");
+		} catch ( IllegalArgumentException e ) {
+			assertTrue(e.getMessage(), e.getMessage().contains(expectedMessage));
+		}
+	}
+
+	private static void assertRow(final CaseloadBulkAddReassignment row, final String schoolId,
+			final String coachSchoolId, final String modifiedBySchoolId, final String journalEntryComment) {
+		assertEquals(schoolId, row.getSchoolId());
+		assertEquals(coachSchoolId, row.getCoachSchoolId());
+		assertEquals(modifiedBySchoolId, row.getModifiedBySchoolId());
+		if ( journalEntryComment == null ) {
+			assertNull(row.getJournalEntryComment());
+		} else {
+			assertEquals(journalEntryComment, row.getJournalEntryComment());
+		}
+	}
+
+	private void stage(final String schoolId, final String coachSchoolId, final String modifiedBySchoolId) {
+		final CaseloadBulkAddReassignment row = new CaseloadBulkAddReassignment();
+		row.setSchoolId(schoolId);
+		row.setCoachSchoolId(coachSchoolId);
+		row.setModifiedBySchoolId(modifiedBySchoolId);
+		row.setNotificationEmailAddress(NOTIFICATION_ADDRESS);
+		staged.add(row);
+	}
+
+	private void rollbackOnCommitFor(final String studentSchoolId) {
+		doAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(InvocationOnMock invocation) {
+				final Person student = (Person) invocation.getArguments()[0];
+				if ( studentSchoolId.equals(student.getSchoolId()) ) {
+					rollbackOnly = true;
+				}
+				return true;
+			}
+		}).when(caseloadDao).reassignStudentWithSpecifiedModifier(any(Person.class), any(Person.class),
+				any(AuditPerson.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> verifyNotification(final int successCount) throws Exception {
+		final ArgumentCaptor<List> errors = ArgumentCaptor.forClass(List.class);
+		verify(messageTemplateService).createBulkAddCaseloadReassignmentMessage(eq(successCount), errors.capture());
+		verify(messageService).createMessage(eq(NOTIFICATION_ADDRESS), (String) isNull(), any(SubjectAndBody.class));
+		return (List<String>) errors.getValue();
+	}
+
+	/**
+	 * Runs work directly, restoring the staging table and failing like a
+	 * commit would if the work marked the transaction rollback only.
+	 */
+	private class RollbackTransaction implements WithTransaction {
+
+		@Override
+		public <T> T withNewTransaction(final Callable<T> work) throws Exception {
+			final List<CaseloadBulkAddReassignment> before = new ArrayList<CaseloadBulkAddReassignment>(staged);
+			rollbackOnly = false;
+			final T result = work.call();
+			if ( rollbackOnly ) {
+				staged.clear();
+				staged.addAll(before);
+				throw new IllegalStateException("Transaction rolled back on commit");
+			}
+			return result;
+		}
+
+		@Override
+		public <T> T withNewTransactionAndUncheckedExceptions(final Callable<T> work) {
+			try {
+				return withNewTransaction(work);
+			} catch ( RuntimeException e ) {
+				throw e;
+			} catch ( Exception e ) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public <T> T withTransaction(final Callable<T> work) throws Exception {
+			return withNewTransaction(work);
+		}
+
+		@Override
+		public <T> T withTransactionAndUncheckedExceptions(final Callable<T> work) {
+			return withNewTransactionAndUncheckedExceptions(work);
+		}
+
+		@Override
+		public <T> T withNewTransactionAndUncheckedExceptionsReadOnly(final Callable<T> work) {
+			return withNewTransactionAndUncheckedExceptions(work);
+		}
+	}
+}
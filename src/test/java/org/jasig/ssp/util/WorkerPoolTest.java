@@ -0,0 +1,137 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WorkerPoolTest {
+
+	@After
+	public void clearInterrupt() {
+		Thread.interrupted();
+	}
+
+	@Test
+	public void sizeStaysBetweenOneAndTheWorkItems() {
+		assertEquals(3, WorkerPool.size(3, 10));
+		assertEquals(2, WorkerPool.size(3, 2));
+		assertEquals(1, WorkerPool.size(3, 0));
+		assertEquals(1, WorkerPool.size(0, 10));
+	}
+
+	@Test
+	public void runsTheWorkerOnEachNamedDaemonThread() {
+		final AtomicInteger runs = new AtomicInteger();
+		final Set<String> threadNames = Collections.newSetFromMap(
+				new ConcurrentHashMap<String, Boolean>());
+		final AtomicBoolean allDaemons = new AtomicBoolean(true);
+		final CountDownLatch allStarted = new CountDownLatch(3);
+
+		final boolean finished = WorkerPool.run("test-workers", 3, new Runnable() {
+			@Override
+			public void run() {
+				runs.incrementAndGet();
+				threadNames.add(Thread.currentThread().getName());
+				if ( !(Thread.currentThread().isDaemon()) ) {
+					allDaemons.set(false);
+				}
+				// hold each thread until all are running so none is reused
+				allStarted.countDown();
+				try {
+					allStarted.await();
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, new AtomicBoolean(false), null);
+
+		assertTrue(finished);
+		assertEquals(3, runs.get());
+		assertEquals(3, threadNames.size());
+		for ( String threadName : threadNames ) {
+			assertTrue(threadName, threadName.startsWith("test-workers-"));
+		}
+		assertTrue(allDaemons.get());
+	}
+
+	@Test
+	public void interruptionAbandonsTheWorkers() {
+		final AtomicBoolean abandon = new AtomicBoolean(false);
+
+		Thread.currentThread().interrupt();
+		final boolean finished = WorkerPool.run("test-workers", 1, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while ( !(abandon.get()) ) {
+						Thread.sleep(10);
+					}
+				} catch ( InterruptedException e ) {
+					// shutdownNow; abandon is already set at this point
+				}
+			}
+		}, abandon, null);
+
+		assertFalse(finished);
+		assertTrue(abandon.get());
+		assertTrue("interrupt status should be reasserted", Thread.interrupted());
+	}
+
+	@Test
+	public void interruptionWaitsForAbandonedWorkersToReturn() {
+		final AtomicBoolean abandon = new AtomicBoolean(false);
+		final AtomicInteger workersReturned = new AtomicInteger();
+
+		Thread.currentThread().interrupt();
+		final boolean finished = WorkerPool.run("test-workers", 2, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while ( !(abandon.get()) ) {
+						Thread.sleep(10);
+					}
+				} catch ( InterruptedException e ) {
+					// shutdownNow
+				}
+				// still writing shared state a while after being told to stop
+				final long until = System.currentTimeMillis() + 200;
+				while ( System.currentTimeMillis() < until ) {
+					Thread.yield();
+				}
+				workersReturned.incrementAndGet();
+			}
+		}, abandon, null);
+
+		assertFalse(finished);
+		assertEquals("run should not return before the workers do", 2, workersReturned.get());
+		assertTrue("interrupt status should be reasserted", Thread.interrupted());
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.util.csvwriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.hibernate.ScrollableResults;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Chunked writes in {@link AbstractCsvWriterHelper}: same output as an unchunked write, with at most one chunk read
+ * ahead of what has been written.
+ */
+public class AbstractCsvWriterHelperTest {
+
+	private static final List<String> ROWS = Lists.newArrayList("a", "b", "c", "d", "e", "f", "g");
+
+	private int rowsRead;
+
+	private int rowsWritten;
+
+	@Test
+	public void chunkedWriteProducesSameRowsAsUnchunkedWrite() throws Exception {
+		final StringWriter unchunked = new StringWriter();
+		new Helper(unchunked).write(ROWS, -1L);
+
+		final StringWriter chunked = new StringWriter();
+		new Helper(chunked).write(scroll(ROWS), 3, new AbstractCsvWriterHelper.ChunkPreparer<String>() {
+			@Override
+			public void prepare(List<String> chunk) {
+			}
+		}, -1L);
+
+		assertEquals("Chunked output did not match", unchunked.toString(), chunked.toString());
+	}
+
+	@Test
+	public void readsAtMostOneChunkAhead() throws Exception {
+		final List<Integer> chunkSizes = Lists.newArrayList();
+		new Helper(new StringWriter()).write(scroll(ROWS), 3, new AbstractCsvWriterHelper.ChunkPreparer<String>() {
+			@Override
+			public void prepare(List<String> chunk) {
+				assertEquals("Previous chunks should be written before the next is prepared",
+						3 * chunkSizes.size(), rowsWritten);
+				assertEquals("Only the current chunk should have been read ahead",
+						rowsWritten + chunk.size(), rowsRead);
+				chunkSizes.add(chunk.size());
+			}
+		}, -1L);
+
+		assertEquals("Chunk sizes did not match", Lists.newArrayList(3, 3, 1), chunkSizes);
+		assertEquals("Not every row was written", ROWS.size(), rowsWritten);
+	}
+
+	private ScrollableResults scroll(final List<String> rows) {
+		final ScrollableResults results = mock(ScrollableResults.class);
+		when(results.next()).thenAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				if ( rowsRead >= rows.size() ) {
+					return false;
+				}
+				rowsRead++;
+				return true;
+			}
+		});
+		when(results.get()).thenAnswer(new Answer<Object[]>() {
+			@Override
+			public Object[] answer(InvocationOnMock invocation) throws Throwable {
+				return new Object[] { rows.get(rowsRead - 1) };
+			}
+		});
+		return results;
+	}
+
+	private class Helper extends AbstractCsvWriterHelper<String> {
+
+		Helper(StringWriter out) {
+			super(new PrintWriter(out));
+		}
+
+		@Override
+		protected String[] csvHeaderRow() {
+			return new String[] { "row" };
+		}
+
+		@Override
+		protected List<String[]> csvBodyRows(String model) {
+			rowsWritten++;
+			return wrapCsvRowInList(new String[] { model });
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.util.hibernate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.hibernate.transform.ResultTransformer;
+import org.junit.Test;
+
+public class WindowCountResultTransformerTest {
+
+	@Test
+	public void testStripsAndRemembersTrailingCount() {
+		final WindowCountResultTransformer transformer = new WindowCountResultTransformer(new ResultTransformer() {
+			@Override
+			public Object transformTuple(Object[] tuple, String[] aliases) {
+				assertArrayEquals(new String[] { "person_schoolId" }, aliases);
+				return tuple[0];
+			}
+
+			@SuppressWarnings("rawtypes")
+			@Override
+			public List transformList(List collection) {
+				return collection;
+			}
+		});
+
+		assertNull("No total before any row was transformed", transformer.getTotalRows());
+		assertEquals("a", transformer.transformTuple(new Object[] { "a", 42L },
+				new String[] { "person_schoolId", "windowTotalRows" }));
+		assertEquals("b", transformer.transformTuple(new Object[] { "b", 42 },
+				new String[] { "person_schoolId", "windowTotalRows" }));
+		assertEquals(Long.valueOf(42L), transformer.getTotalRows());
+	}
+}
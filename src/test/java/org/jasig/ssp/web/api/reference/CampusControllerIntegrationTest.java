@@ -21,6 +21,7 @@ package org.jasig.ssp.web.api.reference;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collection;
 import java.util.UUID;
@@ -31,15 +32,20 @@ import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.impl.SecurityServiceInTestEnvironment;
 import org.jasig.ssp.transferobject.reference.CampusTO;
 import org.jasig.ssp.web.api.validation.ValidationException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 /**
  * {@link CampusController} tests
@@ -66,6 +72,11 @@ public class CampusControllerIntegrationTest {
 		securityService.setCurrent(new Person(Person.SYSTEM_ADMINISTRATOR_ID));
 	}
 
+	@After
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
 	/**
 	 * Test that the {@link CampusController#get(UUID)} action returns the
 	 * correct validation errors when an invalid ID is sent.
@@ -102,6 +113,52 @@ public class CampusControllerIntegrationTest {
 		assertNotNull("List should not have been null.", list);
 	}
 
+	/**
+	 * Test that
+	 * {@link CampusController#getAll(ObjectStatus, Integer, Integer, String, String)}
+	 * tags its response with an ETag, answers a matching
+	 * <code>If-None-Match</code> with a 304 and no body, and otherwise serves
+	 * the same JSON again.
+	 */
+	@Test
+	public void testControllerAllConditionalGet() throws Exception {
+		final MockHttpServletResponse first = new MockHttpServletResponse();
+		bindRequest(null, first);
+		assertNull("Body should have been written directly.",
+				controller.getAll(ObjectStatus.ACTIVE, null, null, null, null));
+		final String etag = first.getHeader("ETag");
+		assertNotNull("ETag should have been set.", etag);
+		assertTrue("Body should have been JSON rows.", first
+				.getContentAsString().contains("\"rows\""));
+
+		final MockHttpServletResponse revalidated = new MockHttpServletResponse();
+		bindRequest(etag, revalidated);
+		controller.getAll(ObjectStatus.ACTIVE, null, null, null, null);
+		assertEquals("Unchanged data should have been not modified.", 304,
+				revalidated.getStatus());
+		assertEquals("Not modified response should have had no body.", 0,
+				revalidated.getContentAsByteArray().length);
+
+		final MockHttpServletResponse cached = new MockHttpServletResponse();
+		bindRequest("\"stale\"", cached);
+		controller.getAll(ObjectStatus.ACTIVE, null, null, null, null);
+		assertEquals("Cached body should have matched the original.",
+				first.getContentAsString(), cached.getContentAsString());
+		assertEquals("ETag should not have changed.", etag,
+				cached.getHeader("ETag"));
+	}
+
+	private void bindRequest(final String ifNoneMatch,
+			final MockHttpServletResponse response) {
+		final MockHttpServletRequest request = new MockHttpServletRequest(
+				"GET", "/1/reference/campus");
+		if ( ifNoneMatch != null ) {
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(
+				request, response));
+	}
+
 	/**
 	 * Test that getLogger() returns the matching log class name for the current
 	 * class under test.
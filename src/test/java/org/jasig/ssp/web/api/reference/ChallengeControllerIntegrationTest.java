@@ -33,6 +33,7 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.jasig.ssp.model.ObjectStatus;
 import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.reference.ChallengeReferral;
 import org.jasig.ssp.service.ObjectNotFoundException;
 import org.jasig.ssp.service.impl.SecurityServiceInTestEnvironment;
 import org.jasig.ssp.transferobject.PagedResponse;
@@ -40,15 +41,20 @@ import org.jasig.ssp.transferobject.ServiceResponse;
 import org.jasig.ssp.transferobject.reference.ChallengeReferralTO;
 import org.jasig.ssp.transferobject.reference.ChallengeTO;
 import org.jasig.ssp.web.api.validation.ValidationException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 /**
  * {@link ChallengeController} tests
@@ -101,6 +107,11 @@ public class ChallengeControllerIntegrationTest { // NOPMD many methods allowed
 		securityService.setCurrent(new Person(Person.SYSTEM_ADMINISTRATOR_ID));
 	}
 
+	@After
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
 	/**
 	 * Test the {@link ChallengeController#get(UUID)} action.
 	 * 
@@ -360,6 +371,46 @@ public class ChallengeControllerIntegrationTest { // NOPMD many methods allowed
 				reloaded.getDefaultConfidentialityLevelId());
 	}
 
+	/**
+	 * Test that editing a referral embedded in the challenge list changes the
+	 * list ETag, even though no challenge row changed, so neither a 304 nor a
+	 * cached body hides the edit.
+	 */
+	@Test
+	public void testControllerAllETagCoversEmbeddedReferrals()
+			throws ObjectNotFoundException, ValidationException {
+		final MockHttpServletResponse first = new MockHttpServletResponse();
+		bindRequest(null, first);
+		controller.getAll(ObjectStatus.ACTIVE, null, null, null, null);
+		final String etag = first.getHeader("ETag");
+		assertNotNull("ETag should have been set.", etag);
+
+		final ChallengeReferral referral = controller.challengeReferralService
+				.get(CHALLENGE_REFERRAL_ID);
+		referral.setName(TEST_STRING1);
+		controller.challengeReferralService.save(referral);
+		sessionFactory.getCurrentSession().flush();
+
+		final MockHttpServletResponse revalidated = new MockHttpServletResponse();
+		bindRequest(etag, revalidated);
+		controller.getAll(ObjectStatus.ACTIVE, null, null, null, null);
+		assertEquals("Edited referral should have been served in full.", 200,
+				revalidated.getStatus());
+		assertFalse("ETag should have changed with the referral.",
+				etag.equals(revalidated.getHeader("ETag")));
+	}
+
+	private void bindRequest(final String ifNoneMatch,
+			final MockHttpServletResponse response) {
+		final MockHttpServletRequest request = new MockHttpServletRequest(
+				"GET", "/1/reference/challenge");
+		if ( ifNoneMatch != null ) {
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(
+				request, response));
+	}
+
 	/**
 	 * Test that getLogger() returns the matching log class name for the current
 	 * class under test.
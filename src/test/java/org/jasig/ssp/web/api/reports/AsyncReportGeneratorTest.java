@@ -0,0 +1,339 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.web.api.reports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.jasig.ssp.model.Person;
+import org.jasig.ssp.model.jobqueue.Job;
+import org.jasig.ssp.security.SspUser;
+import org.jasig.ssp.security.permissions.Permission;
+import org.jasig.ssp.service.ObjectNotFoundException;
+import org.jasig.ssp.service.SecurityService;
+import org.jasig.ssp.service.jobqueue.JobExecutionResult;
+import org.jasig.ssp.service.jobqueue.JobExecutionStatus;
+import org.jasig.ssp.service.jobqueue.JobService;
+import org.jasig.ssp.transferobject.jobqueue.ReportJobSpec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerAdapter;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * JUnit test class for {@link AsyncReportGenerator} and {@link AsyncReportInterceptor}.
+ */
+public class AsyncReportGeneratorTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String REPORT_PATH = "/1/report/test";
+
+	private JobService jobService;
+
+	private SecurityService securityService;
+
+	private ApplicationContext applicationContext;
+
+	private File fileStore;
+
+	private Person owner;
+
+	private AsyncReportGenerator generator;
+
+	@Before
+	public void setUp() throws Exception {
+		jobService = mock(JobService.class);
+		securityService = mock(SecurityService.class);
+		applicationContext = mock(ApplicationContext.class);
+		fileStore = new File(System.getProperty("java.io.tmpdir"), "ssp-reports-test-" + UUID.randomUUID());
+
+		generator = new AsyncReportGenerator();
+		ReflectionTestUtils.setField(generator, "jobService", jobService);
+		ReflectionTestUtils.setField(generator, "securityService", securityService);
+		ReflectionTestUtils.setField(generator, "transactionManager", mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(generator, "servletContext", new MockServletContext());
+		ReflectionTestUtils.setField(generator, "fileStoreDir", fileStore.getAbsolutePath());
+		generator.setApplicationContext(applicationContext);
+		generator.afterPropertiesSet();
+
+		owner = new Person(UUID.randomUUID());
+		final SspUser sspUser = mock(SspUser.class);
+		when(sspUser.getPerson()).thenReturn(owner);
+		when(securityService.currentlyAuthenticatedUser()).thenReturn(sspUser);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		SecurityContextHolder.clearContext();
+		FileUtils.deleteQuietly(fileStore);
+	}
+
+	@Test(expected = AccessDeniedException.class)
+	public void queueRejectsUserWithoutReportPermission() throws Exception {
+		authenticateWith("ROLE_PERSON_READ");
+		try {
+			generator.queue(newReportRequest(), new MockHttpServletResponse(), handler("report"));
+		} finally {
+			verify(jobService, never()).queue(any(UUID.class), any(UUID.class), anyString(), anyString(),
+					anyString());
+		}
+	}
+
+	@Test
+	public void queueAuthorizesAgainstHandlerExpression() throws Exception {
+		authenticateWith(roleIn(Permission.SECURITY_REPORT_READ));
+		assertTrue("Report role should have been enough to run the report",
+				generator.isAuthorized(newReportRequest(), new MockHttpServletResponse(), handler("report")));
+		assertFalse("Handler expression should have been checked instead of the report permission",
+				generator.isAuthorized(newReportRequest(), new MockHttpServletResponse(), handler("personReport")));
+	}
+
+	@Test
+	public void queueFallsBackToReportPermissionWithoutHandlerExpression() throws Exception {
+		authenticateWith("ROLE_PERSON_READ");
+		assertFalse("Unannotated report should have required the report permission",
+				generator.isAuthorized(newReportRequest(), new MockHttpServletResponse(), handler("unsecuredReport")));
+	}
+
+	@Test
+	public void interceptorAnswersForbiddenWithoutQueueing() throws Exception {
+		authenticateWith("ROLE_PERSON_READ");
+		final AsyncReportInterceptor interceptor = new AsyncReportInterceptor();
+		ReflectionTestUtils.setField(interceptor, "asyncReportGenerator", generator);
+		final MockHttpServletRequest request = newReportRequest();
+		request.addParameter(AsyncReportGenerator.ASYNC_PARAM_NAME, "true");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertFalse("Request should not have been handed on", interceptor.preHandle(request, response,
+				handler("report")));
+		assertEquals(HttpServletResponse.SC_FORBIDDEN, response.getStatus());
+		verify(jobService, never()).queue(any(UUID.class), any(UUID.class), anyString(), anyString(), anyString());
+	}
+
+	@Test
+	public void getOwnedJobReturnsOwnersReportJob() throws Exception {
+		final Job job = newReportJob(owner);
+		when(jobService.get(job.getId())).thenReturn(job);
+		assertSame(job, generator.getOwnedJob(job.getId()));
+	}
+
+	@Test(expected = ObjectNotFoundException.class)
+	public void getOwnedJobHidesOtherPeoplesJobs() throws Exception {
+		final Job job = newReportJob(new Person(UUID.randomUUID()));
+		when(jobService.get(job.getId())).thenReturn(job);
+		generator.getOwnedJob(job.getId());
+	}
+
+	@Test(expected = ObjectNotFoundException.class)
+	public void getOwnedJobHidesJobsThatAreNotReports() throws Exception {
+		final Job job = newReportJob(owner);
+		job.setExecutionComponentName("some-other-executor");
+		when(jobService.get(job.getId())).thenReturn(job);
+		generator.getOwnedJob(job.getId());
+	}
+
+	@Test(expected = ObjectNotFoundException.class)
+	public void getOwnedJobHidesJobsFromAnonymousUsers() throws Exception {
+		final Job job = newReportJob(owner);
+		when(jobService.get(job.getId())).thenReturn(job);
+		when(securityService.currentlyAuthenticatedUser()).thenReturn(null);
+		generator.getOwnedJob(job.getId());
+	}
+
+	@Test
+	public void generateReportReplaysRequestIntoReportFile() throws Exception {
+		final HandlerMethod handler = handler("report");
+		final HandlerMapping handlerMapping = mock(HandlerMapping.class);
+		when(handlerMapping.getHandler(any(HttpServletRequest.class)))
+				.thenReturn(new HandlerExecutionChain(handler));
+		final HandlerAdapter handlerAdapter = mock(HandlerAdapter.class);
+		when(handlerAdapter.supports(handler)).thenReturn(true);
+		doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				final HttpServletRequest request = (HttpServletRequest) invocation.getArguments()[0];
+				final HttpServletResponse response = (HttpServletResponse) invocation.getArguments()[1];
+				response.setContentType("text/csv");
+				response.setHeader("Content-disposition", "attachment; filename=test.csv");
+				response.getOutputStream().write(("term," + request.getParameter("termCode")).getBytes(UTF_8));
+				return null;
+			}
+		}).when(handlerAdapter).handle(any(HttpServletRequest.class), any(HttpServletResponse.class), any());
+		when(applicationContext.getBeansOfType(HandlerMapping.class, true, false))
+				.thenReturn(ImmutableMap.of("handlerMapping", handlerMapping));
+		when(applicationContext.getBeansOfType(HandlerAdapter.class, true, false))
+				.thenReturn(ImmutableMap.of("handlerAdapter", handlerAdapter));
+
+		final UUID jobId = UUID.randomUUID();
+		final Map<String, List<String>> parameters = Maps.newLinkedHashMap();
+		parameters.put("termCode", Collections.singletonList("FA12"));
+		final JobExecutionResult<AsyncReportGenerator.ReportJobExecutionState> result =
+				generator.generateReport(new ReportJobSpec("/api", REPORT_PATH, parameters), jobId);
+
+		assertEquals(JobExecutionStatus.DONE, result.getStatus());
+		assertEquals("text/csv", result.getDetail().contentType);
+		assertEquals("attachment; filename=test.csv", result.getDetail().contentDisposition);
+		final File reportFile = generator.getReportFile(jobId);
+		assertEquals("term,FA12", FileUtils.readFileToString(reportFile, "UTF-8"));
+		assertEquals(reportFile.length(), result.getDetail().size);
+	}
+
+	@Test
+	public void generateReportFailsAndCleansUpOnErrorStatus() throws Exception {
+		final HandlerMethod handler = handler("report");
+		final HandlerMapping handlerMapping = mock(HandlerMapping.class);
+		when(handlerMapping.getHandler(any(HttpServletRequest.class)))
+				.thenReturn(new HandlerExecutionChain(handler));
+		final HandlerAdapter handlerAdapter = mock(HandlerAdapter.class);
+		when(handlerAdapter.supports(handler)).thenReturn(true);
+		doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((HttpServletResponse) invocation.getArguments()[1]).sendError(HttpServletResponse.SC_BAD_REQUEST);
+				return null;
+			}
+		}).when(handlerAdapter).handle(any(HttpServletRequest.class), any(HttpServletResponse.class), any());
+		when(applicationContext.getBeansOfType(HandlerMapping.class, true, false))
+				.thenReturn(ImmutableMap.of("handlerMapping", handlerMapping));
+		when(applicationContext.getBeansOfType(HandlerAdapter.class, true, false))
+				.thenReturn(ImmutableMap.of("handlerAdapter", handlerAdapter));
+
+		final UUID jobId = UUID.randomUUID();
+		final JobExecutionResult<AsyncReportGenerator.ReportJobExecutionState> result =
+				generator.generateReport(new ReportJobSpec("/api", REPORT_PATH, null), jobId);
+
+		assertEquals(JobExecutionStatus.FAILED, result.getStatus());
+		assertNotNull(result.getCause());
+		assertFalse("Failed report should not have been kept", generator.getReportFile(jobId).exists());
+	}
+
+	@Test
+	public void purgeExpiredReportsOnlyDeletesExpiredReportFiles() throws Exception {
+		final File expired = generator.getReportFile(UUID.randomUUID());
+		final File current = generator.getReportFile(UUID.randomUUID());
+		final File unrelated = new File(fileStore, "unrelated.txt");
+		FileUtils.writeStringToFile(expired, "expired", "UTF-8");
+		FileUtils.writeStringToFile(current, "current", "UTF-8");
+		FileUtils.writeStringToFile(unrelated, "unrelated", "UTF-8");
+		final long longAgo = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25);
+		assertTrue(expired.setLastModified(longAgo));
+		assertTrue(unrelated.setLastModified(longAgo));
+
+		generator.purgeExpiredReports();
+
+		assertFalse("Report older than the retention period should have been purged", expired.exists());
+		assertTrue("Report within the retention period should have been kept", current.exists());
+		assertTrue("Files that aren't reports should have been left alone", unrelated.exists());
+	}
+
+	private void authenticateWith(String... roles) {
+		SecurityContextHolder.getContext().setAuthentication(
+				new TestingAuthenticationToken(owner.getId().toString(), "", roles));
+	}
+
+	private String roleIn(String expression) {
+		// hasRole('ROLE_X') -> ROLE_X
+		return expression.substring(expression.indexOf('\'') + 1, expression.lastIndexOf('\''));
+	}
+
+	private MockHttpServletRequest newReportRequest() {
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ssp/api" + REPORT_PATH);
+		request.setContextPath("/ssp");
+		request.setServletPath("/api");
+		request.setPathInfo(REPORT_PATH);
+		return request;
+	}
+
+	private HandlerMethod handler(String methodName) throws NoSuchMethodException {
+		return new HandlerMethod(new TestReportController(), methodName);
+	}
+
+	private Job newReportJob(Person jobOwner) {
+		final Job job = new Job();
+		job.setId(UUID.randomUUID());
+		job.setExecutionComponentName(AsyncReportGenerator.REPORT_JOB_EXECUTOR_NAME);
+		job.setOwner(jobOwner);
+		return job;
+	}
+
+	static class TestReportController extends ReportBaseController<Object> {
+
+		private static final Logger LOGGER = LoggerFactory.getLogger(TestReportController.class);
+
+		@Override
+		protected Logger getLogger() {
+			return LOGGER;
+		}
+
+		@PreAuthorize(Permission.SECURITY_REPORT_READ)
+		public void report() {
+		}
+
+		@PreAuthorize(Permission.SECURITY_PERSON_READ)
+		public void personReport() {
+		}
+
+		public void unsecuredReport() {
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.ssp.web.api.reports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRAbstractLRUVirtualizer;
+import net.sf.jasperreports.engine.fill.JRGzipVirtualizer;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks that {@link ReportBaseController} loads each report once and exports fills, virtualized or not, straight
+ * to the response.
+ */
+public class ReportBaseControllerTest {
+
+	private static final String REPORT_URL = "/org/jasig/ssp/web/api/reports/reportBaseControllerTest.jrxml";
+
+	@Test
+	public void loadsEachReportOnceForAllControllers() throws JRException {
+		final JasperReport first = new TestReportController().loadJasperReport(REPORT_URL);
+		final JasperReport second = new TestReportController().loadJasperReport(REPORT_URL);
+
+		assertSame(first, second);
+	}
+
+	@Test(expected = JRException.class)
+	public void missingReportFails() throws JRException {
+		new TestReportController().loadJasperReport("/org/jasig/ssp/web/api/reports/noSuchReport.jasper");
+	}
+
+	@Test
+	public void fillsAreHeldInMemoryUnlessConfiguredOtherwise() {
+		assertNull(controllerWithVirtualizer(null).newVirtualizer());
+		assertNull(controllerWithVirtualizer("none").newVirtualizer());
+		assertTrue(controllerWithVirtualizer("gzip").newVirtualizer() instanceof JRGzipVirtualizer);
+
+		final JRAbstractLRUVirtualizer swap = controllerWithVirtualizer("SWAP").newVirtualizer();
+		try {
+			assertTrue(swap instanceof JRSwapFileVirtualizer);
+		} finally {
+			swap.cleanup();
+		}
+	}
+
+	@Test
+	public void exportsCsvStraightToTheResponse() throws Exception {
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		new TestReportController().renderReport(response, Maps.<String, Object>newHashMap(), rows(3), REPORT_URL,
+				ReportBaseController.REPORT_TYPE_CSV, "test report");
+
+		assertEquals("attachment; filename=test_report.csv", response.getHeader("Content-disposition"));
+		assertRows(response.getContentAsString(), 3);
+	}
+
+	@Test
+	public void exportsVirtualizedFillsSpanningManyPages() throws Exception {
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		final Map<String, Object> parameters = Maps.newHashMap();
+		final TestReportController controller = controllerWithVirtualizer("gzip");
+		ReflectionTestUtils.setField(controller, "virtualizerMaxPages", 1);
+
+		// five rows per page, so most pages of the fill are virtualized
+		controller.renderReport(response, parameters, rows(23), REPORT_URL, ReportBaseController.REPORT_TYPE_CSV,
+				"test report");
+
+		assertTrue(parameters.get(JRParameter.REPORT_VIRTUALIZER) instanceof JRGzipVirtualizer);
+		assertRows(response.getContentAsString(), 23);
+	}
+
+	private static TestReportController controllerWithVirtualizer(final String type) {
+		final TestReportController controller = new TestReportController();
+		ReflectionTestUtils.setField(controller, "virtualizerType", type);
+		return controller;
+	}
+
+	private static List<Row> rows(final int count) {
+		final List<Row> rows = Lists.newArrayList();
+		for ( int i = 0; i < count; i++ ) {
+			rows.add(new Row("row " + i));
+		}
+		return rows;
+	}
+
+	private static void assertRows(final String csv, final int count) {
+		for ( int i = 0; i < count; i++ ) {
+			assertTrue("Missing row " + i + " in " + csv, csv.contains("row " + i + "\n")
+					|| csv.contains("row " + i + "\r\n") || csv.endsWith("row " + i));
+		}
+	}
+
+	private static class TestReportController extends ReportBaseController<Row> {
+	}
+
+	public static class Row {
+
+		private final String name;
+
+		public Row(final String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+}